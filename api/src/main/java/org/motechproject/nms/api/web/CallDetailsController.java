@@ -1,19 +1,8 @@
 package org.motechproject.nms.api.web;
 
-import org.joda.time.DateTime;
 import org.motechproject.nms.api.web.contract.CallContentRequest;
 import org.motechproject.nms.api.web.contract.CallDetailRecordRequest;
-import org.motechproject.nms.flw.domain.CallContent;
-import org.motechproject.nms.flw.domain.CallDetailRecord;
-import org.motechproject.nms.flw.domain.FlwStatusUpdateAudit;
 import org.motechproject.nms.flw.domain.FrontLineWorker;
-import org.motechproject.nms.flw.domain.FrontLineWorkerStatus;
-import org.motechproject.nms.flw.domain.UpdateStatusType;
-import org.motechproject.nms.flw.repository.FlwStatusUpdateAuditDataService;
-import org.motechproject.nms.flw.service.CallContentService;
-import org.motechproject.nms.flw.service.CallDetailRecordService;
-import org.motechproject.nms.flw.service.FrontLineWorkerService;
-import org.motechproject.nms.props.domain.FinalCallStatus;
 import org.motechproject.nms.props.domain.Service;
 import org.motechproject.nms.props.service.LogHelper;
 import org.slf4j.Logger;
@@ -37,16 +26,7 @@ public class CallDetailsController extends BaseController {
     private static final String CHAPTER_TYPE = "chapter";
 
     @Autowired
-    private CallDetailRecordService callDetailRecordService;
-
-    @Autowired
-    private CallContentService callContentService;
-
-    @Autowired
-    private FrontLineWorkerService frontLineWorkerService;
-
-    @Autowired
-    private FlwStatusUpdateAuditDataService flwStatusUpdateAuditDataService;
+    private CallDetailsIngester callDetailsIngester;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CallDetailsController.class);
     /**
@@ -109,84 +89,13 @@ public class CallDetailsController extends BaseController {
             throw new IllegalArgumentException(failureReasons.toString());
         }
 
-        FrontLineWorker flw = frontLineWorkerService.getByContactNumber(callDetailRecordRequest.getCallingNumber());
-        if (null == flw) {
-            // If the flw doesn't exist it is possible they hung up before providing their language.  We
-            // create an anonymous stub flw here
-            flw = new FrontLineWorker(callDetailRecordRequest.getCallingNumber());
-            flw.setStatus(FrontLineWorkerStatus.ANONYMOUS);
-            frontLineWorkerService.add(flw);
-
-            // reload so the record can be linked to later.
-            flw = frontLineWorkerService.getByContactNumber(callDetailRecordRequest.getCallingNumber());
-        }
-
-        createCallDetailRecord(flw, callDetailRecordRequest, service);
-
-        // if this is the FLW's first time calling the service, set her status to ACTIVE based on NMS.GEN.FLW.003
-        if (flw.getStatus() == FrontLineWorkerStatus.INACTIVE &&
-                validateFlwNameAndNumber(flw)) {
-           // flw.setStatus(FrontLineWorkerStatus.ACTIVE);
-           // frontLineWorkerService.updateStatusToActive(flw);
-            FlwStatusUpdateAudit flwStatusUpdateAudit = new FlwStatusUpdateAudit(DateTime.now(), flw.getFlwId(), flw.getMctsFlwId(), flw.getContactNumber(), UpdateStatusType.INACTIVE_TO_ACTIVE);
-            flwStatusUpdateAuditDataService.create(flwStatusUpdateAudit);
-        }
+        callDetailsIngester.ingest(service, callDetailRecordRequest);
     }
 
     private boolean validateFlwLocation(FrontLineWorker flw) {
         return flw.getState() != null && flw.getDistrict() != null;
     }
 
-    private boolean validateFlwNameAndNumber(FrontLineWorker flw) {
-        return flw.getName() != null && flw.getContactNumber() != null;
-    }
-
-    private void createCallDetailRecord(FrontLineWorker flw, CallDetailRecordRequest callDetailRecordRequest,
-                                        Service service) {
-        CallDetailRecord cdr = new CallDetailRecord();
-        cdr.setService(service);
-        cdr.setFrontLineWorker(flw);
-        cdr.setCallingNumber(callDetailRecordRequest.getCallingNumber());
-        cdr.setCallId(callDetailRecordRequest.getCallId());
-        cdr.setOperator(callDetailRecordRequest.getOperator());
-        cdr.setCircle(callDetailRecordRequest.getCircle());
-        cdr.setCallStartTime(new DateTime(callDetailRecordRequest.getCallStartTime() * MILLISECONDS_PER_SECOND));
-        cdr.setCallEndTime(new DateTime(callDetailRecordRequest.getCallEndTime() * MILLISECONDS_PER_SECOND));
-        cdr.setCallDurationInPulses(callDetailRecordRequest.getCallDurationInPulses());
-        cdr.setEndOfUsagePromptCounter(callDetailRecordRequest.getEndOfUsagePromptCounter());
-        cdr.setFinalCallStatus(FinalCallStatus.fromInt(callDetailRecordRequest.getCallStatus()));
-        cdr.setCallDisconnectReason(callDetailRecordRequest.getCallDisconnectReason());
-
-        if (service == Service.MOBILE_KUNJI) {
-            cdr.setWelcomePrompt(callDetailRecordRequest.getWelcomeMessagePromptFlag());
-        }
-
-        callDetailRecordService.add(cdr);
-
-        for (CallContentRequest callContentRequest : callDetailRecordRequest.getContent()) {
-            CallContent content = new CallContent();
-
-            content.setContentName(callContentRequest.getContentName());
-            content.setContentFile(callContentRequest.getContentFileName());
-            content.setStartTime(new DateTime(callContentRequest.getStartTime() * MILLISECONDS_PER_SECOND));
-            content.setEndTime(new DateTime(callContentRequest.getEndTime() * MILLISECONDS_PER_SECOND));
-
-            if (service == Service.MOBILE_KUNJI) {
-                content.setMobileKunjiCardCode(callContentRequest.getMkCardCode());
-            }
-
-            if (service == Service.MOBILE_ACADEMY) {
-                content.setType(callContentRequest.getType());
-                content.setCorrectAnswerEntered(callContentRequest.isCorrectAnswerEntered()); // this could be null, if not question
-                content.setCompletionFlag(callContentRequest.getCompletionFlag());
-            }
-
-            content.setCallDetailRecord(cdr);
-
-            callContentService.add(content);
-        }
-    }
-
     // (callStartTime, callEndTime, callDurationInPulses, endOfUsagePromptCount, callStatus, callDisconnectReason)
     private String validateCallDetailsCommonElements(CallDetailRecordRequest callDetailRecordRequest) {
         StringBuilder failureReasons = new StringBuilder();
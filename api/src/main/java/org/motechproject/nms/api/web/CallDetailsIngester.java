@@ -0,0 +1,405 @@
+package org.motechproject.nms.api.web;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.joda.time.DateTime;
+import org.motechproject.metrics.service.Timer;
+import org.motechproject.nms.api.web.contract.CallContentRequest;
+import org.motechproject.nms.api.web.contract.CallDetailRecordRequest;
+import org.motechproject.nms.flw.domain.CallContent;
+import org.motechproject.nms.flw.domain.CallDetailRecord;
+import org.motechproject.nms.flw.domain.FlwStatusUpdateAudit;
+import org.motechproject.nms.flw.domain.FrontLineWorker;
+import org.motechproject.nms.flw.domain.FrontLineWorkerStatus;
+import org.motechproject.nms.flw.domain.UpdateStatusType;
+import org.motechproject.nms.flw.repository.FlwStatusUpdateAuditDataService;
+import org.motechproject.nms.flw.service.CallContentService;
+import org.motechproject.nms.flw.service.CallDetailRecordService;
+import org.motechproject.nms.flw.service.FrontLineWorkerService;
+import org.motechproject.nms.props.domain.FinalCallStatus;
+import org.motechproject.nms.props.domain.Service;
+import org.motechproject.nms.tracking.utils.SettingsHelper;
+import org.motechproject.server.config.SettingsFacade;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Saves the call details posted to the Mobile Academy and Mobile Kunji callDetails API.
+ *
+ * By default (api.call_details.async=false) the CDR and its contents are saved in the request transaction. In
+ * asynchronous mode the validated request is appended to a local {@link CallDetailsSpool} and acknowledged, and a
+ * background consumer saves the spooled requests in batches of api.call_details.batch_size, one transaction per
+ * batch, with the contents of the whole batch in multi-row INSERTs. The first batch read from a segment
+ * skips the calls which already have a CDR, as it may have been committed before its progress was recorded.
+ */
+@Component("callDetailsIngester")
+public class CallDetailsIngester {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CallDetailsIngester.class);
+
+    private static final String ASYNC = "api.call_details.async";
+    private static final String SPOOL_DIRECTORY = "api.call_details.spool_directory";
+    private static final String BATCH_SIZE = "api.call_details.batch_size";
+    private static final int BATCH_SIZE_DEFAULT = 200;
+    private static final String POLL_INTERVAL = "api.call_details.poll_interval_millis";
+    private static final int POLL_INTERVAL_DEFAULT = 1000;
+
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 30000;
+    private static final int MILLISECONDS_PER_SECOND = 1000;
+
+    private final CallDetailRecordService callDetailRecordService;
+    private final CallContentService callContentService;
+    private final FrontLineWorkerService frontLineWorkerService;
+    private final FlwStatusUpdateAuditDataService flwStatusUpdateAuditDataService;
+    private final TransactionTemplate newTransaction;
+    private final ObjectMapper objectMapper;
+    private final boolean async;
+    private final File spoolDirectory;
+    private final int batchSize;
+    private final int pollInterval;
+
+    private CallDetailsSpool spool;
+    private volatile boolean running;
+    private Thread consumerThread;
+
+    @Autowired
+    public CallDetailsIngester(@Qualifier("apiSettings") SettingsFacade settingsFacade, // NO CHECKSTYLE More than 7 parameters
+                               CallDetailRecordService callDetailRecordService,
+                               CallContentService callContentService,
+                               FrontLineWorkerService frontLineWorkerService,
+                               FlwStatusUpdateAuditDataService flwStatusUpdateAuditDataService,
+                               PlatformTransactionManager transactionManager) {
+        this.callDetailRecordService = callDetailRecordService;
+        this.callContentService = callContentService;
+        this.frontLineWorkerService = frontLineWorkerService;
+        this.flwStatusUpdateAuditDataService = flwStatusUpdateAuditDataService;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.async = "true".equalsIgnoreCase(settingsFacade.getProperty(ASYNC));
+        String directory = settingsFacade.getProperty(SPOOL_DIRECTORY);
+        this.spoolDirectory = (directory == null || directory.trim().isEmpty()) ? null : new File(directory.trim());
+        this.batchSize = SettingsHelper.getPositiveInteger(settingsFacade, BATCH_SIZE, BATCH_SIZE_DEFAULT);
+        this.pollInterval = SettingsHelper.getPositiveInteger(settingsFacade, POLL_INTERVAL, POLL_INTERVAL_DEFAULT);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!async) {
+            LOGGER.info("Call details are saved synchronously");
+            return;
+        }
+        if (spoolDirectory == null) {
+            // the spool holds acknowledged calls, it must not live somewhere the OS may clean up
+            throw new IllegalStateException(SPOOL_DIRECTORY + " must be set when " + ASYNC + " is on");
+        }
+        spool = new CallDetailsSpool(spoolDirectory);
+        running = true;
+        consumerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                consume();
+            }
+        }, "nms-call-details-ingester");
+        consumerThread.setDaemon(true);
+        consumerThread.start();
+        LOGGER.info("Call details are spooled to {} and saved in batches of {}", spoolDirectory, batchSize);
+    }
+
+    /**
+     * Stops the consumer once it has saved what was spooled when it was asked to stop, waiting at most 30 seconds.
+     * Whatever is appended meanwhile, or left unsaved when the wait times out, stays in the spool and is saved after
+     * the next start.
+     */
+    @PreDestroy
+    public void stop() throws IOException {
+        if (consumerThread == null) {
+            return;
+        }
+        running = false;
+        try {
+            consumerThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        spool.close();
+    }
+
+    /**
+     * Saves, or spools for saving, the call details of a validated request
+     * @param service MOBILE_ACADEMY or MOBILE_KUNJI
+     * @param callDetailRecordRequest the validated request
+     */
+    public void ingest(Service service, CallDetailRecordRequest callDetailRecordRequest) {
+        if (!async) {
+            save(service, callDetailRecordRequest);
+            return;
+        }
+
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("service", service.name());
+        node.set("request", objectMapper.valueToTree(callDetailRecordRequest));
+        try {
+            spool.append(objectMapper.writeValueAsString(node));
+        } catch (IOException e) {
+            LOGGER.warn("Unable to spool call details of {}, saving them synchronously",
+                    callDetailRecordRequest.getCallId(), e);
+            save(service, callDetailRecordRequest);
+        }
+    }
+
+    /**
+     * Saves the CDR and its contents one by one, in the caller's transaction
+     */
+    private void save(Service service, CallDetailRecordRequest callDetailRecordRequest) {
+        FrontLineWorker flw = getOrCreateFlw(callDetailRecordRequest.getCallingNumber());
+        CallDetailRecord cdr = toCallDetailRecord(flw, callDetailRecordRequest, service);
+        callDetailRecordService.add(cdr);
+        for (CallContent content : toCallContents(cdr, callDetailRecordRequest, service)) {
+            callContentService.add(content);
+        }
+        auditFirstCall(flw);
+    }
+
+    private void consume() {
+        while (running) {
+            try {
+                Thread.sleep(pollInterval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            consumeSpool();
+        }
+        // a last pass, for what was spooled while sleeping or saving the previous segments
+        consumeSpool();
+    }
+
+    private void consumeSpool() {
+        try {
+            spool.rollOver();
+            for (File segment : spool.getSegments()) {
+                consumeSegment(segment);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Unable to consume the call details spool {}", spoolDirectory, e);
+        }
+    }
+
+    private void consumeSegment(File segment) throws IOException {
+        List<String> lines = spool.readLines(segment);
+        Timer timer = new Timer("call", "calls");
+        int committed = spool.getCommitted(segment);
+        int from = committed;
+        while (committed < lines.size()) {
+            List<String> batch = lines.subList(committed, Math.min(committed + batchSize, lines.size()));
+            // the first batch may have been committed before the progress of the segment could be recorded
+            saveBatch(batch, committed == from);
+            committed += batch.size();
+            spool.setCommitted(segment, committed);
+        }
+        spool.remove(segment);
+        LOGGER.debug("Saved {} from {}", timer.frequency(lines.size() - from), segment.getName());
+    }
+
+    private void saveBatch(List<String> lines, boolean replay) throws IOException {
+        List<SpooledCallDetails> batch = new ArrayList<>(lines.size());
+        List<String> failed = new ArrayList<>();
+        for (String line : lines) {
+            try {
+                batch.add(parse(line));
+            } catch (IOException | IllegalArgumentException e) {
+                LOGGER.error("Unable to read spooled call details {}", line, e);
+                failed.add(line);
+            }
+        }
+        if (replay) {
+            batch = skipSaved(batch);
+        }
+
+        try {
+            saveInNewTransaction(batch);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Saving a batch of {} call(s) failed, saving them one by one", batch.size(), e);
+            for (SpooledCallDetails callDetails : batch) {
+                try {
+                    saveInNewTransaction(Collections.singletonList(callDetails));
+                } catch (RuntimeException ex) {
+                    LOGGER.error("Unable to save call details of {}", callDetails.request.getCallId(), ex);
+                    failed.add(callDetails.line);
+                }
+            }
+        }
+
+        if (!failed.isEmpty()) {
+            spool.fail(failed, replay);
+        }
+    }
+
+    /**
+     * @return the call details of the batch which don't have a CDR yet
+     */
+    private List<SpooledCallDetails> skipSaved(List<SpooledCallDetails> batch) {
+        Map<Service, List<String>> callIds = new HashMap<>();
+        for (SpooledCallDetails callDetails : batch) {
+            List<String> ids = callIds.get(callDetails.service);
+            if (ids == null) {
+                ids = new ArrayList<>();
+                callIds.put(callDetails.service, ids);
+            }
+            ids.add(callDetails.request.getCallId());
+        }
+        Map<Service, Set<String>> saved = new HashMap<>();
+        for (Map.Entry<Service, List<String>> entry : callIds.entrySet()) {
+            saved.put(entry.getKey(), callDetailRecordService.findExistingCallIds(entry.getKey(), entry.getValue()));
+        }
+
+        List<SpooledCallDetails> unsaved = new ArrayList<>(batch.size());
+        for (SpooledCallDetails callDetails : batch) {
+            if (saved.get(callDetails.service).contains(callDetails.request.getCallId())) {
+                LOGGER.info("Call details of {} are already saved, skipping them", callDetails.request.getCallId());
+            } else {
+                unsaved.add(callDetails);
+            }
+        }
+        return unsaved;
+    }
+
+    private void saveInNewTransaction(final List<SpooledCallDetails> batch) {
+        newTransaction.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                Map<Long, FrontLineWorker> flws = new HashMap<>();
+                List<CallContent> contents = new ArrayList<>();
+                for (SpooledCallDetails callDetails : batch) {
+                    Long callingNumber = callDetails.request.getCallingNumber();
+                    FrontLineWorker flw = flws.get(callingNumber);
+                    if (flw == null) {
+                        flw = getOrCreateFlw(callingNumber);
+                        flws.put(callingNumber, flw);
+                    }
+                    CallDetailRecord cdr = toCallDetailRecord(flw, callDetails.request, callDetails.service);
+                    callDetailRecordService.add(cdr);
+                    contents.addAll(toCallContents(cdr, callDetails.request, callDetails.service));
+                    auditFirstCall(flw);
+                }
+                callContentService.addAll(contents);
+            }
+        });
+    }
+
+    private SpooledCallDetails parse(String line) throws IOException {
+        JsonNode node = objectMapper.readTree(line);
+        Service service = Service.valueOf(node.get("service").asText());
+        CallDetailRecordRequest request = objectMapper.treeToValue(node.get("request"),
+                CallDetailRecordRequest.class);
+        return new SpooledCallDetails(line, service, request);
+    }
+
+    private FrontLineWorker getOrCreateFlw(Long callingNumber) {
+        FrontLineWorker flw = frontLineWorkerService.getByContactNumber(callingNumber);
+        if (null == flw) {
+            // If the flw doesn't exist it is possible they hung up before providing their language.  We
+            // create an anonymous stub flw here
+            flw = new FrontLineWorker(callingNumber);
+            flw.setStatus(FrontLineWorkerStatus.ANONYMOUS);
+            frontLineWorkerService.add(flw);
+
+            // reload so the record can be linked to later.
+            flw = frontLineWorkerService.getByContactNumber(callingNumber);
+        }
+        return flw;
+    }
+
+    // if this is the FLW's first time calling the service, set her status to ACTIVE based on NMS.GEN.FLW.003
+    private void auditFirstCall(FrontLineWorker flw) {
+        if (flw.getStatus() == FrontLineWorkerStatus.INACTIVE && flw.getName() != null &&
+                flw.getContactNumber() != null) {
+            FlwStatusUpdateAudit flwStatusUpdateAudit = new FlwStatusUpdateAudit(DateTime.now(), flw.getFlwId(),
+                    flw.getMctsFlwId(), flw.getContactNumber(), UpdateStatusType.INACTIVE_TO_ACTIVE);
+            flwStatusUpdateAuditDataService.create(flwStatusUpdateAudit);
+        }
+    }
+
+    private CallDetailRecord toCallDetailRecord(FrontLineWorker flw, CallDetailRecordRequest callDetailRecordRequest,
+                                                Service service) {
+        CallDetailRecord cdr = new CallDetailRecord();
+        cdr.setService(service);
+        cdr.setFrontLineWorker(flw);
+        cdr.setCallingNumber(callDetailRecordRequest.getCallingNumber());
+        cdr.setCallId(callDetailRecordRequest.getCallId());
+        cdr.setOperator(callDetailRecordRequest.getOperator());
+        cdr.setCircle(callDetailRecordRequest.getCircle());
+        cdr.setCallStartTime(new DateTime(callDetailRecordRequest.getCallStartTime() * MILLISECONDS_PER_SECOND));
+        cdr.setCallEndTime(new DateTime(callDetailRecordRequest.getCallEndTime() * MILLISECONDS_PER_SECOND));
+        cdr.setCallDurationInPulses(callDetailRecordRequest.getCallDurationInPulses());
+        cdr.setEndOfUsagePromptCounter(callDetailRecordRequest.getEndOfUsagePromptCounter());
+        cdr.setFinalCallStatus(FinalCallStatus.fromInt(callDetailRecordRequest.getCallStatus()));
+        cdr.setCallDisconnectReason(callDetailRecordRequest.getCallDisconnectReason());
+
+        if (service == Service.MOBILE_KUNJI) {
+            cdr.setWelcomePrompt(callDetailRecordRequest.getWelcomeMessagePromptFlag());
+        }
+        return cdr;
+    }
+
+    private List<CallContent> toCallContents(CallDetailRecord cdr, CallDetailRecordRequest callDetailRecordRequest,
+                                             Service service) {
+        List<CallContent> contents = new ArrayList<>();
+        for (CallContentRequest callContentRequest : callDetailRecordRequest.getContent()) {
+            CallContent content = new CallContent();
+
+            content.setContentName(callContentRequest.getContentName());
+            content.setContentFile(callContentRequest.getContentFileName());
+            content.setStartTime(new DateTime(callContentRequest.getStartTime() * MILLISECONDS_PER_SECOND));
+            content.setEndTime(new DateTime(callContentRequest.getEndTime() * MILLISECONDS_PER_SECOND));
+
+            if (service == Service.MOBILE_KUNJI) {
+                content.setMobileKunjiCardCode(callContentRequest.getMkCardCode());
+            }
+
+            if (service == Service.MOBILE_ACADEMY) {
+                content.setType(callContentRequest.getType());
+                content.setCorrectAnswerEntered(callContentRequest.isCorrectAnswerEntered()); // this could be null, if not question
+                content.setCompletionFlag(callContentRequest.getCompletionFlag());
+            }
+
+            content.setCallDetailRecord(cdr);
+            contents.add(content);
+        }
+        return contents;
+    }
+
+    private static final class SpooledCallDetails {
+        private final String line;
+        private final Service service;
+        private final CallDetailRecordRequest request;
+
+        private SpooledCallDetails(String line, Service service, CallDetailRecordRequest request) {
+            this.line = line;
+            this.service = service;
+            this.request = request;
+        }
+    }
+}
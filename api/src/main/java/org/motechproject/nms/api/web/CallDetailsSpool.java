@@ -0,0 +1,241 @@
+package org.motechproject.nms.api.web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Append-only journal of accepted call details, one JSON line per request, kept in a local directory.
+ *
+ * Lines are appended and synced to current.spool. Appends made while a sync is running are synced together by the
+ * next one, so concurrent requests share an fsync instead of queueing for one each. The consumer rolls the file over
+ * into a numbered segment, reads the segment in batches and records how many of its lines are committed in a .done
+ * file next to it, so a restart resumes after the last committed batch. Lines that could not be saved are moved to
+ * failed.spool.
+ */
+public class CallDetailsSpool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CallDetailsSpool.class);
+
+    private static final String CURRENT = "current.spool";
+    private static final String FAILED = "failed.spool";
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final String DONE_SUFFIX = ".done";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final Object syncLock = new Object();
+    private FileOutputStream currentStream;
+    private Writer currentWriter;
+    private long currentLines;
+    private long segmentSequence;
+    // guarded by this
+    private long appended;
+    // guarded by syncLock
+    private long synced;
+
+    public CallDetailsSpool(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the call details spool directory " + directory);
+        }
+        this.directory = directory;
+        File current = new File(directory, CURRENT);
+        if (current.length() > 0) {
+            LOGGER.info("Found call details left in {}, queueing them", current);
+            Files.move(current.toPath(), nextSegment().toPath());
+        }
+        open();
+    }
+
+    /**
+     * Appends the line and returns once it is synced to disk
+     */
+    public void append(String line) throws IOException {
+        long sequence;
+        synchronized (this) {
+            currentWriter.write(line);
+            currentWriter.write('\n');
+            currentLines++;
+            sequence = ++appended;
+        }
+        sync(sequence);
+    }
+
+    /**
+     * Closes the current file as a segment, if anything was appended to it, so the consumer can read it
+     */
+    public void rollOver() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (currentLines == 0) {
+                    return;
+                }
+                syncAppended();
+                currentWriter.close();
+                Files.move(new File(directory, CURRENT).toPath(), nextSegment().toPath());
+                open();
+            }
+        }
+    }
+
+    /**
+     * @return the segments waiting to be consumed, oldest first
+     */
+    public List<File> getSegments() {
+        File[] segments = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        if (segments == null) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(segments);
+        return Arrays.asList(segments);
+    }
+
+    public List<String> readLines(File segment) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(segment),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * @return how many lines of the segment are already committed
+     */
+    public int getCommitted(File segment) throws IOException {
+        File done = doneFile(segment);
+        if (!done.exists()) {
+            return 0;
+        }
+        String committed = new String(Files.readAllBytes(done.toPath()), StandardCharsets.UTF_8).trim();
+        try {
+            return Integer.parseInt(committed);
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Ignoring invalid progress '{}' of {}", committed, segment);
+            return 0;
+        }
+    }
+
+    /**
+     * Records how many lines of the segment are committed. The progress is synced to a temporary file which then
+     * replaces the .done file, so a crash leaves either the previous or the new progress, never a partial one.
+     */
+    public void setCommitted(File segment, int committed) throws IOException {
+        File done = doneFile(segment);
+        File temp = new File(done.getPath() + TEMP_SUFFIX);
+        try (FileOutputStream stream = new FileOutputStream(temp)) {
+            stream.write(String.valueOf(committed).getBytes(StandardCharsets.UTF_8));
+            stream.flush();
+            stream.getFD().sync();
+        }
+        Files.move(temp.toPath(), done.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Moves the lines to failed.spool
+     * @param replay whether the lines come from a batch which may have failed before, in which case the lines
+     *               already in failed.spool are not added again
+     */
+    public void fail(List<String> lines, boolean replay) throws IOException {
+        File failed = new File(directory, FAILED);
+        Set<String> alreadyFailed = replay && failed.exists() ? new HashSet<>(readLines(failed)) :
+                new HashSet<String>();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(new File(directory, FAILED), true),
+                StandardCharsets.UTF_8)) {
+            for (String line : lines) {
+                if (!alreadyFailed.add(line)) {
+                    continue;
+                }
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+    }
+
+    public void remove(File segment) throws IOException {
+        Files.deleteIfExists(doneFile(segment).toPath());
+        Files.deleteIfExists(segment.toPath());
+    }
+
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                syncAppended();
+                currentWriter.close();
+            }
+        }
+    }
+
+    /**
+     * Syncs the current file unless a sync which started after the line was appended already covered it
+     */
+    private void sync(long sequence) throws IOException {
+        synchronized (syncLock) {
+            if (synced >= sequence) {
+                return;
+            }
+            FileOutputStream stream;
+            long target;
+            synchronized (this) {
+                currentWriter.flush();
+                stream = currentStream;
+                target = appended;
+            }
+            // appends go on while the disk syncs, rolling over needs syncLock so the stream stays open
+            stream.getFD().sync();
+            synced = target;
+        }
+    }
+
+    /**
+     * Called holding syncLock and this
+     */
+    private void syncAppended() throws IOException {
+        currentWriter.flush();
+        currentStream.getFD().sync();
+        synced = appended;
+    }
+
+    private void open() throws IOException {
+        currentStream = new FileOutputStream(new File(directory, CURRENT), true);
+        currentWriter = new OutputStreamWriter(currentStream, StandardCharsets.UTF_8);
+        currentLines = 0;
+    }
+
+    private File nextSegment() {
+        segmentSequence++;
+        return new File(directory, String.format("%013d-%06d%s", System.currentTimeMillis(), segmentSequence,
+                SEGMENT_SUFFIX));
+    }
+
+    private File doneFile(File segment) {
+        return new File(segment.getPath() + DONE_SUFFIX);
+    }
+}
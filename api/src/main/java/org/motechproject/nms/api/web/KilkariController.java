@@ -66,6 +66,9 @@ public class KilkariController extends BaseController {
     @Autowired
     private PropertyService propertyService;
 
+    @Autowired
+    private KilkariResponseCache kilkariResponseCache;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(KilkariController.class);
 
     /**
@@ -88,8 +91,16 @@ public class KilkariController extends BaseController {
             throw new IllegalArgumentException(failureReasons.toString());
         }
 
-        List<Subscriber> subscribers = subscriberService.getSubscriber(callingNumber);
-        if (subscribers.isEmpty()) {
+        Set<InboxSubscriptionDetailResponse> cached = kilkariResponseCache.getInbox(callingNumber);
+        if (cached != null) {
+            InboxResponse ret = new InboxResponse(new HashSet<>(cached));
+            log("RESPONSE: /kilkari/inbox", String.format("callId=%s, %s", callId, ret.toString()));
+            return ret;
+        }
+
+        long cacheGeneration = kilkariResponseCache.getGeneration();
+        SubscriberSnapshot snapshot = SubscriberSnapshot.load(subscriberService, callingNumber);
+        if (snapshot.isEmpty()) {
             throw new NotFoundException(String.format(NOT_FOUND, "callingNumber"));
         }
 
@@ -100,31 +111,32 @@ public class KilkariController extends BaseController {
         List<Subscription> holdToActiveSubscription = new ArrayList<>();
         boolean holdToActive = false;
 
-        for (Subscriber subscriber : subscribers) {
-            for (Subscription subscription : subscriber.getAllSubscriptions()) {
-                try {
-                    if (subscription.getStatus()== SubscriptionStatus.HOLD) {
-                        holdToActive = true;
-                        subscription.setStatus(SubscriptionStatus.ACTIVE);
-                        holdToActiveSubscription.add(subscription);
-                    }
-                    inboxMessage = inboxService.getInboxMessage(subscription);
-                    weekId = (inboxMessage == null) ? null : inboxMessage.getWeekId();
-                    fileName = (inboxMessage == null) ? null : inboxMessage.getMessageFileName();
-
-                    subscriptionDetails.add(new InboxSubscriptionDetailResponse(subscription.getSubscriptionId(),
-                            subscription.getSubscriptionPack().getName(),
-                            weekId,
-                            fileName));
-
-                } catch (NoInboxForSubscriptionException e) {
-                    // there's no inbox, don't add anything to the list
-                    LOGGER.debug(String.format("Found no inbox for subscription: %s", subscription.getSubscriptionId()));
+        for (Subscription subscription : snapshot.getSubscriptions()) {
+            try {
+                // left on HOLD for activateSubscription to count the HOLD to ACTIVE transition
+                if (subscription.getStatus()== SubscriptionStatus.HOLD) {
+                    holdToActive = true;
+                    holdToActiveSubscription.add(subscription);
                 }
+                inboxMessage = inboxService.getInboxMessage(subscription);
+                weekId = (inboxMessage == null) ? null : inboxMessage.getWeekId();
+                fileName = (inboxMessage == null) ? null : inboxMessage.getMessageFileName();
+
+                subscriptionDetails.add(new InboxSubscriptionDetailResponse(subscription.getSubscriptionId(),
+                        subscription.getSubscriptionPack().getName(),
+                        weekId,
+                        fileName));
+
+            } catch (NoInboxForSubscriptionException e) {
+                // there's no inbox, don't add anything to the list
+                LOGGER.debug(String.format("Found no inbox for subscription: %s", subscription.getSubscriptionId()));
             }
         }
         if (holdToActive){
             subscriptionService.activateSubscription(holdToActiveSubscription.get(0));
+        } else {
+            kilkariResponseCache.putInbox(callingNumber, subscriptionDetails, snapshot.getSubscriptionIds(),
+                    cacheGeneration);
         }
 
         InboxResponse ret = new InboxResponse(subscriptionDetails);
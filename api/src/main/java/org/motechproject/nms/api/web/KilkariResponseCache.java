@@ -0,0 +1,370 @@
+package org.motechproject.nms.api.web;
+
+import org.joda.time.LocalDate;
+import org.motechproject.config.core.constants.ConfigurationConstants;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.annotations.MotechListener;
+import org.motechproject.nms.api.web.contract.kilkari.InboxSubscriptionDetailResponse;
+import org.motechproject.nms.flw.service.WhitelistService;
+import org.motechproject.nms.kilkari.service.SubscriberService;
+import org.motechproject.nms.kilkari.utils.KilkariConstants;
+import org.motechproject.nms.props.service.PropertyService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches what the Kilkari inbox and user APIs answer for a calling number, so repeated IVR calls for the same
+ * subscriber don't go back to the database. Entries are dropped when the kilkari module broadcasts a subscriber or
+ * subscription change for the number, after {@link #TTL_MILLIS}, and at midnight since inbox content moves with the
+ * date. The users are also dropped when the deployed services or the whitelists change. Turned on with
+ * kilkari.response_cache, which also turns the kilkari module broadcasts on.
+ *
+ * Subscription changes are broadcast with the subscription ids only, the cache maps them back to the calling numbers
+ * it cached them for.
+ *
+ * Loads compare the cache generation from before they read the database with the current one when they store their
+ * result, so an answer read before an evict message arrived is never cached.
+ */
+@Component("kilkariResponseCache")
+public class KilkariResponseCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KilkariResponseCache.class);
+
+    private static final int MAX_ENTRIES = 200000;
+    private static final int SEGMENTS = 16;
+    private static final long TTL_MILLIS = 5 * 60 * 1000L;
+    private static final int STATS_LOG_INTERVAL = 100000;
+    private static final int INDEX_SWEEP_INTERVAL = 100000;
+
+    private final ExpiringCache<Set<InboxSubscriptionDetailResponse>> inboxCache = new ExpiringCache<>("inbox");
+    private final ExpiringCache<KilkariUser> userCache = new ExpiringCache<>("user");
+
+    /**
+     * subscription id -> calling number of the entries cached for it, entries outlive the cached answers
+     */
+    private final ConcurrentMap<Long, Entry<Long>> subscriptionNumbers = new ConcurrentHashMap<>();
+    private final AtomicLong indexPuts = new AtomicLong();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final SubscriberService subscriberService;
+
+    private volatile boolean enabled;
+
+    @Autowired
+    public KilkariResponseCache(SubscriberService subscriberService) {
+        this.subscriberService = subscriberService;
+    }
+
+    /**
+     * @return the current generation, to pass to the put methods once the value has been loaded
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public Set<InboxSubscriptionDetailResponse> getInbox(Long callingNumber) {
+        return enabled ? inboxCache.get(callingNumber) : null;
+    }
+
+    /**
+     * @param subscriptionIds ids of every subscription of the calling number, changing any of them evicts the entry
+     */
+    public void putInbox(Long callingNumber, Set<InboxSubscriptionDetailResponse> subscriptionDetails,
+                         Collection<Long> subscriptionIds, long loadGeneration) {
+        if (!enabled) {
+            return;
+        }
+        Set<InboxSubscriptionDetailResponse> value = Collections.unmodifiableSet(new HashSet<>(subscriptionDetails));
+        put(inboxCache, callingNumber, value, subscriptionIds, loadGeneration);
+    }
+
+    /**
+     * @param callingNumber the calling number
+     * @param circle the circle passed by the IVR, the deployment check may depend on it
+     * @return the cached user, or null if not cached for this number and circle
+     */
+    public KilkariUser getUser(Long callingNumber, String circle) {
+        if (!enabled) {
+            return null;
+        }
+        KilkariUser user = userCache.get(callingNumber);
+        return (user != null && Objects.equals(user.getCircle(), circle)) ? user : null;
+    }
+
+    /**
+     * @param subscriptionIds ids of every subscription of the calling number, changing any of them evicts the entry
+     */
+    public void putUser(Long callingNumber, KilkariUser user, Collection<Long> subscriptionIds, long loadGeneration) {
+        if (!enabled) {
+            return;
+        }
+        put(userCache, callingNumber, user, subscriptionIds, loadGeneration);
+    }
+
+    /**
+     * The index is written before the value so an evict arriving after the value is stored finds it. An evict that
+     * ran while the value was stored bumped the generation, the value is then taken back out.
+     */
+    private <V> void put(ExpiringCache<V> cache, Long callingNumber, V value, Collection<Long> subscriptionIds,
+                         long loadGeneration) {
+        if (loadGeneration != generation.get()) {
+            return;
+        }
+        index(callingNumber, subscriptionIds);
+        cache.put(callingNumber, value);
+        if (loadGeneration != generation.get()) {
+            cache.remove(callingNumber);
+        }
+    }
+
+    private void index(Long callingNumber, Collection<Long> subscriptionIds) {
+        for (Long subscriptionId : subscriptionIds) {
+            subscriptionNumbers.put(subscriptionId, new Entry<>(callingNumber));
+        }
+        if (indexPuts.incrementAndGet() % INDEX_SWEEP_INTERVAL == 0) {
+            Iterator<Entry<Long>> entries = subscriptionNumbers.values().iterator();
+            while (entries.hasNext()) {
+                if (entries.next().isExpired()) {
+                    entries.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * The setting is read once here and again whenever a configuration file changes, the cache starts empty whenever
+     * it's turned on or off since no evict message is broadcast while it's off
+     */
+    @PostConstruct
+    public void readSetting() {
+        boolean settingEnabled = subscriberService.isResponseCacheEnabled();
+        synchronized (this) {
+            if (settingEnabled != enabled) {
+                generation.incrementAndGet();
+                inboxCache.clear();
+                userCache.clear();
+                subscriptionNumbers.clear();
+                enabled = settingEnabled;
+                LOGGER.info("Kilkari response cache {}", enabled ? "enabled" : "disabled");
+            }
+        }
+    }
+
+    @MotechListener(subjects = { ConfigurationConstants.FILE_CHANGED_EVENT_SUBJECT,
+            ConfigurationConstants.FILE_CREATED_EVENT_SUBJECT })
+    public void settingsChanged(MotechEvent event) {
+        readSetting();
+    }
+
+    @MotechListener(subjects = { KilkariConstants.SUBSCRIBER_CACHE_EVICT_SUBJECT })
+    public void cacheEvict(MotechEvent event) {
+        @SuppressWarnings("unchecked")
+        List<Long> callingNumbers = (List<Long>) event.getParameters()
+                .get(KilkariConstants.SUBSCRIBER_CACHE_EVICT_CALLING_NUMBERS);
+        @SuppressWarnings("unchecked")
+        List<Long> subscriptionIds = (List<Long>) event.getParameters()
+                .get(KilkariConstants.SUBSCRIBER_CACHE_EVICT_SUBSCRIPTION_IDS);
+        generation.incrementAndGet();
+        if (callingNumbers == null && subscriptionIds == null) {
+            inboxCache.clear();
+            userCache.clear();
+            LOGGER.debug("Kilkari response cache evicted for all calling numbers");
+            return;
+        }
+
+        Set<Long> evicted = new HashSet<>();
+        if (callingNumbers != null) {
+            evicted.addAll(callingNumbers);
+        }
+        if (subscriptionIds != null) {
+            for (Long subscriptionId : subscriptionIds) {
+                Entry<Long> callingNumber = subscriptionNumbers.get(subscriptionId);
+                if (callingNumber != null) {
+                    evicted.add(callingNumber.value);
+                }
+            }
+        }
+        for (Long callingNumber : evicted) {
+            inboxCache.remove(callingNumber);
+            userCache.remove(callingNumber);
+        }
+        LOGGER.debug("Kilkari response cache evicted for {} calling number(s)", evicted.size());
+    }
+
+    /**
+     * The users cache whether Kilkari is deployed for them
+     */
+    @MotechListener(subjects = { PropertyService.DEPLOYED_SERVICES_CACHE_EVICT_MESSAGE,
+            WhitelistService.WHITELIST_CACHE_EVICT_MESSAGE })
+    public void deploymentChanged(MotechEvent event) {
+        generation.incrementAndGet();
+        userCache.clear();
+        LOGGER.debug("Kilkari user cache evicted on {}", event.getSubject());
+    }
+
+    /**
+     * What the /kilkari/user API needs to know about a calling number
+     */
+    public static final class KilkariUser {
+        private final String circle;
+        private final boolean deployed;
+        private final String languageLocationCode;
+        private final Set<String> subscriptionPacks;
+
+        public KilkariUser(String circle, boolean deployed, String languageLocationCode,
+                           Set<String> subscriptionPacks) {
+            this.circle = circle;
+            this.deployed = deployed;
+            this.languageLocationCode = languageLocationCode;
+            this.subscriptionPacks = Collections.unmodifiableSet(new HashSet<>(subscriptionPacks));
+        }
+
+        public String getCircle() {
+            return circle;
+        }
+
+        public boolean isDeployed() {
+            return deployed;
+        }
+
+        public String getLanguageLocationCode() {
+            return languageLocationCode;
+        }
+
+        public Set<String> getSubscriptionPacks() {
+            return subscriptionPacks;
+        }
+    }
+
+    /**
+     * Bounded LRU map whose entries expire after TTL_MILLIS or when the day changes, keeps hit rate statistics. The
+     * keys are spread over SEGMENTS independently locked LRU maps, so lookups for different numbers rarely contend.
+     */
+    private static final class ExpiringCache<V> {
+        private final String name;
+        private final Segment<V>[] segments;
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong lookups = new AtomicLong();
+
+        @SuppressWarnings("unchecked")
+        private ExpiringCache(String name) {
+            this.name = name;
+            segments = (Segment<V>[]) new Segment[SEGMENTS];
+            for (int i = 0; i < SEGMENTS; i++) {
+                segments[i] = new Segment<>(MAX_ENTRIES / SEGMENTS);
+            }
+        }
+
+        private Segment<V> segment(Long key) {
+            int hash = key.hashCode();
+            return segments[((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % SEGMENTS];
+        }
+
+        V get(Long key) {
+            long lookup = lookups.incrementAndGet();
+            V value = segment(key).get(key);
+            long hit = value == null ? hits.get() : hits.incrementAndGet();
+            if (lookup % STATS_LOG_INTERVAL == 0) {
+                LOGGER.info("Kilkari {} cache: {}% hits over {} lookups, {} entries", name,
+                        String.format("%.1f", hit * 100.0 / lookup), lookup, size());
+            }
+            return value;
+        }
+
+        void put(Long key, V value) {
+            segment(key).put(key, value);
+        }
+
+        void remove(Long key) {
+            segment(key).remove(key);
+        }
+
+        void clear() {
+            for (Segment<V> segment : segments) {
+                segment.clear();
+            }
+        }
+
+        private int size() {
+            int size = 0;
+            for (Segment<V> segment : segments) {
+                size += segment.size();
+            }
+            return size;
+        }
+    }
+
+    private static final class Segment<V> {
+        private final Map<Long, Entry<V>> entries;
+
+        private Segment(final int maxEntries) {
+            entries = new LinkedHashMap<Long, Entry<V>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Entry<V>> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        synchronized V get(Long key) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.isExpired()) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.value;
+        }
+
+        synchronized void put(Long key, V value) {
+            entries.put(key, new Entry<>(value));
+        }
+
+        synchronized void remove(Long key) {
+            entries.remove(key);
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+        private final LocalDate day;
+
+        private Entry(V value) {
+            this.value = value;
+            this.expiresAt = System.currentTimeMillis() + TTL_MILLIS;
+            this.day = LocalDate.now();
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt || !day.equals(LocalDate.now());
+        }
+    }
+}
@@ -1,6 +1,7 @@
 
 package org.motechproject.nms.api.web;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.EventRelay;
 import org.motechproject.nms.api.web.contract.mobileAcademy.CourseResponse;
@@ -22,7 +23,10 @@ import org.motechproject.nms.rch.service.RchWebServiceFacade;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -31,9 +35,15 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 
 /**
@@ -47,6 +57,16 @@ public class MobileAcademyController extends BaseController {
 
     private static final String SMS_STATUS_SUBJECT = "nms.ma.sms.deliveryStatus";
 
+    private static final String JSON_CONTENT_TYPE = "application/json;charset=UTF-8";
+
+    private static final String GZIP = "gzip";
+
+    private static final String X_GZIP = "x-gzip";
+
+    private static final String ANY_ENCODING = "*";
+
+    private static final int GZIP_RATIO_ESTIMATE = 4;
+
     /**
      * MA service to handle all business logic
      */
@@ -59,11 +79,22 @@ public class MobileAcademyController extends BaseController {
     @Autowired
     private RchWebServiceFacade rchWebServiceFacade;
 
+    /**
+     * Its JSON message converter serializes the course, as it does the responses of the other endpoints
+     */
+    @Autowired
+    private RequestMappingHandlerAdapter handlerAdapter;
+
     /**
      * Event relay service to handle async notifications
      */
     private EventRelay eventRelay;
 
+    /**
+     * Last course response served, replaced when the course version or content changes
+     */
+    private volatile SerializedCourse serializedCourse;
+
     // Default constructor for CGLIB generation
     public MobileAcademyController() {
         super();
@@ -83,15 +114,14 @@ public class MobileAcademyController extends BaseController {
      *
      * 2.2.2.1 Get MA Course – Request
      *
-     * Get course
-     * @return course response object
+     * Get course. The serialized response, plain and gzipped, is kept until the course changes and tagged with an
+     * ETag, so a request with a matching If-None-Match gets a 304 and no body.
      */
     @Transactional(readOnly = true)
     @RequestMapping(
             value = "/course",
             method = RequestMethod.GET)
-    @ResponseBody
-    public CourseResponse getCourse() {
+    public void getCourse(HttpServletRequest request, HttpServletResponse response) throws IOException {
 
         log("REQUEST: /mobileacademy/course");
 
@@ -102,15 +132,109 @@ public class MobileAcademyController extends BaseController {
             throw new InternalError(String.format(NOT_FOUND, "course"));
         }
 
-        CourseResponse response = MobileAcademyConverter.convertCourseDto(getCourse);
+        SerializedCourse course = getSerializedCourse(getCourse);
+
+        response.setHeader(HttpHeaders.ETAG, course.etag);
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), course.etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            log("RESPONSE: /mobileacademy/course", "not modified " + course.etag);
+            return;
+        }
+
+        boolean gzip = acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        byte[] body = gzip ? course.gzipped : course.json;
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(JSON_CONTENT_TYPE);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+        log("RESPONSE: /mobileacademy/course", String.format("%s, %d bytes%s", course.etag, body.length,
+                gzip ? " gzipped" : ""));
+    }
+
+    /**
+     * @param acceptEncoding Accept-Encoding header of the request
+     * @return whether gzip is accepted with a non zero q-value, by name or through *
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzipQuality = null;
+        Double anyQuality = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase();
+            double quality = quality(parts);
+            if (name.equals(GZIP) || name.equals(X_GZIP)) {
+                gzipQuality = gzipQuality == null ? quality : Math.max(gzipQuality, quality);
+            } else if (name.equals(ANY_ENCODING)) {
+                anyQuality = quality;
+            }
+        }
+        if (gzipQuality != null) {
+            return gzipQuality > 0;
+        }
+        return anyQuality != null && anyQuality > 0;
+    }
+
+    /**
+     * @return the q-value among the parameters of a coding, 1 when there is none and 0 when it can't be read
+     */
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            String trimmed = tag.trim();
+            if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        if (response == null) {
+    private SerializedCourse getSerializedCourse(MaCourse maCourse) throws IOException {
+        String etag = String.format("\"%d-%08x\"", maCourse.getVersion(), maCourse.getContent().hashCode());
+        SerializedCourse course = serializedCourse;
+        if (course != null && course.etag.equals(etag)) {
+            return course;
+        }
+
+        CourseResponse courseResponse = MobileAcademyConverter.convertCourseDto(maCourse);
+
+        if (courseResponse == null) {
             LOGGER.error("Failed dto mapping, check object mapping");
             throw new InternalError(String.format(INVALID, "CourseResponse"));
         }
 
-        log("RESPONSE: /mobileacademy/course", response.toString());
-        return response;
+        byte[] json = getObjectMapper().writeValueAsBytes(courseResponse);
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream(json.length / GZIP_RATIO_ESTIMATE);
+        try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+            out.write(json);
+        }
+        course = new SerializedCourse(etag, json, gzipped.toByteArray());
+        serializedCourse = course;
+        LOGGER.info("Serialized course {}: {} bytes, {} gzipped", etag, json.length, course.gzipped.length);
+        return course;
     }
 
     /**
@@ -279,4 +403,24 @@ public class MobileAcademyController extends BaseController {
         rchWebServiceFacade.readBeneficiaryDataFromFile(remoteLocation);
     }
 
+    private ObjectMapper getObjectMapper() {
+        for (HttpMessageConverter<?> converter : handlerAdapter.getMessageConverters()) {
+            if (converter instanceof MappingJackson2HttpMessageConverter) {
+                return ((MappingJackson2HttpMessageConverter) converter).getObjectMapper();
+            }
+        }
+        throw new IllegalStateException("No JSON message converter is configured");
+    }
+
+    private static final class SerializedCourse {
+        private final String etag;
+        private final byte[] json;
+        private final byte[] gzipped;
+
+        private SerializedCourse(String etag, byte[] json, byte[] gzipped) {
+            this.etag = etag;
+            this.json = json;
+            this.gzipped = gzipped;
+        }
+    }
 }
@@ -12,6 +12,7 @@ import org.motechproject.nms.kilkari.utils.FlwConstants;
 import org.motechproject.nms.api.web.contract.mobileAcademy.GetBookmarkResponse;
 import org.motechproject.nms.api.web.converter.MobileAcademyConverter;
 import org.motechproject.nms.imi.service.CdrFileService;
+import org.motechproject.nms.imi.service.contract.CsrInsertMetrics;
 import org.motechproject.nms.kilkari.domain.DeactivationReason;
 import org.motechproject.nms.kilkari.repository.SubscriptionDataService;
 import org.motechproject.nms.kilkari.service.MctsChildFixService;
@@ -29,6 +30,7 @@ import org.motechproject.nms.rch.domain.RchUserType;
 import org.motechproject.nms.rch.service.RchWebServiceFacade;
 import org.motechproject.nms.region.domain.LocationEnum;
 import org.motechproject.nms.region.service.LocationService;
+import org.motechproject.nms.tracking.service.TrackChangesService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -78,6 +80,9 @@ public class OpsController extends BaseController {
     @Autowired
     private CdrFileService cdrFileService;
 
+    @Autowired
+    private TrackChangesService trackChangesService;
+
     @Autowired
     private MctsWsImportService mctsWsImportService;
 
@@ -175,6 +180,42 @@ public class OpsController extends BaseController {
         eventRelay.sendEventMessage(new MotechEvent(KilkariConstants.SUBSCRIPTION_UPKEEP_SUBJECT));
     }
 
+    @RequestMapping("/activeSubscriptionCountDrift")
+    @ResponseBody
+    public long getActiveSubscriptionCountDrift() {
+        LOGGER.info("/activeSubscriptionCountDrift");
+        return subscriptionService.getActiveSubscriptionCountDrift();
+    }
+
+    @RequestMapping("/csrInsertMetrics")
+    @ResponseBody
+    public CsrInsertMetrics getCsrInsertMetrics() {
+        LOGGER.info("/csrInsertMetrics");
+        return cdrFileService.getLastCsrInsertMetrics();
+    }
+
+    @RequestMapping("/changeLogQueueDepth")
+    @ResponseBody
+    public int getChangeLogQueueDepth() {
+        LOGGER.info("/changeLogQueueDepth");
+        return trackChangesService.getChangeLogQueueDepth();
+    }
+
+    @RequestMapping("/changeLogLag")
+    @ResponseBody
+    public long getChangeLogLag() {
+        LOGGER.info("/changeLogLag");
+        return trackChangesService.getChangeLogLagMillis();
+    }
+
+    @RequestMapping("/rebuildMonthlyUsage")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void rebuildMonthlyUsage() {
+        LOGGER.info("/rebuildMonthlyUsage");
+        eventRelay.sendEventMessage(
+                new MotechEvent(org.motechproject.nms.flw.utils.FlwConstants.MONTHLY_USAGE_REBUILD_SUBJECT));
+    }
+
 
     @RequestMapping(value = "/createUpdateFlw",
             method = RequestMethod.POST,
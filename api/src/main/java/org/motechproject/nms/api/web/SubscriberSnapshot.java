@@ -0,0 +1,111 @@
+package org.motechproject.nms.api.web;
+
+import org.motechproject.nms.kilkari.domain.MctsChild;
+import org.motechproject.nms.kilkari.domain.MctsMother;
+import org.motechproject.nms.kilkari.domain.Subscriber;
+import org.motechproject.nms.kilkari.domain.Subscription;
+import org.motechproject.nms.kilkari.domain.SubscriptionStatus;
+import org.motechproject.nms.kilkari.service.SubscriberService;
+import org.motechproject.nms.region.domain.Circle;
+import org.motechproject.nms.region.domain.Language;
+import org.motechproject.nms.region.domain.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The Kilkari subscribers of a calling number, as seen by a single API request. The subscribers are looked up once
+ * and everything the request reads from them (subscriptions, packs, language, circle and beneficiary state) is
+ * resolved in one pass, so validation and response building don't each go back to the database.
+ */
+final class SubscriberSnapshot {
+
+    private final List<Subscriber> subscribers;
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    private final List<Long> subscriptionIds = new ArrayList<>();
+    private final Set<String> activePackNames = new HashSet<>();
+    private boolean beneficiaryFound;
+    private State beneficiaryState;
+    private Circle circle;
+    private String languageCode;
+
+    private SubscriberSnapshot(List<Subscriber> subscribers) {
+        this.subscribers = subscribers;
+
+        for (Subscriber subscriber : subscribers) {
+            if (!beneficiaryFound) {
+                // the state of the first subscriber with MCTS/RCH data wins, otherwise the circle of the last one
+                MctsMother mother = subscriber.getMother();
+                MctsChild child = subscriber.getChild();
+                if (mother != null) {
+                    beneficiaryState = mother.getState();
+                    beneficiaryFound = true;
+                } else if (child != null) {
+                    beneficiaryState = child.getState();
+                    beneficiaryFound = true;
+                } else {
+                    circle = subscriber.getCircle();
+                }
+            }
+
+            for (Subscription subscription : subscriber.getAllSubscriptions()) {
+                subscriptions.add(subscription);
+                subscriptionIds.add(subscription.getId());
+                if ((subscription.getStatus() == SubscriptionStatus.ACTIVE) ||
+                        (subscription.getStatus() == SubscriptionStatus.PENDING_ACTIVATION)) {
+                    activePackNames.add(subscription.getSubscriptionPack().getName());
+                }
+            }
+
+            Language language = subscriber.getLanguage();
+            if (language != null) {
+                languageCode = language.getCode();
+            }
+        }
+    }
+
+    static SubscriberSnapshot load(SubscriberService subscriberService, Long callingNumber) {
+        return new SubscriberSnapshot(subscriberService.getSubscriber(callingNumber));
+    }
+
+    boolean isEmpty() {
+        return subscribers.isEmpty();
+    }
+
+    List<Subscription> getSubscriptions() {
+        return Collections.unmodifiableList(subscriptions);
+    }
+
+    /**
+     * @return the ids of every subscription of the subscribers, what the response cache evicts the number on
+     */
+    List<Long> getSubscriptionIds() {
+        return Collections.unmodifiableList(subscriptionIds);
+    }
+
+    /**
+     * @return true if a subscriber has MCTS/RCH beneficiary data, the state is then {@link #getBeneficiaryState()}
+     */
+    boolean hasBeneficiary() {
+        return beneficiaryFound;
+    }
+
+    State getBeneficiaryState() {
+        return beneficiaryState;
+    }
+
+    Circle getCircle() {
+        return circle;
+    }
+
+    Set<String> getActivePackNames() {
+        return activePackNames;
+    }
+
+    String getLanguageCode() {
+        return languageCode;
+    }
+}
@@ -18,11 +18,6 @@ import org.motechproject.nms.flw.domain.FlwJobStatus;
 import org.motechproject.nms.flw.service.FrontLineWorkerService;
 import org.motechproject.nms.flw.service.ServiceUsageCapService;
 import org.motechproject.nms.flw.service.ServiceUsageService;
-import org.motechproject.nms.kilkari.domain.MctsChild;
-import org.motechproject.nms.kilkari.domain.MctsMother;
-import org.motechproject.nms.kilkari.domain.Subscriber;
-import org.motechproject.nms.kilkari.domain.Subscription;
-import org.motechproject.nms.kilkari.domain.SubscriptionStatus;
 import org.motechproject.nms.kilkari.service.SubscriberService;
 import org.motechproject.nms.props.domain.Service;
 import org.motechproject.nms.props.service.LogHelper;
@@ -41,7 +36,6 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 
@@ -77,6 +71,9 @@ public class UserController extends BaseController {
     @Autowired
     private InactiveJobCallAuditDataService inactiveJobCallAuditDataService;
 
+    @Autowired
+    private KilkariResponseCache kilkariResponseCache;
+
 
     /**
      * 2.2.1 Get User Details API
@@ -137,10 +134,7 @@ public class UserController extends BaseController {
         Kilkari in the house!
          */
         if (KILKARI.equals(serviceName)) {
-            if (!validateKilkariServiceAvailability(callingNumber, circleObj)) {
-                throw new NotDeployedException(String.format(NOT_DEPLOYED, Service.KILKARI));
-            }
-            user = getKilkariResponseUser(callingNumber);
+            user = getKilkariResponseUser(callingNumber, circle, circleObj);
         }
 
         Language defaultLanguage = null;
@@ -180,35 +174,20 @@ public class UserController extends BaseController {
         return user;
     }
 
-    private boolean validateKilkariServiceAvailability(Long callingNumber, Circle circle) { // NO CHECKSTYLE Cyclomatic Complexity
-        List<Subscriber> subscribers = subscriberService.getSubscriber(callingNumber);
+    private boolean validateKilkariServiceAvailability(SubscriberSnapshot snapshot, Circle circle) {
 
         // 1. Check for existing subscriber and if mcts data is available
         // 2. If not mcts data available, use circle information for existing subscriber
         // 3. If existing subscriber has no circle available or is new subscriber, use circle passed from imi
 
-        Circle subscriberCircle = null;
         // check for subscriber and mcts location data
-        if (!subscribers.isEmpty()) {
-            for (Subscriber subscriber : subscribers) {
-
-                MctsMother mother = subscriber.getMother();
-                if (mother != null) {
-                    return serviceDeployedInUserState(Service.KILKARI, mother.getState());
-                }
-
-                MctsChild child = subscriber.getChild();
-                if (child != null) {
-                    return serviceDeployedInUserState(Service.KILKARI, child.getState());
-                }
-                subscriberCircle = subscriber.getCircle();
-            }
+        if (snapshot.hasBeneficiary()) {
+            return serviceDeployedInUserState(Service.KILKARI, snapshot.getBeneficiaryState());
         }
 
         // Try to validate from circle since we don't have MCTS data for state. Choose circle from subscriber or
         // passed from IMI as last resort
-        Circle currentCircle = (!subscribers.isEmpty() && subscriberCircle != null) ?
-                subscriberCircle : circle;
+        Circle currentCircle = (snapshot.getCircle() != null) ? snapshot.getCircle() : circle;
         if (currentCircle == null) { // No circle available
             return true;
         }
@@ -230,29 +209,26 @@ public class UserController extends BaseController {
         return false;
     }
 
-    private UserResponse getKilkariResponseUser(Long callingNumber) {
-        List<Subscriber> subscribers = subscriberService.getSubscriber(callingNumber);
-        KilkariUserResponse kilkariUserResponse = new KilkariUserResponse();
-        Set<String> packs = new HashSet<>();
-
-        if (!subscribers.isEmpty()) {
-            for (Subscriber subscriber : subscribers) {
-                Set<Subscription> subscriptions = subscriber.getSubscriptions();
-                for (Subscription subscription : subscriptions) {
-                    if ((subscription.getStatus() == SubscriptionStatus.ACTIVE) ||
-                            (subscription.getStatus() == SubscriptionStatus.PENDING_ACTIVATION)) {
-                        packs.add(subscription.getSubscriptionPack().getName());
-                    }
-                }
-
-                Language subscriberLanguage = subscriber.getLanguage();
-                if (subscriberLanguage != null) {
-                    kilkariUserResponse.setLanguageLocationCode(subscriberLanguage.getCode());
-                }
-            }
+    private UserResponse getKilkariResponseUser(Long callingNumber, String circle, Circle circleObj) {
+        KilkariResponseCache.KilkariUser kilkariUser = kilkariResponseCache.getUser(callingNumber, circle);
+        if (kilkariUser == null) {
+            long cacheGeneration = kilkariResponseCache.getGeneration();
+            SubscriberSnapshot snapshot = SubscriberSnapshot.load(subscriberService, callingNumber);
+            kilkariUser = new KilkariResponseCache.KilkariUser(circle,
+                    validateKilkariServiceAvailability(snapshot, circleObj), snapshot.getLanguageCode(),
+                    snapshot.getActivePackNames());
+            kilkariResponseCache.putUser(callingNumber, kilkariUser, snapshot.getSubscriptionIds(), cacheGeneration);
+        }
+
+        if (!kilkariUser.isDeployed()) {
+            throw new NotDeployedException(String.format(NOT_DEPLOYED, Service.KILKARI));
         }
 
-        kilkariUserResponse.setSubscriptionPackList(packs);
+        KilkariUserResponse kilkariUserResponse = new KilkariUserResponse();
+        if (kilkariUser.getLanguageLocationCode() != null) {
+            kilkariUserResponse.setLanguageLocationCode(kilkariUser.getLanguageLocationCode());
+        }
+        kilkariUserResponse.setSubscriptionPackList(new HashSet<>(kilkariUser.getSubscriptionPacks()));
         return kilkariUserResponse;
     }
 
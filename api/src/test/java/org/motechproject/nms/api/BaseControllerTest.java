@@ -8,6 +8,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.motechproject.nms.api.web.KilkariController;
+import org.motechproject.nms.api.web.KilkariResponseCache;
 import org.motechproject.nms.api.web.contract.BadRequest;
 import org.motechproject.nms.kilkari.service.SubscriberService;
 import org.springframework.test.web.servlet.MockMvc;
@@ -30,6 +31,9 @@ public class BaseControllerTest {
     @Mock
     private SubscriberService subscriberService;
 
+    @Mock
+    private KilkariResponseCache kilkariResponseCache;
+
     private MockMvc mockMvc;
 
     @Before
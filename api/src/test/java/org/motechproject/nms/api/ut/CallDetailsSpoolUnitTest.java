@@ -0,0 +1,111 @@
+package org.motechproject.nms.api.ut;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.motechproject.nms.api.web.CallDetailsSpool;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CallDetailsSpoolUnitTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void verifyRollOverMakesAppendedLinesASegment() throws Exception {
+        CallDetailsSpool spool = new CallDetailsSpool(folder.getRoot());
+        spool.rollOver();
+        assertTrue(spool.getSegments().isEmpty());
+
+        spool.append("{\"a\":1}");
+        spool.append("{\"a\":2}");
+        spool.rollOver();
+        spool.append("{\"a\":3}");
+        spool.rollOver();
+
+        List<File> segments = spool.getSegments();
+        assertEquals(2, segments.size());
+        assertEquals(Arrays.asList("{\"a\":1}", "{\"a\":2}"), spool.readLines(segments.get(0)));
+        assertEquals(Arrays.asList("{\"a\":3}"), spool.readLines(segments.get(1)));
+        spool.close();
+    }
+
+    @Test
+    public void verifyRestartResumesAfterCommittedLines() throws Exception {
+        CallDetailsSpool spool = new CallDetailsSpool(folder.getRoot());
+        spool.append("{\"a\":1}");
+        spool.append("{\"a\":2}");
+        spool.rollOver();
+        File segment = spool.getSegments().get(0);
+        spool.setCommitted(segment, 1);
+        spool.append("{\"a\":3}");
+        spool.close();
+
+        // the lines left in the current file become a segment when the spool is opened again
+        spool = new CallDetailsSpool(folder.getRoot());
+        List<File> segments = spool.getSegments();
+        assertEquals(2, segments.size());
+        assertEquals(segment, segments.get(0));
+        assertEquals(1, spool.getCommitted(segment));
+        assertEquals(0, spool.getCommitted(segments.get(1)));
+        assertEquals(Arrays.asList("{\"a\":3}"), spool.readLines(segments.get(1)));
+
+        spool.remove(segment);
+        assertEquals(1, spool.getSegments().size());
+        spool.close();
+    }
+
+    @Test
+    public void verifyConcurrentAppendsAreAllSpooled() throws Exception {
+        final CallDetailsSpool spool = new CallDetailsSpool(folder.getRoot());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Void>> appends = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            final String line = "{\"a\":" + i + "}";
+            expected.add(line);
+            appends.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    spool.append(line);
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> append : appends) {
+            append.get();
+        }
+        executor.shutdown();
+        spool.rollOver();
+
+        List<String> lines = spool.readLines(spool.getSegments().get(0));
+        assertEquals(expected.size(), lines.size());
+        assertEquals(new HashSet<>(expected), new HashSet<>(lines));
+        spool.close();
+    }
+
+    @Test
+    public void verifyReplayedFailuresAreNotDuplicated() throws Exception {
+        CallDetailsSpool spool = new CallDetailsSpool(folder.getRoot());
+        spool.fail(Arrays.asList("{\"a\":1}", "{\"a\":2}"), false);
+        spool.fail(Arrays.asList("{\"a\":2}", "{\"a\":3}"), true);
+        spool.fail(Collections.singletonList("{\"a\":3}"), true);
+
+        assertEquals(Arrays.asList("{\"a\":1}", "{\"a\":2}", "{\"a\":3}"),
+                spool.readLines(new File(folder.getRoot(), "failed.spool")));
+        spool.close();
+    }
+}
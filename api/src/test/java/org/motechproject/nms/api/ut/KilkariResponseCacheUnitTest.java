@@ -0,0 +1,102 @@
+package org.motechproject.nms.api.ut;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.nms.api.web.KilkariResponseCache;
+import org.motechproject.nms.api.web.contract.kilkari.InboxSubscriptionDetailResponse;
+import org.motechproject.nms.kilkari.service.SubscriberService;
+import org.motechproject.nms.kilkari.utils.KilkariConstants;
+import org.motechproject.nms.props.service.PropertyService;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class KilkariResponseCacheUnitTest {
+
+    private static final Long CALLING_NUMBER = 1234567890L;
+    private static final String CIRCLE = "AA";
+
+    @Mock
+    private SubscriberService subscriberService;
+
+    private KilkariResponseCache cache;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+        when(subscriberService.isResponseCacheEnabled()).thenReturn(true);
+        cache = new KilkariResponseCache(subscriberService);
+        cache.readSetting();
+    }
+
+    private Set<InboxSubscriptionDetailResponse> inbox() {
+        return Collections.singleton(new InboxSubscriptionDetailResponse("sub", "pack", "w1_1", "w1_1.wav"));
+    }
+
+    private KilkariResponseCache.KilkariUser user() {
+        return new KilkariResponseCache.KilkariUser(CIRCLE, true, "99", Collections.singleton("pack"));
+    }
+
+    private MotechEvent evictEvent(List<Long> callingNumbers, List<Long> subscriptionIds) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(KilkariConstants.SUBSCRIBER_CACHE_EVICT_CALLING_NUMBERS, callingNumbers);
+        params.put(KilkariConstants.SUBSCRIBER_CACHE_EVICT_SUBSCRIPTION_IDS, subscriptionIds);
+        return new MotechEvent(KilkariConstants.SUBSCRIBER_CACHE_EVICT_SUBJECT, params);
+    }
+
+    @Test
+    public void verifySubscriptionChangeEvictsTheNumberItWasCachedFor() {
+        cache.putInbox(CALLING_NUMBER, inbox(), Arrays.asList(1L, 2L), cache.getGeneration());
+        cache.putUser(CALLING_NUMBER, user(), Arrays.asList(1L, 2L), cache.getGeneration());
+        cache.putInbox(CALLING_NUMBER + 1, inbox(), Collections.singletonList(3L), cache.getGeneration());
+
+        cache.cacheEvict(evictEvent(Collections.<Long>emptyList(), Collections.singletonList(2L)));
+
+        assertNull(cache.getInbox(CALLING_NUMBER));
+        assertNull(cache.getUser(CALLING_NUMBER, CIRCLE));
+        assertNotNull(cache.getInbox(CALLING_NUMBER + 1));
+    }
+
+    @Test
+    public void verifyLoadFromBeforeAnEvictIsNotCached() {
+        long generation = cache.getGeneration();
+        cache.cacheEvict(evictEvent(Collections.singletonList(CALLING_NUMBER), Collections.<Long>emptyList()));
+
+        cache.putInbox(CALLING_NUMBER, inbox(), Collections.singletonList(1L), generation);
+
+        assertNull(cache.getInbox(CALLING_NUMBER));
+    }
+
+    @Test
+    public void verifyDeploymentChangeEvictsTheUsers() {
+        cache.putInbox(CALLING_NUMBER, inbox(), Collections.singletonList(1L), cache.getGeneration());
+        cache.putUser(CALLING_NUMBER, user(), Collections.singletonList(1L), cache.getGeneration());
+
+        cache.deploymentChanged(new MotechEvent(PropertyService.DEPLOYED_SERVICES_CACHE_EVICT_MESSAGE));
+
+        assertNull(cache.getUser(CALLING_NUMBER, CIRCLE));
+        assertNotNull(cache.getInbox(CALLING_NUMBER));
+    }
+
+    @Test
+    public void verifyNothingIsCachedOnceTurnedOff() {
+        cache.putInbox(CALLING_NUMBER, inbox(), Collections.singletonList(1L), cache.getGeneration());
+
+        when(subscriberService.isResponseCacheEnabled()).thenReturn(false);
+        cache.settingsChanged(null);
+        cache.putInbox(CALLING_NUMBER, inbox(), Collections.singletonList(1L), cache.getGeneration());
+
+        assertNull(cache.getInbox(CALLING_NUMBER));
+    }
+}
@@ -12,6 +12,8 @@ import org.motechproject.nms.mobileacademy.service.MobileAcademyService;
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.MockitoAnnotations.initMocks;
 
 /**
@@ -92,4 +94,19 @@ public class MobileAcademyControllerUnitTest {
         mobileAcademyController.saveBookmarkWithScore(sb);
     }
 
+
+    @Test
+    public void testAcceptsGzip() {
+        assertTrue(MobileAcademyController.acceptsGzip("gzip"));
+        assertTrue(MobileAcademyController.acceptsGzip("deflate, gzip;q=0.5"));
+        assertTrue(MobileAcademyController.acceptsGzip("*"));
+        assertTrue(MobileAcademyController.acceptsGzip("x-gzip"));
+        assertFalse(MobileAcademyController.acceptsGzip(null));
+        assertFalse(MobileAcademyController.acceptsGzip("identity"));
+        assertFalse(MobileAcademyController.acceptsGzip("gzip;q=0"));
+        assertFalse(MobileAcademyController.acceptsGzip("gzip; q=0.0, deflate"));
+        assertFalse(MobileAcademyController.acceptsGzip("*, gzip;q=0"));
+        assertFalse(MobileAcademyController.acceptsGzip("*;q=0"));
+        assertFalse(MobileAcademyController.acceptsGzip("nogzip"));
+    }
 }
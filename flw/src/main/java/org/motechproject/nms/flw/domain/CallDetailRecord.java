@@ -12,6 +12,7 @@ import org.motechproject.nms.props.domain.Service;
 
 import javax.jdo.annotations.Column;
 import javax.jdo.annotations.Extension;
+import javax.jdo.annotations.Index;
 import javax.jdo.annotations.Order;
 import javax.jdo.annotations.Persistent;
 import javax.validation.constraints.Max;
@@ -21,11 +22,15 @@ import java.util.Collections;
 import java.util.List;
 
 @Entity(tableName = "nms_flw_cdrs")
+@Index(name = "service_callId_composite_idx", members = { "service", "callId" })
 public class CallDetailRecord {
 
     public CallDetailRecord() {
     }
 
+    @Field
+    private Long id;
+
     @Field
     private FrontLineWorker frontLineWorker;
 
@@ -80,6 +85,14 @@ public class CallDetailRecord {
     @JsonManagedReference
     private List<CallContent> content;
 
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
     public FrontLineWorker getFrontLineWorker() {
         return frontLineWorker;
     }
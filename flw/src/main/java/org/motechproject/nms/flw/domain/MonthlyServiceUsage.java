@@ -0,0 +1,92 @@
+package org.motechproject.nms.flw.domain;
+
+import org.motechproject.mds.annotations.Entity;
+import org.motechproject.mds.annotations.Field;
+import org.motechproject.nms.props.domain.Service;
+
+import javax.jdo.annotations.Column;
+import javax.jdo.annotations.Unique;
+
+/**
+ * Usage of a service by a front line worker over a calendar month, the sum of their call detail records for that
+ * month. Kept up to date as call detail records are added, so the user APIs read one row instead of a month of CDRs.
+ */
+@Entity(tableName = "nms_flw_monthly_service_usage")
+@Unique(name = "UNIQUE_FLW_SERVICE_MONTH_COMPOSITE_IDX", members = { "frontLineWorkerId", "service", "usageMonth" })
+public class MonthlyServiceUsage {
+
+    @Field
+    @Column(allowsNull = "false")
+    private Long frontLineWorkerId;
+
+    @Field
+    @Column(allowsNull = "false")
+    private Service service;
+
+    /**
+     * The month as yyyyMM, eg: 201608
+     */
+    @Field
+    @Column(allowsNull = "false")
+    private Integer usageMonth;
+
+    @Field
+    private int usageInPulses;
+
+    @Field
+    private int endOfUsage;
+
+    @Field
+    private boolean welcomePrompt;
+
+    public MonthlyServiceUsage() {
+    }
+
+    public Long getFrontLineWorkerId() {
+        return frontLineWorkerId;
+    }
+
+    public void setFrontLineWorkerId(Long frontLineWorkerId) {
+        this.frontLineWorkerId = frontLineWorkerId;
+    }
+
+    public Service getService() {
+        return service;
+    }
+
+    public void setService(Service service) {
+        this.service = service;
+    }
+
+    public Integer getUsageMonth() {
+        return usageMonth;
+    }
+
+    public void setUsageMonth(Integer usageMonth) {
+        this.usageMonth = usageMonth;
+    }
+
+    public int getUsageInPulses() {
+        return usageInPulses;
+    }
+
+    public void setUsageInPulses(int usageInPulses) {
+        this.usageInPulses = usageInPulses;
+    }
+
+    public int getEndOfUsage() {
+        return endOfUsage;
+    }
+
+    public void setEndOfUsage(int endOfUsage) {
+        this.endOfUsage = endOfUsage;
+    }
+
+    public boolean getWelcomePrompt() {
+        return welcomePrompt;
+    }
+
+    public void setWelcomePrompt(boolean welcomePrompt) {
+        this.welcomePrompt = welcomePrompt;
+    }
+}
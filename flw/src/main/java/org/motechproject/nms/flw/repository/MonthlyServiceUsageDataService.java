@@ -0,0 +1,16 @@
+package org.motechproject.nms.flw.repository;
+
+import org.motechproject.mds.annotations.Lookup;
+import org.motechproject.mds.annotations.LookupField;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.nms.flw.domain.MonthlyServiceUsage;
+import org.motechproject.nms.props.domain.Service;
+
+public interface MonthlyServiceUsageDataService extends MotechDataService<MonthlyServiceUsage> {
+
+    @Lookup
+    MonthlyServiceUsage findByFrontLineWorkerServiceAndMonth(
+            @LookupField(name = "frontLineWorkerId") Long frontLineWorkerId,
+            @LookupField(name = "service") Service service,
+            @LookupField(name = "usageMonth") Integer usageMonth);
+}
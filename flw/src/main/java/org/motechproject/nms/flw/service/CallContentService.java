@@ -2,9 +2,18 @@ package org.motechproject.nms.flw.service;
 
 import org.motechproject.nms.flw.domain.CallContent;
 
+import java.util.List;
+
 public interface CallContentService {
     void add(CallContent callContent);
 
+    /**
+     * Inserts call contents with a single multi-row INSERT, bypassing MDS. The call detail records they belong to
+     * must already be persisted.
+     * @param callContents the call contents to insert
+     */
+    void addAll(List<CallContent> callContents);
+
     void update(CallContent record);
 
     void delete(CallContent record);
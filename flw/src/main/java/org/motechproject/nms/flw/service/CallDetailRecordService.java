@@ -1,6 +1,10 @@
 package org.motechproject.nms.flw.service;
 
 import org.motechproject.nms.flw.domain.CallDetailRecord;
+import org.motechproject.nms.props.domain.Service;
+
+import java.util.Collection;
+import java.util.Set;
 
 public interface CallDetailRecordService {
     void add(CallDetailRecord callDetailRecord);
@@ -10,4 +14,11 @@ public interface CallDetailRecordService {
     void update(CallDetailRecord record);
 
     void delete(CallDetailRecord record);
+
+    /**
+     * @param service MOBILE_ACADEMY or MOBILE_KUNJI
+     * @param callIds the call ids to look for
+     * @return the call ids which already have a CDR of the service
+     */
+    Set<String> findExistingCallIds(Service service, Collection<String> callIds);
 }
@@ -1,5 +1,6 @@
 package org.motechproject.nms.flw.service;
 
+import org.motechproject.nms.flw.domain.CallDetailRecord;
 import org.motechproject.nms.flw.domain.FrontLineWorker;
 import org.motechproject.nms.flw.domain.ServiceUsage;
 import org.motechproject.nms.props.domain.Service;
@@ -7,4 +8,16 @@ import org.motechproject.nms.props.domain.Service;
 
 public interface ServiceUsageService {
     ServiceUsage getCurrentMonthlyUsageForFLWAndService(final FrontLineWorker frontLineWorker, final Service service);
+
+    /**
+     * Adds a call detail record to the monthly usage of its front line worker and service, in the current transaction
+     * @param callDetailRecord the call detail record being saved
+     */
+    void addToMonthlyUsage(CallDetailRecord callDetailRecord);
+
+    /**
+     * Regenerates every monthly usage from the call detail records, also run on the
+     * nms.flw.rebuild_monthly_usage event
+     */
+    void rebuildMonthlyUsage();
 }
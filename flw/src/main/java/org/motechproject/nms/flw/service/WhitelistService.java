@@ -1,7 +1,43 @@
 package org.motechproject.nms.flw.service;
 
+import org.motechproject.event.MotechEvent;
+import org.motechproject.mds.annotations.InstanceLifecycleListener;
+import org.motechproject.mds.annotations.InstanceLifecycleListenerType;
+import org.motechproject.nms.flw.domain.WhitelistEntry;
+import org.motechproject.nms.flw.domain.WhitelistState;
 import org.motechproject.nms.region.domain.State;
 
 public interface WhitelistService {
+
+    /**
+     * Broadcast once a whitelist changed, every node then drops what it keeps derived from the whitelists
+     */
+    String WHITELIST_CACHE_EVICT_MESSAGE = "nms.flw.cache.evict.whitelist";
+
     boolean numberWhitelistedForState(State state, Long contactNumber);
+
+    /**
+     * Lifecycle listener that drops the whitelists every node keeps in memory, once the change is committed
+     *
+     * @param whitelistEntry
+     */
+    @InstanceLifecycleListener({ InstanceLifecycleListenerType.POST_CREATE, InstanceLifecycleListenerType.PRE_DELETE,
+            InstanceLifecycleListenerType.PRE_STORE })
+    void whitelistEntryChanged(WhitelistEntry whitelistEntry);
+
+    /**
+     * Lifecycle listener that drops the whitelists every node keeps in memory, once the change is committed
+     *
+     * @param whitelistState
+     */
+    @InstanceLifecycleListener({ InstanceLifecycleListenerType.POST_CREATE, InstanceLifecycleListenerType.PRE_DELETE,
+            InstanceLifecycleListenerType.PRE_STORE })
+    void whitelistStateChanged(WhitelistState whitelistState);
+
+    /**
+     *
+     * Whitelist cache evict, also for changes made without the persistence layer
+     *
+     */
+    void whitelistCacheEvict(MotechEvent event);
 }
@@ -3,11 +3,42 @@ package org.motechproject.nms.flw.service.impl;
 import org.motechproject.nms.flw.domain.CallContent;
 import org.motechproject.nms.flw.repository.CallContentDataService;
 import org.motechproject.nms.flw.service.CallContentService;
+import org.motechproject.nms.utils.BulkWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service("callContentService")
 public class CallContentServiceImpl implements CallContentService {
+
+    private static final String FLW_USER = "flw";
+    private static final int CALL_CONTENT_BATCH_SIZE = 1000;
+
+    private static final BulkWriter<CallContent> CALL_CONTENT_WRITER = BulkWriter
+            .<CallContent>insertInto("nms_call_content", CallContent.class)
+            .columns("callDetailRecord_id_OID", "type", "mobileKunjiCardCode", "contentName", "contentFile",
+                    "startTime", "endTime", "completionFlag", "correctAnswerEntered")
+            .constant("creator", FLW_USER)
+            .constant("modifiedBy", FLW_USER)
+            .constant("owner", FLW_USER)
+            .now("creationDate", "modificationDate")
+            .binder(new BulkWriter.RowBinder<CallContent>() {
+                @Override
+                public void bind(CallContent callContent, BulkWriter.Row columns) {
+                    columns.set("callDetailRecord_id_OID", callContent.getCallDetailRecord().getId())
+                            .set("type", callContent.getType())
+                            .set("mobileKunjiCardCode", callContent.getMobileKunjiCardCode())
+                            .set("contentName", callContent.getContentName())
+                            .set("contentFile", callContent.getContentFile())
+                            .set("startTime", callContent.getStartTime())
+                            .set("endTime", callContent.getEndTime())
+                            .set("completionFlag", callContent.getCompletionFlag())
+                            .set("correctAnswerEntered", callContent.getCorrectAnswerEntered());
+                }
+            })
+            .build();
+
     private CallContentDataService callContentDataService;
 
     @Autowired
@@ -20,6 +51,11 @@ public class CallContentServiceImpl implements CallContentService {
         callContentDataService.create(record);
     }
 
+    @Override
+    public void addAll(List<CallContent> callContents) {
+        CALL_CONTENT_WRITER.write(callContentDataService, callContents, CALL_CONTENT_BATCH_SIZE);
+    }
+
     @Override
     public void update(CallContent record) {
         callContentDataService.update(record);
@@ -1,23 +1,38 @@
 package org.motechproject.nms.flw.service.impl;
 
+import org.motechproject.mds.query.SqlQueryExecution;
 import org.motechproject.nms.flw.domain.CallDetailRecord;
 import org.motechproject.nms.flw.repository.CallDetailRecordDataService;
 import org.motechproject.nms.flw.service.CallDetailRecordService;
+import org.motechproject.nms.flw.service.ServiceUsageService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.jdo.Query;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 @Service("callDetailRecordService")
 public class CallDetailRecordServiceImpl implements CallDetailRecordService {
     private CallDetailRecordDataService callDetailRecordDataService;
+    private ServiceUsageService serviceUsageService;
 
     @Autowired
-    public CallDetailRecordServiceImpl(CallDetailRecordDataService callDetailRecordDataService) {
+    public CallDetailRecordServiceImpl(CallDetailRecordDataService callDetailRecordDataService,
+                                       ServiceUsageService serviceUsageService) {
         this.callDetailRecordDataService = callDetailRecordDataService;
+        this.serviceUsageService = serviceUsageService;
     }
 
     @Override
+    @Transactional
     public void add(CallDetailRecord record) {
         callDetailRecordDataService.create(record);
+        serviceUsageService.addToMonthlyUsage(record);
     }
 
     @Override
@@ -34,4 +49,46 @@ public class CallDetailRecordServiceImpl implements CallDetailRecordService {
     public void delete(CallDetailRecord record) {
         callDetailRecordDataService.delete(record);
     }
+
+    @Override
+    public Set<String> findExistingCallIds(org.motechproject.nms.props.domain.Service service,
+                                           Collection<String> callIds) {
+        if (callIds.isEmpty()) {
+            return new HashSet<>();
+        }
+
+        final Map<String, Object> params = new HashMap<>();
+        params.put("service", service.name());
+        StringBuilder in = new StringBuilder();
+        int i = 0;
+        for (String callId : callIds) {
+            if (i > 0) {
+                in.append(", ");
+            }
+            in.append(":callId").append(i);
+            params.put("callId" + i, callId);
+            i++;
+        }
+        final String sql = "SELECT callId FROM nms_flw_cdrs WHERE service = :service AND callId IN (" + in + ")";
+
+        @SuppressWarnings("unchecked")
+        SqlQueryExecution<Set<String>> queryExecution = new SqlQueryExecution<Set<String>>() {
+
+            @Override
+            public String getSqlQuery() {
+                return sql;
+            }
+
+            @Override
+            public Set<String> execute(Query query) {
+                Set<String> existing = new HashSet<>();
+                for (Object callId : (Collection<?>) query.executeWithMap(params)) {
+                    existing.add((String) callId);
+                }
+                return existing;
+            }
+        };
+
+        return callDetailRecordDataService.executeSQLQuery(queryExecution);
+    }
 }
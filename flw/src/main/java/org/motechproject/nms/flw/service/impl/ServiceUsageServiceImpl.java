@@ -2,32 +2,78 @@ package org.motechproject.nms.flw.service.impl;
 
 import org.datanucleus.util.StringUtils;
 import org.joda.time.DateTime;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.annotations.MotechListener;
 import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.mds.query.SqlQueryExecution;
 import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.metrics.service.Timer;
 import org.motechproject.nms.flw.domain.CallDetailRecord;
 import org.motechproject.nms.flw.domain.FrontLineWorker;
+import org.motechproject.nms.flw.domain.MonthlyServiceUsage;
 import org.motechproject.nms.flw.domain.ServiceUsage;
 import org.motechproject.nms.flw.repository.CallDetailRecordDataService;
+import org.motechproject.nms.flw.repository.MonthlyServiceUsageDataService;
 import org.motechproject.nms.flw.service.ServiceUsageService;
+import org.motechproject.nms.flw.utils.FlwConstants;
+import org.motechproject.nms.tracking.utils.SettingsHelper;
+import org.motechproject.server.config.SettingsFacade;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.jdo.Query;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 @Service("serviceUsageService")
 public class ServiceUsageServiceImpl implements ServiceUsageService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServiceUsageServiceImpl.class);
+
+    private static final String MONTHLY_USAGE_AGGREGATES = "flw.monthly_usage_aggregates";
+    private static final String MONTHLY_USAGE_REBUILD_CHUNK_SIZE = "flw.monthly_usage_rebuild_chunk_size";
+    private static final int MONTHLY_USAGE_REBUILD_CHUNK_SIZE_DEFAULT = 100000;
+    private static final String MONTHLY_USAGE_TABLE = "nms_flw_monthly_service_usage";
+    private static final String FLW_USER = "flw";
+
+    private SettingsFacade settingsFacade;
     private CallDetailRecordDataService callDetailRecordDataService;
+    private MonthlyServiceUsageDataService monthlyServiceUsageDataService;
+    private TransactionTemplate transactionTemplate;
 
     @Autowired
-    public ServiceUsageServiceImpl(CallDetailRecordDataService callDetailRecordDataService) {
+    public ServiceUsageServiceImpl(@Qualifier("flwSettings") SettingsFacade settingsFacade,
+                                   CallDetailRecordDataService callDetailRecordDataService,
+                                   MonthlyServiceUsageDataService monthlyServiceUsageDataService,
+                                   PlatformTransactionManager transactionManager) {
+        this.settingsFacade = settingsFacade;
         this.callDetailRecordDataService = callDetailRecordDataService;
+        this.monthlyServiceUsageDataService = monthlyServiceUsageDataService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     @Override
     public ServiceUsage getCurrentMonthlyUsageForFLWAndService(final FrontLineWorker frontLineWorker, final org.motechproject.nms.props.domain.Service service) {
+        // read on each call, so the aggregates can be turned on once rebuilt without restarting
+        if ("true".equalsIgnoreCase(settingsFacade.getProperty(MONTHLY_USAGE_AGGREGATES))) {
+            MonthlyServiceUsage usage = monthlyServiceUsageDataService.findByFrontLineWorkerServiceAndMonth(
+                    frontLineWorker.getId(), service, usageMonth(DateTime.now()));
+            if (usage == null) {
+                return new ServiceUsage(frontLineWorker, service, 0, 0, false);
+            }
+            return new ServiceUsage(frontLineWorker, service, usage.getUsageInPulses(), usage.getEndOfUsage(),
+                    usage.getWelcomePrompt());
+        }
+
         ServiceUsage serviceUsage = new ServiceUsage(frontLineWorker, service, 0, 0, false);
 
         @SuppressWarnings("unchecked")
@@ -60,4 +106,147 @@ public class ServiceUsageServiceImpl implements ServiceUsageService {
 
         return serviceUsage;
     }
+
+    @Override
+    public void addToMonthlyUsage(final CallDetailRecord callDetailRecord) {
+        if (callDetailRecord.getFrontLineWorker() == null || callDetailRecord.getCallStartTime() == null) {
+            return;
+        }
+
+        final Map<String, Object> params = new HashMap<>();
+        params.put("flwId", callDetailRecord.getFrontLineWorker().getId());
+        params.put("service", callDetailRecord.getService().name());
+        params.put("usageMonth", usageMonth(callDetailRecord.getCallStartTime()));
+        params.put("pulses", callDetailRecord.getCallDurationInPulses());
+        params.put("endOfUsage", callDetailRecord.getEndOfUsagePromptCounter());
+        params.put("welcomePrompt", Boolean.TRUE.equals(callDetailRecord.getWelcomePrompt()));
+        params.put("user", FLW_USER);
+        params.put("now", DateTime.now().toDate());
+
+        @SuppressWarnings("unchecked")
+        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
+
+            @Override
+            public String getSqlQuery() {
+                return "INSERT INTO " + MONTHLY_USAGE_TABLE + " (frontLineWorkerId, service, usageMonth, " +
+                        "usageInPulses, endOfUsage, welcomePrompt, creator, modifiedBy, owner, creationDate, " +
+                        "modificationDate) " +
+                        "VALUES (:flwId, :service, :usageMonth, :pulses, :endOfUsage, :welcomePrompt, :user, :user, " +
+                        ":user, :now, :now) " +
+                        "ON DUPLICATE KEY UPDATE usageInPulses = usageInPulses + VALUES(usageInPulses), " +
+                        "endOfUsage = endOfUsage + VALUES(endOfUsage), " +
+                        "welcomePrompt = welcomePrompt OR VALUES(welcomePrompt), " +
+                        "modificationDate = VALUES(modificationDate)";
+            }
+
+            @Override
+            public Long execute(Query query) {
+                query.setClass(MonthlyServiceUsage.class);
+                return (Long) query.executeWithMap(params);
+            }
+        };
+
+        monthlyServiceUsageDataService.executeSQLQuery(queryExecution);
+    }
+
+    /**
+     * Deletes the aggregates, then adds up the CDRs that exist when the rebuild starts in id ranges, each in its own
+     * transaction, so nms_flw_cdrs is never locked as a whole. CDRs written meanwhile are added by
+     * {@link #addToMonthlyUsage(CallDetailRecord)} only. The aggregates are incomplete until the rebuild is done, so
+     * it should run before turning on flw.monthly_usage_aggregates
+     */
+    @Override
+    public void rebuildMonthlyUsage() {
+        final Timer timer = new Timer("CDR", "CDRs");
+        final int chunkSize = SettingsHelper.getPositiveInteger(settingsFacade, MONTHLY_USAGE_REBUILD_CHUNK_SIZE,
+                MONTHLY_USAGE_REBUILD_CHUNK_SIZE_DEFAULT);
+
+        final long maxId = transactionTemplate.execute(new TransactionCallback<Long>() {
+            @Override
+            public Long doInTransaction(TransactionStatus status) {
+                executeMonthlyUsageUpdate("DELETE FROM " + MONTHLY_USAGE_TABLE, new HashMap<String, Object>());
+                return findMaxCdrId();
+            }
+        });
+
+        long aggregated = 0;
+        for (long fromId = 0; fromId < maxId; fromId += chunkSize) {
+            final Map<String, Object> params = new HashMap<>();
+            params.put("fromId", fromId);
+            params.put("toId", Math.min(fromId + chunkSize, maxId));
+            Long updated = transactionTemplate.execute(new TransactionCallback<Long>() {
+                @Override
+                public Long doInTransaction(TransactionStatus status) {
+                    return executeMonthlyUsageUpdate("INSERT INTO " + MONTHLY_USAGE_TABLE + " (frontLineWorkerId, " +
+                            "service, usageMonth, usageInPulses, endOfUsage, welcomePrompt, creator, modifiedBy, " +
+                            "owner, creationDate, modificationDate) " +
+                            "SELECT frontLineWorker_id_OID, service, EXTRACT(YEAR_MONTH FROM callStartTime), " +
+                            "SUM(callDurationInPulses), SUM(endOfUsagePromptCounter), " +
+                            "MAX(COALESCE(welcomePrompt, 0)), '" + FLW_USER + "', '" + FLW_USER + "', '" + FLW_USER +
+                            "', NOW(), NOW() " +
+                            "FROM nms_flw_cdrs " +
+                            "WHERE id > :fromId AND id <= :toId " +
+                            "AND frontLineWorker_id_OID IS NOT NULL AND callStartTime IS NOT NULL " +
+                            "GROUP BY frontLineWorker_id_OID, service, EXTRACT(YEAR_MONTH FROM callStartTime) " +
+                            "ON DUPLICATE KEY UPDATE usageInPulses = usageInPulses + VALUES(usageInPulses), " +
+                            "endOfUsage = endOfUsage + VALUES(endOfUsage), " +
+                            "welcomePrompt = welcomePrompt OR VALUES(welcomePrompt), " +
+                            "modificationDate = VALUES(modificationDate)", params);
+                }
+            });
+            aggregated += updated == null ? 0 : updated;
+        }
+
+        LOGGER.info("Rebuilt the monthly service usage from nms_flw_cdrs up to id {}: {} row(s) upserted, {}", maxId,
+                aggregated, timer.frequency((int) maxId));
+    }
+
+    @MotechListener(subjects = { FlwConstants.MONTHLY_USAGE_REBUILD_SUBJECT })
+    public void rebuildMonthlyUsage(MotechEvent event) {
+        rebuildMonthlyUsage();
+    }
+
+    private long findMaxCdrId() {
+        @SuppressWarnings("unchecked")
+        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
+
+            @Override
+            public String getSqlQuery() {
+                return "SELECT MAX(id) FROM nms_flw_cdrs";
+            }
+
+            @Override
+            public Long execute(Query query) {
+                query.setUnique(true);
+                Number maxId = (Number) query.execute();
+                return maxId == null ? 0 : maxId.longValue();
+            }
+        };
+
+        return callDetailRecordDataService.executeSQLQuery(queryExecution);
+    }
+
+    private Long executeMonthlyUsageUpdate(final String sql, final Map<String, Object> params) {
+        @SuppressWarnings("unchecked")
+        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
+
+            @Override
+            public String getSqlQuery() {
+                LOGGER.debug("SQL QUERY: {}", sql);
+                return sql;
+            }
+
+            @Override
+            public Long execute(Query query) {
+                query.setClass(MonthlyServiceUsage.class);
+                return (Long) query.executeWithMap(params);
+            }
+        };
+
+        return monthlyServiceUsageDataService.executeSQLQuery(queryExecution);
+    }
+
+    private static Integer usageMonth(DateTime dateTime) {
+        return dateTime.getYear() * 100 + dateTime.getMonthOfYear();
+    }
 }
@@ -1,26 +1,48 @@
 package org.motechproject.nms.flw.service.impl;
 
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventRelay;
+import org.motechproject.event.listener.annotations.MotechListener;
 import org.motechproject.mds.query.QueryExecution;
+import org.motechproject.mds.query.SqlQueryExecution;
 import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.nms.flw.domain.WhitelistEntry;
+import org.motechproject.nms.flw.domain.WhitelistState;
 import org.motechproject.nms.flw.repository.WhitelistEntryDataService;
 import org.motechproject.nms.flw.repository.WhitelistStateDataService;
 import org.motechproject.nms.flw.service.WhitelistService;
 import org.motechproject.nms.region.domain.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 @Service("whitelistService")
 public class WhitelistServiceImpl implements WhitelistService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WhitelistServiceImpl.class);
+
     private WhitelistStateDataService whitelistStateDataService;
     private WhitelistEntryDataService whitelistEntryDataService;
+    private EventRelay eventRelay;
+
+    private Whitelists whitelists;
+    private long whitelistsGeneration;
 
     @Autowired
     public WhitelistServiceImpl(WhitelistEntryDataService whitelistEntryDataService,
-                                WhitelistStateDataService whitelistStateDataService) {
+                                WhitelistStateDataService whitelistStateDataService,
+                                EventRelay eventRelay) {
         this.whitelistEntryDataService = whitelistEntryDataService;
         this.whitelistStateDataService = whitelistStateDataService;
+        this.eventRelay = eventRelay;
     }
 
     private boolean whitelistEnabledForState(final State state) {
@@ -68,6 +90,10 @@ public class WhitelistServiceImpl implements WhitelistService {
             return true;
         }
 
+        if (state.getId() != null) {
+            return getWhitelists().isWhitelisted(state.getId(), contactNumber);
+        }
+
         if (!whitelistEnabledForState(state)) {
             // If whitelisting is not enabled for a state then all calls are allowed through
             return true;
@@ -91,4 +117,135 @@ public class WhitelistServiceImpl implements WhitelistService {
         return isWhitelisted > 0;
 
     }
+
+    @Override
+    public void whitelistEntryChanged(WhitelistEntry whitelistEntry) {
+        whitelistChanged();
+    }
+
+    @Override
+    public void whitelistStateChanged(WhitelistState whitelistState) {
+        whitelistChanged();
+    }
+
+    private void whitelistChanged() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    evictWhitelists();
+                }
+            });
+        } else {
+            evictWhitelists();
+        }
+    }
+
+    private void evictWhitelists() {
+        clearWhitelists();
+        eventRelay.broadcastEventMessage(new MotechEvent(WHITELIST_CACHE_EVICT_MESSAGE));
+    }
+
+    @Override
+    @MotechListener(subjects = { WHITELIST_CACHE_EVICT_MESSAGE })
+    public void whitelistCacheEvict(MotechEvent event) {
+        clearWhitelists();
+        LOGGER.debug("Whitelist cache evicted");
+    }
+
+    private synchronized void clearWhitelists() {
+        whitelistsGeneration++;
+        whitelists = null;
+    }
+
+    private Whitelists getWhitelists() {
+        long generation;
+        synchronized (this) {
+            if (whitelists != null) {
+                return whitelists;
+            }
+            generation = whitelistsGeneration;
+        }
+
+        Whitelists loaded = loadWhitelists();
+
+        synchronized (this) {
+            // don't keep whitelists read before they were changed
+            if (generation == whitelistsGeneration) {
+                whitelists = loaded;
+            }
+        }
+        return loaded;
+    }
+
+    private Whitelists loadWhitelists() {
+        List<Object[]> states = executeSQLQuery("SELECT state_id_OID FROM nms_whitelisted_states " +
+                "GROUP BY state_id_OID ORDER BY state_id_OID");
+        long[] stateIds = new long[states.size()];
+        for (int i = 0; i < stateIds.length; i++) {
+            stateIds[i] = ((Number) states.get(i)[0]).longValue();
+        }
+
+        // only the entries of states whitelisting is on for matter
+        List<Object[]> entries = executeSQLQuery("SELECT e.state_id_OID, e.contactNumber FROM nms_whitelist_entries e " +
+                "JOIN nms_whitelisted_states s ON s.state_id_OID = e.state_id_OID " +
+                "GROUP BY e.state_id_OID, e.contactNumber ORDER BY e.state_id_OID, e.contactNumber");
+        long[][] contactNumbers = new long[stateIds.length][];
+        int from = 0;
+        for (int i = 0; i < stateIds.length; i++) {
+            int to = from;
+            while (to < entries.size() && ((Number) entries.get(to)[0]).longValue() == stateIds[i]) {
+                to++;
+            }
+            contactNumbers[i] = new long[to - from];
+            for (int j = from; j < to; j++) {
+                contactNumbers[i][j - from] = ((Number) entries.get(j)[1]).longValue();
+            }
+            from = to;
+        }
+
+        LOGGER.debug("Loaded the whitelists of {} state(s), {} number(s)", stateIds.length, entries.size());
+        return new Whitelists(stateIds, contactNumbers);
+    }
+
+    private List<Object[]> executeSQLQuery(final String sql) {
+        @SuppressWarnings("unchecked")
+        SqlQueryExecution<List<Object[]>> queryExecution = new SqlQueryExecution<List<Object[]>>() {
+
+            @Override
+            public String getSqlQuery() {
+                return sql;
+            }
+
+            @Override
+            public List<Object[]> execute(Query query) {
+                List<Object[]> rows = new ArrayList<>();
+                for (Object row : (List<?>) query.execute()) {
+                    rows.add(row instanceof Object[] ? (Object[]) row : new Object[] {row});
+                }
+                return rows;
+            }
+        };
+
+        return whitelistEntryDataService.executeSQLQuery(queryExecution);
+    }
+
+    /**
+     * The states whitelisting is on for and their whitelisted numbers, sorted for a binary search
+     */
+    private static final class Whitelists {
+        private final long[] stateIds;
+        private final long[][] contactNumbers;
+
+        private Whitelists(long[] stateIds, long[][] contactNumbers) {
+            this.stateIds = stateIds;
+            this.contactNumbers = contactNumbers;
+        }
+
+        private boolean isWhitelisted(long stateId, long contactNumber) {
+            int i = Arrays.binarySearch(stateIds, stateId);
+            // all numbers are allowed where whitelisting is not on
+            return i < 0 || Arrays.binarySearch(contactNumbers[i], contactNumber) >= 0;
+        }
+    }
 }
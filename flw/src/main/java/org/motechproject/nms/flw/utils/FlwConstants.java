@@ -36,6 +36,8 @@ public final class FlwConstants {
     public static final String GF_TYPE = "GF_type";
     public static final String EXEC_DATE = "Exec_Date";
 
+    public static final String MONTHLY_USAGE_REBUILD_SUBJECT = "nms.flw.rebuild_monthly_usage";
+
     private FlwConstants() {
     }
 }
@@ -0,0 +1,13 @@
+package org.motechproject.nms.imi.exception;
+
+/**
+ * A copied file doesn't have the checksum IMI reported for it, or the one of the file we generated
+ */
+public class ChecksumMismatchException extends ExecException {
+
+    public ChecksumMismatchException(String fileName, String expectedChecksum, String checksum) {
+        // same message as the checksum check of the CDR processing phase 1, which reported mismatches before
+        super(String.format("Checksum mismatch for %s: provided checksum: %s, calculated checksum: %s", fileName,
+                expectedChecksum, checksum));
+    }
+}
@@ -1,6 +1,7 @@
 package org.motechproject.nms.imi.service;
 
 import org.motechproject.event.MotechEvent;
+import org.motechproject.nms.imi.service.contract.CsrInsertMetrics;
 import org.motechproject.nms.imi.web.contract.CdrFileNotificationRequest;
 import org.motechproject.nms.imi.web.contract.FileInfo;
 import org.motechproject.nms.imi.web.contract.WhatsAppCdrFileNotificationRequest;
@@ -57,6 +58,12 @@ public interface CdrFileService {
 
     void processWhatsAppOptCsrs(File file, int lineCount);
 
+    /**
+     * @return how the CSRs of the last CSR file processed on this node were inserted, null if none was processed
+     * since it started
+     */
+    CsrInsertMetrics getLastCsrInsertMetrics();
+
 
     /**
      * Verify file exists, verify checksum & record count match. Then sends event to proceed to CDR processing
@@ -0,0 +1,69 @@
+package org.motechproject.nms.imi.service.contract;
+
+/**
+ * How the CSRs of the last processed CSR file were inserted, served to ops by /ops/csrInsertMetrics
+ */
+public class CsrInsertMetrics {
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    private String fileName;
+    private long insertedCount;
+    private long bytesRead;
+    private long peakBytesHeld;
+    private long insertMillis;
+
+    public CsrInsertMetrics() { }
+
+    public CsrInsertMetrics(String fileName, long insertedCount, long bytesRead, long peakBytesHeld,
+                            long insertMillis) {
+        this.fileName = fileName;
+        this.insertedCount = insertedCount;
+        this.bytesRead = bytesRead;
+        this.peakBytesHeld = peakBytesHeld;
+        this.insertMillis = insertMillis;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public long getInsertedCount() {
+        return insertedCount;
+    }
+
+    /**
+     * @return size of the csv rows read, in bytes of the file's encoding
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return most bytes of csv rows held in memory at once, waiting to be inserted or dispatched
+     */
+    public long getPeakBytesHeld() {
+        return peakBytesHeld;
+    }
+
+    /**
+     * @return time spent in the inserts only, not reading or processing the file
+     */
+    public long getInsertMillis() {
+        return insertMillis;
+    }
+
+    public long getInsertsPerSecond() {
+        return insertMillis == 0 ? insertedCount : insertedCount * MILLIS_PER_SECOND / insertMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "CsrInsertMetrics{" +
+                "fileName='" + fileName + '\'' +
+                ", insertedCount=" + insertedCount +
+                ", bytesRead=" + bytesRead +
+                ", peakBytesHeld=" + peakBytesHeld +
+                ", insertMillis=" + insertMillis +
+                '}';
+    }
+}
@@ -10,8 +10,6 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.datanucleus.store.rdbms.query.ForwardQueryResult;
 import org.joda.time.DateTime;
 import org.joda.time.Duration;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.PeriodFormatter;
 import org.joda.time.format.PeriodFormatterBuilder;
 import org.motechproject.alerts.contract.AlertService;
@@ -27,6 +25,7 @@ import org.motechproject.nms.imi.exception.*;
 import org.motechproject.nms.imi.repository.*;
 import org.motechproject.nms.imi.service.CdrFileService;
 import org.motechproject.nms.imi.service.contract.CdrFileProcessedNotification;
+import org.motechproject.nms.imi.service.contract.CsrInsertMetrics;
 import org.motechproject.nms.imi.service.contract.WhatsAppCdrFileProcessedNotification;
 import org.motechproject.nms.imi.service.contract.WhatsAppSmsCdrFileProcessedNotification;
 import org.motechproject.nms.imi.web.contract.*;
@@ -44,6 +43,7 @@ import org.motechproject.nms.kilkari.service.CallRetryService;
 import org.motechproject.nms.kilkari.service.CsrService;
 import org.motechproject.nms.kilkari.service.CsrVerifierService;
 import org.motechproject.nms.props.domain.RequestId;
+import org.motechproject.nms.utils.BulkWriter;
 import org.motechproject.server.config.SettingsFacade;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -60,16 +60,24 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static java.lang.Math.min;
 import static org.motechproject.nms.kilkari.utils.KilkariConstants.SQL_QUERY_LOG;
-import static org.motechproject.nms.region.utils.LocationConstants.DATE_FORMAT_STRING;
 
 
 /**
@@ -81,6 +89,12 @@ public class CdrFileServiceImpl implements CdrFileService {
     public static final String DISPLAYING_THE_FIRST_N_ERRORS = "%s: %d errors - only displaying the first %d";
     private static final String DISTRIBUTED_CSR_PROCESSING = "imi.distributed_csr_processing";
     private static final String CSR_CHUNK_SIZE = "imi.csr_chunk_size";
+    private static final String SINGLE_PASS_VERIFICATION = "imi.single_pass_file_verification";
+    private static final String STREAMING_CSR_INSERT = "imi.streaming_csr_insert";
+    private static final String INSERT_CHECKPOINT_SUFFIX = ".inserted";
+    private static final String BATCH_CSR_PROCESSING = "imi.batch_csr_processing";
+    private static final String CSR_INSERT_BATCH_SIZE = "imi.csr_insert_batch_size";
+    private static final String CDR_INSERT_BATCH_SIZE = "imi.cdr_insert_batch_size";
     private static final int CSR_CHUNK_SIZE_DEFAULT = 1000;
     private static final Boolean DISTRIBUTED_CSR_PROCESSING_DEFAULT = false;
     private static final String CDR_FILE_NOTIFICATION_URL = "imi.cdr_file_notification_url";
@@ -149,12 +163,115 @@ public class CdrFileServiceImpl implements CdrFileService {
     private static final String ENTIRE_LINE_FMT = "%s [%s]";
     private static final String MOTECH_BUG = "!!!MOTECH BUG!!! Unexpected Exception in %s: %s";
     private static final String CSR_VERIFIER_CACHE_EVICT_MESSAGE = "nms.kk.cache.evict.csv_verifier";
-    private static final String QUOTATION = "'";
-    private static final String QUOTATION_COMMA = "', ";
-    private static final String MOTECH_STRING = "'motech', ";
-    private static final String MOTECH = "'motech'";
-    private static final String CDR_LOG_STRING = "List of CDR's in {}";
-    private static final String CSR_LOG_STRING = "List of CSR's in {}";
+
+    private static final BulkWriter<CallDetailRecord> CDR_WRITER = BulkWriter
+            .<CallDetailRecord>insertInto("nms_imi_cdrs", CallDetailRecord.class)
+            .ignoreDuplicates()
+            .columns("requestId", "msisdn", "callId", "attemptNo", "callStartTime", "callAnswerTime", "callEndTime",
+                    "callDurationInPulse", "callStatus", "languageLocationId", "contentFile", "msgPlayStartTime",
+                    "msgPlayEndTime", "circleId", "operatorId", "priority", "callDisconnectReason", "weekId",
+                    "opt_in_call_eligibility", "opt_in_input")
+            .motechAudit()
+            .now("creationDate", "modificationDate")
+            .binder(new BulkWriter.RowBinder<CallDetailRecord>() {
+                @Override
+                public void bind(CallDetailRecord cdr, BulkWriter.Row columns) {
+                    columns.set("requestId", cdr.getRequestId())
+                            .set("msisdn", cdr.getMsisdn())
+                            .set("callId", cdr.getCallId())
+                            .set("attemptNo", cdr.getAttemptNo())
+                            .set("callStartTime", cdr.getCallStartTime())
+                            .set("callAnswerTime", cdr.getCallAnswerTime())
+                            .set("callEndTime", cdr.getCallEndTime())
+                            .set("callDurationInPulse", cdr.getCallDurationInPulse())
+                            .set("callStatus", cdr.getCallStatus())
+                            .set("languageLocationId", cdr.getLanguageLocationId())
+                            .set("contentFile", cdr.getContentFile())
+                            .set("msgPlayStartTime", cdr.getMsgPlayStartTime())
+                            .set("msgPlayEndTime", cdr.getMsgPlayEndTime())
+                            .set("circleId", cdr.getCircleId())
+                            .set("operatorId", cdr.getOperatorId())
+                            .set("priority", cdr.getPriority())
+                            .set("callDisconnectReason", cdr.getCallDisconnectReason())
+                            .set("weekId", cdr.getWeekId())
+                            .set("opt_in_call_eligibility", cdr.isOpt_in_call_eligibility())
+                            .set("opt_in_input", cdr.getOpt_in_input());
+                }
+            })
+            .build();
+
+    private static final BulkWriter<CallSummaryRecord> CSR_WRITER = BulkWriter
+            .<CallSummaryRecord>insertInto("nms_imi_csrs", CallSummaryRecord.class)
+            .ignoreDuplicates()
+            .columns("attempts", "callFlowUrl", "circle", "cli", "contentFileName", "finalStatus",
+                    "languageLocationCode", "msisdn", "priority", "requestId", "serviceId", "statusCode", "weekId",
+                    "opt_in_call_eligibility", "opt_in_input")
+            .motechAudit()
+            .now("creationDate", "modificationDate")
+            .binder(new BulkWriter.RowBinder<CallSummaryRecord>() {
+                @Override
+                public void bind(CallSummaryRecord csr, BulkWriter.Row columns) {
+                    columns.set("attempts", csr.getAttempts())
+                            .set("callFlowUrl", csr.getCallFlowUrl())
+                            .set("circle", csr.getCircle())
+                            .set("cli", csr.getCli())
+                            .set("contentFileName", csr.getContentFileName())
+                            .set("finalStatus", csr.getFinalStatus())
+                            .set("languageLocationCode", csr.getLanguageLocationCode())
+                            .set("msisdn", csr.getMsisdn())
+                            .set("priority", csr.getPriority())
+                            .set("requestId", csr.getRequestId())
+                            .set("serviceId", csr.getServiceId())
+                            .set("statusCode", csr.getStatusCode())
+                            .set("weekId", csr.getWeekId())
+                            .set("opt_in_call_eligibility", csr.isOpt_in_call_eligibility())
+                            .set("opt_in_input", csr.getOpt_in_input());
+                }
+            })
+            .build();
+
+    private static final BulkWriter<WhatsAppOptSMSCsr> WHATSAPP_OPT_SMS_CSR_WRITER = BulkWriter
+            .<WhatsAppOptSMSCsr>insertInto("nms_imi_waos_csr", WhatsAppOptSMSCsr.class)
+            .ignoreDuplicates()
+            .columns("circleId", "contentFile", "languageLocationId", "msisdn", "operatorId", "requestId", "smsSent",
+                    "response")
+            .motechAudit()
+            .now("creationDate", "modificationDate")
+            .binder(new BulkWriter.RowBinder<WhatsAppOptSMSCsr>() {
+                @Override
+                public void bind(WhatsAppOptSMSCsr csr, BulkWriter.Row columns) {
+                    columns.set("circleId", csr.getCircleId())
+                            .set("contentFile", csr.getContentFile())
+                            .set("languageLocationId", csr.getLanguageLocationId())
+                            .set("msisdn", csr.getMsisdn())
+                            .set("operatorId", csr.getOperatorId())
+                            .set("requestId", csr.getRequestId())
+                            .set("smsSent", Boolean.TRUE.equals(csr.getSmsSent()))
+                            .set("response", csr.getResponse());
+                }
+            })
+            .build();
+
+    private static final BulkWriter<WhatsAppOptCsr> WHATSAPP_OPT_CSR_WRITER = BulkWriter
+            .<WhatsAppOptCsr>insertInto("nms_imi_wp_csr", WhatsAppOptCsr.class)
+            .ignoreDuplicates()
+            .columns("externalId", "urn", "contentFileName", "weekId", "preferredLanguage", "stateCode",
+                    "messageStatusTimestamp", "messageStatus")
+            .now("creationDate", "modificationDate")
+            .binder(new BulkWriter.RowBinder<WhatsAppOptCsr>() {
+                @Override
+                public void bind(WhatsAppOptCsr csr, BulkWriter.Row columns) {
+                    columns.set("externalId", csr.getExternalId())
+                            .set("urn", csr.getUrn())
+                            .set("contentFileName", csr.getContentFileName())
+                            .set("weekId", csr.getWeekId())
+                            .set("preferredLanguage", csr.getPreferredLanguage())
+                            .set("stateCode", csr.getStateCode())
+                            .set("messageStatusTimestamp", csr.getMessageStatusTimestamp())
+                            .set("messageStatus", csr.getMessageStatus());
+                }
+            })
+            .build();
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CdrFileServiceImpl.class);
     public static final double HALF = 0.5;
@@ -170,9 +287,11 @@ public class CdrFileServiceImpl implements CdrFileService {
     private WhatsAppOptSMSCsrDataService whatsAppOptSMSCsrDataService;
     private WhatsAppOptSMSDataService whatsAppOptSMSDataService;
     private CsrService csrService;
+    private volatile CsrInsertMetrics lastCsrInsertMetrics;
     private CallRetryService callRetryService;
     private CsrVerifierService csrVerifierService;
     private ChunkAuditRecordDataService chunkAuditRecordDataService;
+    private ExponentialRetrySender exponentialRetrySender;
     private PeriodFormatter periodFormatter;
     private String hostname;
 
@@ -188,7 +307,8 @@ public class CdrFileServiceImpl implements CdrFileService {
                               SubscriptionDataService subscriptionDataService,
                               WhatsAppOptCsrDataService whatsAppOptCsrDataService,
                               WhatsAppOptSMSCsrDataService whatsAppOptSMSCsrDataService,
-                              WhatsAppOptSMSDataService whatsAppOptSMSDataService) {
+                              WhatsAppOptSMSDataService whatsAppOptSMSDataService,
+                              ExponentialRetrySender exponentialRetrySender) {
         this.settingsFacade = settingsFacade;
         this.eventRelay = eventRelay;
         this.fileAuditRecordDataService = fileAuditRecordDataService;
@@ -203,6 +323,7 @@ public class CdrFileServiceImpl implements CdrFileService {
         this.whatsAppOptCsrDataService = whatsAppOptCsrDataService;
         this.whatsAppOptSMSCsrDataService = whatsAppOptSMSCsrDataService;
         this.whatsAppOptSMSDataService = whatsAppOptSMSDataService;
+        this.exponentialRetrySender = exponentialRetrySender;
 
         periodFormatter = new PeriodFormatterBuilder()
                 .appendDays().appendSuffix("d")
@@ -230,12 +351,39 @@ public class CdrFileServiceImpl implements CdrFileService {
     }
 
 
-    private boolean sendNotificationRequest(CdrFileProcessedNotification cfpn) {
+    /**
+     * Audits the outcome of a processed notification once its retries are over, without holding up the phase
+     * @param notification outcome of the notification
+     * @param status processing status that was notified
+     * @param auditRecords audit records to create, their success and error are set from the outcome
+     */
+    private void auditNotification(CompletableFuture<Boolean> notification, final FileProcessedStatus status,
+                                   final FileAuditRecord... auditRecords) {
+        // a notification the sender could not even attempt is audited as failed
+        notification.exceptionally(new Function<Throwable, Boolean>() {
+            @Override
+            public Boolean apply(Throwable t) {
+                return false;
+            }
+        }).thenAccept(new Consumer<Boolean>() {
+            @Override
+            public void accept(Boolean notificationSuccess) {
+                boolean success = (status == FileProcessedStatus.FILE_PROCESSED_SUCCESSFULLY);
+                String message = String.format("%s %s notification to IMI",
+                        notificationSuccess ? "Successfully sent" : "Error sending", success ? "success" : "failure");
+                for (FileAuditRecord auditRecord : auditRecords) {
+                    auditRecord.setSuccess(notificationSuccess);
+                    auditRecord.setError(message);
+                    fileAuditRecordDataService.create(auditRecord);
+                }
+            }
+        });
+    }
+
+    private CompletableFuture<Boolean> sendNotificationRequest(CdrFileProcessedNotification cfpn) {
         String notificationUrl = settingsFacade.getProperty(CDR_FILE_NOTIFICATION_URL);
         LOGGER.debug("Sending {} to {}", cfpn, notificationUrl);
 
-        ExponentialRetrySender sender = new ExponentialRetrySender(settingsFacade, alertService);
-
         HttpPost httpPost = new HttpPost(notificationUrl);
         ObjectMapper mapper = new ObjectMapper();
 
@@ -249,15 +397,13 @@ public class CdrFileServiceImpl implements CdrFileService {
                     e.getMessage()), e);
         }
 
-        return sender.sendNotificationRequest(httpPost, HttpStatus.SC_OK, cfpn.getFileName(), "cdrFile Notification Request");
+        return exponentialRetrySender.sendNotificationRequestAsync(httpPost, HttpStatus.SC_OK, cfpn.getFileName(), "cdrFile Notification Request");
     }
 
-    private boolean sendNotificationRequest(WhatsAppCdrFileProcessedNotification cfpn) {
+    private CompletableFuture<Boolean> sendNotificationRequest(WhatsAppCdrFileProcessedNotification cfpn) {
         String notificationUrl = settingsFacade.getProperty(WHATSAPP_CDR_FILE_NOTIFICATION_URL);
         LOGGER.debug("Sending {} to {}", cfpn, notificationUrl);
 
-        ExponentialRetrySender sender = new ExponentialRetrySender(settingsFacade, alertService);
-
         HttpPost httpPost = new HttpPost(notificationUrl);
         ObjectMapper mapper = new ObjectMapper();
 
@@ -271,15 +417,13 @@ public class CdrFileServiceImpl implements CdrFileService {
                     e.getMessage()), e);
         }
 
-        return sender.sendNotificationRequest(httpPost, HttpStatus.SC_OK, cfpn.getFileName(), "whatsApp cdrFile Notification Request");
+        return exponentialRetrySender.sendNotificationRequestAsync(httpPost, HttpStatus.SC_OK, cfpn.getFileName(), "whatsApp cdrFile Notification Request");
     }
 
-    private boolean sendNotificationRequest(WhatsAppSmsCdrFileProcessedNotification wcfpn, Boolean isSmsCdr) {
+    private CompletableFuture<Boolean> sendNotificationRequest(WhatsAppSmsCdrFileProcessedNotification wcfpn, Boolean isSmsCdr) {
         String notificationUrl = settingsFacade.getProperty(isSmsCdr ? WHATSAPP_SMS_CDR_FILE_NOTIFICATION_URL : WHATSAPP_CDR_FILE_NOTIFICATION_URL);
         LOGGER.debug("Sending {} to {}", wcfpn, notificationUrl);
 
-        ExponentialRetrySender sender = new ExponentialRetrySender(settingsFacade, alertService);
-
         HttpPost httpPost = new HttpPost(notificationUrl);
         ObjectMapper mapper = new ObjectMapper();
 
@@ -293,7 +437,7 @@ public class CdrFileServiceImpl implements CdrFileService {
                     e.getMessage()), e);
         }
 
-        return sender.sendNotificationRequest(httpPost, HttpStatus.SC_OK, wcfpn.getFileName(), "cdrFile Notification Request");
+        return exponentialRetrySender.sendNotificationRequestAsync(httpPost, HttpStatus.SC_OK, wcfpn.getFileName(), "cdrFile Notification Request");
     }
 
 
@@ -313,10 +457,15 @@ public class CdrFileServiceImpl implements CdrFileService {
         String thisChecksum = "";
         String fileName = file.getName();
 
+        boolean singlePass = singlePassVerification();
+
         try (FileInputStream fis = new FileInputStream(file);
-             InputStreamReader isr = new InputStreamReader(fis);
+             DigestInputStream dis = new DigestInputStream(fis, ChecksumHelper.md5Digest());
+             InputStreamReader isr = new InputStreamReader(dis);
              BufferedReader reader = new BufferedReader(isr)) {
 
+            // In single pass mode the checksum is computed from the bytes read while validating the csv
+            dis.on(singlePass);
             String line = reader.readLine();
 
             try {
@@ -352,7 +501,7 @@ public class CdrFileServiceImpl implements CdrFileService {
             isr.close();
             fis.close();
 
-            thisChecksum = ChecksumHelper.checksum(file);
+            thisChecksum = singlePass ? ChecksumHelper.checksum(dis.getMessageDigest()) : ChecksumHelper.checksum(file);
 
 
             if (!thisChecksum.equalsIgnoreCase(fileInfo.getChecksum())) {
@@ -381,10 +530,15 @@ public class CdrFileServiceImpl implements CdrFileService {
         String thisChecksum = "";
         String fileName = file.getName();
 
+        boolean singlePass = singlePassVerification();
+
         try (FileInputStream fis = new FileInputStream(file);
-             InputStreamReader isr = new InputStreamReader(fis);
+             DigestInputStream dis = new DigestInputStream(fis, ChecksumHelper.md5Digest());
+             InputStreamReader isr = new InputStreamReader(dis);
              BufferedReader reader = new BufferedReader(isr)) {
 
+            // In single pass mode the checksum is computed from the bytes read while validating the csv
+            dis.on(singlePass);
             String line = reader.readLine();
 
             try {
@@ -414,7 +568,7 @@ public class CdrFileServiceImpl implements CdrFileService {
             isr.close();
             fis.close();
             LOGGER.debug("test 10 - ChecksumHelper.checksum");
-            thisChecksum = ChecksumHelper.checksum(file);
+            thisChecksum = singlePass ? ChecksumHelper.checksum(dis.getMessageDigest()) : ChecksumHelper.checksum(file);
 
 
             if (!thisChecksum.equalsIgnoreCase(fileInfo.getChecksum())) {
@@ -443,10 +597,15 @@ public class CdrFileServiceImpl implements CdrFileService {
         String thisChecksum = "";
         String fileName = file.getName();
 
+        boolean singlePass = singlePassVerification();
+
         try (FileInputStream fis = new FileInputStream(file);
-             InputStreamReader isr = new InputStreamReader(fis);
+             DigestInputStream dis = new DigestInputStream(fis, ChecksumHelper.md5Digest());
+             InputStreamReader isr = new InputStreamReader(dis);
              BufferedReader reader = new BufferedReader(isr)) {
 
+            // In single pass mode the checksum is computed from the bytes read while validating the csv
+            dis.on(singlePass);
             String line = reader.readLine();
 
             try {
@@ -479,7 +638,7 @@ public class CdrFileServiceImpl implements CdrFileService {
 
             LOGGER.debug("test 8 - ChecksumHelper.checksum");
 
-            thisChecksum = ChecksumHelper.checksum(file);
+            thisChecksum = singlePass ? ChecksumHelper.checksum(dis.getMessageDigest()) : ChecksumHelper.checksum(file);
 
 
             if (!thisChecksum.equalsIgnoreCase(fileInfo.getChecksum())) {
@@ -667,22 +826,9 @@ public class CdrFileServiceImpl implements CdrFileService {
 
 
     private Long bulkUpdateCdr(List<CallDetailRecord> callDetailRecords){
-
-        int count = 0;
-        Long sqlCount = 0L;
-        while (count < callDetailRecords.size()) {
-            List<CallDetailRecord> updateObjectsPart = new ArrayList<>();
-            while (updateObjectsPart.size() < PARTITION_SIZE && count < callDetailRecords.size()) {
-                updateObjectsPart.add(callDetailRecords.get(count));
-                count++;
-            }
-
-            sqlCount += cdrBulkInsert(updateObjectsPart);
-            updateObjectsPart.clear();
-        }
-        return sqlCount;
-
+        return CDR_WRITER.write(callDetailRecordDataService, callDetailRecords, cdrInsertBatchSize());
     }
+
     private Long bulkUpdateSubscriptions(List<Subscription> subscriptions){
 
         int count = 0;
@@ -712,248 +858,60 @@ public class CdrFileServiceImpl implements CdrFileService {
 
 
     private Long bulkUpdateWhatsAppOptSmsCsr(List<WhatsAppOptSMSCsr> whatsAppOptSMSCsrs){
-
-        int count = 0;
-        Long sqlCount = 0L;
-        while (count < whatsAppOptSMSCsrs.size()) {
-            List<WhatsAppOptSMSCsr> updateObjectsPart = new ArrayList<>();
-            while (updateObjectsPart.size() < PARTITION_SIZE && count < whatsAppOptSMSCsrs.size()) {
-                updateObjectsPart.add(whatsAppOptSMSCsrs.get(count));
-                count++;
-            }
-
-            sqlCount += whatsAppOptSmsCdrBulkInsert(updateObjectsPart);
-            updateObjectsPart.clear();
-        }
-        return sqlCount;
-
+        return WHATSAPP_OPT_SMS_CSR_WRITER.write(whatsAppOptSMSCsrDataService, whatsAppOptSMSCsrs,
+                cdrInsertBatchSize());
     }
 
     private Long bulkUpdateWhatsAppOptCsr(List<WhatsAppOptCsr> whatsAppOptCsrs){
+        LOGGER.debug("whatsAppOptCsrDataService: {}",whatsAppOptCsrDataService);
+        return WHATSAPP_OPT_CSR_WRITER.write(whatsAppOptCsrDataService, whatsAppOptCsrs, cdrInsertBatchSize());
+    }
 
-        int count = 0;
-        Long sqlCount = 0L;
-        while (count < whatsAppOptCsrs.size()) {
-            List<WhatsAppOptCsr> updateObjectsPart = new ArrayList<>();
-            while (updateObjectsPart.size() < PARTITION_SIZE && count < whatsAppOptCsrs.size()) {
-                updateObjectsPart.add(whatsAppOptCsrs.get(count));
-                count++;
-            }
 
-            sqlCount += whatsAppOptCdrBulkInsert(updateObjectsPart);
-            updateObjectsPart.clear();
+    private boolean shouldDistributeCsrProcessing() {
+        try {
+            return Boolean.valueOf(settingsFacade.getProperty(DISTRIBUTED_CSR_PROCESSING));
+        } catch (Exception e) {
+            LOGGER.info("Unable to read {}, returning default value {}", DISTRIBUTED_CSR_PROCESSING,
+                    DISTRIBUTED_CSR_PROCESSING_DEFAULT);
+            return DISTRIBUTED_CSR_PROCESSING_DEFAULT;
         }
-        return sqlCount;
-
     }
 
-    private Long cdrBulkInsert(final List<CallDetailRecord> updateObjects) {
-        Timer queryTimer = new Timer();
-
-        @SuppressWarnings("unchecked")
-        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
 
-            @Override
-            public String getSqlQuery() {
-                String query = "INSERT IGNORE INTO nms_imi_cdrs (requestId, msisdn, callId, attemptNo, callStartTime," +
-                        "callAnswerTime, callEndTime, callDurationInPulse, callStatus, languageLocationId, contentFile," +
-                        " msgPlayStartTime, msgPlayEndTime, circleId,operatorId, priority, callDisconnectReason, weekId, opt_in_call_eligibility, opt_in_input," +
-                        " creationDate, modificationDate, modifiedBy, owner, creator)  " +
-                        "values  " +
-                        insertQuerySet(updateObjects);
-
-                LOGGER.debug(SQL_QUERY_LOG, query);
-                return query;
-            }
-
-            @Override
-            public Long execute(Query query) {
-                query.setClass(CallDetailRecord.class);
-                return (Long) query.execute();
-            }
-        };
-
-        Long updatedNo = callDetailRecordDataService.executeSQLQuery(queryExecution);
-        LOGGER.debug(CDR_LOG_STRING, queryTimer.time());
-        return updatedNo;
+    private boolean streamingCsrInsert() {
+        return "true".equalsIgnoreCase(settingsFacade.getProperty(STREAMING_CSR_INSERT));
     }
 
-    private Long whatsAppOptSmsCdrBulkInsert(final List<WhatsAppOptSMSCsr> updateObjects) {
-        Timer queryTimer = new Timer();
 
-        @SuppressWarnings("unchecked")
-        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
-
-            @Override
-            public String getSqlQuery() {
-                String query = "INSERT IGNORE INTO nms_imi_waos_csr (circleId,contentFile,languageLocationId,msisdn,operatorId,requestId,smsSent,response,creationDate,modificationDate, creator, modifiedBy, owner)  " +
-                        "values  " +
-                        insertQuerySetForWhatsAppOptSmsCsrs(updateObjects);
-
-                LOGGER.debug(SQL_QUERY_LOG, query);
-                return query;
-            }
-
-            @Override
-            public Long execute(Query query) {
-                query.setClass(WhatsAppOptSMSCsr.class);
-                return (Long) query.execute();
-            }
-        };
-
-        Long updatedNo = whatsAppOptSMSCsrDataService.executeSQLQuery(queryExecution);
-        LOGGER.debug(CDR_LOG_STRING, queryTimer.time());
-        return updatedNo;
+    private boolean batchCsrProcessing() {
+        return "true".equalsIgnoreCase(settingsFacade.getProperty(BATCH_CSR_PROCESSING));
     }
 
-    private Long whatsAppOptCdrBulkInsert(final List<WhatsAppOptCsr> updateObjects) {
-        Timer queryTimer = new Timer();
 
-        @SuppressWarnings("unchecked")
-        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
-
-            @Override
-            public String getSqlQuery() {
-                String query = "INSERT IGNORE INTO nms_imi_wp_csr (externalId,urn,contentFileName,weekId,preferredLanguage,stateCode,messageStatusTimestamp,messageStatus,creationDate,modificationDate)  " +
-                        "values  " +
-                        insertQuerySetForWhatsAppOptCsrs(updateObjects);
-
-                LOGGER.debug(SQL_QUERY_LOG, query);
-                return query;
-            }
-
-            @Override
-            public Long execute(Query query) {
-                query.setClass(WhatsAppOptCsr.class);
-                return (Long) query.execute();
-            }
-        };
-        LOGGER.debug("whatsAppOptCsrDataService: {}",whatsAppOptCsrDataService);
-        Long updatedNo = whatsAppOptCsrDataService.executeSQLQuery(queryExecution);
-        LOGGER.debug(CDR_LOG_STRING, queryTimer.time());
-        return updatedNo;
+    private int cdrInsertBatchSize() {
+        try {
+            int batchSize = Integer.parseInt(settingsFacade.getProperty(CDR_INSERT_BATCH_SIZE));
+            return batchSize > 0 ? batchSize : PARTITION_SIZE;
+        } catch (NumberFormatException e) {
+            return PARTITION_SIZE;
+        }
     }
 
 
-    private String
-    insertQuerySet(List<CallDetailRecord> callDetailRecords){
-
-        StringBuilder stringBuilder = new StringBuilder();
-
-        DateTimeFormatter dateTimeFormatter = DateTimeFormat.forPattern(DATE_FORMAT_STRING);
-        DateTime dateTimeNow = new DateTime();
-
-        int i = 0;
-        for (CallDetailRecord callDetailRecord: callDetailRecords) {
-            if (i != 0) {
-                stringBuilder.append(", ");
-            }
-            stringBuilder.append("(");
-            stringBuilder.append(QUOTATION + callDetailRecord.getRequestId()+ QUOTATION_COMMA);
-            stringBuilder.append(callDetailRecord.getMsisdn()+ ", ");
-            stringBuilder.append(QUOTATION + callDetailRecord.getCallId()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + callDetailRecord.getAttemptNo()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + callDetailRecord.getCallStartTime()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + callDetailRecord.getCallAnswerTime()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + callDetailRecord.getCallEndTime()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + callDetailRecord.getCallDurationInPulse()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + callDetailRecord.getCallStatus()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + callDetailRecord.getLanguageLocationId()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + callDetailRecord.getContentFile()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + callDetailRecord.getMsgPlayStartTime()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + callDetailRecord.getMsgPlayEndTime()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + callDetailRecord.getCircleId()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + callDetailRecord.getOperatorId()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + callDetailRecord.getPriority()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + callDetailRecord.getCallDisconnectReason()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + callDetailRecord.getWeekId()+ QUOTATION_COMMA);
-            stringBuilder.append(callDetailRecord.isOpt_in_call_eligibility() + ", ");
-            stringBuilder.append(QUOTATION + callDetailRecord.getOpt_in_input()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-            stringBuilder.append(MOTECH_STRING);
-            stringBuilder.append(MOTECH_STRING);
-            stringBuilder.append(MOTECH);
-            stringBuilder.append(")");
-            i++;
-        }
-        return stringBuilder.toString();
-
-    }
-
-    private String insertQuerySetForWhatsAppOptSmsCsrs(List<WhatsAppOptSMSCsr> whatsAppOptSMSCsrs){
-
-        StringBuilder stringBuilder = new StringBuilder();
-
-        DateTimeFormatter dateTimeFormatter = DateTimeFormat.forPattern(DATE_FORMAT_STRING);
-        DateTime dateTimeNow = new DateTime();
-
-        int i = 0;
-        for (WhatsAppOptSMSCsr whatsAppOptSMSCsr: whatsAppOptSMSCsrs) {
-            if (i != 0) {
-                stringBuilder.append(", ");
-            }
-            stringBuilder.append("(");
-            stringBuilder.append(QUOTATION + whatsAppOptSMSCsr.getCircleId()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + whatsAppOptSMSCsr.getContentFile()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + whatsAppOptSMSCsr.getLanguageLocationId()+ QUOTATION_COMMA);
-            stringBuilder.append(whatsAppOptSMSCsr.getMsisdn()+ ", ");
-            stringBuilder.append(QUOTATION + whatsAppOptSMSCsr.getOperatorId()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + whatsAppOptSMSCsr.getRequestId()+ QUOTATION_COMMA);
-            stringBuilder.append((whatsAppOptSMSCsr.getSmsSent() == true ? 1 : 0) + ", ");
-            stringBuilder.append(QUOTATION + whatsAppOptSMSCsr.getResponse() + QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-            stringBuilder.append(MOTECH_STRING);
-            stringBuilder.append(MOTECH_STRING);
-            stringBuilder.append(MOTECH);
-            stringBuilder.append(")");
-            i++;
-        }
-        return stringBuilder.toString();
-
-    }
-
-    private String insertQuerySetForWhatsAppOptCsrs(List<WhatsAppOptCsr> whatsAppOptCsrs){
-
-        StringBuilder stringBuilder = new StringBuilder();
-
-        DateTimeFormatter dateTimeFormatter = DateTimeFormat.forPattern(DATE_FORMAT_STRING);
-        DateTime dateTimeNow = new DateTime();
-
-        int i = 0;
-        for (WhatsAppOptCsr whatsAppOptCsr: whatsAppOptCsrs) {
-            if (i != 0) {
-                stringBuilder.append(", ");
-            }
-            stringBuilder.append("(");
-            stringBuilder.append(QUOTATION + whatsAppOptCsr.getExternalId()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + (whatsAppOptCsr.getUrn()) + QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + whatsAppOptCsr.getContentFileName()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + whatsAppOptCsr.getWeekId()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + whatsAppOptCsr.getPreferredLanguage() + QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + whatsAppOptCsr.getStateCode() + QUOTATION_COMMA);
-
-            stringBuilder.append(QUOTATION + whatsAppOptCsr.getMessageStatusTimestamp()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + whatsAppOptCsr.getMessageStatus()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION);
-            stringBuilder.append(")");
-            i++;
+    private int csrInsertBatchSize() {
+        try {
+            int batchSize = Integer.parseInt(settingsFacade.getProperty(CSR_INSERT_BATCH_SIZE));
+            return batchSize > 0 ? batchSize : PARTITION_SIZE_CSR;
+        } catch (NumberFormatException e) {
+            return PARTITION_SIZE_CSR;
         }
-        return stringBuilder.toString();
-
     }
 
 
-    private boolean shouldDistributeCsrProcessing() {
-        try {
-            return Boolean.valueOf(settingsFacade.getProperty(DISTRIBUTED_CSR_PROCESSING));
-        } catch (Exception e) {
-            LOGGER.info("Unable to read {}, returning default value {}", DISTRIBUTED_CSR_PROCESSING,
-                    DISTRIBUTED_CSR_PROCESSING_DEFAULT);
-            return DISTRIBUTED_CSR_PROCESSING_DEFAULT;
-        }
+    private boolean singlePassVerification() {
+        String value = settingsFacade.getProperty(SINGLE_PASS_VERIFICATION);
+        return value == null || !"false".equalsIgnoreCase(value.trim());
     }
 
 
@@ -1186,10 +1144,14 @@ public class CdrFileServiceImpl implements CdrFileService {
 
             LOGGER.debug("Processing {} ({} csrs)", name, csrDtos.size());
 
-            for (CallSummaryRecordDto csrDto : csrDtos) {
-                Map<String, Object> params = CallSummaryRecordDto.toParams(csrDto);
-                MotechEvent motechEvent = new MotechEvent(NMS_IMI_KK_PROCESS_CSR, params);
-                csrService.processCallSummaryRecord(motechEvent);
+            if (batchCsrProcessing()) {
+                csrService.processCallSummaryRecords(csrDtos);
+            } else {
+                for (CallSummaryRecordDto csrDto : csrDtos) {
+                    Map<String, Object> params = CallSummaryRecordDto.toParams(csrDto);
+                    MotechEvent motechEvent = new MotechEvent(NMS_IMI_KK_PROCESS_CSR, params);
+                    csrService.processCallSummaryRecord(motechEvent);
+                }
             }
 
             updateChunkAuditRecord(file, name, csrDtos.size(), processingStart, DateTime.now(),
@@ -1335,8 +1297,28 @@ public class CdrFileServiceImpl implements CdrFileService {
         boolean distributedProcessing = shouldDistributeCsrProcessing();
         String verb = distributedProcessing ? "distributed" : "enqueued";
 
+        // In streaming mode CSRs are inserted every insertBatchSize rows instead of once the whole file was read, the
+        // rows held in memory (pending inserts and the chunk being built) are tracked, from their csv line size. The
+        // line up to which CSRs were inserted is checkpointed, so a retry after a failure doesn't insert them again
+        boolean streaming = streamingCsrInsert();
+        int insertBatchSize = csrInsertBatchSize();
+        int insertedThrough = streaming ? readInsertCheckpoint(file) : 0;
+        int insertedCount = 0;
+        long insertMillis = 0;
+        long bytesRead = 0;
+        long pendingBytes = 0;
+        long chunkBytes = 0;
+        long peakBytes = 0;
+        Charset charset = Charset.defaultCharset();
+
         List<CallSummaryRecordDto> chunk = new ArrayList<>();
         int chunkSize = csrChunkSize();
+        if (streaming) {
+            LOGGER.info("CSRs will be inserted in batches of {} csrs", insertBatchSize);
+            if (insertedThrough > 0) {
+                LOGGER.info("CSRs up to line {} of {} were inserted by a previous attempt", insertedThrough, fileName);
+            }
+        }
         if (chunkSize > 1) {
             LOGGER.info("CSRs will be distributed in chunks of {} csrs", chunkSize);
             chunkCount = calculateChunkCount(lineCount, chunkSize);
@@ -1348,7 +1330,7 @@ public class CdrFileServiceImpl implements CdrFileService {
         }
 
         try (FileInputStream fis = new FileInputStream(file);
-             InputStreamReader isr = new InputStreamReader(fis);
+             InputStreamReader isr = new InputStreamReader(fis, charset);
              BufferedReader reader = new BufferedReader(isr)) {
 
             String line;
@@ -1364,12 +1346,22 @@ public class CdrFileServiceImpl implements CdrFileService {
             Timer timer = new Timer("csr", "csrs");
             Timer chunkTimer = new Timer("chunk", "chunks");
             while ((line = reader.readLine()) != null) {
+                long lineBytes = line.getBytes(charset).length;
+                bytesRead += lineBytes;
                 try {
                     CallSummaryRecord csr = CsrHelper.csvLineToCsr(line);
-                    callSummaryRecords.add(csr);
+                    if (lineNumber > insertedThrough) {
+                        callSummaryRecords.add(csr);
+                        pendingBytes += lineBytes;
+                    }
 
                     if (chunkSize > 1) {
                         chunk.add(csr.toDto());
+                        chunkBytes += lineBytes;
+                    }
+                    peakBytes = Math.max(peakBytes, pendingBytes + chunkBytes);
+
+                    if (chunkSize > 1) {
                         if (chunk.size() >= chunkSize || lineNumber >= lineCount) {
                             String chunkName = String.format("Chunk%d/%d", chunkNumber, chunkCount);
                             dispatchChunk(fileName, chunkName, chunk, chunkCount, lineCount);
@@ -1378,6 +1370,7 @@ public class CdrFileServiceImpl implements CdrFileService {
                             LOGGER.info("Dispatched {} - {}", chunkName, chunkTimer.frequency(chunkNumber));
 
                             chunk = new ArrayList<>();
+                            chunkBytes = 0;
                             chunkNumber++;
                         }
                     } else {
@@ -1386,6 +1379,16 @@ public class CdrFileServiceImpl implements CdrFileService {
                         processCount++;
                     }
 
+                    if (streaming && callSummaryRecords.size() >= insertBatchSize) {
+                        long insertStart = System.currentTimeMillis();
+                        insertedCount += bulkUpdateCsr(callSummaryRecords);
+                        insertMillis += System.currentTimeMillis() - insertStart;
+                        writeInsertCheckpoint(file, lineNumber);
+                        callSummaryRecords = new ArrayList<>();
+                        pendingBytes = 0;
+                        LOGGER.debug("Inserted {} csrs in {} ms", insertedCount, insertMillis);
+                    }
+
                 } catch (InvalidCallRecordDataException | IllegalArgumentException e) {
                     // All errors here should have been reported in Phase 2, let's just ignore them
                     //todo remove following line to not over confuse ops?
@@ -1403,8 +1406,20 @@ public class CdrFileServiceImpl implements CdrFileService {
 
                 lineNumber++;
             }
+            long insertStart = System.currentTimeMillis();
             Long updatedRecords = bulkUpdateCsr(callSummaryRecords);
+            insertMillis += System.currentTimeMillis() - insertStart;
             LOGGER.debug("{} records updated in time : {}", updatedRecords, timer.time());
+            insertedCount += updatedRecords;
+            if (streaming) {
+                clearInsertCheckpoint(file);
+            }
+
+            CsrInsertMetrics metrics = new CsrInsertMetrics(fileName, insertedCount, bytesRead, peakBytes,
+                    insertMillis);
+            lastCsrInsertMetrics = metrics;
+            LOGGER.info("Inserted {} csrs in {} ms ({} csrs/sec), read {} bytes, peak {} bytes of csv rows held",
+                    insertedCount, insertMillis, metrics.getInsertsPerSecond(), bytesRead, peakBytes);
 
             LOGGER.info(String.format("Read %s", timer.frequency(lineNumber - 1)));
             if (chunkSize <= 1) {
@@ -1424,6 +1439,49 @@ public class CdrFileServiceImpl implements CdrFileService {
         }
     }
 
+    @Override
+    public CsrInsertMetrics getLastCsrInsertMetrics() {
+        return lastCsrInsertMetrics;
+    }
+
+    private static File insertCheckpointFile(File file) {
+        return new File(file.getPath() + INSERT_CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * @return the line up to which the CSRs of the file were inserted by a previous, failed, attempt or 0. The
+     * checkpoint is ignored if the file changed since it was written
+     */
+    private int readInsertCheckpoint(File file) {
+        File checkpoint = insertCheckpointFile(file);
+        if (!checkpoint.exists()) {
+            return 0;
+        }
+        try {
+            String[] fields = new String(Files.readAllBytes(checkpoint.toPath()), StandardCharsets.UTF_8).trim()
+                    .split(":");
+            if (fields.length == 2 && Long.parseLong(fields[0]) == file.length()) {
+                return Integer.parseInt(fields[1]);
+            }
+            LOGGER.warn("Ignoring {}, {} changed since it was written", checkpoint, file);
+        } catch (IOException | NumberFormatException e) {
+            LOGGER.warn("Ignoring unreadable {}: {}", checkpoint, e.getMessage());
+        }
+        return 0;
+    }
+
+    private void writeInsertCheckpoint(File file, int lineNumber) throws IOException {
+        File checkpoint = insertCheckpointFile(file);
+        File tmp = new File(checkpoint.getPath() + ".tmp");
+        Files.write(tmp.toPath(), String.format("%d:%d", file.length(), lineNumber).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp.toPath(), checkpoint.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void clearInsertCheckpoint(File file) throws IOException {
+        Files.deleteIfExists(insertCheckpointFile(file).toPath());
+    }
+
 
     public void processWhatsAppOptSMSCsrs(File file, int lineCount) { //NOPMD NcssMethodCount
         int lineNumber = 1;
@@ -1625,92 +1683,7 @@ public class CdrFileServiceImpl implements CdrFileService {
 
 
     private Long bulkUpdateCsr(List<CallSummaryRecord> callSummaryRecords){
-
-        int count = 0;
-        Long sqlCount = 0L;
-        while (count < callSummaryRecords.size()) {
-            List<CallSummaryRecord> updateObjectsPart = new ArrayList<>();
-            while (updateObjectsPart.size() < PARTITION_SIZE_CSR && count < callSummaryRecords.size()) {
-                updateObjectsPart.add(callSummaryRecords.get(count));
-                count++;
-            }
-
-            sqlCount += csrBulkInsert(updateObjectsPart);
-            updateObjectsPart.clear();
-        }
-        return sqlCount;
-
-    }
-
-    private Long csrBulkInsert(final List<CallSummaryRecord> updateObjects) {
-        Timer queryTimer = new Timer();
-
-        @SuppressWarnings("unchecked")
-        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
-
-            @Override
-            public String getSqlQuery() {
-                String query = "INSERT IGNORE INTO nms_imi_csrs (attempts, callFlowUrl, circle, cli, contentFileName," +
-                        "creationDate, creator, finalStatus, languageLocationCode, modificationDate, modifiedBy," +
-                        " msisdn, owner, priority, requestId, serviceId, statusCode, weekId, opt_in_call_eligibility, opt_in_input)  " +
-                        "values  " +
-                        insertQuerySetCsr(updateObjects);
-
-                LOGGER.debug(SQL_QUERY_LOG, query);
-                return query;
-            }
-
-            @Override
-            public Long execute(Query query) {
-                query.setClass(CallDetailRecord.class);
-                return (Long) query.execute();
-            }
-        };
-
-        Long updatedNo = callSummaryRecordDataService.executeSQLQuery(queryExecution);
-        LOGGER.debug(CSR_LOG_STRING, queryTimer.time());
-        return updatedNo;
-    }
-
-
-    private String insertQuerySetCsr(List<CallSummaryRecord> callSummaryRecords){
-
-        StringBuilder stringBuilder = new StringBuilder();
-
-        DateTimeFormatter dateTimeFormatter = DateTimeFormat.forPattern(DATE_FORMAT_STRING);
-        DateTime dateTimeNow = new DateTime();
-
-        int i = 0;
-        for (CallSummaryRecord callSummaryRecord: callSummaryRecords) {
-            if (i != 0) {
-                stringBuilder.append(", ");
-            }
-            stringBuilder.append("(");
-            stringBuilder.append(callSummaryRecord.getAttempts() + ", ");
-            stringBuilder.append(QUOTATION + callSummaryRecord.getCallFlowUrl() + QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + callSummaryRecord.getCircle() + QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + callSummaryRecord.getCli() + QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + callSummaryRecord.getContentFileName() + QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-            stringBuilder.append(MOTECH_STRING);
-            stringBuilder.append(callSummaryRecord.getFinalStatus() + ", ");
-            stringBuilder.append(QUOTATION + callSummaryRecord.getLanguageLocationCode() + QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-            stringBuilder.append(MOTECH_STRING);
-            stringBuilder.append(callSummaryRecord.getMsisdn() + ", ");
-            stringBuilder.append(MOTECH_STRING);
-            stringBuilder.append(callSummaryRecord.getPriority() + ", ");
-            stringBuilder.append(QUOTATION + callSummaryRecord.getRequestId() + QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + callSummaryRecord.getServiceId() + QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + callSummaryRecord.getStatusCode()+ QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + callSummaryRecord.getWeekId()+ QUOTATION_COMMA);
-            stringBuilder.append(callSummaryRecord.isOpt_in_call_eligibility() + ", ");
-            stringBuilder.append(QUOTATION + callSummaryRecord.getOpt_in_input() + QUOTATION);
-            stringBuilder.append(")");
-            i++;
-        }
-        return stringBuilder.toString();
-
+        return CSR_WRITER.write(callSummaryRecordDataService, callSummaryRecords, csrInsertBatchSize());
     }
 
 
@@ -1981,22 +1954,32 @@ public class CdrFileServiceImpl implements CdrFileService {
 
     // Runs the copy command stored in the imi.scp.from_command entry of the imi.properties file
     // Likely scp, but could be something else
-    private void copyFile(File file) throws ExecException {
+    private void copyFile(File file, String checksum) throws ExecException {
         LOGGER.debug("Copying {} from IMI...", file.getName());
         ScpHelper scpHelper = new ScpHelper(settingsFacade);
-        scpHelper.scpCdrFromRemote(file.getName());
+        scpHelper.scpCdrFromRemote(file.getName(), checksum);
+    }
+
+    // Copies the files side by side, see copyFile
+    private Map<String, ExecException> copyFiles(File cdrFile, String cdrChecksum, File csrFile, String csrChecksum) {
+        Map<String, String> checksums = new LinkedHashMap<>();
+        checksums.put(cdrFile.getName(), cdrChecksum);
+        checksums.put(csrFile.getName(), csrChecksum);
+        LOGGER.debug("Copying {} from IMI...", checksums.keySet());
+        ScpHelper scpHelper = new ScpHelper(settingsFacade);
+        return scpHelper.scpCdrsFromRemote(checksums);
     }
 
-    private void copyWhatsAppSMSCsrFile(File file) throws ExecException {
+    private void copyWhatsAppSMSCsrFile(File file, String checksum) throws ExecException {
         LOGGER.debug("Copying {} from IMI...", file.getName());
         ScpHelper scpHelper = new ScpHelper(settingsFacade);
-        scpHelper.scpWhatsAppSMSCdrFromRemote(file.getName());
+        scpHelper.scpWhatsAppSMSCdrFromRemote(file.getName(), checksum);
     }
 
-    private void copyWhatsAppCsrFile(File file) throws ExecException {
+    private void copyWhatsAppCsrFile(File file, String checksum) throws ExecException {
         LOGGER.debug("Copying {} from IMI...", file.getName());
         ScpHelper scpHelper = new ScpHelper(settingsFacade);
-        scpHelper.scpWhatsAppCdrFromRemote(file.getName());
+        scpHelper.scpWhatsAppCdrFromRemote(file.getName(), checksum);
     }
 
 
@@ -2222,11 +2205,13 @@ public class CdrFileServiceImpl implements CdrFileService {
         //
         // Detail File
         //
-        LOGGER.info("Phase 2 - copy detail File");
+        LOGGER.info("Phase 2 - copy detail & summary Files");
         File cdrFile = new File(localCdrDir(), request.getCdrDetail().getCdrFile());
-        try {
-            copyFile(cdrFile);
-        } catch (ExecException e) {
+        File csrFile = new File(localCdrDir(), request.getCdrSummary().getCdrFile());
+        Map<String, ExecException> copyErrors = copyFiles(cdrFile, request.getCdrDetail().getChecksum(), csrFile,
+                request.getCdrSummary().getChecksum());
+        if (copyErrors.containsKey(cdrFile.getName())) {
+            ExecException e = copyErrors.get(cdrFile.getName());
             String error = String.format("Error copying CDR file %s: %s", cdrFile.getName(), e.getMessage());
             LOGGER.error(error);
             alertService.create(cdrFile.getName(), COPY_ERROR, error, AlertType.CRITICAL, AlertStatus.NEW, 0, null);
@@ -2238,11 +2223,8 @@ public class CdrFileServiceImpl implements CdrFileService {
         //
         // Summary File
         //
-        LOGGER.info("Phase 2 - copy detail File");
-        File csrFile = new File(localCdrDir(), request.getCdrSummary().getCdrFile());
-        try {
-            copyFile(csrFile);
-        } catch (ExecException e) {
+        if (copyErrors.containsKey(csrFile.getName())) {
+            ExecException e = copyErrors.get(csrFile.getName());
             String error = String.format("Error copying CSR file %s: %s", csrFile.getName(), e.getMessage());
             LOGGER.error(error);
             alertService.create(csrFile.getName(), COPY_ERROR, error, AlertType.CRITICAL, AlertStatus.NEW, 0, null);
@@ -2319,18 +2301,12 @@ public class CdrFileServiceImpl implements CdrFileService {
 
 
         LOGGER.info("Phase 2 - sendNotificationRequest");
-        boolean notificationSuccess = sendNotificationRequest(new CdrFileProcessedNotification(status.getValue(),
-                request.getFileName(), failure));
-        boolean success = (status == FileProcessedStatus.FILE_PROCESSED_SUCCESSFULLY);
-        String message = String.format("%s %s notification to IMI",
-                notificationSuccess ? "Successfully sent" : "Error sending", success ? "success" : "failure");
-
-        fileAuditRecordDataService.create(new FileAuditRecord(FileType.CDR_DETAIL_FILE,
-                request.getCdrDetail().getCdrFile(), notificationSuccess, message,
-                request.getCdrDetail().getRecordsCount(), request.getCdrDetail().getChecksum()));
-        fileAuditRecordDataService.create(new FileAuditRecord(FileType.CDR_SUMMARY_FILE,
-                request.getCdrSummary().getCdrFile(), notificationSuccess, message,
-                request.getCdrSummary().getRecordsCount(), request.getCdrSummary().getChecksum()));
+        auditNotification(sendNotificationRequest(new CdrFileProcessedNotification(status.getValue(),
+                request.getFileName(), failure)), status,
+                new FileAuditRecord(FileType.CDR_DETAIL_FILE, request.getCdrDetail().getCdrFile(), null, null,
+                        request.getCdrDetail().getRecordsCount(), request.getCdrDetail().getChecksum()),
+                new FileAuditRecord(FileType.CDR_SUMMARY_FILE, request.getCdrSummary().getCdrFile(), null, null,
+                        request.getCdrSummary().getRecordsCount(), request.getCdrSummary().getChecksum()));
 
 
         //
@@ -2372,7 +2348,7 @@ public class CdrFileServiceImpl implements CdrFileService {
         File csrFile = new File(localWhatsAppSMSCdrDir(), request.getCdrSummary().getCdrFile());
         //Why do we need this line??
         try {
-            copyWhatsAppSMSCsrFile(csrFile);
+            copyWhatsAppSMSCsrFile(csrFile, request.getCdrSummary().getChecksum());
         } catch (ExecException e) {
             String error = String.format("Error copying CSR file %s: %s", csrFile.getName(), e.getMessage());
             LOGGER.error(error);
@@ -2420,15 +2396,11 @@ public class CdrFileServiceImpl implements CdrFileService {
 
         LOGGER.info("Phase 2 - sendNotificationRequest");
         LOGGER.debug("test 13 - requestWhatsAppFileNotificationRequestFromParams");
-        boolean notificationSuccess = sendNotificationRequest(new WhatsAppSmsCdrFileProcessedNotification(status.getValue(),
-                request.getFileName(), failure), true);
-        boolean success = (status == FileProcessedStatus.FILE_PROCESSED_SUCCESSFULLY);
-        String message = String.format("%s %s notification to IMI",
-                notificationSuccess ? "Successfully sent" : "Error sending", success ? "success" : "failure");
-        LOGGER.debug("test 14 - fileAuditRecordDataService.create");
-        fileAuditRecordDataService.create(new FileAuditRecord(FileType.WHATSAPP_SMS_CDR_SUMMARY_FILE,
-                request.getCdrSummary().getCdrFile(), notificationSuccess, message,
-                request.getCdrSummary().getRecordsCount(), request.getCdrSummary().getChecksum()));
+        auditNotification(sendNotificationRequest(new WhatsAppSmsCdrFileProcessedNotification(status.getValue(),
+                request.getFileName(), failure), true), status,
+                new FileAuditRecord(FileType.WHATSAPP_SMS_CDR_SUMMARY_FILE, request.getCdrSummary().getCdrFile(),
+                        null, null, request.getCdrSummary().getRecordsCount(),
+                        request.getCdrSummary().getChecksum()));
 
 
         //
@@ -2467,7 +2439,7 @@ public class CdrFileServiceImpl implements CdrFileService {
         File csrFile = new File(localWhatsAppCdrDir(), request.getWhatsappResSummary().getWpResFile());
         //Why do we need this line??
         try {
-            copyWhatsAppCsrFile(csrFile);
+            copyWhatsAppCsrFile(csrFile, request.getWhatsappResSummary().getChecksum());
         } catch (ExecException e) {
             String error = String.format("Error copying CSR file %s: %s", csrFile.getName(), e.getMessage());
             LOGGER.error(error);
@@ -2515,15 +2487,12 @@ public class CdrFileServiceImpl implements CdrFileService {
 
         LOGGER.info("Phase 2 - sendNotificationRequest");
         LOGGER.debug("test 13 - sendNotificationRequest");
-        boolean notificationSuccess = sendNotificationRequest(new WhatsAppCdrFileProcessedNotification(status.getValue(),
-                request.getTargetFileName(), failure));
-        boolean success = (status == FileProcessedStatus.FILE_PROCESSED_SUCCESSFULLY);
-        String message = String.format("%s %s notification to IMI",
-                notificationSuccess ? "Successfully sent" : "Error sending", success ? "success" : "failure");
-        LOGGER.debug("test 14 - fileAuditRecordDataService.create");
-        fileAuditRecordDataService.create(new FileAuditRecord(FileType.WHATSAPP_CDR_SUMMARY_FILE,
-                request.getWhatsappResSummary().getWpResFile(), notificationSuccess, message,
-                request.getWhatsappResSummary().getRecordsCount(), request.getWhatsappResSummary().getChecksum()));
+        auditNotification(sendNotificationRequest(new WhatsAppCdrFileProcessedNotification(status.getValue(),
+                request.getTargetFileName(), failure)), status,
+                new FileAuditRecord(FileType.WHATSAPP_CDR_SUMMARY_FILE,
+                        request.getWhatsappResSummary().getWpResFile(), null, null,
+                        request.getWhatsappResSummary().getRecordsCount(),
+                        request.getWhatsappResSummary().getChecksum()));
 
 
         //
@@ -2572,7 +2541,7 @@ public class CdrFileServiceImpl implements CdrFileService {
         File cdrFile = new File(localCdrDir(), request.getCdrDetail().getCdrFile());
         String cdrFileName = cdrFile.getName();
         try {
-            copyFile(cdrFile);
+            copyFile(cdrFile, request.getCdrDetail().getChecksum());
         } catch (ExecException e) {
             String error = String.format("Error copying CDR file %s: %s", cdrFileName, e.getMessage());
             LOGGER.error(error);
@@ -2602,7 +2571,7 @@ public class CdrFileServiceImpl implements CdrFileService {
         File cdrFile = new File(localWhatsAppSMSCdrDir(), request.getCdrSummary().getCdrFile());
         String cdrFileName = cdrFile.getName();
         try {
-            copyWhatsAppSMSCsrFile(cdrFile);
+            copyWhatsAppSMSCsrFile(cdrFile, request.getCdrSummary().getChecksum());
         } catch (ExecException e) {
             String error = String.format("Error copying CDR file %s: %s", cdrFileName, e.getMessage());
             LOGGER.error(error);
@@ -2634,7 +2603,7 @@ public class CdrFileServiceImpl implements CdrFileService {
         File cdrFile = new File(localWhatsAppCdrDir(), request.getWhatsappResSummary().getWpResFile());
         String cdrFileName = cdrFile.getName();
         try {
-            copyWhatsAppCsrFile(cdrFile);
+            copyWhatsAppCsrFile(cdrFile, request.getWhatsappResSummary().getChecksum());
         } catch (ExecException e) {
             String error = String.format("Error copying CDR file %s: %s", cdrFileName, e.getMessage());
             LOGGER.error(error);
@@ -2666,7 +2635,7 @@ public class CdrFileServiceImpl implements CdrFileService {
         // Copy summary file, if needed
         LOGGER.info("Phase 5 - copying CSR");
         try {
-            copyFile(csrFile);
+            copyFile(csrFile, request.getCdrSummary().getChecksum());
         } catch (ExecException e) {
             String error = String.format("Error copying CDR file %s: %s", csrFileName, e.getMessage());
             LOGGER.error(error);
@@ -2698,7 +2667,7 @@ public class CdrFileServiceImpl implements CdrFileService {
         // Copy summary file, if needed
         LOGGER.info("Phase 4 - copying CSR");
         try {
-            copyWhatsAppSMSCsrFile(csrFile);
+            copyWhatsAppSMSCsrFile(csrFile, request.getCdrSummary().getChecksum());
         } catch (ExecException e) {
             String error = String.format("Error copying CDR file %s: %s", csrFileName, e.getMessage());
             LOGGER.error(error);
@@ -2729,7 +2698,7 @@ public class CdrFileServiceImpl implements CdrFileService {
         // Copy summary file, if needed
         LOGGER.info("Phase 4 - copying CSR");
         try {
-            copyWhatsAppCsrFile(csrFile);
+            copyWhatsAppCsrFile(csrFile, request.getWhatsappResSummary().getChecksum());
         } catch (ExecException e) {
             String error = String.format("Error copying CDR file %s: %s", csrFileName, e.getMessage());
             LOGGER.error(error);
@@ -1,10 +1,13 @@
 package org.motechproject.nms.imi.service.impl;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
 
 
 public final class ChecksumHelper {
@@ -12,6 +15,30 @@ public final class ChecksumHelper {
     private ChecksumHelper() { }
 
     public static String checksum(File file) throws IOException {
-            return DigestUtils.md5Hex(new FileInputStream(file));
+        try (InputStream is = new FileInputStream(file)) {
+            return DigestUtils.md5Hex(is);
+        }
+    }
+
+    /**
+     * A fresh MD5 digest, to be fed while a file is read (eg: through a DigestInputStream) instead of reading the
+     * file a second time with {@link #checksum(File)}
+     */
+    public static MessageDigest md5Digest() {
+        return DigestUtils.getMd5Digest();
+    }
+
+    /**
+     * @return the same hex representation {@link #checksum(File)} returns, for a digest fed with the whole file
+     */
+    public static String checksum(MessageDigest digest) {
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    /**
+     * @return true if the checksum is the expected one, or if none is expected
+     */
+    public static boolean matches(String expectedChecksum, String checksum) {
+        return expectedChecksum == null || expectedChecksum.equalsIgnoreCase(checksum);
     }
 }
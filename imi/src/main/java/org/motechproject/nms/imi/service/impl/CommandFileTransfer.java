@@ -0,0 +1,39 @@
+package org.motechproject.nms.imi.service.impl;
+
+import org.motechproject.nms.imi.exception.ExecException;
+
+import java.io.File;
+
+/**
+ * Runs a copy command, likely scp, with {src} and {dst} placeholders through the operating system.
+ *
+ * The command can't report what it copied, and reading the file again only to compute its checksum would add a full
+ * read of it: the CDR processing phase 1 checks the checksum of the copied CDR/CSR files while parsing them, and the
+ * checksum of an OBD file is computed from the very file the command copies. So this transfer doesn't check it.
+ */
+public class CommandFileTransfer implements FileTransfer {
+
+    private final String command;
+    private final long timeout;
+
+    public CommandFileTransfer(String command, long timeout) {
+        this.command = command;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public TransferResult transfer(String source, String destinationDir, File localFile, String expectedChecksum)
+            throws ExecException {
+        long start = System.currentTimeMillis();
+        ExecHelper execHelper = new ExecHelper();
+        execHelper.exec(command.replace("{src}", source).replace("{dst}", destinationDir), timeout);
+        long millis = System.currentTimeMillis() - start;
+
+        return new TransferResult(source, localFile.length(), 0, millis, null);
+    }
+
+    @Override
+    public void close() {
+        // nothing is kept open between copies
+    }
+}
@@ -4,26 +4,59 @@ import org.apache.http.HttpResponse;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.DefaultHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.ssl.SSLContexts;
 import org.apache.http.util.EntityUtils;
 import org.motechproject.alerts.contract.AlertService;
 import org.motechproject.alerts.domain.AlertStatus;
 import org.motechproject.alerts.domain.AlertType;
+import org.motechproject.nms.tracking.utils.SettingsHelper;
 import org.motechproject.server.config.SettingsFacade;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Tries to send the provided HTTP POST to IMI with exponential retries
+ *
+ * All the notifications share one pooled, keep-alive HTTP client, so a notification reuses an open (TLS) connection
+ * to its endpoint instead of handshaking again. Attempts run on a fixed pool of imi.notification_threads workers,
+ * while a single scheduler thread only times the retries and hands them to the workers, so a slow endpoint can't hold
+ * up the retries of the others. The asynchronous methods return right away with a future of the outcome.
  */
+@Component("exponentialRetrySender")
 public class ExponentialRetrySender {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ExponentialRetrySender.class);
@@ -38,43 +71,149 @@ public class ExponentialRetrySender {
     private static final String HTTP_TIMEOUT_VALUE = "imi.http_timeout_value";
     private static final int DEFAULT_HTTP_TIMEOUT_VALUE = 30000;
 
+    private static final String POOL_MAX_TOTAL = "imi.http_pool.max_total";
+    private static final int POOL_MAX_TOTAL_DEFAULT = 20;
+    private static final String POOL_MAX_PER_ROUTE = "imi.http_pool.max_per_route";
+    private static final int POOL_MAX_PER_ROUTE_DEFAULT = 5;
+    private static final String SENDER_THREADS = "imi.notification_threads";
+    private static final int SENDER_THREADS_DEFAULT = 4;
+    private static final String NOTIFICATION_WAIT = "imi.notification_wait_seconds";
+    private static final int NOTIFICATION_WAIT_DEFAULT = 300;
+
+    private static final long IDLE_CONNECTION_TIMEOUT_SECONDS = 60;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
     private SettingsFacade settingsFacade;
     private AlertService alertService;
 
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<String, EndpointStats> endpointStats = new ConcurrentHashMap<>();
+
 
     @Autowired
     public ExponentialRetrySender(@Qualifier("imiSettings") SettingsFacade settingsFacade,
                                   AlertService alertService) {
         this.settingsFacade = settingsFacade;
         this.alertService = alertService;
+
+        SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(
+                SSLContexts.createDefault(),
+                new String[]{"TLSv1", "TLSv1.1", "TLSv1.2"},
+                null,
+                new DefaultHostnameVerifier());
+        Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", sslSocketFactory)
+                .build();
+        connectionManager = new PoolingHttpClientConnectionManager(socketFactories);
+        connectionManager.setMaxTotal(SettingsHelper.getPositiveInteger(settingsFacade, POOL_MAX_TOTAL,
+                POOL_MAX_TOTAL_DEFAULT));
+        connectionManager.setDefaultMaxPerRoute(SettingsHelper.getPositiveInteger(settingsFacade, POOL_MAX_PER_ROUTE,
+                POOL_MAX_PER_ROUTE_DEFAULT));
+        httpClient = HttpClients.custom().setConnectionManager(connectionManager).build();
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(SettingsHelper.getPositiveInteger(settingsFacade, SENDER_THREADS,
+                SENDER_THREADS_DEFAULT), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "nms-imi-notification-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "nms-imi-notification-retry");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                connectionManager.closeExpiredConnections();
+                connectionManager.closeIdleConnections(IDLE_CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+        }, IDLE_CONNECTION_TIMEOUT_SECONDS, IDLE_CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Hands the retries already scheduled to the workers, then waits for the workers to send them
+     */
+    @PreDestroy
+    public void shutdown() {
+        awaitTermination(scheduler, "Notification retries still scheduled");
+        awaitTermination(workers, "Notifications still being sent");
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            LOGGER.warn("Unable to close the notification http client: {}", e.getMessage());
+        }
     }
 
     /**
-     * Request (POST) handler with exponential retry
+     * Request (POST) handler with exponential retry, waits for the outcome
      * @param httpPost http POST request
      * @param expectedStatus expected status for the response
      * @param id alert id to use for failure
      * @param name alert name to use for failure
      */
     public boolean sendNotificationRequest(final HttpPost httpPost, final int expectedStatus, final String id, final String name) {
-        LOGGER.debug("Sending {}", httpPost);
+        return await(sendNotificationRequestAsync(httpPost, expectedStatus, id, name), httpPost);
+    }
 
-        int retryDelay;
-        try {
-            retryDelay = Integer.parseInt(settingsFacade.getProperty(INITIAL_RETRY_DELAY));
-        } catch (NumberFormatException e) {
-            retryDelay = INITIAL_RETRY_DELAY_DEFAULT;
-        }
+    /**
+     * Request (POST) handler with exponential retry, waits for the outcome
+     * @param httpPost http POST request
+     * @param expectedStatus_202 expected status for the response
+     * @param expectedStatus_200 other expected status for the response
+     * @param id alert id to use for failure
+     * @param name alert name to use for failure
+     */
+    public boolean sendNotificationRequestWhatsApp(final HttpPost httpPost, final int expectedStatus_202, final  int expectedStatus_200 ,final String id, final String name) {
+        return await(sendNotificationRequestAsync(httpPost, expectedStatuses(expectedStatus_202, expectedStatus_200),
+                id, name), httpPost);
+    }
 
-        int maxRetryCount;
-        try {
-            maxRetryCount = Integer.parseInt(settingsFacade.getProperty(MAX_NOTIFICATION_RETRY_COUNT));
-        } catch (NumberFormatException e) {
-            maxRetryCount = MAX_NOTIFICATION_RETRY_COUNT_DEFAULT;
-        }
-        int count = 0;
+    /**
+     * Request (POST) handler with exponential retry, returns right away
+     * @param httpPost http POST request
+     * @param expectedStatus expected status for the response
+     * @param id alert id to use for failure
+     * @param name alert name to use for failure
+     * @return completed with true once a response with the expected status is received, with false once the retries
+     * are exhausted, exceptionally if the sender is shut down before the notification could be sent
+     */
+    public CompletableFuture<Boolean> sendNotificationRequestAsync(HttpPost httpPost, int expectedStatus, String id,
+                                                                   String name) {
+        return sendNotificationRequestAsync(httpPost, expectedStatuses(expectedStatus), id, name);
+    }
 
-        String error = "";
+    /**
+     * @see #sendNotificationRequestAsync(HttpPost, int, String, String)
+     */
+    public CompletableFuture<Boolean> sendNotificationRequestWhatsAppAsync(HttpPost httpPost, int expectedStatus_202,
+                                                                           int expectedStatus_200, String id,
+                                                                           String name) {
+        return sendNotificationRequestAsync(httpPost, expectedStatuses(expectedStatus_202, expectedStatus_200), id,
+                name);
+    }
+
+    /**
+     * @return latency and retry counters of every endpoint notified so far, by endpoint
+     */
+    public Map<String, EndpointStats> getEndpointStats() {
+        return Collections.unmodifiableMap(new TreeMap<>(endpointStats));
+    }
+
+    private CompletableFuture<Boolean> sendNotificationRequestAsync(HttpPost httpPost, Set<Integer> expectedStatuses,
+                                                                    String id, String name) {
+        LOGGER.debug("Sending {}", httpPost);
 
         if (shouldUseHttpTimeout()) {
             int timeout = httpTimeoutValue();
@@ -87,172 +226,165 @@ public class ExponentialRetrySender {
             httpPost.setConfig(requestConfig);
         }
 
-        while (count < maxRetryCount) {
-            try {
-                SSLConnectionSocketFactory f = new SSLConnectionSocketFactory(
-                                                        SSLContexts.createDefault(),
-                                                        new String[]{"TLSv1", "TLSv1.1", "TLSv1.2"},
-                                                        null,
-                                                        new DefaultHostnameVerifier());
-
-                CloseableHttpClient httpClient = HttpClients.custom().setSSLSocketFactory(f).build();
-
-                try {
-
-                    // Create a custom response handler
-                    ResponseHandler<Boolean> responseHandler = new ResponseHandler<Boolean>() {
-
-                        @Override
-                        public Boolean handleResponse(final HttpResponse response) throws IOException {
-                            int responseCode = response.getStatusLine().getStatusCode();
-                            if (responseCode == expectedStatus) {
-                                String msg = String.format("SUCCESS Sending httpPost %s (response %d)", httpPost
-                                        .toString(), responseCode);
-                                LOGGER.debug(msg);
-                                return true;
-                            } else {
-                                String error = String.format("Expecting HTTP %d response but received HTTP %d: %s", expectedStatus,
-                                        responseCode, EntityUtils.toString(response.getEntity()));
-                                LOGGER.warn(error);
-                                alertService.create(id, name, error, AlertType.MEDIUM, AlertStatus.NEW, 0, null);
-                                return false;
-                            }
-                        }
-                    };
-
-                    if (httpClient.execute(httpPost, responseHandler)) {
-                        return true;
-                    }
-                } finally {
-                    httpClient.close();
-                }
-            } catch (IOException e) {
-                    error = String.format("Unable to send httpPost %s: %s", httpPost.toString(), e.getMessage());
-                    LOGGER.warn(error);
-                    alertService.create(id, name, error, AlertType.MEDIUM, AlertStatus.NEW, 0, null);
-            }
-            count++;
+        Notification notification = new Notification(httpPost, expectedStatuses, id, name,
+                SettingsHelper.getPositiveInteger(settingsFacade, INITIAL_RETRY_DELAY, INITIAL_RETRY_DELAY_DEFAULT),
+                SettingsHelper.getPositiveInteger(settingsFacade, MAX_NOTIFICATION_RETRY_COUNT,
+                        MAX_NOTIFICATION_RETRY_COUNT_DEFAULT));
+        schedule(notification, 0);
+        return notification.result;
+    }
 
-            /**
-             * Exponential retry delay
-             */
-            try {
-                Thread.sleep(retryDelay * MILLIS_PER_SEC);
-            } catch (InterruptedException e) {
-                LOGGER.warn("Thread.sleep interrupted: {}", e.getMessage());
+    private void awaitTermination(ExecutorService executor, String pending) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warn("{} after {}s, dropping them", pending, SHUTDOWN_TIMEOUT_SECONDS);
+                executor.shutdownNow();
             }
-            retryDelay *= retryDelay;
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
         }
-
-        // Retry count exceeded, consider this a critical error
-        LOGGER.error(error);
-        alertService.create(id, name, error, AlertType.CRITICAL, AlertStatus.NEW, 0, null);
-
-        return false;
     }
 
-
     /**
-     * Request (POST) handler with exponential retry
-     * @param httpPost http POST request
-     * @param expectedStatus_200 expected status for the response
-     * @param id alert id to use for failure
-     * @param name alert name to use for failure
+     * Sends the notification on a worker right away, or after the delay, timed by the scheduler
      */
-    public boolean sendNotificationRequestWhatsApp(final HttpPost httpPost, final int expectedStatus_202, final  int expectedStatus_200 ,final String id, final String name) {
-        LOGGER.debug("Sending {}", httpPost);
-
-        int retryDelay;
+    private void schedule(final Notification notification, long delaySeconds) {
+        if (delaySeconds <= 0) {
+            send(notification);
+            return;
+        }
         try {
-            retryDelay = Integer.parseInt(settingsFacade.getProperty(INITIAL_RETRY_DELAY));
-        } catch (NumberFormatException e) {
-            retryDelay = INITIAL_RETRY_DELAY_DEFAULT;
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    send(notification);
+                }
+            }, delaySeconds, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            rejected(notification, e);
         }
+    }
 
-        int maxRetryCount;
+    private void send(final Notification notification) {
         try {
-            maxRetryCount = Integer.parseInt(settingsFacade.getProperty(MAX_NOTIFICATION_RETRY_COUNT));
-        } catch (NumberFormatException e) {
-            maxRetryCount = MAX_NOTIFICATION_RETRY_COUNT_DEFAULT;
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    attempt(notification);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected(notification, e);
         }
-        int count = 0;
-
-        String error = "";
+    }
 
-        if (shouldUseHttpTimeout()) {
-            int timeout = httpTimeoutValue();
-            RequestConfig requestConfig = RequestConfig.custom()
-                    .setSocketTimeout(timeout)
-                    .setConnectTimeout(timeout)
-                    .setConnectionRequestTimeout(timeout)
-                    .build();
+    private void rejected(Notification notification, RejectedExecutionException e) {
+        LOGGER.error("Unable to send httpPost {}, the notification sender is shut down", notification.httpPost);
+        getStats(notification.httpPost).failed();
+        notification.result.completeExceptionally(e);
+    }
 
-            httpPost.setConfig(requestConfig);
+    /**
+     * Waits, at most imi.notification_wait_seconds, for the outcome of a notification
+     * @return false if the notification failed, could not be sent or is still being retried
+     */
+    private boolean await(CompletableFuture<Boolean> notification, HttpPost httpPost) {
+        int wait = SettingsHelper.getPositiveInteger(settingsFacade, NOTIFICATION_WAIT, NOTIFICATION_WAIT_DEFAULT);
+        try {
+            return notification.get(wait, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.error("No outcome for httpPost {} after {}s, giving up waiting", httpPost, wait);
+            return false;
+        } catch (ExecutionException e) {
+            LOGGER.error("Unable to send httpPost {}: {}", httpPost, e.getCause().getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         }
+    }
 
-        while (count < maxRetryCount) {
-            try {
-                SSLConnectionSocketFactory f = new SSLConnectionSocketFactory(
-                        SSLContexts.createDefault(),
-                        new String[]{"TLSv1", "TLSv1.1", "TLSv1.2"},
-                        null,
-                        new DefaultHostnameVerifier());
-
-                CloseableHttpClient httpClient = HttpClients.custom().setSSLSocketFactory(f).build();
-
-                try {
-
-                    // Create a custom response handler
-                    ResponseHandler<Boolean> responseHandler = new ResponseHandler<Boolean>() {
-
-                        @Override
-                        public Boolean handleResponse(final HttpResponse response) throws IOException {
-                            int responseCode = response.getStatusLine().getStatusCode();
-                            if (responseCode == expectedStatus_202 || responseCode == expectedStatus_200) {
-                                String msg = String.format("SUCCESS Sending httpPost %s (response %d)", httpPost
-                                        .toString(), responseCode);
-                                LOGGER.debug(msg);
-                                return true;
-                            } else {
-                                String error = String.format("Expecting HTTP %d response but received HTTP %d: %s", expectedStatus_200,
-                                        responseCode, EntityUtils.toString(response.getEntity()));
-                                LOGGER.warn(error);
-                                alertService.create(id, name, error, AlertType.MEDIUM, AlertStatus.NEW, 0, null);
-                                return false;
-                            }
-                        }
-                    };
-
-                    if (httpClient.execute(httpPost, responseHandler)) {
+    private void attempt(final Notification notification) {
+        final HttpPost httpPost = notification.httpPost;
+        EndpointStats stats = getStats(httpPost);
+        boolean success = false;
+        long start = System.currentTimeMillis();
+
+        try {
+            // Create a custom response handler
+            ResponseHandler<Boolean> responseHandler = new ResponseHandler<Boolean>() {
+
+                @Override
+                public Boolean handleResponse(final HttpResponse response) throws IOException {
+                    int responseCode = response.getStatusLine().getStatusCode();
+                    if (notification.expectedStatuses.contains(responseCode)) {
+                        EntityUtils.consume(response.getEntity());
+                        String msg = String.format("SUCCESS Sending httpPost %s (response %d)", httpPost
+                                .toString(), responseCode);
+                        LOGGER.debug(msg);
                         return true;
+                    } else {
+                        String error = String.format("Expecting HTTP %s response but received HTTP %d: %s",
+                                notification.expectedStatuses, responseCode,
+                                EntityUtils.toString(response.getEntity()));
+                        LOGGER.warn(error);
+                        notification.error = error;
+                        alertService.create(notification.id, notification.name, error, AlertType.MEDIUM,
+                                AlertStatus.NEW, 0, null);
+                        return false;
                     }
-                } finally {
-                    httpClient.close();
                 }
-            } catch (IOException e) {
-                error = String.format("Unable to send httpPost %s: %s", httpPost.toString(), e.getMessage());
-                LOGGER.warn(error);
-                alertService.create(id, name, error, AlertType.MEDIUM, AlertStatus.NEW, 0, null);
-            }
-            count++;
+            };
+
+            success = httpClient.execute(httpPost, responseHandler);
+        } catch (IOException | RuntimeException e) {
+            String error = String.format("Unable to send httpPost %s: %s", httpPost.toString(), e.getMessage());
+            LOGGER.warn(error);
+            notification.error = error;
+            alertService.create(notification.id, notification.name, error, AlertType.MEDIUM, AlertStatus.NEW, 0,
+                    null);
+        }
+        stats.attempted(System.currentTimeMillis() - start, notification.count > 0);
+        notification.count++;
 
+        if (success) {
+            stats.succeeded();
+            notification.result.complete(true);
+        } else if (notification.count < notification.maxRetryCount) {
             /**
              * Exponential retry delay
              */
-            try {
-                Thread.sleep(retryDelay * MILLIS_PER_SEC);
-            } catch (InterruptedException e) {
-                LOGGER.warn("Thread.sleep interrupted: {}", e.getMessage());
-            }
-            retryDelay *= retryDelay;
+            long delay = notification.retryDelay;
+            notification.retryDelay *= notification.retryDelay;
+            schedule(notification, delay);
+        } else {
+            // Retry count exceeded, consider this a critical error
+            stats.failed();
+            LOGGER.error(notification.error);
+            alertService.create(notification.id, notification.name, notification.error, AlertType.CRITICAL,
+                    AlertStatus.NEW, 0, null);
+            notification.result.complete(false);
         }
+    }
 
-        // Retry count exceeded, consider this a critical error
-        LOGGER.error(error);
-        alertService.create(id, name, error, AlertType.CRITICAL, AlertStatus.NEW, 0, null);
+    private EndpointStats getStats(HttpPost httpPost) {
+        String endpoint = httpPost.getURI().getScheme() + "://" + httpPost.getURI().getAuthority() +
+                httpPost.getURI().getPath();
+        EndpointStats stats = endpointStats.get(endpoint);
+        if (stats == null) {
+            EndpointStats newStats = new EndpointStats();
+            stats = endpointStats.putIfAbsent(endpoint, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        return stats;
+    }
 
-         return false;
-        /* WP */
+    private static Set<Integer> expectedStatuses(Integer... statuses) {
+        return new HashSet<>(Arrays.asList(statuses));
     }
 
     private boolean shouldUseHttpTimeout() {
@@ -269,4 +401,93 @@ public class ExponentialRetrySender {
 
         return val;
     }
+
+    /**
+     * State of a notification being sent, touched by one attempt at a time
+     */
+    private static final class Notification {
+        private final HttpPost httpPost;
+        private final Set<Integer> expectedStatuses;
+        private final String id;
+        private final String name;
+        private final int maxRetryCount;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        private volatile int retryDelay;
+        private volatile int count;
+        private volatile String error = "";
+
+        private Notification(HttpPost httpPost, Set<Integer> expectedStatuses, String id, String name,
+                             int retryDelay, int maxRetryCount) {
+            this.httpPost = httpPost;
+            this.expectedStatuses = expectedStatuses;
+            this.id = id;
+            this.name = name;
+            this.retryDelay = retryDelay;
+            this.maxRetryCount = maxRetryCount;
+        }
+    }
+
+    /**
+     * Attempt, retry and outcome counters of an endpoint
+     */
+    public static final class EndpointStats {
+        private final AtomicLong attempts = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final AtomicLong successes = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong totalLatencyMillis = new AtomicLong();
+        private final AtomicLong maxLatencyMillis = new AtomicLong();
+
+        private void attempted(long latencyMillis, boolean retry) {
+            attempts.incrementAndGet();
+            if (retry) {
+                retries.incrementAndGet();
+            }
+            totalLatencyMillis.addAndGet(latencyMillis);
+            long max = maxLatencyMillis.get();
+            while (latencyMillis > max && !maxLatencyMillis.compareAndSet(max, latencyMillis)) {
+                max = maxLatencyMillis.get();
+            }
+        }
+
+        private void succeeded() {
+            successes.incrementAndGet();
+        }
+
+        private void failed() {
+            failures.incrementAndGet();
+        }
+
+        public long getAttempts() {
+            return attempts.get();
+        }
+
+        public long getRetries() {
+            return retries.get();
+        }
+
+        public long getSuccesses() {
+            return successes.get();
+        }
+
+        public long getFailures() {
+            return failures.get();
+        }
+
+        public long getAverageLatencyMillis() {
+            long count = attempts.get();
+            return count == 0 ? 0 : totalLatencyMillis.get() / count;
+        }
+
+        public long getMaxLatencyMillis() {
+            return maxLatencyMillis.get();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("attempts=%d, retries=%d, successes=%d, failures=%d, avgLatency=%dms, " +
+                    "maxLatency=%dms", getAttempts(), getRetries(), getSuccesses(), getFailures(),
+                    getAverageLatencyMillis(), getMaxLatencyMillis());
+        }
+    }
 }
@@ -0,0 +1,30 @@
+package org.motechproject.nms.imi.service.impl;
+
+import org.motechproject.nms.imi.exception.ExecException;
+
+import java.io.File;
+
+/**
+ * Copies a file between the IMI share and a local directory, see {@link ScpHelper} for how one is picked
+ */
+public interface FileTransfer {
+
+    /**
+     * Copies the source file into the destination directory, keeping its name
+     *
+     * @param source file to copy
+     * @param destinationDir directory to copy it into
+     * @param localFile whichever end of the copy is on this host, the source or the copy
+     * @param expectedChecksum MD5 the copy must have, null if unknown
+     * @return what was transferred and how fast
+     * @throws ExecException if the copy failed or, for a transfer which checks it, doesn't match the expected
+     * checksum, in which case it is a {@link org.motechproject.nms.imi.exception.ChecksumMismatchException}
+     */
+    TransferResult transfer(String source, String destinationDir, File localFile, String expectedChecksum)
+            throws ExecException;
+
+    /**
+     * Releases what the transfer keeps open between copies, eg: its SSH session
+     */
+    void close();
+}
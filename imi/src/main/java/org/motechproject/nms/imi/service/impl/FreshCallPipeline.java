@@ -0,0 +1,354 @@
+package org.motechproject.nms.imi.service.impl;
+
+import org.joda.time.DateTime;
+import org.motechproject.alerts.contract.AlertService;
+import org.motechproject.alerts.domain.AlertStatus;
+import org.motechproject.alerts.domain.AlertType;
+import org.motechproject.metrics.service.Timer;
+import org.motechproject.nms.kilkari.dto.FreshCallRowDto;
+import org.motechproject.nms.kilkari.service.SubscriptionService;
+import org.motechproject.nms.props.domain.DayOfTheWeek;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipelined generation of the fresh call section of the OBD target file.
+ *
+ * The subscription id space is cut in contiguous ranges. Producer threads page through each range (time slots
+ * are part of the rows), worker threads format the rows of every block into one buffer per output file, and one single
+ * threaded writer per output file appends those buffers. Blocks are handed to the writers in range order and, within
+ * a range, in id order, so the files are byte for byte what the serial path writes.
+ */
+class FreshCallPipeline {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FreshCallPipeline.class);
+
+    private static final Future<FormattedBlock> END_OF_RANGE = new FutureTask<>(new Callable<FormattedBlock>() {
+        @Override
+        public FormattedBlock call() {
+            return null;
+        }
+    });
+
+    private final TargetFileServiceImpl targetFileService;
+    private final SubscriptionService subscriptionService;
+    private final AlertService alertService;
+    private final int producerThreads;
+    private final int workerThreads;
+    private final int rangesPerProducer;
+    private final int queueDepth;
+
+    FreshCallPipeline(TargetFileServiceImpl targetFileService, SubscriptionService subscriptionService,
+                      AlertService alertService, int producerThreads, int workerThreads, int rangesPerProducer,
+                      int queueDepth) {
+        this.targetFileService = targetFileService;
+        this.subscriptionService = subscriptionService;
+        this.alertService = alertService;
+        this.producerThreads = Math.max(1, producerThreads);
+        this.workerThreads = Math.max(1, workerThreads);
+        this.rangesPerProducer = Math.max(1, rangesPerProducer);
+        this.queueDepth = Math.max(1, queueDepth);
+    }
+
+    /**
+     * Write the fresh call rows for the given day.
+     *
+     * @param dow day of the week the target file is generated for
+     * @param timestamp the target file timestamp
+     * @param requestTimestamp the target file timestamp, formatted for the request ids
+     * @param maxQueryBlock how many subscriptions to read per query
+     * @param callFlowUrl call flow url written on every row
+     * @param writers output file writers, keyed by file type
+     * @param subscriptionIdsJh JH subscriptions, only used when split is true
+     * @param specificStates states whose rows go to the specific state file
+     * @param split true if JH rows get their own file
+     * @return number of rows written, keyed by file type
+     * @throws IOException if reading, formatting or writing any block failed
+     */
+    Map<String, Integer> generate(DayOfTheWeek dow, DateTime timestamp, String requestTimestamp, // NO CHECKSTYLE More than 7 parameters
+                                  int maxQueryBlock, String callFlowUrl, Map<String, ? extends Writer> writers,
+                                  Set<String> subscriptionIdsJh, Set<Long> specificStates, boolean split)
+            throws IOException {
+        Timer timer = new Timer("row", "rows");
+        long maxId = subscriptionService.getMaxSubscriptionId();
+        List<long[]> ranges = idRanges(maxId, producerThreads * rangesPerProducer);
+        LOGGER.info("Generating fresh calls for {} over {} id ranges up to {}, {} producers, {} workers", dow,
+                ranges.size(), maxId, producerThreads, workerThreads);
+
+        BlockFormatter formatter = new BlockFormatter(requestTimestamp, callFlowUrl, writers.keySet(),
+                subscriptionIdsJh, specificStates, split);
+
+        ExecutorService producers = Executors.newFixedThreadPool(producerThreads);
+        ExecutorService workers = Executors.newFixedThreadPool(workerThreads);
+        Map<String, ExecutorService> fileWriters = new HashMap<>();
+        for (String fileType : writers.keySet()) {
+            fileWriters.put(fileType, Executors.newSingleThreadExecutor());
+        }
+
+        Map<String, Integer> recordsMap = new HashMap<>();
+        for (String fileType : writers.keySet()) {
+            recordsMap.put(fileType, 0);
+        }
+
+        try {
+            List<BlockingQueue<Future<FormattedBlock>>> queues = new ArrayList<>();
+            for (long[] range : ranges) {
+                BlockingQueue<Future<FormattedBlock>> queue = new ArrayBlockingQueue<>(queueDepth);
+                queues.add(queue);
+                producers.submit(new RangeReader(dow, timestamp, range[0], range[1], maxQueryBlock, queue, workers,
+                        formatter));
+            }
+
+            List<Future<?>> pendingWrites = new ArrayList<>();
+            int rows = 0;
+            for (BlockingQueue<Future<FormattedBlock>> queue : queues) {
+                Future<FormattedBlock> next = queue.take();
+                while (next != END_OF_RANGE) {
+                    FormattedBlock block = next.get();
+                    for (Map.Entry<String, CharArrayWriter> entry : block.buffers.entrySet()) {
+                        if (entry.getValue().size() == 0) {
+                            continue;
+                        }
+                        pendingWrites.add(fileWriters.get(entry.getKey()).submit(
+                                new BufferWrite(entry.getValue(), writers.get(entry.getKey()))));
+                        recordsMap.put(entry.getKey(), recordsMap.get(entry.getKey()) + block.counts.get(entry.getKey()));
+                    }
+                    for (FreshCallRowDto failed : block.failedRows) {
+                        alertService.create(failed.getSubscriptionId(), "IllegalStateException", failed.getError(),
+                                AlertType.HIGH, AlertStatus.NEW, 0, null);
+                        LOGGER.error(failed.getError());
+                    }
+                    rows += block.size;
+                    next = queue.take();
+                }
+            }
+
+            for (Future<?> write : pendingWrites) {
+                write.get();
+            }
+            LOGGER.info("Fresh calls: read {}, wrote {}", timer.frequency(rows), recordsMap);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating fresh calls", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error generating fresh calls", e.getCause());
+        } finally {
+            producers.shutdownNow();
+            workers.shutdownNow();
+            for (ExecutorService fileWriter : fileWriters.values()) {
+                fileWriter.shutdown();
+            }
+            awaitTermination(fileWriters.values());
+        }
+
+        return recordsMap;
+    }
+
+    private static void awaitTermination(Iterable<ExecutorService> executors) {
+        try {
+            for (ExecutorService executor : executors) {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Interrupted while waiting for target file writers", e);
+        }
+    }
+
+    /**
+     * Cut (0, maxId] in count contiguous ranges of equal width.
+     */
+    static List<long[]> idRanges(long maxId, int count) {
+        List<long[]> ranges = new ArrayList<>();
+        if (maxId <= 0) {
+            return ranges;
+        }
+        long width = Math.max(1, (maxId + count - 1) / count);
+        for (long from = 0; from < maxId; from += width) {
+            ranges.add(new long[] {from, Math.min(from + width, maxId)});
+        }
+        return ranges;
+    }
+
+
+    /**
+     * Reads one id range block by block and queues the formatting of each block. Always ends the range with
+     * END_OF_RANGE, a failure is queued as a failed block so the writer side sees it in order.
+     */
+    private class RangeReader implements Runnable {
+        private final DayOfTheWeek dow;
+        private final DateTime timestamp;
+        private final long fromId;
+        private final long toId;
+        private final int maxQueryBlock;
+        private final BlockingQueue<Future<FormattedBlock>> queue;
+        private final ExecutorService workers;
+        private final BlockFormatter formatter;
+
+        RangeReader(DayOfTheWeek dow, DateTime timestamp, long fromId, long toId, // NO CHECKSTYLE More than 7 parameters
+                    int maxQueryBlock, BlockingQueue<Future<FormattedBlock>> queue, ExecutorService workers,
+                    BlockFormatter formatter) {
+            this.dow = dow;
+            this.timestamp = timestamp;
+            this.fromId = fromId;
+            this.toId = toId;
+            this.maxQueryBlock = maxQueryBlock;
+            this.queue = queue;
+            this.workers = workers;
+            this.formatter = formatter;
+        }
+
+        @Override
+        public void run() {
+            try {
+                long offset = fromId;
+                while (true) {
+                    final List<FreshCallRowDto> rows = subscriptionService.findActiveFreshCallRowsForDay(dow,
+                            timestamp, offset, toId, maxQueryBlock);
+                    if (rows.isEmpty()) {
+                        break;
+                    }
+                    offset = rows.get(rows.size() - 1).getId();
+
+                    queue.put(workers.submit(new Callable<FormattedBlock>() {
+                        @Override
+                        public FormattedBlock call() throws IOException {
+                            return formatter.format(rows);
+                        }
+                    }));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (final RuntimeException e) {
+                LOGGER.error("Error reading subscriptions in id range ({}, {}]", fromId, toId, e);
+                FutureTask<FormattedBlock> failed = new FutureTask<>(new Callable<FormattedBlock>() {
+                    @Override
+                    public FormattedBlock call() {
+                        throw e;
+                    }
+                });
+                failed.run();
+                if (!offer(failed)) {
+                    return;
+                }
+            }
+            offer(END_OF_RANGE);
+        }
+
+        private boolean offer(Future<FormattedBlock> future) {
+            try {
+                queue.put(future);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+
+    /**
+     * Stateless (and therefore shareable across workers) row formatter: applies the same JH / specific state /
+     * everything else routing as the serial path.
+     */
+    private class BlockFormatter {
+        private final String requestTimestamp;
+        private final String callFlowUrl;
+        private final Set<String> fileTypes;
+        private final Set<String> subscriptionIdsJh;
+        private final Set<Long> specificStates;
+        private final boolean split;
+
+        BlockFormatter(String requestTimestamp, String callFlowUrl, Set<String> fileTypes, // NO CHECKSTYLE More than 7 parameters
+                       Set<String> subscriptionIdsJh, Set<Long> specificStates, boolean split) {
+            this.requestTimestamp = requestTimestamp;
+            this.callFlowUrl = callFlowUrl;
+            this.fileTypes = fileTypes;
+            this.subscriptionIdsJh = subscriptionIdsJh;
+            this.specificStates = specificStates;
+            this.split = split;
+        }
+
+        FormattedBlock format(List<FreshCallRowDto> rows) throws IOException {
+            FormattedBlock block = new FormattedBlock(fileTypes, rows.size());
+            for (FreshCallRowDto row : rows) {
+                if (row.isLastDayOfPack()) {
+                    continue;
+                }
+                if (row.getError() != null) {
+                    block.failedRows.add(row);
+                    continue;
+                }
+
+                String fileType;
+                if (split && subscriptionIdsJh.contains(row.getSubscriptionId())) {
+                    fileType = TargetFileServiceImpl.Jh;
+                } else if (specificStates.contains(row.getStateId())) {
+                    fileType = TargetFileServiceImpl.specific_non_Jh;
+                } else {
+                    fileType = TargetFileServiceImpl.non_Jh;
+                }
+
+                targetFileService.writeFreshCallRow(row, requestTimestamp, callFlowUrl,
+                        TargetFileServiceImpl.Jh.equals(fileType), block.buffers.get(fileType));
+                block.counts.put(fileType, block.counts.get(fileType) + 1);
+            }
+            return block;
+        }
+    }
+
+
+    /**
+     * The formatted rows of one block, one buffer per output file.
+     */
+    private static class FormattedBlock {
+        private final Map<String, CharArrayWriter> buffers = new HashMap<>();
+        private final Map<String, Integer> counts = new HashMap<>();
+        private final List<FreshCallRowDto> failedRows = new ArrayList<>();
+        private final int size;
+
+        FormattedBlock(Set<String> fileTypes, int size) {
+            for (String fileType : fileTypes) {
+                buffers.put(fileType, new CharArrayWriter());
+                counts.put(fileType, 0);
+            }
+            this.size = size;
+        }
+    }
+
+
+    private static class BufferWrite implements Callable<Void> {
+        private final CharArrayWriter buffer;
+        private final Writer writer;
+
+        BufferWrite(CharArrayWriter buffer, Writer writer) {
+            this.buffer = buffer;
+            this.writer = writer;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            buffer.writeTo(writer);
+            return null;
+        }
+    }
+}
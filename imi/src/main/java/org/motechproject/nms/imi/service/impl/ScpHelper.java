@@ -2,20 +2,63 @@ package org.motechproject.nms.imi.service.impl;
 
 
 import org.motechproject.nms.imi.exception.ExecException;
+import org.motechproject.nms.tracking.utils.SettingsHelper;
 import org.motechproject.server.config.SettingsFacade;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
- * Uses the operating system to scp & sort CDR files and scp OBD files
+ * Copies CDR files from and OBD files to the IMI share.
+ *
+ * How files are copied is picked for each remote directory by its {dir setting}.transfer setting (eg:
+ * imi.remote_cdr_dir.transfer): "command" (default) runs the imi.scp.from_command/imi.scp.to_command through the
+ * operating system, "stream" copies in the JVM when the directory is reachable from this host, see
+ * {@link StreamFileTransfer}, "sftp" copies in the JVM to/from the imi.sftp.host, see {@link SftpFileTransfer}.
+ *
+ * The "stream" and "sftp" copies are checked against the checksum IMI reported for the file, or the one of the file
+ * we generated, while they are streamed: a copy which doesn't match fails with a
+ * {@link org.motechproject.nms.imi.exception.ChecksumMismatchException}. The "command" copies are left to the checks
+ * which read the files anyway, see {@link CommandFileTransfer}.
  */
 public class ScpHelper {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScpHelper.class);
+
     private static final String SCP_FROM_COMMAND = "imi.scp.from_command";
     private static final String SCP_FROM_COMMAND_DEFAULT = "/bin/cp {src} {dst}";
     private static final String SCP_TO_COMMAND = "imi.scp.to_command";
     private static final String SCP_TO_COMMAND_DEFAULT = "/bin/cp {src} {dst}";
     private static final String SCP_TIMEOUT_SETTING = "imi.scp.timeout";
     private static final Long SCP_TIMEOUT_DEFAULT = 60000L;
+    private static final String SCP_PARALLEL_TRANSFERS = "imi.scp.parallel_transfers";
+    private static final int SCP_PARALLEL_TRANSFERS_DEFAULT = 2;
+    private static final long TRANSFER_THREAD_KEEP_ALIVE_SECONDS = 60;
+
+    private static final String TRANSFER_SUFFIX = ".transfer";
+    private static final String STREAM_TRANSFER = "stream";
+    private static final String SFTP_TRANSFER = "sftp";
+
+    private static final String SFTP_HOST = "imi.sftp.host";
+    private static final String SFTP_PORT = "imi.sftp.port";
+    private static final int SFTP_PORT_DEFAULT = 22;
+    private static final String SFTP_USER = "imi.sftp.user";
+    private static final String SFTP_PRIVATE_KEY = "imi.sftp.private_key";
+    private static final String SFTP_KNOWN_HOSTS = "imi.sftp.known_hosts";
 
     private static final String LOCAL_OBD_DIR = "imi.local_obd_dir";
 
@@ -31,6 +74,11 @@ public class ScpHelper {
     private static final String REMOTE_WHATSAPP_SMS_CDR_DIR = "imi.remote_whatsapp_sms_cdr_dir";
     private static final String REMOTE_WHATSAPP_CDR_DIR = "imi.remote_whatsapp_cdr_dir";
 
+    /**
+     * Runs the parallel CDR copies of every helper, its threads end once idle for a minute
+     */
+    private static final ThreadPoolExecutor TRANSFER_EXECUTOR = newTransferExecutor();
+
     private SettingsFacade settingsFacade;
 
 
@@ -48,20 +96,6 @@ public class ScpHelper {
     }
 
 
-    private String scpFromCommand(String src, String dst) {
-        String command = getSettingWithDefault(SCP_FROM_COMMAND, SCP_FROM_COMMAND_DEFAULT);
-
-        return command.replace("{src}", src).replace("{dst}", dst);
-    }
-
-
-    private String scpToCommand(String src, String dst) {
-        String command = getSettingWithDefault(SCP_TO_COMMAND, SCP_TO_COMMAND_DEFAULT);
-
-        return command.replace("{src}", src).replace("{dst}", dst);
-    }
-
-
     private Long getScpTimeout() {
         try {
             return Long.parseLong(settingsFacade.getProperty(SCP_TIMEOUT_SETTING));
@@ -108,30 +142,66 @@ public class ScpHelper {
     }
 
 
-    public void scpCdrFromRemote(String file) throws ExecException {
-
-        String localDir = settingsFacade.getProperty(LOCAL_CDR_DIR);
-
-        String command = scpFromCommand(remoteCdrFile(file), localDir);
-        ExecHelper execHelper = new ExecHelper();
-        execHelper.exec(command, getScpTimeout());
+    public void scpCdrFromRemote(String file, String checksum) throws ExecException {
+        fromRemote(REMOTE_CDR_DIR, remoteCdrFile(file), LOCAL_CDR_DIR, localCdrFile(file), checksum);
     }
 
-    public void scpWhatsAppSMSCdrFromRemote(String file) throws ExecException {
-
-        String localDir = settingsFacade.getProperty(LOCAL_WHATSAPP_SMS_CDR_DIR);
-
-        String command = scpFromCommand(remoteWhatsAppSMSCdrFile(file), localDir);
-        ExecHelper execHelper = new ExecHelper();
-        execHelper.exec(command, getScpTimeout());
+    /**
+     * Copies CDR files from the IMI share in parallel, up to imi.scp.parallel_transfers at a time across all the
+     * helpers, over one transfer, eg: one SSH session
+     *
+     * @param checksums the files to copy, with the checksum each must have
+     * @return the error of each file that could not be copied, empty if all were
+     */
+    public Map<String, ExecException> scpCdrsFromRemote(Map<String, String> checksums) {
+        List<String> files = new ArrayList<>(checksums.keySet());
+        setParallelTransfers(SettingsHelper.getPositiveInteger(settingsFacade, SCP_PARALLEL_TRANSFERS,
+                SCP_PARALLEL_TRANSFERS_DEFAULT));
+
+        final FileTransfer transfer = getTransfer(REMOTE_CDR_DIR,
+                getSettingWithDefault(SCP_FROM_COMMAND, SCP_FROM_COMMAND_DEFAULT), false);
+        try {
+            List<Future<Void>> transfers = new ArrayList<>();
+            for (final Map.Entry<String, String> file : checksums.entrySet()) {
+                transfers.add(TRANSFER_EXECUTOR.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws ExecException {
+                        copyFromRemote(transfer, remoteCdrFile(file.getKey()), LOCAL_CDR_DIR,
+                                localCdrFile(file.getKey()), file.getValue());
+                        return null;
+                    }
+                }));
+            }
+
+            Map<String, ExecException> errors = new LinkedHashMap<>();
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    transfers.get(i).get();
+                } catch (ExecutionException e) {
+                    errors.put(files.get(i), e.getCause() instanceof ExecException ? (ExecException) e.getCause() :
+                            new ExecException(String.format("Error copying %s: %s", files.get(i),
+                                    e.getCause().getMessage()), e.getCause()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    transfers.get(i).cancel(true);
+                    errors.put(files.get(i), new ExecException(String.format("Interrupted copying %s",
+                            files.get(i)), e));
+                }
+            }
+            return errors;
+        } finally {
+            transfer.close();
+        }
     }
 
-    public void scpWhatsAppCdrFromRemote(String file) throws ExecException {
+    public void scpWhatsAppSMSCdrFromRemote(String file, String checksum) throws ExecException {
+        fromRemote(REMOTE_WHATSAPP_SMS_CDR_DIR, remoteWhatsAppSMSCdrFile(file), LOCAL_WHATSAPP_SMS_CDR_DIR,
+                localFile(LOCAL_WHATSAPP_SMS_CDR_DIR, file), checksum);
+    }
 
-        String localDir = settingsFacade.getProperty(LOCAL_WHATSAPP_CDR_DIR);
-        String command = scpFromCommand(remoteWhatsAppCdrFile(file), localDir);
-        ExecHelper execHelper = new ExecHelper();
-        execHelper.exec(command, getScpTimeout());
+    public void scpWhatsAppCdrFromRemote(String file, String checksum) throws ExecException {
+        fromRemote(REMOTE_WHATSAPP_CDR_DIR, remoteWhatsAppCdrFile(file), LOCAL_WHATSAPP_CDR_DIR,
+                localFile(LOCAL_WHATSAPP_CDR_DIR, file), checksum);
     }
 
     public String localObdFile(String file) {
@@ -156,31 +226,122 @@ public class ScpHelper {
     }
 
 
-    public void scpObdToRemote(String file) throws ExecException {
+    public void scpObdToRemote(String file, String checksum) throws ExecException {
+        toRemote(localObdFile(file), REMOTE_OBD_DIR, checksum);
+    }
+
+    public void scpWhatsAppObdToRemote(String file, String checksum) throws ExecException {
+        toRemote(localWhatsAppObdFile(file), REMOTE_OBD_DIR_WHATSAPP, checksum);
+    }
+
+
+    public void scpWhatsAppToRemote(String file, String checksum) throws ExecException {
+        toRemote(localWhatsAppSMSOBDFile(file), REMOTE_WHATSAPP_SMS_OBD_DIR, checksum);
+    }
+
+
+    private void fromRemote(String remoteDirSetting, String remoteFile, String localDirSetting, String localFile,
+                            String checksum) throws ExecException {
+        FileTransfer transfer = getTransfer(remoteDirSetting,
+                getSettingWithDefault(SCP_FROM_COMMAND, SCP_FROM_COMMAND_DEFAULT), false);
+        try {
+            copyFromRemote(transfer, remoteFile, localDirSetting, localFile, checksum);
+        } finally {
+            transfer.close();
+        }
+    }
 
-        String remoteDir = settingsFacade.getProperty(REMOTE_OBD_DIR);
 
-        String command = scpToCommand(localObdFile(file), remoteDir);
-        ExecHelper execHelper = new ExecHelper();
-        execHelper.exec(command, getScpTimeout());
+    private void copyFromRemote(FileTransfer transfer, String remoteFile, String localDirSetting, String localFile,
+                                String checksum) throws ExecException {
+        log(transfer.transfer(remoteFile, settingsFacade.getProperty(localDirSetting), new File(localFile),
+                checksum));
     }
 
-    public void scpWhatsAppObdToRemote(String file) throws ExecException {
 
-        String remoteDir = settingsFacade.getProperty(REMOTE_OBD_DIR_WHATSAPP);
+    private void toRemote(String localFile, String remoteDirSetting, String checksum) throws ExecException {
+        FileTransfer transfer = getTransfer(remoteDirSetting,
+                getSettingWithDefault(SCP_TO_COMMAND, SCP_TO_COMMAND_DEFAULT), true);
+        try {
+            log(transfer.transfer(localFile, settingsFacade.getProperty(remoteDirSetting), new File(localFile),
+                    checksum));
+        } finally {
+            transfer.close();
+        }
+    }
+
 
-        String command = scpToCommand(localWhatsAppObdFile(file), remoteDir);
-        ExecHelper execHelper = new ExecHelper();
-        execHelper.exec(command, getScpTimeout());
+    private FileTransfer getTransfer(String remoteDirSetting, String command, boolean upload) {
+        String transfer = settingsFacade.getProperty(remoteDirSetting + TRANSFER_SUFFIX);
+        if (STREAM_TRANSFER.equalsIgnoreCase(transfer)) {
+            return new StreamFileTransfer();
+        }
+        if (SFTP_TRANSFER.equalsIgnoreCase(transfer)) {
+            return new SftpFileTransfer(settingsFacade.getProperty(SFTP_HOST),
+                    getIntegerSetting(SFTP_PORT, SFTP_PORT_DEFAULT), settingsFacade.getProperty(SFTP_USER),
+                    settingsFacade.getProperty(SFTP_PRIVATE_KEY), settingsFacade.getProperty(SFTP_KNOWN_HOSTS),
+                    getScpTimeout().intValue(), upload);
+        }
+        return new CommandFileTransfer(command, getScpTimeout());
     }
 
 
-    public void scpWhatsAppToRemote(String file) throws ExecException {
+    private void log(TransferResult result) {
+        if (result.getChecksum() == null) {
+            LOGGER.info("Copied {}", result);
+        } else {
+            LOGGER.info("Copied {}, checksum {}", result, result.getChecksum());
+        }
+    }
 
-        String remoteDir = settingsFacade.getProperty(REMOTE_WHATSAPP_SMS_OBD_DIR);
 
-        String command = scpToCommand(localWhatsAppSMSOBDFile(file), remoteDir);
-        ExecHelper execHelper = new ExecHelper();
-        execHelper.exec(command, getScpTimeout());
+    /**
+     * Resizes the shared executor when imi.scp.parallel_transfers changed, growing the maximum before the core size
+     * and shrinking it after, as the executor requires core <= maximum at all times
+     */
+    private static void setParallelTransfers(int parallelTransfers) {
+        synchronized (TRANSFER_EXECUTOR) {
+            if (parallelTransfers > TRANSFER_EXECUTOR.getMaximumPoolSize()) {
+                TRANSFER_EXECUTOR.setMaximumPoolSize(parallelTransfers);
+                TRANSFER_EXECUTOR.setCorePoolSize(parallelTransfers);
+            } else if (parallelTransfers < TRANSFER_EXECUTOR.getMaximumPoolSize()) {
+                TRANSFER_EXECUTOR.setCorePoolSize(parallelTransfers);
+                TRANSFER_EXECUTOR.setMaximumPoolSize(parallelTransfers);
+            }
+        }
+    }
+
+
+    private static ThreadPoolExecutor newTransferExecutor() {
+        final AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(SCP_PARALLEL_TRANSFERS_DEFAULT,
+                SCP_PARALLEL_TRANSFERS_DEFAULT, TRANSFER_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "nms-imi-transfer-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+
+    private String localFile(String localDirSetting, String file) {
+        String localFile = settingsFacade.getProperty(localDirSetting);
+        localFile += localFile.endsWith("/") ? "" : "/";
+        localFile += file;
+        return localFile;
+    }
+
+
+    private int getIntegerSetting(String setting, int defaultValue) {
+        try {
+            return Integer.parseInt(settingsFacade.getProperty(setting));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
     }
 }
@@ -0,0 +1,225 @@
+package org.motechproject.nms.imi.service.impl;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
+import org.motechproject.nms.imi.exception.ChecksumMismatchException;
+import org.motechproject.nms.imi.exception.ExecException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+
+/**
+ * Copies files between the IMI host and this host over SFTP, in the JVM, instead of running scp.
+ *
+ * As with {@link StreamFileTransfer} the copy is written to a .part file next to its destination, on whichever host
+ * that is, and renamed once complete. An interrupted copy is resumed from where its .part file stopped, unless the
+ * source changed since. The MD5 of the file is computed while it is streamed and the copy is discarded if it doesn't
+ * match the expected checksum.
+ *
+ * The SSH session is opened by the first copy and shared by the following ones, each over its own SFTP channel, until
+ * the transfer is closed.
+ */
+public class SftpFileTransfer implements FileTransfer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SftpFileTransfer.class);
+
+    private static final String PART_SUFFIX = ".part";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long MILLIS_PER_SEC = 1000L;
+    private static final int NO_SUCH_FILE = ChannelSftp.SSH_FX_NO_SUCH_FILE;
+
+    private final String host;
+    private final int port;
+    private final String user;
+    private final String privateKey;
+    private final String knownHosts;
+    private final int timeout;
+    private final boolean upload;
+    private Session session;
+
+    /**
+     * @param upload true to copy local files to the remote host, false to copy remote files to this host
+     */
+    public SftpFileTransfer(String host, int port, String user, String privateKey, String knownHosts, // NO CHECKSTYLE More than 7 parameters
+                            int timeout, boolean upload) {
+        this.host = host;
+        this.port = port;
+        this.user = user;
+        this.privateKey = privateKey;
+        this.knownHosts = knownHosts;
+        this.timeout = timeout;
+        this.upload = upload;
+    }
+
+    @Override
+    public TransferResult transfer(String source, String destinationDir, File localFile, String expectedChecksum)
+            throws ExecException {
+        long start = System.currentTimeMillis();
+        ChannelSftp channel = null;
+        try {
+            channel = (ChannelSftp) getSession().openChannel("sftp");
+            channel.connect(timeout);
+
+            return upload ? upload(channel, source, destinationDir, expectedChecksum, start) :
+                    download(channel, source, destinationDir, expectedChecksum, start);
+        } catch (JSchException | SftpException | IOException e) {
+            throw new ExecException(String.format("Error copying %s to %s:%s: %s", source, host, destinationDir,
+                    e.getMessage()), e);
+        } finally {
+            if (channel != null) {
+                channel.disconnect();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (session != null) {
+            session.disconnect();
+            session = null;
+        }
+    }
+
+    /**
+     * @return the session shared by the copies, connected again if the server closed it
+     */
+    private synchronized Session getSession() throws JSchException {
+        if (session == null || !session.isConnected()) {
+            JSch jsch = new JSch();
+            jsch.setKnownHosts(knownHosts);
+            jsch.addIdentity(privateKey);
+            session = jsch.getSession(user, host, port);
+            session.connect(timeout);
+        }
+        return session;
+    }
+
+    private TransferResult download(ChannelSftp channel, String source, String destinationDir,
+                                    String expectedChecksum, long start) throws SftpException, IOException,
+            ExecException {
+        String name = new File(source).getName();
+        File dst = new File(destinationDir, name);
+        File part = new File(destinationDir, name + PART_SUFFIX);
+        SftpATTRS attrs = channel.stat(source);
+        MessageDigest digest = ChecksumHelper.md5Digest();
+
+        long resumed = 0;
+        if (part.exists()) {
+            if (part.length() > attrs.getSize() || part.lastModified() < attrs.getMTime() * MILLIS_PER_SEC) {
+                LOGGER.info("Discarding {}, {} changed since it was copied", part, source);
+                Files.delete(part.toPath());
+            } else {
+                try (InputStream in = new FileInputStream(part)) {
+                    update(digest, in, null);
+                }
+                resumed = part.length();
+                LOGGER.info("Resuming the copy of {} after {} bytes", source, resumed);
+            }
+        }
+
+        try (InputStream in = channel.get(source, null, resumed);
+             FileOutputStream out = new FileOutputStream(part, resumed > 0)) {
+            update(digest, in, out);
+            out.getFD().sync();
+        }
+
+        String checksum = ChecksumHelper.checksum(digest);
+        if (!ChecksumHelper.matches(expectedChecksum, checksum)) {
+            Files.delete(part.toPath());
+            throw new ChecksumMismatchException(name, expectedChecksum, checksum);
+        }
+        Files.move(part.toPath(), dst.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        return new TransferResult(source, dst.length(), resumed, System.currentTimeMillis() - start, checksum);
+    }
+
+    private TransferResult upload(ChannelSftp channel, String source, String destinationDir, String expectedChecksum,
+                                  long start) throws SftpException, IOException, ExecException {
+        File src = new File(source);
+        String dir = destinationDir.endsWith("/") ? destinationDir : destinationDir + "/";
+        String dst = dir + src.getName();
+        String part = dst + PART_SUFFIX;
+        MessageDigest digest = ChecksumHelper.md5Digest();
+
+        long resumed = 0;
+        SftpATTRS partAttrs = stat(channel, part);
+        if (partAttrs != null) {
+            if (partAttrs.getSize() > src.length() || partAttrs.getMTime() * MILLIS_PER_SEC < src.lastModified()) {
+                LOGGER.info("Discarding {}:{}, {} changed since it was copied", host, part, source);
+                channel.rm(part);
+            } else {
+                resumed = partAttrs.getSize();
+                LOGGER.info("Resuming the copy of {} after {} bytes", source, resumed);
+            }
+        }
+
+        try (FileInputStream in = new FileInputStream(src);
+             OutputStream out = channel.put(part, null, resumed > 0 ? ChannelSftp.APPEND : ChannelSftp.OVERWRITE)) {
+            // the bytes already copied are fed to the digest, not sent again
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long skipped = 0;
+            while (skipped < resumed) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, resumed - skipped));
+                if (read == -1) {
+                    break;
+                }
+                digest.update(buffer, 0, read);
+                skipped += read;
+            }
+            update(digest, in, out);
+        }
+
+        String checksum = ChecksumHelper.checksum(digest);
+        if (!ChecksumHelper.matches(expectedChecksum, checksum)) {
+            channel.rm(part);
+            throw new ChecksumMismatchException(src.getName(), expectedChecksum, checksum);
+        }
+        if (stat(channel, dst) != null) {
+            channel.rm(dst);
+        }
+        channel.rename(part, dst);
+
+        return new TransferResult(source, src.length(), resumed, System.currentTimeMillis() - start, checksum);
+    }
+
+    /**
+     * @return the attributes of the remote file, null if it doesn't exist
+     */
+    private SftpATTRS stat(ChannelSftp channel, String path) throws SftpException {
+        try {
+            return channel.stat(path);
+        } catch (SftpException e) {
+            if (e.id == NO_SUCH_FILE) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Feeds what is read to the digest and copies it to out, if any
+     */
+    private static void update(MessageDigest digest, InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+            if (out != null) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+}
@@ -58,10 +58,14 @@ public class SmsNotificationServiceImpl implements SmsNotificationService {
 
     private SettingsFacade settingsFacade;
 
+    private ExponentialRetrySender exponentialRetrySender;
+
     @Autowired
-    public SmsNotificationServiceImpl(AlertService alertService, SettingsFacade settingsFacade) {
+    public SmsNotificationServiceImpl(AlertService alertService, SettingsFacade settingsFacade,
+                                      ExponentialRetrySender exponentialRetrySender) {
         this.alertService = alertService;
         this.settingsFacade = settingsFacade;
+        this.exponentialRetrySender = exponentialRetrySender;
     }
 
     /**
@@ -82,8 +86,7 @@ public class SmsNotificationServiceImpl implements SmsNotificationService {
             return false;
         }
 
-        ExponentialRetrySender sender = new ExponentialRetrySender(settingsFacade, alertService);
-        return sender.sendNotificationRequest(httpPost, HttpStatus.SC_CREATED, ALERT_ID, ALERT_NAME);
+        return exponentialRetrySender.sendNotificationRequest(httpPost, HttpStatus.SC_CREATED, ALERT_ID, ALERT_NAME);
     }
 
     public HttpPost prepareSmsRequest(Long callingNumber, Map<String, String> smsParams) {
@@ -0,0 +1,99 @@
+package org.motechproject.nms.imi.service.impl;
+
+import org.motechproject.nms.imi.exception.ChecksumMismatchException;
+import org.motechproject.nms.imi.exception.ExecException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+
+/**
+ * Copies files between directories this host can reach (local, or a mounted share) without starting a process.
+ *
+ * The copy is written to a .part file next to its destination and renamed once complete, the MD5 of the file is
+ * computed while it is streamed and the copy is discarded if it doesn't match the expected checksum. A .part file left by an interrupted copy of the same source is resumed from where
+ * it stopped, unless the source changed since.
+ */
+public class StreamFileTransfer implements FileTransfer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StreamFileTransfer.class);
+
+    private static final String PART_SUFFIX = ".part";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Override
+    public TransferResult transfer(String source, String destinationDir, File localFile, String expectedChecksum)
+            throws ExecException {
+        File src = new File(source);
+        File dst = new File(destinationDir, src.getName());
+        File part = new File(destinationDir, src.getName() + PART_SUFFIX);
+        long start = System.currentTimeMillis();
+
+        try {
+            MessageDigest digest = ChecksumHelper.md5Digest();
+            long resumed = resume(src, part, digest);
+            byte[] buffer = new byte[BUFFER_SIZE];
+
+            try (FileInputStream in = new FileInputStream(src);
+                 FileOutputStream out = new FileOutputStream(part, resumed > 0)) {
+                in.getChannel().position(resumed);
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+                out.getFD().sync();
+            }
+
+            String checksum = ChecksumHelper.checksum(digest);
+            if (!ChecksumHelper.matches(expectedChecksum, checksum)) {
+                Files.delete(part.toPath());
+                throw new ChecksumMismatchException(src.getName(), expectedChecksum, checksum);
+            }
+            Files.move(part.toPath(), dst.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+            return new TransferResult(source, dst.length(), resumed, System.currentTimeMillis() - start, checksum);
+        } catch (IOException e) {
+            throw new ExecException(String.format("Error copying %s to %s: %s", source, destinationDir,
+                    e.getMessage()), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        // nothing is kept open between copies
+    }
+
+    /**
+     * Feeds the bytes an interrupted copy already wrote to the digest
+     *
+     * @return how many bytes of the source are already copied
+     */
+    private long resume(File src, File part, MessageDigest digest) throws IOException {
+        if (!part.exists()) {
+            return 0;
+        }
+        if (part.length() > src.length() || part.lastModified() < src.lastModified()) {
+            LOGGER.info("Discarding {}, {} changed since it was copied", part, src);
+            Files.delete(part.toPath());
+            return 0;
+        }
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(part)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        LOGGER.info("Resuming the copy of {} after {} bytes", src, part.length());
+        return part.length();
+    }
+}
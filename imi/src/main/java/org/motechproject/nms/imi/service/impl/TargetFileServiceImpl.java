@@ -27,6 +27,7 @@ import org.motechproject.nms.imi.service.contract.TargetFileNotification;
 import org.motechproject.nms.imi.web.contract.FileProcessedStatusRequest;
 import org.motechproject.nms.kilkari.domain.*;
 import org.motechproject.nms.kilkari.domain.WhatsAppOptSMS;
+import org.motechproject.nms.kilkari.dto.FreshCallRowDto;
 import org.motechproject.nms.kilkari.repository.WhatsAppOptSMSDataService;
 import org.motechproject.nms.kilkari.service.CallRetryService;
 import org.motechproject.nms.kilkari.service.SubscriptionService;
@@ -45,10 +46,12 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.jdo.Query;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.*;
 
@@ -84,9 +87,15 @@ public class TargetFileServiceImpl implements TargetFileService {
     private static final String IMI_RETRY_CHECK_DND_JH = "imi.retry_check_dnd_jh";
     private static final String IMI_RETRY_NO_CHECK_DND_JH = "imi.retry_no_check_dnd_jh";
     private static final String generateJhFile = "imi.obd_bifurcate";
-    private static final String Jh = "JH";
-    private static final String specific_non_Jh = "SPECIFIC_NON-JH";
-    private static final String non_Jh = "NON-JH";
+    static final String Jh = "JH";
+    static final String specific_non_Jh = "SPECIFIC_NON-JH";
+    static final String non_Jh = "NON-JH";
+    private static final String OBD_PARALLEL_GENERATION = "imi.obd_parallel_generation";
+    private static final String OBD_PRODUCER_THREADS = "imi.obd_producer_threads";
+    private static final String OBD_WORKER_THREADS = "imi.obd_worker_threads";
+    private static final String OBD_RANGES_PER_PRODUCER = "imi.obd_ranges_per_producer";
+    private static final String OBD_BLOCKS_IN_FLIGHT = "imi.obd_blocks_in_flight";
+    private static final String OBD_WRITE_BUFFER_SIZE = "imi.obd_write_buffer_size";
 
     private static final int PROGRESS_INTERVAL = 10000;
 
@@ -97,6 +106,11 @@ public class TargetFileServiceImpl implements TargetFileService {
     private static final String DEFAULT_CIRCLE = "99";  // https://applab.atlassian.net/browse/NIP-64
     public static final String WROTE = "Wrote {}";
     private static final int DAYS_IN_WEEK = 7;
+    private static final int DEFAULT_OBD_PRODUCER_THREADS = 4;
+    private static final int DEFAULT_OBD_WORKER_THREADS = 4;
+    private static final int DEFAULT_OBD_RANGES_PER_PRODUCER = 4;
+    private static final int DEFAULT_OBD_BLOCKS_IN_FLIGHT = 4;
+    private static final int DEFAULT_OBD_WRITE_BUFFER_SIZE = 1048576;
 
     private SettingsFacade settingsFacade;
     private MotechSchedulerService schedulerService;
@@ -106,6 +120,7 @@ public class TargetFileServiceImpl implements TargetFileService {
     private CallRetryService callRetryService;
     private FileAuditRecordDataService fileAuditRecordDataService;
     private WhatsAppOptSMSDataService whatsAppOptSMSDataService;
+    private ExponentialRetrySender exponentialRetrySender;
     private static String freshCheckDND;
     private static String freshNoCheckDND;
     private static String retryCheckDND;
@@ -204,7 +219,8 @@ public class TargetFileServiceImpl implements TargetFileService {
                                  CallRetryService callRetryService,
                                  FileAuditRecordDataService fileAuditRecordDataService,
                                  WhatsAppOptSMSDataService whatsAppOptSMSDataService,
-                                 SubscriptionTimeSlotService subscriptionTimeSlotService) {
+                                 SubscriptionTimeSlotService subscriptionTimeSlotService,
+                                 ExponentialRetrySender exponentialRetrySender) {
         this.schedulerService = schedulerService;
         this.settingsFacade = settingsFacade;
         this.alertService = alertService;
@@ -212,6 +228,7 @@ public class TargetFileServiceImpl implements TargetFileService {
         this.callRetryService = callRetryService;
         this.fileAuditRecordDataService = fileAuditRecordDataService;
         this.whatsAppOptSMSDataService = whatsAppOptSMSDataService;
+        this.exponentialRetrySender = exponentialRetrySender;
         this.subscriptionTimeSlotService = subscriptionTimeSlotService;
 
         scheduleTargetFileGeneration();
@@ -436,7 +453,7 @@ public class TargetFileServiceImpl implements TargetFileService {
     private void writeSubscriptionRow(String requestId, String serviceId, // NO CHECKSTYLE More than 7 parameters
                                       String msisdn, String priority, String callFlowUrl, String contentFileName,
                                       String weekId, String languageLocationCode, String circle,
-                                      String subscriptionOrigin, OutputStreamWriter writer, Boolean needsWelcomeOptInForWP,
+                                      String subscriptionOrigin, Writer writer, Boolean needsWelcomeOptInForWP,
                                       String timestamp1, String timestamp2, String timestamp3)throws IOException {
         /*
          * #1 RequestId
@@ -569,110 +586,57 @@ public class TargetFileServiceImpl implements TargetFileService {
 
         LOGGER.info("generateFreshCallsObd({})", timestamp);
 
+        if (parallelGeneration()) {
+            return generateFreshCallsParallel(timestamp, maxQueryBlock, callFlowUrl, wr, subscriptionIdsJh, split);
+        }
+
         int skippedrecords = 0;
 
         DayOfTheWeek dow = DayOfTheWeek.fromDateTime(timestamp);
+        String requestTimestamp = TIME_FORMATTER.print(timestamp);
         HashMap<String, Integer> recordsMap = new HashMap<>();
         int recordsWritten = 0;
         int recordsWrittenSpecific = 0;
         int recordsWrittenJh = 0;
-        Long offset = 0L;
-        List<Long> specificStateList = getSpecificStateList();
+        long offset = 0L;
+        Set<String> jhSubscriptionIds = new HashSet<>(subscriptionIdsJh);
+        Set<Long> specificStates = new HashSet<>(getSpecificStateList());
         do {
-            List<Subscription> subscriptions = subscriptionService.findActiveSubscriptionsForDay(dow, offset, maxQueryBlock);
-            LOGGER.info("Subs_block_size"  + subscriptions.size());
-            if (subscriptions.size() == 0) {
+            List<FreshCallRowDto> rows = subscriptionService.findActiveFreshCallRowsForDay(dow, timestamp, offset,
+                    Long.MAX_VALUE, maxQueryBlock);
+            LOGGER.info("Subs_block_size"  + rows.size());
+            if (rows.size() == 0) {
                 break;
             }
 
-            List<String> subscriptionIds = new ArrayList<>();
-            for (Subscription subscription : subscriptions) {
-                subscriptionIds.add(subscription.getSubscriptionId());
-            }
-
-            List<SubscriptionTimeSlot> timeSlots = null;
-
-            try {
-                timeSlots = subscriptionTimeSlotService.findTimeSlotsForSubscriptionsById(subscriptionIds);
-
-                }catch (Exception e){
-                LOGGER.error("Error finding time slots for subscriptions", e);
+            for (FreshCallRowDto row : rows) {
+                offset = row.getId();
+
+                if (row.isLastDayOfPack()) {
+                    //
+                    // Do not add subscriptions on their last day to the fresh call list since we
+                    // will try to fetch message for current +1 week, which wouldn't exist
+                    // See https://applab.atlassian.net/browse/NMS-301
+                    //
+                    skippedrecords++;
+                    continue;
                 }
-            if(timeSlots==null){
-                continue;
-            }
-
-
-            Map<String, SubscriptionTimeSlot> timeSlotMap = new HashMap<>();
-            for (SubscriptionTimeSlot timeSlot : timeSlots) {
-                timeSlotMap.put(timeSlot.getSubscriptionId(), timeSlot);
-            }
-
-            for (Subscription subscription : subscriptions) {
-//                LOGGER.debug("Handling Subscription " + subscription.getId());
-                offset = subscription.getId();
-
-                Subscriber subscriber = subscription.getSubscriber();
-                Long stateID = subscriber.getMother() == null ? subscriber.getChild().getState().getId() : subscriber.getMother().getState().getId();
-
-                RequestId requestId = new RequestId(subscription.getSubscriptionId(), TIME_FORMATTER.print(timestamp));
-
-                try {
-                    SubscriptionPack pack = subscription.getSubscriptionPack();
-                    int daysIntoPack = Days.daysBetween(subscription.getStartDate(), timestamp).getDays();
-                    if (daysIntoPack == pack.getWeeks() * 7) {
-                        //
-                        // Do not add subscriptions on their last day to the fresh call list since we
-                        // will try to fetch message for current +1 week, which wouldn't exist
-                        // See https://applab.atlassian.net/browse/NMS-301
-                        //
-                        /*LOGGER.debug("Ignoring last day for subscription {} from fresh calls.",
-                                subscription.getSubscriptionId());*/
-                        skippedrecords++;
-                        continue;
-                    }
-
-                    SubscriptionPackMessage msg = subscription.nextScheduledMessage(timestamp);
-
-                    SubscriptionTimeSlot timeSlot = timeSlotMap.get(subscription.getSubscriptionId());
-                    String timeStamp1 = timeSlot != null ? timeSlot.getTimeStamp1() != null ? timeSlot.getTimeStamp1().toString() : "" : "";
-                    String timeStamp2 = timeSlot != null ? timeSlot.getTimeStamp2() != null ? timeSlot.getTimeStamp2().toString() : "" : "";
-                    String timeStamp3 = timeSlot != null ? timeSlot.getTimeStamp3() != null ? timeSlot.getTimeStamp3().toString() : "" : "";
-
-
-
-                    if(split && subscriptionIdsJh.contains(subscription.getSubscriptionId())) {
-                            writeSubscriptionRow(
-                                    requestId.toString(),
-                                    serviceIdFromOriginJh(true, subscription.getOrigin()),
-                                    subscriber.getCallingNumber().toString(),
-                                    HIGH_PRIORITY, //todo: how do we choose a priority?
-                                    callFlowUrl,
-                                    msg.getMessageFileName(),
-                                    msg.getWeekId(),
-                                    // we are happy with empty language and circle since they are optional
-                                    subscriber.getLanguage() == null ? "" : subscriber.getLanguage().getCode(),
-                                    subscriber.getCircle() == null ? "" : subscriber.getCircle().getName(),
-                                    subscription.getOrigin().getCode(),
-                                    wr.get(Jh),
-                                    subscription.isNeedsWelcomeOptInForWP(),
-                                    timeStamp1,
-                                    timeStamp2,
-                                    timeStamp3);
-                            recordsWrittenJh++;
-                        }
-                    else if(specificStateList.contains(stateID)){
-                        recordsWrittenSpecific = getRecordsWritten(callFlowUrl, wr, recordsWrittenSpecific, subscription, subscriber, requestId, msg, specific_non_Jh,timeStamp1,timeStamp2,timeStamp3);
-                    }
-                    else {
-                        recordsWritten = getRecordsWritten(callFlowUrl, wr, recordsWritten, subscription, subscriber, requestId, msg, non_Jh,timeStamp1,timeStamp2,timeStamp3);
-
-                    }
-                } catch (IllegalStateException se) {
-                    String message = se.toString();
-                    alertService.create(subscription.getSubscriptionId(), "IllegalStateException", message,
+                if (row.getError() != null) {
+                    alertService.create(row.getSubscriptionId(), "IllegalStateException", row.getError(),
                             AlertType.HIGH, AlertStatus.NEW, 0, null);
-                    LOGGER.error(message,se);
+                    LOGGER.error(row.getError());
+                    continue;
+                }
+
+                if (split && jhSubscriptionIds.contains(row.getSubscriptionId())) {
+                    writeFreshCallRow(row, requestTimestamp, callFlowUrl, true, wr.get(Jh));
+                    recordsWrittenJh++;
+                } else if (specificStates.contains(row.getStateId())) {
+                    writeFreshCallRow(row, requestTimestamp, callFlowUrl, false, wr.get(specific_non_Jh));
+                    recordsWrittenSpecific++;
+                } else {
+                    writeFreshCallRow(row, requestTimestamp, callFlowUrl, false, wr.get(non_Jh));
+                    recordsWritten++;
                 }
             }
 
@@ -688,26 +652,72 @@ public class TargetFileServiceImpl implements TargetFileService {
         return recordsMap;
     }
 
-    private int getRecordsWritten(String callFlowUrl, HashMap<String, OutputStreamWriter> wr, int recordsWrittenJh, Subscription subscription, Subscriber subscriber, RequestId requestId, SubscriptionPackMessage msg, String specific_non_jh,String timeStamp1,String timeStamp2,String timeStamp3) throws IOException {
+    private boolean parallelGeneration() {
+        return "true".equalsIgnoreCase(settingsFacade.getProperty(OBD_PARALLEL_GENERATION));
+    }
+
+    private int getIntProperty(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(settingsFacade.getProperty(key));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Pipelined equivalent of the serial fresh call loop, see {@link FreshCallPipeline}. Produces the same rows in the
+     * same order, in the same files.
+     */
+    private HashMap<String, Integer> generateFreshCallsParallel(DateTime timestamp, int maxQueryBlock, String callFlowUrl,
+                                                                HashMap<String, OutputStreamWriter> wr,
+                                                                List<String> subscriptionIdsJh, boolean split)
+            throws IOException {
+        FreshCallPipeline pipeline = new FreshCallPipeline(this, subscriptionService, alertService,
+                getIntProperty(OBD_PRODUCER_THREADS, DEFAULT_OBD_PRODUCER_THREADS),
+                getIntProperty(OBD_WORKER_THREADS, DEFAULT_OBD_WORKER_THREADS),
+                getIntProperty(OBD_RANGES_PER_PRODUCER, DEFAULT_OBD_RANGES_PER_PRODUCER),
+                getIntProperty(OBD_BLOCKS_IN_FLIGHT, DEFAULT_OBD_BLOCKS_IN_FLIGHT));
+
+        Map<String, Integer> written = pipeline.generate(DayOfTheWeek.fromDateTime(timestamp), timestamp,
+                TIME_FORMATTER.print(timestamp), maxQueryBlock, callFlowUrl, wr, new HashSet<>(subscriptionIdsJh),
+                new HashSet<>(getSpecificStateList()), split);
+
+        HashMap<String, Integer> recordsMap = new HashMap<>();
+        LOGGER.info(WROTE+non_Jh, written.get(non_Jh));
+        recordsMap.put(non_Jh, written.get(non_Jh));
+        recordsMap.put(specific_non_Jh, written.get(specific_non_Jh));
+        if (split) {
+            LOGGER.info(WROTE+Jh, written.get(Jh));
+            recordsMap.put(Jh, written.get(Jh));
+        }
+        return recordsMap;
+    }
+
+    /**
+     * Writes one fresh call row, to the JH file or to one of the non JH files
+     */
+    void writeFreshCallRow(FreshCallRowDto row, String requestTimestamp, String callFlowUrl, boolean jh, Writer writer)
+            throws IOException {
+        String timeStamp1 = row.getTimeStamp1() != null ? row.getTimeStamp1().toString() : "";
+        String timeStamp2 = row.getTimeStamp2() != null ? row.getTimeStamp2().toString() : "";
+        String timeStamp3 = row.getTimeStamp3() != null ? row.getTimeStamp3().toString() : "";
+
         writeSubscriptionRow(
-                requestId.toString(),
-                serviceIdFromOrigin(true, subscription.getOrigin()),
-                subscriber.getCallingNumber().toString(),
-                NORMAL_PRIORITY, //todo: how do we choose a priority?
+                new RequestId(row.getSubscriptionId(), requestTimestamp).toString(),
+                jh ? serviceIdFromOriginJh(true, row.getOrigin()) : serviceIdFromOrigin(true, row.getOrigin()),
+                row.getCallingNumber().toString(),
+                jh ? HIGH_PRIORITY : NORMAL_PRIORITY,
                 callFlowUrl,
-                msg.getMessageFileName(),
-                msg.getWeekId(),
-                // we are happy with empty language and circle since they are optional
-                subscriber.getLanguage() == null ? "" : subscriber.getLanguage().getCode(),
-                subscriber.getCircle() == null ? "" : subscriber.getCircle().getName(),
-                subscription.getOrigin().getCode(),
-                wr.get(specific_non_jh),
-                subscription.isNeedsWelcomeOptInForWP(),
+                row.getMessageFileName(),
+                row.getWeekId(),
+                row.getLanguageCode(),
+                row.getCircleName(),
+                row.getOrigin().getCode(),
+                writer,
+                row.isNeedsWelcomeOptInForWP(),
                 timeStamp1,
                 timeStamp2,
                 timeStamp3);
-        recordsWrittenJh++;
-        return recordsWrittenJh;
     }
 
     private void writeWhatsAppHeader(OutputStreamWriter writer) throws IOException {
@@ -800,6 +810,9 @@ public class TargetFileServiceImpl implements TargetFileService {
         HashMap<String, Integer> retryCount = new HashMap<>();
         List<Long> specificState = getSpecificStateList();
 
+        // retries are split by the state stored on them, fill it in for the ones created before it was stored
+        callRetryService.backfillStateIds();
+
         for (String writer : wr.keySet()) {
             if (writer.equals(specific_non_Jh)) {
                 Long offset = 0L;
@@ -1070,6 +1083,7 @@ public class TargetFileServiceImpl implements TargetFileService {
             //whatever that is...
             callFlowUrl = "";
         }
+        int writeBufferSize = getIntProperty(OBD_WRITE_BUFFER_SIZE, DEFAULT_OBD_WRITE_BUFFER_SIZE);
         HashMap<String, OutputStreamWriter> wr = new HashMap<>();
         HashMap<String, TargetFileNotification> tfn = new HashMap<>();
         if(split){
@@ -1080,13 +1094,13 @@ public class TargetFileServiceImpl implements TargetFileService {
 
             try {
                 FileOutputStream fos = new FileOutputStream(targetFile);
-                OutputStreamWriter writer = new OutputStreamWriter(fos);
+                OutputStreamWriter writer = new OutputStreamWriter(new BufferedOutputStream(fos, writeBufferSize));
 
                 FileOutputStream fosH = new FileOutputStream(targetFileHungama);
-                OutputStreamWriter writerH = new OutputStreamWriter(fosH);
+                OutputStreamWriter writerH = new OutputStreamWriter(new BufferedOutputStream(fosH, writeBufferSize));
 
                 FileOutputStream fosJh = new FileOutputStream(targetFileJh);
-                OutputStreamWriter writerJh = new OutputStreamWriter(fosJh);
+                OutputStreamWriter writerJh = new OutputStreamWriter(new BufferedOutputStream(fosJh, writeBufferSize));
 
                 //Header
                 writeHeader(writer);
@@ -1132,10 +1146,10 @@ public class TargetFileServiceImpl implements TargetFileService {
         else{
             try {
                 FileOutputStream fos = new FileOutputStream(targetFile);
-                OutputStreamWriter writer = new OutputStreamWriter(fos);
+                OutputStreamWriter writer = new OutputStreamWriter(new BufferedOutputStream(fos, writeBufferSize));
 
                 FileOutputStream fosH = new FileOutputStream(targetFileHungama);
-                OutputStreamWriter writerH = new OutputStreamWriter(fosH);
+                OutputStreamWriter writerH = new OutputStreamWriter(new BufferedOutputStream(fosH, writeBufferSize));
 
                 //Header
                 writeHeader(writer);
@@ -1286,8 +1300,6 @@ public class TargetFileServiceImpl implements TargetFileService {
         LOGGER.debug("Sending {} to {}", tfn, notificationUrl);
 
 
-        ExponentialRetrySender sender = new ExponentialRetrySender(settingsFacade, alertService);
-
         HttpPost httpPost = new HttpPost(notificationUrl);
         ObjectMapper mapper = new ObjectMapper();
 
@@ -1301,15 +1313,13 @@ public class TargetFileServiceImpl implements TargetFileService {
                     e.getMessage()), e);
         }
 
-        sender.sendNotificationRequest(httpPost, HttpStatus.SC_ACCEPTED, tfn.getFileName(), "targetFile Notification Request");
+        exponentialRetrySender.sendNotificationRequestAsync(httpPost, HttpStatus.SC_ACCEPTED, tfn.getFileName(), "targetFile Notification Request");
     }
 
     private void sendNotificationRequestWhatsApp(TargetFileNotification tfn) {
         String notificationUrl = settingsFacade.getProperty(TARGET_FILE_NOTIFICATION_URL_WHATSAPP);
         LOGGER.debug("Sending {} to {}", tfn, notificationUrl);
 
-        ExponentialRetrySender sender = new ExponentialRetrySender(settingsFacade, alertService);
-
         HttpPost httpPost = new HttpPost(notificationUrl);
         ObjectMapper mapper = new ObjectMapper();
 
@@ -1323,7 +1333,7 @@ public class TargetFileServiceImpl implements TargetFileService {
                     e.getMessage()), e);
         }
         LOGGER.debug("test - httpPost object created");
-        sender.sendNotificationRequestWhatsApp(httpPost, HttpStatus.SC_ACCEPTED, HttpStatus.SC_OK, tfn.getFileName(), "whatsapp targetFile Notification Request");
+        exponentialRetrySender.sendNotificationRequestWhatsAppAsync(httpPost, HttpStatus.SC_ACCEPTED, HttpStatus.SC_OK, tfn.getFileName(), "whatsapp targetFile Notification Request");
     }
 
     private void sendNotificationRequestWhatsAppSMS(TargetFileNotification tfn) {
@@ -1331,8 +1341,6 @@ public class TargetFileServiceImpl implements TargetFileService {
         LOGGER.debug("Sending {} to {}", tfn, notificationUrl);
 
 
-        ExponentialRetrySender sender = new ExponentialRetrySender(settingsFacade, alertService);
-
         HttpPost httpPost = new HttpPost(notificationUrl);
         ObjectMapper mapper = new ObjectMapper();
 
@@ -1346,7 +1354,7 @@ public class TargetFileServiceImpl implements TargetFileService {
                     e.getMessage()), e);
         }
 
-        sender.sendNotificationRequest(httpPost, HttpStatus.SC_ACCEPTED, tfn.getFileName(), "whatsApp sms targetFile Notification Request");
+        exponentialRetrySender.sendNotificationRequestAsync(httpPost, HttpStatus.SC_ACCEPTED, tfn.getFileName(), "whatsApp sms targetFile Notification Request");
     }
 
 
@@ -1360,7 +1368,7 @@ public class TargetFileServiceImpl implements TargetFileService {
                 ScpHelper scpHelper = new ScpHelper(settingsFacade);
                 for(TargetFileNotification t: tfn.values()) {
                     try {
-                        scpHelper.scpObdToRemote(t.getFileName());
+                        scpHelper.scpObdToRemote(t.getFileName(), t.getChecksum());
                     } catch (ExecException e) {
                         String error = String.format("Error copying target file %s: %s", t.getFileName(),
                                 e.getMessage());
@@ -1738,7 +1746,7 @@ public class TargetFileServiceImpl implements TargetFileService {
             ScpHelper scpHelper = new ScpHelper(settingsFacade);
             for(TargetFileNotification t: tfn.values()) {
                 try {
-                    scpHelper.scpWhatsAppToRemote(t.getFileName());
+                    scpHelper.scpWhatsAppToRemote(t.getFileName(), t.getChecksum());
                 } catch (ExecException e) {
                     String error = String.format("Error copying target file %s: %s", t.getFileName(),
                             e.getMessage());
@@ -1938,7 +1946,7 @@ public class TargetFileServiceImpl implements TargetFileService {
         // Copy the OBD file from the local imi.local_obd_dir to the remote imi.local_obd_dir network share
         ScpHelper scpHelper = new ScpHelper(settingsFacade);
         try {
-            scpHelper.scpWhatsAppObdToRemote(tfn.getFileName());
+            scpHelper.scpWhatsAppObdToRemote(tfn.getFileName(), tfn.getChecksum());
         } catch (ExecException e) {
             String error = String.format("Error copying target file %s: %s", tfn.getFileName(),
                     e.getMessage());
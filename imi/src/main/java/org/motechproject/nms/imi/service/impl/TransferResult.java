@@ -0,0 +1,63 @@
+package org.motechproject.nms.imi.service.impl;
+
+/**
+ * Outcome of a {@link FileTransfer}
+ */
+public class TransferResult {
+
+    private static final double MILLIS_PER_SEC = 1000.0;
+    private static final double BYTES_PER_KB = 1024.0;
+
+    private final String source;
+    private final long bytes;
+    private final long resumedBytes;
+    private final long millis;
+    private final String checksum;
+
+    public TransferResult(String source, long bytes, long resumedBytes, long millis, String checksum) {
+        this.source = source;
+        this.bytes = bytes;
+        this.resumedBytes = resumedBytes;
+        this.millis = millis;
+        this.checksum = checksum;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return size of the copied file
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return bytes a previous, interrupted, transfer had already copied
+     */
+    public long getResumedBytes() {
+        return resumedBytes;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * @return MD5 of the copied file, null if the transfer doesn't compute it
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public double getKilobytesPerSecond() {
+        return (bytes - resumedBytes) / BYTES_PER_KB / Math.max(millis, 1L) * MILLIS_PER_SEC;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d bytes (%d resumed) in %dms, %.1f KB/s", source, bytes, resumedBytes, millis,
+                getKilobytesPerSecond());
+    }
+}
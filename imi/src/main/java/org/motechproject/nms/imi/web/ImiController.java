@@ -6,8 +6,11 @@ import org.motechproject.alerts.domain.AlertStatus;
 import org.motechproject.alerts.domain.AlertType;
 import org.motechproject.nms.imi.domain.FileAuditRecord;
 import org.motechproject.nms.imi.domain.FileType;
+import org.motechproject.nms.imi.exception.ChecksumMismatchException;
 import org.motechproject.nms.imi.exception.ExecException;
 import org.motechproject.nms.imi.exception.InvalidCallRecordFileException;
+import org.motechproject.nms.imi.exception.InvalidWhatsAppCsrFileException;
+import org.motechproject.nms.imi.exception.InvalidWhatsAppSMSCsrFileException;
 import org.motechproject.nms.imi.exception.NotFoundException;
 import org.motechproject.nms.imi.repository.FileAuditRecordDataService;
 import org.motechproject.nms.imi.service.CdrFileService;
@@ -31,7 +34,10 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 /**
@@ -282,12 +288,16 @@ public class ImiController {
         verifyFileExistsInAuditRecord(request.getFileName());
 
 
-        // Copy the detail file from the IMI share (imi.remote_cdr_dir) into local cdr dir (imi.local_cdr_dir)
+        // Copy the detail & summary files from the IMI share (imi.remote_cdr_dir) into local cdr dir
+        // (imi.local_cdr_dir), side by side
         ScpHelper scpHelper = new ScpHelper(settingsFacade);
         String fileName = request.getCdrDetail().getCdrFile();
-        try {
-            scpHelper.scpCdrFromRemote(fileName);
-        } catch (ExecException e) {
+        Map<String, String> checksums = new LinkedHashMap<>();
+        checksums.put(fileName, request.getCdrDetail().getChecksum());
+        checksums.put(request.getCdrSummary().getCdrFile(), request.getCdrSummary().getChecksum());
+        Map<String, ExecException> copyErrors = scpHelper.scpCdrsFromRemote(checksums);
+        if (copyErrors.containsKey(fileName)) {
+            ExecException e = copyErrors.get(fileName);
             String error = String.format("Error copying CDR file %s: %s", fileName, e.getMessage());
             LOGGER.error(error);
             fileAuditRecordDataService.create(new FileAuditRecord(
@@ -299,14 +309,16 @@ public class ImiController {
                     null
             ));
             alertService.create(fileName, "scpCdrFromRemote", error, AlertType.CRITICAL, AlertStatus.NEW, 0, null);
+            if (e instanceof ChecksumMismatchException) {
+                // reported as the checksum check of phase 1 did before the copies were checked
+                throw new InvalidCallRecordFileException(Collections.singletonList(e.getMessage()));
+            }
             throw new IllegalArgumentException("Error copying CDR file", e);
         }
 
-        // Copy the summary file from the IMI share (imi.remote_cdr_dir) into local cdr dir (imi.local_cdr_dir)
         fileName = request.getCdrSummary().getCdrFile();
-        try {
-            scpHelper.scpCdrFromRemote(fileName);
-        } catch (ExecException e) {
+        if (copyErrors.containsKey(fileName)) {
+            ExecException e = copyErrors.get(fileName);
             String error = String.format("Error copying CSR file %s: %s", fileName, e.getMessage());
             LOGGER.error(error);
             fileAuditRecordDataService.create(new FileAuditRecord(
@@ -318,6 +330,10 @@ public class ImiController {
                     null
             ));
             alertService.create(fileName, "scpCdrFromRemote", error, AlertType.CRITICAL, AlertStatus.NEW, 0, null);
+            if (e instanceof ChecksumMismatchException) {
+                // reported as the checksum check of phase 1 did before the copies were checked
+                throw new InvalidCallRecordFileException(Collections.singletonList(e.getMessage()));
+            }
             throw new IllegalArgumentException("Error copying CSR file", e);
         }
 
@@ -361,7 +377,7 @@ public class ImiController {
         ScpHelper scpHelper = new ScpHelper(settingsFacade);
         String fileName = request.getCdrSummary().getCdrFile();
         try {
-            scpHelper.scpWhatsAppSMSCdrFromRemote(fileName);
+            scpHelper.scpWhatsAppSMSCdrFromRemote(fileName, request.getCdrSummary().getChecksum());
         } catch (ExecException e) {
             String error = String.format("Error copying WhatsApp SMS CDR file %s: %s", fileName, e.getMessage());
             LOGGER.error(error);
@@ -374,6 +390,10 @@ public class ImiController {
                     null
             ));
             alertService.create(fileName, "scpWhatsAppSMSCdrFromRemote", error, AlertType.CRITICAL, AlertStatus.NEW, 0, null);
+            if (e instanceof ChecksumMismatchException) {
+                // reported as the checksum check of phase 1 did before the copies were checked
+                throw new InvalidWhatsAppSMSCsrFileException(Collections.singletonList(e.getMessage()));
+            }
             throw new IllegalArgumentException("Error copying CDR file", e);
         }
 
@@ -427,7 +447,7 @@ public class ImiController {
         ScpHelper scpHelper = new ScpHelper(settingsFacade);
         String fileName = request.getWhatsappResSummary().getWpResFile();
         try {
-            scpHelper.scpWhatsAppCdrFromRemote(fileName);
+            scpHelper.scpWhatsAppCdrFromRemote(fileName, request.getWhatsappResSummary().getChecksum());
         } catch (ExecException e) {
             String error = String.format("Error copying CDR file %s: %s", fileName, e.getMessage());
             LOGGER.error(error);
@@ -440,6 +460,10 @@ public class ImiController {
                     null
             ));
             alertService.create(fileName, "scpCdrFromRemote", error, AlertType.CRITICAL, AlertStatus.NEW, 0, null);
+            if (e instanceof ChecksumMismatchException) {
+                // reported as the checksum check of phase 1 did before the copies were checked
+                throw new InvalidWhatsAppCsrFileException(Collections.singletonList(e.getMessage()));
+            }
             throw new IllegalArgumentException("Error copying CDR file", e);
         }
 
@@ -0,0 +1,66 @@
+package org.motechproject.nms.imi.ut;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpPost;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.alerts.contract.AlertService;
+import org.motechproject.nms.imi.service.impl.ExponentialRetrySender;
+import org.motechproject.server.config.SettingsFacade;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ExponentialRetrySenderUnitTest {
+
+    @Mock
+    private SettingsFacade settingsFacade;
+
+    @Mock
+    private AlertService alertService;
+
+    private ExponentialRetrySender exponentialRetrySender;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+        when(settingsFacade.getProperty("imi.notification_wait_seconds")).thenReturn("5");
+        exponentialRetrySender = new ExponentialRetrySender(settingsFacade, alertService);
+    }
+
+    @Test
+    public void verifyNotificationsSentAfterShutdownCompleteExceptionally() throws InterruptedException {
+        exponentialRetrySender.shutdown();
+
+        CompletableFuture<Boolean> notification = exponentialRetrySender.sendNotificationRequestAsync(
+                new HttpPost("http://localhost/obd"), HttpStatus.SC_ACCEPTED, "file", "targetFile Notification Request");
+
+        assertTrue(notification.isDone());
+        try {
+            notification.get(1, TimeUnit.SECONDS);
+            fail("The notification should not have been sent");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        } catch (TimeoutException e) {
+            fail("The notification was left incomplete");
+        }
+    }
+
+    @Test
+    public void verifyWaitingForANotificationSentAfterShutdownReturnsFalse() {
+        exponentialRetrySender.shutdown();
+
+        assertFalse(exponentialRetrySender.sendNotificationRequest(new HttpPost("http://localhost/sms"),
+                HttpStatus.SC_CREATED, "sms", "SMS Notification Request"));
+    }
+}
@@ -13,6 +13,7 @@ import org.motechproject.alerts.contract.AlertService;
 import org.motechproject.alerts.domain.AlertStatus;
 import org.motechproject.alerts.domain.AlertType;
 import org.motechproject.nms.imi.service.SmsNotificationService;
+import org.motechproject.nms.imi.service.impl.ExponentialRetrySender;
 import org.motechproject.nms.imi.service.impl.SmsNotificationServiceImpl;
 import org.motechproject.server.config.SettingsFacade;
 
@@ -27,12 +28,15 @@ public class SmsNotificationServiceUnitTest {
     @Mock
     private AlertService alertService;
 
+    @Mock
+    private ExponentialRetrySender exponentialRetrySender;
+
     private SmsNotificationServiceImpl smsService;
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
-        smsService = new SmsNotificationServiceImpl(alertService, settingsFacade);
+        smsService = new SmsNotificationServiceImpl(alertService, settingsFacade, exponentialRetrySender);
     }
 
     @Test
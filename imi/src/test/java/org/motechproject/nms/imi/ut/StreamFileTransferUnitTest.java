@@ -0,0 +1,77 @@
+package org.motechproject.nms.imi.ut;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.motechproject.nms.imi.exception.ChecksumMismatchException;
+import org.motechproject.nms.imi.service.impl.ChecksumHelper;
+import org.motechproject.nms.imi.service.impl.StreamFileTransfer;
+import org.motechproject.nms.imi.service.impl.TransferResult;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StreamFileTransferUnitTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void verifyCopyComputesChecksum() throws Exception {
+        File src = folder.newFile("cdr.csv");
+        Files.write(src.toPath(), "a,b,c\n1,2,3\n".getBytes(StandardCharsets.UTF_8));
+        File dstDir = folder.newFolder("dst");
+
+        TransferResult result = new StreamFileTransfer().transfer(src.getPath(), dstDir.getPath(), src,
+                ChecksumHelper.checksum(src));
+
+        File dst = new File(dstDir, "cdr.csv");
+        assertTrue(Arrays.equals(Files.readAllBytes(src.toPath()), Files.readAllBytes(dst.toPath())));
+        assertEquals(ChecksumHelper.checksum(src), result.getChecksum());
+        assertEquals(src.length(), result.getBytes());
+        assertEquals(0, result.getResumedBytes());
+    }
+
+    @Test
+    public void verifyInterruptedCopyIsResumed() throws Exception {
+        File src = folder.newFile("cdr.csv");
+        Files.write(src.toPath(), "a,b,c\n1,2,3\n4,5,6\n".getBytes(StandardCharsets.UTF_8));
+        File dstDir = folder.newFolder("dst");
+        File part = new File(dstDir, "cdr.csv.part");
+        Files.write(part.toPath(), "a,b,c\n".getBytes(StandardCharsets.UTF_8));
+        part.setLastModified(src.lastModified() + 1000);
+
+        TransferResult result = new StreamFileTransfer().transfer(src.getPath(), dstDir.getPath(), src,
+                ChecksumHelper.checksum(src));
+
+        assertTrue(Arrays.equals(Files.readAllBytes(src.toPath()),
+                Files.readAllBytes(new File(dstDir, "cdr.csv").toPath())));
+        assertFalse(part.exists());
+        assertEquals(6, result.getResumedBytes());
+        assertEquals(ChecksumHelper.checksum(src), result.getChecksum());
+    }
+
+    @Test
+    public void verifyCopyNotMatchingTheExpectedChecksumFails() throws Exception {
+        File src = folder.newFile("cdr.csv");
+        Files.write(src.toPath(), "a,b,c\n1,2,3\n".getBytes(StandardCharsets.UTF_8));
+        File dstDir = folder.newFolder("dst");
+
+        try {
+            new StreamFileTransfer().transfer(src.getPath(), dstDir.getPath(), src, "d41d8cd98f00b204e9800998ecf8427e");
+            fail("The copy should have failed");
+        } catch (ChecksumMismatchException e) {
+            assertEquals("Checksum mismatch for cdr.csv: provided checksum: d41d8cd98f00b204e9800998ecf8427e, " +
+                    "calculated checksum: " + ChecksumHelper.checksum(src), e.getMessage());
+            assertFalse(new File(dstDir, "cdr.csv").exists());
+            assertFalse(new File(dstDir, "cdr.csv.part").exists());
+        }
+    }
+}
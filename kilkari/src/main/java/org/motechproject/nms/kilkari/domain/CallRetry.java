@@ -5,11 +5,13 @@ import org.motechproject.mds.annotations.Field;
 import org.motechproject.mds.domain.MdsEntity;
 
 import javax.jdo.annotations.Column;
+import javax.jdo.annotations.Index;
 import javax.jdo.annotations.Unique;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 
 @Entity(tableName = "nms_kk_retry_records")
+@Index(name = "stateId_idx", members = { "stateId" })
 public class CallRetry extends MdsEntity {
     @Field
     @Unique
@@ -48,6 +50,13 @@ public class CallRetry extends MdsEntity {
     @Field
     private boolean opt_in_call_eligibility;
 
+    /**
+     * State of the mother or child the subscription is for, copied when the retry is created so the retry target
+     * file can be split by state without joining the beneficiary tables
+     */
+    @Field
+    private Long stateId;
+
     public CallRetry() { }
 
     public CallRetry(String subscriptionId, Long msisdn, //NO CHECKSTYLE More than 7 parameters
@@ -150,4 +159,12 @@ public class CallRetry extends MdsEntity {
     public boolean isOpt_in_call_eligibility() { return opt_in_call_eligibility; }
 
     public void setOpt_in_call_eligibility(boolean opt_in_call_eligibility) { this.opt_in_call_eligibility = opt_in_call_eligibility; }
+
+    public Long getStateId() {
+        return stateId;
+    }
+
+    public void setStateId(Long stateId) {
+        this.stateId = stateId;
+    }
 }
@@ -0,0 +1,90 @@
+package org.motechproject.nms.kilkari.domain;
+
+import org.joda.time.DateTime;
+import org.motechproject.mds.annotations.Entity;
+import org.motechproject.mds.annotations.Field;
+
+import javax.jdo.annotations.Column;
+import javax.jdo.annotations.Unique;
+
+/**
+ * Progress of a chunked purge, saved with each chunk so that an interrupted purge resumes where it stopped
+ */
+@Entity(tableName = "nms_kk_purge_checkpoints")
+public class PurgeCheckpoint {
+
+    @Field
+    @Unique
+    @Column(allowsNull = "false")
+    private String name;
+
+    @Field
+    private DateTime cutoff;
+
+    @Field
+    private Long lastId;
+
+    @Field
+    private Long purgedSubscriptions;
+
+    @Field
+    private Long purgedSubscribers;
+
+    @Field
+    private boolean completed;
+
+    public PurgeCheckpoint() {
+    }
+
+    public PurgeCheckpoint(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public DateTime getCutoff() {
+        return cutoff;
+    }
+
+    public void setCutoff(DateTime cutoff) {
+        this.cutoff = cutoff;
+    }
+
+    public Long getLastId() {
+        return lastId;
+    }
+
+    public void setLastId(Long lastId) {
+        this.lastId = lastId;
+    }
+
+    public Long getPurgedSubscriptions() {
+        return purgedSubscriptions;
+    }
+
+    public void setPurgedSubscriptions(Long purgedSubscriptions) {
+        this.purgedSubscriptions = purgedSubscriptions;
+    }
+
+    public Long getPurgedSubscribers() {
+        return purgedSubscribers;
+    }
+
+    public void setPurgedSubscribers(Long purgedSubscribers) {
+        this.purgedSubscribers = purgedSubscribers;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+}
@@ -28,7 +28,6 @@ public class Subscription extends MdsEntity {
     private static final int WEEKDAY1 = 0;
     private static final int WEEKDAY5 = 4;
     private static final int WEEKDAY7 = 6;
-    private static final String WEEK_ID_FORMAT = "w%d_%d";
 
     @Field
     @Unique
@@ -271,7 +270,19 @@ public class Subscription extends MdsEntity {
      * @param date The date on which the message will be played
      * @return SubscriptionPackMessage with the details of the message to play
      */
-    public SubscriptionPackMessage nextScheduledMessage(DateTime date) { //NO CHECKSTYLE CyclomaticComplexity
+    public SubscriptionPackMessage nextScheduledMessage(DateTime date) {
+        return nextScheduledMessage(subscriptionId, subscriptionPack, status, startDate, needsWelcomeMessageViaObd,
+                date);
+    }
+
+    /**
+     * Picks the next message from the subscription's columns, for callers that read them without loading the
+     * subscription, see {@link #nextScheduledMessage(DateTime)}
+     */
+    public static SubscriptionPackMessage nextScheduledMessage(String subscriptionId, //NO CHECKSTYLE CyclomaticComplexity
+                                                               SubscriptionPack subscriptionPack,
+                                                               SubscriptionStatus status, DateTime startDate,
+                                                               boolean needsWelcomeMessageViaObd, DateTime date) {
         // Validate the subscription is active or completed
         if (status != SubscriptionStatus.ACTIVE && status != SubscriptionStatus.COMPLETED) {
             throw new IllegalStateException(String.format("Subscription with ID %s is not active", subscriptionId));
@@ -288,7 +299,8 @@ public class Subscription extends MdsEntity {
         // If completed, send last message in pack for 7 day window after completion
         if (status == SubscriptionStatus.COMPLETED) {
             if (daysIntoPack < (subscriptionPack.getWeeks() * DAYS_IN_WEEK + DAYS_IN_WEEK)) {
-                return getMessageByWeekAndMessageId(subscriptionPack.getWeeks(), subscriptionPack.getMessagesPerWeek());
+                return getMessageByWeekAndMessageId(subscriptionId, subscriptionPack, subscriptionPack.getWeeks(),
+                        subscriptionPack.getMessagesPerWeek());
             } else {
                 throw new IllegalStateException("Trying to get last subscription message more than a week after the subscription has completed.");
             }
@@ -303,28 +315,29 @@ public class Subscription extends MdsEntity {
         // get next message and week index
         int currentWeek = daysIntoPack / DAYS_IN_WEEK + 1;
         if (subscriptionPack.getMessagesPerWeek() == 1) {
-            return getMessageByWeekAndMessageId(currentWeek, 1);
+            return getMessageByWeekAndMessageId(subscriptionId, subscriptionPack, currentWeek, 1);
         } else {
             // messages per week == 2
             if (daysIntoPack % DAYS_IN_WEEK < 4) {
                 // use this week's first message
-                return getMessageByWeekAndMessageId(currentWeek, 1);
+                return getMessageByWeekAndMessageId(subscriptionId, subscriptionPack, currentWeek, 1);
             } else {
                 // use this week's second message
-                return getMessageByWeekAndMessageId(currentWeek, 2);
+                return getMessageByWeekAndMessageId(subscriptionId, subscriptionPack, currentWeek, 2);
             }
         }
     }
 
     public SubscriptionPackMessage getMessageByWeekAndMessageId(int week, int day) {
+        return getMessageByWeekAndMessageId(subscriptionId, subscriptionPack, week, day);
+    }
 
-        String weekId = String.format(WEEK_ID_FORMAT, week, day);
-        // TODO: This is inefficient but don't want to deal with performance yet. Worst case, we will iterate
-        // over 72x2 messages every time. Ideally, we would do a select using lambdaj and the likes
-        for (SubscriptionPackMessage currentMessage : subscriptionPack.getMessages()) {
-            if (currentMessage.getWeekId().equals(weekId)) {
-                return currentMessage;
-            }
+    private static SubscriptionPackMessage getMessageByWeekAndMessageId(String subscriptionId,
+                                                                        SubscriptionPack subscriptionPack,
+                                                                        int week, int day) {
+        SubscriptionPackMessage message = subscriptionPack.getMessage(week, day);
+        if (message != null) {
+            return message;
         }
 
         throw new IllegalStateException(String.format(
@@ -10,6 +10,7 @@ import javax.jdo.annotations.Column;
 import javax.jdo.annotations.Unique;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -24,6 +25,7 @@ public class SubscriptionPack {
     private static final int THREE_MONTHS = 90;
     private static final int MIN_MSG_WEEKS = 12;
     private static final int DAYS_IN_WEEK = 7;
+    private static final int MAX_MESSAGES_PER_WEEK = 2;
 
     @Field
     @Unique
@@ -50,6 +52,13 @@ public class SubscriptionPack {
     @Field
     private List<SubscriptionPackMessage> messages;
 
+    /**
+     * Messages by (week - 1) * 2 + (message - 1), built on first use. Packs are cached, so the index lives as long
+     * as the cached pack does and is rebuilt after the pack cache is evicted, or when the messages list is replaced.
+     */
+    @Ignore
+    private transient volatile MessageIndex messageIndex;
+
     public SubscriptionPack(String name, SubscriptionPackType type, int weeks, int messagesPerWeek,
                             List<SubscriptionPackMessage> messages) {
         this.name = name;
@@ -93,6 +102,7 @@ public class SubscriptionPack {
                     "Subscription packs may not have fewer than one or more than two messages per week.");
         }
         this.messagesPerWeek = messagesPerWeek;
+        this.messageIndex = null;
     }
 
     public List<SubscriptionPackMessage> getMessages() {
@@ -101,6 +111,7 @@ public class SubscriptionPack {
 
     public void setMessages(List<SubscriptionPackMessage> messages) {
         this.messages = messages;
+        this.messageIndex = null;
     }
 
     public String isReferenceDateValidForPack(DateTime date) {
@@ -154,6 +165,63 @@ public class SubscriptionPack {
         return false;
     }
 
+    /**
+     * @param week week number in the pack, starting at 1
+     * @param message message number in the week, 1 or 2
+     * @return the message with weekId w{week}_{message}, or null if the pack has none
+     */
+    @Ignore
+    public SubscriptionPackMessage getMessage(int week, int message) {
+        if (week < 1 || message < 1 || message > MAX_MESSAGES_PER_WEEK) {
+            return null;
+        }
+        List<SubscriptionPackMessage> packMessages = messages;
+        MessageIndex index = messageIndex;
+        // the persistence layer may load a new messages list without going through the setter
+        if (index == null || index.messages != packMessages) {
+            index = new MessageIndex(packMessages, buildMessageIndex(packMessages));
+            messageIndex = index;
+        }
+        int position = (week - 1) * MAX_MESSAGES_PER_WEEK + message - 1;
+        return position < index.byPosition.length ? index.byPosition[position] : null;
+    }
+
+    private SubscriptionPackMessage[] buildMessageIndex(List<SubscriptionPackMessage> packMessages) {
+        SubscriptionPackMessage[] index = new SubscriptionPackMessage[0];
+        if (packMessages == null) {
+            return index;
+        }
+        for (SubscriptionPackMessage message : packMessages) {
+            String weekId = message.getWeekId();
+            int separator = weekId == null ? -1 : weekId.indexOf('_');
+            if (separator < 2 || weekId.charAt(0) != 'w') {
+                continue;
+            }
+            int week;
+            int number;
+            try {
+                week = Integer.parseInt(weekId.substring(1, separator));
+                number = Integer.parseInt(weekId.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            // only index the ids written exactly as w{week}_{message}, as those are the ones looked up
+            if (week < 1 || number < 1 || number > MAX_MESSAGES_PER_WEEK ||
+                    !weekId.equals("w" + week + "_" + number)) {
+                continue;
+            }
+            int position = (week - 1) * MAX_MESSAGES_PER_WEEK + number - 1;
+            if (position >= index.length) {
+                index = Arrays.copyOf(index, Math.max(position + 1, weeks * MAX_MESSAGES_PER_WEEK));
+            }
+            // the first message with a given weekId wins, as it did with the linear search
+            if (index[position] == null) {
+                index[position] = message;
+            }
+        }
+        return index;
+    }
+
     @Ignore
     public boolean hasMessageWithFilename(String filename) {
         for (SubscriptionPackMessage message : messages) {
@@ -193,4 +261,14 @@ public class SubscriptionPack {
     public int hashCode() {
         return name.hashCode();
     }
+
+    private static final class MessageIndex {
+        private final List<SubscriptionPackMessage> messages;
+        private final SubscriptionPackMessage[] byPosition;
+
+        private MessageIndex(List<SubscriptionPackMessage> messages, SubscriptionPackMessage[] byPosition) {
+            this.messages = messages;
+            this.byPosition = byPosition;
+        }
+    }
 }
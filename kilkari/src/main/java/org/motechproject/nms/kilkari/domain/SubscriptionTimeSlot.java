@@ -4,9 +4,11 @@ import org.joda.time.DateTime;
 import org.motechproject.mds.annotations.Entity;
 import org.motechproject.mds.annotations.Field;
 
+import javax.jdo.annotations.Index;
 import javax.persistence.Id;
 
 @Entity(tableName = "nms_subscriptions_time_slot")
+@Index(name = "subscriptionId_idx", members = { "subscriptionId" })
 public class SubscriptionTimeSlot {
 
     @Id
@@ -0,0 +1,189 @@
+package org.motechproject.nms.kilkari.dto;
+
+import org.motechproject.nms.kilkari.domain.SubscriptionOrigin;
+
+import java.io.Serializable;
+
+/**
+ * Flat, detached view of an active subscription holding everything the OBD target file needs to write a fresh call
+ * row. Read as a column projection, so building it never loads the subscription, its subscriber or its beneficiary.
+ */
+public class FreshCallRowDto implements Serializable {
+
+    private static final long serialVersionUID = 4630912736451250815L;
+
+    private long id;
+
+    private String subscriptionId;
+
+    private SubscriptionOrigin origin;
+
+    private Long callingNumber;
+
+    private String languageCode;
+
+    private String circleName;
+
+    private Long stateId;
+
+    private boolean needsWelcomeOptInForWP;
+
+    private boolean lastDayOfPack;
+
+    private String messageFileName;
+
+    private String weekId;
+
+    private String error;
+
+    private Integer timeStamp1;
+
+    private Integer timeStamp2;
+
+    private Integer timeStamp3;
+
+    public FreshCallRowDto() { }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    public void setSubscriptionId(String subscriptionId) {
+        this.subscriptionId = subscriptionId;
+    }
+
+    public SubscriptionOrigin getOrigin() {
+        return origin;
+    }
+
+    public void setOrigin(SubscriptionOrigin origin) {
+        this.origin = origin;
+    }
+
+    public Long getCallingNumber() {
+        return callingNumber;
+    }
+
+    public void setCallingNumber(Long callingNumber) {
+        this.callingNumber = callingNumber;
+    }
+
+    public String getLanguageCode() {
+        return languageCode;
+    }
+
+    public void setLanguageCode(String languageCode) {
+        this.languageCode = languageCode;
+    }
+
+    public String getCircleName() {
+        return circleName;
+    }
+
+    public void setCircleName(String circleName) {
+        this.circleName = circleName;
+    }
+
+    public Long getStateId() {
+        return stateId;
+    }
+
+    public void setStateId(Long stateId) {
+        this.stateId = stateId;
+    }
+
+    public boolean isNeedsWelcomeOptInForWP() {
+        return needsWelcomeOptInForWP;
+    }
+
+    public void setNeedsWelcomeOptInForWP(boolean needsWelcomeOptInForWP) {
+        this.needsWelcomeOptInForWP = needsWelcomeOptInForWP;
+    }
+
+    /**
+     * Subscriptions on the last day of their pack are not part of the fresh call list (see NMS-301), they are still
+     * returned so that callers paging by id can move past them.
+     */
+    public boolean isLastDayOfPack() {
+        return lastDayOfPack;
+    }
+
+    public void setLastDayOfPack(boolean lastDayOfPack) {
+        this.lastDayOfPack = lastDayOfPack;
+    }
+
+    public String getMessageFileName() {
+        return messageFileName;
+    }
+
+    public void setMessageFileName(String messageFileName) {
+        this.messageFileName = messageFileName;
+    }
+
+    public String getWeekId() {
+        return weekId;
+    }
+
+    public void setWeekId(String weekId) {
+        this.weekId = weekId;
+    }
+
+    /**
+     * @return the reason the next scheduled message could not be computed, or null if the row is valid
+     */
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    /**
+     * @return first preferred call time slot of the subscription, or null if it has none
+     */
+    public Integer getTimeStamp1() {
+        return timeStamp1;
+    }
+
+    public void setTimeStamp1(Integer timeStamp1) {
+        this.timeStamp1 = timeStamp1;
+    }
+
+    public Integer getTimeStamp2() {
+        return timeStamp2;
+    }
+
+    public void setTimeStamp2(Integer timeStamp2) {
+        this.timeStamp2 = timeStamp2;
+    }
+
+    public Integer getTimeStamp3() {
+        return timeStamp3;
+    }
+
+    public void setTimeStamp3(Integer timeStamp3) {
+        this.timeStamp3 = timeStamp3;
+    }
+
+    @Override
+    public String toString() {
+        return "FreshCallRowDto{" +
+                "id=" + id +
+                ", subscriptionId='" + subscriptionId + '\'' +
+                ", origin=" + origin +
+                ", stateId=" + stateId +
+                ", lastDayOfPack=" + lastDayOfPack +
+                ", weekId='" + weekId + '\'' +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,12 @@
+package org.motechproject.nms.kilkari.repository;
+
+import org.motechproject.mds.annotations.Lookup;
+import org.motechproject.mds.annotations.LookupField;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.nms.kilkari.domain.PurgeCheckpoint;
+
+public interface PurgeCheckpointDataService extends MotechDataService<PurgeCheckpoint> {
+
+    @Lookup
+    PurgeCheckpoint findByName(@LookupField(name = "name") String name);
+}
@@ -14,9 +14,33 @@ public interface CallRetryService {
      */
     List<CallRetry> retrieveAll(long offset, int max);
 
+    /**
+     * Get the CallRetry records of active subscriptions whose beneficiary is in one of the given states
+     *
+     * @param offset The id after which to start returning results
+     * @param max The maximum number of rows to return
+     * @param specificState ids of the states
+     * @return The list of CallRetry records
+     */
     List<CallRetry> retrieveAllIVR(long offset, int max, List <Long> specificState);
 
+    /**
+     * Get the CallRetry records of active subscriptions whose beneficiary is in a state other than the given ones
+     *
+     * @param offset The id after which to start returning results
+     * @param max The maximum number of rows to return
+     * @param specificState ids of the states to leave out
+     * @return The list of CallRetry records
+     */
     List<CallRetry> retrieveAllNonIVR(long offset, int max, List <Long> specificState);
+
+    /**
+     * Fills in the beneficiary state of the CallRetry records created without one, so they are picked up by
+     * {@link #retrieveAllIVR(long, int, List)} and {@link #retrieveAllNonIVR(long, int, List)}. Only the records
+     * added since the previous call are looked at, so the full pass happens once after a start
+     */
+    void backfillStateIds();
+
     /**
      * Deletes all call retry records older than the given number of days
      *
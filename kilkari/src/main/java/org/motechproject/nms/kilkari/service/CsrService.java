@@ -1,11 +1,21 @@
 package org.motechproject.nms.kilkari.service;
 
 import org.motechproject.event.MotechEvent;
+import org.motechproject.nms.kilkari.dto.CallSummaryRecordDto;
+
+import java.util.List;
 
 public interface CsrService {
 
     void processCallSummaryRecord(MotechEvent event);
 
+    /**
+     * Process a chunk of CSRs in one transaction. Same outcome as calling processCallSummaryRecord for each record
+     * in order, but the subscriptions and call retries for the whole chunk are looked up with a single query each.
+     * @param csrDtos the call summary records to process
+     */
+    void processCallSummaryRecords(List<CallSummaryRecordDto> csrDtos);
+
     void processWhatsAppSMSCsr(MotechEvent event);
 
     void processWhatsAppCsr(MotechEvent event);
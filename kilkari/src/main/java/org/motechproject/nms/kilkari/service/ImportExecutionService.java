@@ -0,0 +1,22 @@
+package org.motechproject.nms.kilkari.service;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Shared, bounded pool of workers running the record groups of MCTS/RCH beneficiary imports. The number of workers is
+ * fixed by kilkari.import.threads, so concurrent imports share the same workers instead of each starting their own.
+ */
+public interface ImportExecutionService {
+
+    /**
+     * Submits the tasks of one import. Blocks while the work queue is full, so an import never holds more than
+     * kilkari.import.queue.size pending groups in memory on top of the ones being processed.
+     * @param importName name used when logging the progress of the import, eg: "RCH mothers, state 21"
+     * @param tasks the tasks to run
+     * @param <T> the task result type
+     * @return the futures of the tasks, in the order the tasks were given
+     */
+    <T> List<Future<T>> submitAll(String importName, List<? extends Callable<T>> tasks);
+}
@@ -0,0 +1,10 @@
+package org.motechproject.nms.kilkari.service;
+
+import org.motechproject.server.config.SettingsFacade;
+
+/**
+ * Gives access to kilkari.properties to ITs
+ */
+public interface SettingsService {
+    SettingsFacade getSettingsFacade();
+}
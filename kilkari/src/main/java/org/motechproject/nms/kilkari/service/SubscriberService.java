@@ -94,6 +94,21 @@ public interface SubscriberService {
     @InstanceLifecycleListener(InstanceLifecycleListenerType.PRE_DELETE)
     void deleteAllowed(Subscriber subscriber);
 
+    /**
+     * Lifecycle listener that broadcasts a subscriber cache evict message for the subscriber's calling number
+     *
+     * @param subscriber
+     */
+    @InstanceLifecycleListener({ InstanceLifecycleListenerType.POST_CREATE, InstanceLifecycleListenerType.PRE_DELETE,
+            InstanceLifecycleListenerType.PRE_STORE })
+    void broadcastSubscriberCacheEvictMessage(Subscriber subscriber);
+
+    /**
+     * @return whether the Kilkari inbox and user API answers are cached per calling number (kilkari.response_cache),
+     * subscriber changes are only broadcast to the caches when they are
+     */
+    boolean isResponseCacheEnabled();
+
 
     /**
      * Deactivate all Subscriptions of a given callingNumber on MOHFW request
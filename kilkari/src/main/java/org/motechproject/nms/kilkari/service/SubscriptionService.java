@@ -10,6 +10,7 @@ import org.motechproject.nms.kilkari.domain.Subscription;
 import org.motechproject.nms.kilkari.domain.SubscriptionOrigin;
 import org.motechproject.nms.kilkari.domain.SubscriptionPack;
 import org.motechproject.nms.kilkari.domain.SubscriptionPackType;
+import org.motechproject.nms.kilkari.dto.FreshCallRowDto;
 import org.motechproject.nms.props.domain.DayOfTheWeek;
 import org.motechproject.nms.region.domain.Circle;
 import org.motechproject.nms.region.domain.Language;
@@ -97,6 +98,13 @@ public interface SubscriptionService {
      */
     long activateHoldSubscriptions(long maxActiveSubscriptions);
 
+    /**
+     * The active subscription count used for capping is maintained as statuses change and counted again from time to
+     * time, see kilkari.active_count.reconcile_minutes
+     * @return how far the maintained count was from the actual one when it was last counted again
+     */
+    long getActiveSubscriptionCountDrift();
+
     /**
      * Deactivate the specified subscription
      * @param subscription The subscription to deactivate
@@ -153,6 +161,25 @@ public interface SubscriptionService {
      */
     List<Subscription> findActiveSubscriptionsForDay(DayOfTheWeek dayOfTheWeek, long offset, int rowCount);
 
+    /**
+     * Same selection as {@link #findActiveSubscriptionsForDay(DayOfTheWeek, long, int)} but restricted to the id
+     * range (offset, maxId] and returned as detached rows holding only the columns an OBD target file row needs,
+     * time slots included. The rows are read with a single query, without loading any entity.
+     * @param dayOfTheWeek The day of the week for which to find subscriptions
+     * @param timestamp The target file timestamp, used to compute the next scheduled message
+     * @param offset Only subscriptions with an id strictly greater than this are returned
+     * @param maxId Only subscriptions with an id lower or equal to this are returned
+     * @param rowCount The maximum number of rows to return
+     * @return The fresh call rows, ordered by subscription id
+     */
+    List<FreshCallRowDto> findActiveFreshCallRowsForDay(DayOfTheWeek dayOfTheWeek, DateTime timestamp, long offset,
+                                                        long maxId, int rowCount);
+
+    /**
+     * @return the highest subscription id currently in the database, or 0 if there are no subscriptions
+     */
+    long getMaxSubscriptionId();
+
     List<String> findJhSubscriptionIds();
 
     List<Subscription> findActiveSubscriptionsForDayWP(DayOfTheWeek dayOfTheWeek, long offset, int rowCount , final Date date);
@@ -201,6 +228,15 @@ public interface SubscriptionService {
             InstanceLifecycleListenerType.PRE_STORE })
     void broadcastCacheEvictMessage(SubscriptionPack pack);
 
+    /**
+     * Lifecycle listener that broadcasts a subscriber cache evict message for the subscription's calling number
+     *
+     * @param subscription
+     */
+    @InstanceLifecycleListener({ InstanceLifecycleListenerType.POST_CREATE, InstanceLifecycleListenerType.PRE_DELETE,
+            InstanceLifecycleListenerType.PRE_STORE })
+    void broadcastSubscriberCacheEvictMessage(Subscription subscription);
+
     /**
      *
      * Message pack cache evict
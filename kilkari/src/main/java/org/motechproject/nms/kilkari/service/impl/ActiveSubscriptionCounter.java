@@ -0,0 +1,144 @@
+package org.motechproject.nms.kilkari.service.impl;
+
+import org.motechproject.nms.kilkari.domain.SubscriptionStatus;
+import org.motechproject.nms.kilkari.repository.SubscriptionDataService;
+import org.motechproject.nms.tracking.utils.TransactionBuffer;
+import org.motechproject.server.config.SettingsFacade;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Number of ACTIVE subscriptions used for capping, without counting them every time.
+ *
+ * The count is loaded from the database, then moved by the status transitions this node makes, as their transactions
+ * commit. It is counted again (reconciled) once it is older than kilkari.active_count.reconcile_minutes, which also
+ * catches what the transitions miss: bulk updates and the transitions made by the other nodes. How far off it was
+ * at the last reconciliation is kept as its drift. With a reconcile interval of 0 every read is a count.
+ */
+@Component("activeSubscriptionCounter")
+public class ActiveSubscriptionCounter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ActiveSubscriptionCounter.class);
+
+    private static final String RECONCILE_MINUTES = "kilkari.active_count.reconcile_minutes";
+    private static final long RECONCILE_MINUTES_DEFAULT = 60;
+    private static final long MILLIS_PER_MINUTE = 60000L;
+
+    private final SettingsFacade settingsFacade;
+    private final SubscriptionDataService subscriptionDataService;
+
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong drift = new AtomicLong();
+    private volatile long reconciledAt;
+
+    private final TransactionBuffer<AtomicLong> transactionDelta = new TransactionBuffer<AtomicLong>() {
+        @Override
+        protected AtomicLong newBuffer() {
+            return new AtomicLong();
+        }
+
+        @Override
+        protected void committed(AtomicLong delta) {
+            count.addAndGet(delta.get());
+        }
+    };
+
+    @Autowired
+    public ActiveSubscriptionCounter(@Qualifier("kilkariSettings") SettingsFacade settingsFacade,
+                                     SubscriptionDataService subscriptionDataService) {
+        this.settingsFacade = settingsFacade;
+        this.subscriptionDataService = subscriptionDataService;
+    }
+
+    /**
+     * @return the number of ACTIVE subscriptions, counted again if the last count is too old
+     */
+    public long get() {
+        long reconcileMillis = getReconcileMinutes() * MILLIS_PER_MINUTE;
+        if (reconcileMillis <= 0 || reconciledAt == 0 || System.currentTimeMillis() - reconciledAt > reconcileMillis) {
+            return reconcile();
+        }
+        return count.get();
+    }
+
+    /**
+     * Counts the ACTIVE subscriptions and records how far the maintained count was from it
+     */
+    public long reconcile() {
+        return count(true);
+    }
+
+    /**
+     * Counts the ACTIVE subscriptions after a bulk update the transitions don't tell the outcome of, eg: completing
+     * the past due subscriptions. The difference is expected and not recorded as drift.
+     */
+    public long recount() {
+        return count(false);
+    }
+
+    private synchronized long count(boolean recordDrift) {
+        long active = subscriptionDataService.countFindByStatus(SubscriptionStatus.ACTIVE);
+        if (recordDrift && reconciledAt != 0) {
+            long maintained = count.get();
+            drift.set(maintained - active);
+            if (maintained != active) {
+                LOGGER.info("Active subscription count was {}, counted {}", maintained, active);
+            }
+        }
+        count.set(active);
+        reconciledAt = System.currentTimeMillis();
+        return active;
+    }
+
+    /**
+     * @return the maintained count minus the actual one at the last reconciliation
+     */
+    public long getDrift() {
+        return drift.get();
+    }
+
+    /**
+     * To be called when a subscription status changes, applied when the current transaction commits
+     * @param from status before the change, null for a new subscription
+     * @param to status after the change
+     */
+    public void transition(SubscriptionStatus from, SubscriptionStatus to) {
+        if (from == to) {
+            return;
+        }
+        if (to == SubscriptionStatus.ACTIVE) {
+            changed(1);
+        } else if (from == SubscriptionStatus.ACTIVE) {
+            changed(-1);
+        }
+    }
+
+    /**
+     * For bulk updates, eg: activated subscriptions
+     * @param delta change of the number of ACTIVE subscriptions
+     */
+    public void changed(long delta) {
+        if (delta == 0) {
+            return;
+        }
+        AtomicLong pending = transactionDelta.current();
+        if (pending == null) {
+            count.addAndGet(delta);
+            return;
+        }
+        pending.addAndGet(delta);
+    }
+
+    private long getReconcileMinutes() {
+        try {
+            return Long.parseLong(settingsFacade.getProperty(RECONCILE_MINUTES));
+        } catch (NumberFormatException e) {
+            return RECONCILE_MINUTES_DEFAULT;
+        }
+    }
+}
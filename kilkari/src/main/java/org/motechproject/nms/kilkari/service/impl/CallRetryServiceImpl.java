@@ -12,6 +12,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.jdo.Query;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,6 +26,12 @@ public class CallRetryServiceImpl implements CallRetryService {
 
     private CallRetryDataService callRetryDataService;
 
+    /**
+     * Highest retry id already looked at by {@link #backfillStateIds()}. Retries are created with their state since
+     * it is stored, so after the first run only the ones added since the previous run need a look
+     */
+    private long backfilledUpTo;
+
     @Autowired
     public CallRetryServiceImpl(CallRetryDataService callRetryDataService) {
         this.callRetryDataService = callRetryDataService;
@@ -74,33 +81,35 @@ public class CallRetryServiceImpl implements CallRetryService {
 
     @Override
     public List<CallRetry> retrieveAllIVR(long offset, int max, List<Long> specificState) {
+        if (specificState.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return retrieveByState(offset, max, "r.stateId IN (" + generateNamedParameters(specificState) + ")",
+                specificState);
+    }
+
+    @Override
+    public List<CallRetry> retrieveAllNonIVR(long offset, int max, List<Long> specificState) {
+        if (specificState.isEmpty()) {
+            return retrieveByState(offset, max, "r.stateId IS NOT NULL", specificState);
+        }
+        return retrieveByState(offset, max, "r.stateId NOT IN (" + generateNamedParameters(specificState) + ")",
+                specificState);
+    }
+
+    /**
+     * Pages through the retries of active subscriptions by id, filtered on the state stored with each retry
+     */
+    private List<CallRetry> retrieveByState(final long offset, final int max, final String stateCondition,
+                                            final List<Long> specificState) {
+        @SuppressWarnings("unchecked")
         SqlQueryExecution<List<CallRetry>> queryExecution = new SqlQueryExecution<List<CallRetry>>() {
 
             @Override
             public String getSqlQuery() {
-                 String query = "SELECT a.id as id, a.callStage as callStage, a.circle as circle, a.contentFileName as contentFileName, a.languageLocationCode as languageLocationCode, a.msisdn as msisdn, " +
-                        "a.subscriptionId as subscriptionId, a.subscriptionOrigin as subscriptionOrigin, a.weekId as weekId, a.creationDate as creationDate, a.creator as creator, a.modificationDate as " +
-                        "modificationDate, a.modifiedBy as modifiedBy, a.owner as owner, a.targetFiletimestamp as targetFiletimestamp, a.invalidNumberCount as invalidNumberCount FROM " +
-                        "(SELECT r.id, r.callStage, r.circle, r.contentFileName, r.languageLocationCode, r.msisdn, r.subscriptionId, r.subscriptionOrigin, r.weekId, r.creationDate, r.creator, r.modificationDate, r.modifiedBy, r.owner, r.targetFiletimestamp, r.invalidNumberCount,CASE WHEN ss.subscriptionPack_id_OID = 1 THEN s.mother_id_OID WHEN ss.subscriptionPack_id_OID = 2 THEN s.child_id_OID END AS entityId FROM nms_kk_retry_records r " +
-                        "INNER JOIN nms_subscriptions ss ON ss.subscriptionId = r.subscriptionId AND ss.status = 'ACTIVE' INNER JOIN nms_subscribers s ON ss.subscriber_id_OID = s.id) a LEFT JOIN nms_mcts_mothers" +
-                        " m1 ON a.entityId = m1.id AND m1.state_id_OID IN ( "+generateNamedParameters(specificState) +") LEFT JOIN nms_mcts_children m2 ON a.entityId = m2.id AND m2.state_id_OID IN ( "+generateNamedParameters(specificState)
-                        + " ) WHERE (m1.id IS NOT NULL OR " +
-                        "m2.id IS NOT NULL)  and a.id > :id ORDER BY id LIMIT :limit";
-                /* String query = "SELECT \n" +
-                        "    r.id as id, r.callStage as callStage, r.circle as circle, r.contentFileName as contentFileName, \n" +
-                        "    r.languageLocationCode as languageLocationCode, r.msisdn as msisdn, r.subscriptionId as subscriptionId, \n" +
-                        "    r.subscriptionOrigin as subscriptionOrigin, r.weekId as weekId, r.creationDate as creationDate, \n" +
-                        "    r.creator as creator, r.modificationDate as modificationDate, r.modifiedBy as modifiedBy, \n" +
-                        "    r.owner as owner, r.targetFiletimestamp as targetFiletimestamp, r.invalidNumberCount as invalidNumberCount " +
-                        " FROM nms_kk_retry_records r \n" +
-                        "INNER JOIN nms_subscriptions ss ON ss.subscriptionId = r.subscriptionId AND ss.status = 'ACTIVE' \n" +
-                        "INNER JOIN nms_subscribers s ON ss.subscriber_id_OID = s.id " +
-                        " LEFT JOIN nms_mcts_mothers m1 ON " +
-                        "    CASE WHEN ss.subscriptionPack_id_OID = 1 THEN s.mother_id_OID WHEN ss.subscriptionPack_id_OID = 2 THEN s.child_id_OID END = m1.id AND m1.state_id_OID IN (:a1, :a2) " +
-                        " LEFT JOIN nms_mcts_children m2 ON \n" +
-                        "    CASE WHEN ss.subscriptionPack_id_OID = 1 THEN s.mother_id_OID WHEN ss.subscriptionPack_id_OID = 2 THEN s.child_id_OID END = m2.id AND m2.state_id_OID IN (:a1, :a2) " +
-                        " WHERE (m1.id IS NOT NULL OR m2.id IS NOT NULL) AND r.id > :id " +
-                        " ORDER BY r.id LIMIT :limit;" ; */
+                String query = "SELECT r.* FROM nms_kk_retry_records r " +
+                        "INNER JOIN nms_subscriptions ss ON ss.subscriptionId = r.subscriptionId AND ss.status = 'ACTIVE' " +
+                        "WHERE " + stateCondition + " AND r.id > :id ORDER BY r.id LIMIT :limit";
                 LOGGER.debug("SQL QUERY: {}", query);
                 return query;
             }
@@ -113,12 +122,9 @@ public class CallRetryServiceImpl implements CallRetryService {
                 Map params = new HashMap();
                 params.put("id", offset);
                 params.put("limit", max);
-                 for (int i = 0; i < specificState.size(); i++) {
-                    String paramName = "a" + (i + 1);
-                    params.put(paramName, specificState.get(i));
+                for (int i = 0; i < specificState.size(); i++) {
+                    params.put("a" + (i + 1), specificState.get(i));
                 }
-                LOGGER.debug("Executing SQL Query: {}", query.toString());
-                LOGGER.debug("Parameters: {}", params);
                 ForwardQueryResult fqr = (ForwardQueryResult) query.executeWithMap(params);
 
                 return (List<CallRetry>) fqr;
@@ -129,57 +135,65 @@ public class CallRetryServiceImpl implements CallRetryService {
     }
 
     @Override
-    public List<CallRetry> retrieveAllNonIVR(long offset, int max, List<Long> specificState) {
-        SqlQueryExecution<List<CallRetry>> queryExecution = new SqlQueryExecution<List<CallRetry>>() {
+    public synchronized void backfillStateIds() {
+        final Long upTo = findMaxId();
+        if (upTo == null || upTo <= backfilledUpTo) {
+            return;
+        }
+        final long after = backfilledUpTo;
+
+        @SuppressWarnings("unchecked")
+        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
 
             @Override
             public String getSqlQuery() {
-                String query = "SELECT a.id as id, a.callStage as callStage, a.circle as circle, a.contentFileName as contentFileName, a.languageLocationCode as languageLocationCode, a.msisdn as msisdn, " +
-                        "a.subscriptionId as subscriptionId, a.subscriptionOrigin as subscriptionOrigin, a.weekId as weekId, a.creationDate as creationDate, a.creator as creator, a.modificationDate as " +
-                        "modificationDate, a.modifiedBy as modifiedBy, a.owner as owner, a.targetFiletimestamp as targetFiletimestamp, a.invalidNumberCount as invalidNumberCount FROM " +
-                        "(SELECT r.id, r.callStage, r.circle, r.contentFileName, r.languageLocationCode, r.msisdn, r.subscriptionId, r.subscriptionOrigin, r.weekId, r.creationDate, r.creator, r.modificationDate, r.modifiedBy, r.owner, r.targetFiletimestamp, r.invalidNumberCount,CASE WHEN ss.subscriptionPack_id_OID = 1 THEN s.mother_id_OID WHEN ss.subscriptionPack_id_OID = 2 THEN s.child_id_OID END AS entityId FROM nms_kk_retry_records r " +
-                        "INNER JOIN nms_subscriptions ss ON ss.subscriptionId = r.subscriptionId AND ss.status = 'ACTIVE' INNER JOIN nms_subscribers s ON ss.subscriber_id_OID = s.id) a LEFT JOIN nms_mcts_mothers" +
-                        " m1 ON a.entityId = m1.id AND m1.state_id_OID NOT IN ( "+generateNamedParameters(specificState) +") LEFT JOIN nms_mcts_children m2 ON a.entityId = m2.id AND m2.state_id_OID NOT IN ( "+generateNamedParameters(specificState)
-                        + " ) WHERE (m1.id IS NOT NULL OR " +
-                        "m2.id IS NOT NULL)  and a.id > :id ORDER BY id LIMIT :limit";
-                /* String query = "SELECT \n" +
-                        "    r.id as id, r.callStage as callStage, r.circle as circle, r.contentFileName as contentFileName, \n" +
-                        "    r.languageLocationCode as languageLocationCode, r.msisdn as msisdn, r.subscriptionId as subscriptionId, \n" +
-                        "    r.subscriptionOrigin as subscriptionOrigin, r.weekId as weekId, r.creationDate as creationDate, \n" +
-                        "    r.creator as creator, r.modificationDate as modificationDate, r.modifiedBy as modifiedBy, \n" +
-                        "    r.owner as owner, r.targetFiletimestamp as targetFiletimestamp, r.invalidNumberCount as invalidNumberCount " +
-                        " FROM nms_kk_retry_records r \n" +
-                        "INNER JOIN nms_subscriptions ss ON ss.subscriptionId = r.subscriptionId AND ss.status = 'ACTIVE' \n" +
-                        "INNER JOIN nms_subscribers s ON ss.subscriber_id_OID = s.id " +
-                        " LEFT JOIN nms_mcts_mothers m1 ON " +
-                        "    CASE WHEN ss.subscriptionPack_id_OID = 1 THEN s.mother_id_OID WHEN ss.subscriptionPack_id_OID = 2 THEN s.child_id_OID END = m1.id AND m1.state_id_OID NOT IN (:a1, :a2) " +
-                        " LEFT JOIN nms_mcts_children m2 ON \n" +
-                        "    CASE WHEN ss.subscriptionPack_id_OID = 1 THEN s.mother_id_OID WHEN ss.subscriptionPack_id_OID = 2 THEN s.child_id_OID END = m2.id AND m2.state_id_OID NOT IN (:a1, :a2) " +
-                        " WHERE (m1.id IS NOT NULL OR m2.id IS NOT NULL) AND r.id > :id " +
-                        " ORDER BY r.id LIMIT :limit;" ; */
-
+                String query = "UPDATE nms_kk_retry_records r " +
+                        "INNER JOIN nms_subscriptions ss ON ss.subscriptionId = r.subscriptionId " +
+                        "INNER JOIN nms_subscription_packs p ON p.id = ss.subscriptionPack_id_OID " +
+                        "INNER JOIN nms_subscribers s ON s.id = ss.subscriber_id_OID " +
+                        "LEFT JOIN nms_mcts_mothers m ON p.type = 'PREGNANCY' AND m.id = s.mother_id_OID " +
+                        "LEFT JOIN nms_mcts_children c ON p.type = 'CHILD' AND c.id = s.child_id_OID " +
+                        "SET r.stateId = COALESCE(m.state_id_OID, c.state_id_OID) " +
+                        "WHERE r.id > :after AND r.id <= :upTo AND r.stateId IS NULL " +
+                        "AND COALESCE(m.state_id_OID, c.state_id_OID) IS NOT NULL";
                 LOGGER.debug("SQL QUERY: {}", query);
                 return query;
             }
 
             @Override
-            public List<CallRetry> execute(Query query) {
-
-                query.setClass(CallRetry.class);
+            public Long execute(Query query) {
 
                 Map params = new HashMap();
-                params.put("id", offset);
-                params.put("limit", max);
-                for (int i = 0; i < specificState.size(); i++) {
-                    String paramName = "a" + (i + 1);
-                    params.put(paramName, specificState.get(i));
-                }
-                LOGGER.debug("Executing SQL Query: {}", query.toString());
-                LOGGER.debug("Parameters: {}", params);
+                params.put("after", after);
+                params.put("upTo", upTo);
+                return (Long) query.executeWithMap(params);
+            }
+        };
 
-                ForwardQueryResult fqr = (ForwardQueryResult) query.executeWithMap(params);
+        Timer timer = new Timer();
+        Long rowCount = callRetryDataService.executeSQLQuery(queryExecution);
+        backfilledUpTo = upTo;
+        if (rowCount != null && rowCount > 0) {
+            callRetryDataService.evictEntityCache(false);
+            LOGGER.info("Filled in the state of {} nms_kk_retry_records in {}", rowCount, timer.time());
+        }
+    }
 
-                return (List<CallRetry>) fqr;
+    private Long findMaxId() {
+
+        @SuppressWarnings("unchecked")
+        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
+
+            @Override
+            public String getSqlQuery() {
+                return "SELECT MAX(id) FROM nms_kk_retry_records";
+            }
+
+            @Override
+            public Long execute(Query query) {
+                query.setUnique(true);
+                Object maxId = query.execute();
+                return maxId == null ? null : ((Number) maxId).longValue();
             }
         };
 
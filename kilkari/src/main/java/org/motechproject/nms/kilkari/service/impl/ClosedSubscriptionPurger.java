@@ -0,0 +1,258 @@
+package org.motechproject.nms.kilkari.service.impl;
+
+import org.joda.time.DateTime;
+import org.motechproject.mds.query.SqlQueryExecution;
+import org.motechproject.metrics.service.Timer;
+import org.motechproject.nms.kilkari.domain.PurgeCheckpoint;
+import org.motechproject.nms.kilkari.domain.Subscription;
+import org.motechproject.nms.kilkari.repository.CallRetryDataService;
+import org.motechproject.nms.kilkari.repository.PurgeCheckpointDataService;
+import org.motechproject.nms.kilkari.repository.SubscriberDataService;
+import org.motechproject.nms.kilkari.repository.SubscriptionDataService;
+import org.motechproject.nms.kilkari.utils.KilkariConstants;
+import org.motechproject.nms.tracking.service.TrackChangesService;
+import org.motechproject.nms.tracking.utils.SettingsHelper;
+import org.motechproject.server.config.SettingsFacade;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Purges COMPLETED/DEACTIVATED subscriptions closed before a cutoff, with their call retry records and change logs,
+ * and the subscribers left without subscriptions. The subscriptions are paged by id and each chunk is deleted with a
+ * handful of set based statements in its own transaction, which also saves the progress in a {@link PurgeCheckpoint}.
+ * A purge that was interrupted resumes after the last committed chunk, with the cutoff it started with.
+ */
+@Component("closedSubscriptionPurger")
+public class ClosedSubscriptionPurger {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClosedSubscriptionPurger.class);
+
+    private static final String CHECKPOINT_NAME = "closedSubscriptions";
+    private static final String CHUNK_SIZE = "kilkari.purge.chunk_size";
+    private static final int CHUNK_SIZE_DEFAULT = 1000;
+
+    private final SubscriptionDataService subscriptionDataService;
+    private final SubscriberDataService subscriberDataService;
+    private final CallRetryDataService callRetryDataService;
+    private final TrackChangesService trackChangesService;
+    private final PurgeCheckpointDataService purgeCheckpointDataService;
+    private final SubscriberCacheEvictBroadcaster subscriberCacheEvictBroadcaster;
+    private final TransactionTemplate newTransaction;
+    private final int chunkSize;
+
+    @Autowired
+    public ClosedSubscriptionPurger(@Qualifier("kilkariSettings") SettingsFacade settingsFacade,
+                                    SubscriptionDataService subscriptionDataService,
+                                    SubscriberDataService subscriberDataService,
+                                    CallRetryDataService callRetryDataService,
+                                    TrackChangesService trackChangesService,
+                                    PurgeCheckpointDataService purgeCheckpointDataService,
+                                    SubscriberCacheEvictBroadcaster subscriberCacheEvictBroadcaster,
+                                    PlatformTransactionManager transactionManager) {
+        this.subscriptionDataService = subscriptionDataService;
+        this.subscriberDataService = subscriberDataService;
+        this.callRetryDataService = callRetryDataService;
+        this.trackChangesService = trackChangesService;
+        this.purgeCheckpointDataService = purgeCheckpointDataService;
+        this.subscriberCacheEvictBroadcaster = subscriberCacheEvictBroadcaster;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.chunkSize = SettingsHelper.getPositiveInteger(settingsFacade, CHUNK_SIZE, CHUNK_SIZE_DEFAULT);
+    }
+
+    /**
+     * Runs the purge, or resumes the one that was interrupted
+     * @param cutoff subscriptions whose end date is before this are purged, unless an interrupted purge is resumed
+     */
+    public void purge(final DateTime cutoff) {
+        Progress progress = newTransaction.execute(new TransactionCallback<Progress>() {
+            @Override
+            public Progress doInTransaction(TransactionStatus status) {
+                return startOrResume(cutoff);
+            }
+        });
+        final DateTime purgeCutoff = progress.cutoff;
+
+        Timer timer = new Timer("subscription", "subscriptions");
+        long purged = 0;
+        while (!progress.completed) {
+            Timer chunkTimer = new Timer("subscription", "subscriptions");
+            final long lastId = progress.lastId;
+            progress = newTransaction.execute(new TransactionCallback<Progress>() {
+                @Override
+                public Progress doInTransaction(TransactionStatus status) {
+                    return purgeChunk(purgeCutoff, lastId);
+                }
+            });
+            long chunkPurged = progress.purgedSubscriptions - purged;
+            purged = progress.purgedSubscriptions;
+            if (chunkPurged > 0) {
+                LOGGER.debug("Purge chunk after id {}: {}", lastId, chunkTimer.frequency((int) chunkPurged));
+            }
+        }
+
+        if (purged > 0) {
+            // the native deletes bypass the L2 cache, which could still hand out the purged rows
+            subscriptionDataService.evictEntityCache(false);
+            subscriberDataService.evictEntityCache(false);
+            callRetryDataService.evictEntityCache(false);
+            subscriberCacheEvictBroadcaster.allSubscribersChanged();
+        }
+        LOGGER.info("Purge of subscriptions closed before {} done: {}, {} subscriber(s)", purgeCutoff,
+                timer.frequency((int) purged), progress.purgedSubscribers);
+    }
+
+    private Progress startOrResume(DateTime cutoff) {
+        PurgeCheckpoint checkpoint = purgeCheckpointDataService.findByName(CHECKPOINT_NAME);
+        if (checkpoint == null) {
+            checkpoint = purgeCheckpointDataService.create(restart(new PurgeCheckpoint(CHECKPOINT_NAME), cutoff));
+        } else if (checkpoint.isCompleted() || checkpoint.getCutoff() == null) {
+            checkpoint = purgeCheckpointDataService.update(restart(checkpoint, cutoff));
+        } else {
+            LOGGER.info("Resuming the purge of subscriptions closed before {} after id {}, {} already purged",
+                    checkpoint.getCutoff(), checkpoint.getLastId(), checkpoint.getPurgedSubscriptions());
+        }
+        return new Progress(checkpoint);
+    }
+
+    private PurgeCheckpoint restart(PurgeCheckpoint checkpoint, DateTime cutoff) {
+        checkpoint.setCutoff(cutoff);
+        checkpoint.setLastId(0L);
+        checkpoint.setPurgedSubscriptions(0L);
+        checkpoint.setPurgedSubscribers(0L);
+        checkpoint.setCompleted(false);
+        return checkpoint;
+    }
+
+    private Progress purgeChunk(DateTime cutoff, long lastId) {
+        List<Object[]> rows = findPurgeable(cutoff, lastId);
+        PurgeCheckpoint checkpoint = purgeCheckpointDataService.findByName(CHECKPOINT_NAME);
+
+        if (rows.isEmpty()) {
+            checkpoint.setCompleted(true);
+        } else {
+            List<Long> ids = new ArrayList<>(rows.size());
+            List<String> subscriptionIds = new ArrayList<>(rows.size());
+            Set<Long> subscriberIds = new LinkedHashSet<>();
+            for (Object[] row : rows) {
+                ids.add(((Number) row[0]).longValue());
+                subscriptionIds.add((String) row[1]);
+                subscriberIds.add(((Number) row[2]).longValue());
+            }
+
+            executeUpdate("DELETE FROM nms_kk_retry_records WHERE subscriptionId IN (%s)", subscriptionIds);
+            long subscriptions = executeUpdate("DELETE FROM nms_subscriptions WHERE id IN (%s)", ids);
+            trackChangesService.deleteChangeLogs(Subscription.class, ids);
+            long subscribers = executeUpdate("DELETE FROM nms_subscribers WHERE id IN (%s) AND NOT EXISTS " +
+                    "(SELECT 1 FROM nms_subscriptions WHERE subscriber_id_OID = nms_subscribers.id)", subscriberIds);
+
+            checkpoint.setLastId(ids.get(ids.size() - 1));
+            checkpoint.setPurgedSubscriptions(checkpoint.getPurgedSubscriptions() + subscriptions);
+            checkpoint.setPurgedSubscribers(checkpoint.getPurgedSubscribers() + subscribers);
+        }
+        return new Progress(purgeCheckpointDataService.update(checkpoint));
+    }
+
+    private List<Object[]> findPurgeable(final DateTime cutoff, final long lastId) {
+        @SuppressWarnings("unchecked")
+        SqlQueryExecution<List<Object[]>> queryExecution = new SqlQueryExecution<List<Object[]>>() {
+
+            @Override
+            public String getSqlQuery() {
+                String query = "SELECT id, subscriptionId, subscriber_id_OID FROM nms_subscriptions " +
+                        "WHERE (status = 'COMPLETED' OR status = 'DEACTIVATED') AND endDate < :cutoff " +
+                        "AND id > :lastId ORDER BY id LIMIT :max";
+                LOGGER.debug(KilkariConstants.SQL_QUERY_LOG, query);
+                return query;
+            }
+
+            @Override
+            public List<Object[]> execute(Query query) {
+                Map<String, Object> params = new HashMap<>();
+                params.put("cutoff", cutoff.toDate());
+                params.put("lastId", lastId);
+                params.put("max", chunkSize);
+                return new ArrayList<>((List<Object[]>) query.executeWithMap(params));
+            }
+        };
+
+        return subscriptionDataService.executeSQLQuery(queryExecution);
+    }
+
+    /**
+     * @param sql statement with a %s placeholder for the bound IN list of values
+     * @return the number of deleted rows, 0 without running anything when there are no values
+     */
+    private long executeUpdate(String sql, Collection<?> values) {
+        if (values.isEmpty()) {
+            return 0;
+        }
+        final Map<String, Object> params = new HashMap<>();
+        StringBuilder inList = new StringBuilder();
+        int i = 0;
+        for (Object value : values) {
+            if (i > 0) {
+                inList.append(", ");
+            }
+            inList.append(":v").append(i);
+            params.put("v" + i, value);
+            i++;
+        }
+        final String query = String.format(sql, inList);
+
+        @SuppressWarnings("unchecked")
+        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
+
+            @Override
+            public String getSqlQuery() {
+                LOGGER.debug(KilkariConstants.SQL_QUERY_LOG, query);
+                return query;
+            }
+
+            @Override
+            public Long execute(Query query) {
+                query.setClass(Subscription.class);
+                return (Long) query.executeWithMap(params);
+            }
+        };
+
+        Long updated = subscriptionDataService.executeSQLQuery(queryExecution);
+        return updated == null ? 0 : updated;
+    }
+
+    /**
+     * Copy of the checkpoint state, read inside the chunk transaction
+     */
+    private static final class Progress {
+        private final DateTime cutoff;
+        private final long lastId;
+        private final long purgedSubscriptions;
+        private final long purgedSubscribers;
+        private final boolean completed;
+
+        private Progress(PurgeCheckpoint checkpoint) {
+            cutoff = checkpoint.getCutoff();
+            lastId = checkpoint.getLastId();
+            purgedSubscriptions = checkpoint.getPurgedSubscriptions();
+            purgedSubscribers = checkpoint.getPurgedSubscribers();
+            completed = checkpoint.isCompleted();
+        }
+    }
+}
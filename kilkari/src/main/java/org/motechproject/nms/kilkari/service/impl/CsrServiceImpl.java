@@ -9,6 +9,7 @@ import org.motechproject.alerts.domain.AlertStatus;
 import org.motechproject.alerts.domain.AlertType;
 import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.annotations.MotechListener;
+import org.motechproject.mds.query.SqlQueryExecution;
 import org.motechproject.metrics.service.Timer;
 import org.motechproject.nms.kilkari.domain.*;
 import org.motechproject.nms.kilkari.dto.CallSummaryRecordDto;
@@ -27,13 +28,23 @@ import org.motechproject.nms.kilkari.utils.KilkariConstants;
 import org.motechproject.nms.props.domain.FinalCallStatus;
 import org.motechproject.nms.props.domain.StatusCode;
 import org.motechproject.nms.props.domain.WhatsAppOptInStatusCode;
+import org.motechproject.nms.utils.BulkWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static java.lang.Math.min;
 
@@ -43,6 +54,41 @@ public class CsrServiceImpl implements CsrService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CsrServiceImpl.class);
 
+    private static final int CALL_RETRY_BATCH_SIZE = 1000;
+
+    /**
+     * New call retries (no id) are inserted, changed ones (id set) update their row
+     */
+    private static final BulkWriter<CallRetry> CALL_RETRY_WRITER = BulkWriter
+            .<CallRetry>insertInto("nms_kk_retry_records", CallRetry.class)
+            .columns("id", "subscriptionId", "msisdn", "callStage", "contentFileName", "weekId",
+                    "languageLocationCode", "circle", "subscriptionOrigin", "targetFiletimestamp",
+                    "invalidNumberCount", "opt_in_call_eligibility", "stateId")
+            .motechAudit()
+            .now("creationDate", "modificationDate")
+            .updateOnDuplicateKey("msisdn", "callStage", "contentFileName", "weekId", "languageLocationCode",
+                    "circle", "subscriptionOrigin", "targetFiletimestamp", "invalidNumberCount",
+                    "opt_in_call_eligibility", "stateId", "modificationDate")
+            .binder(new BulkWriter.RowBinder<CallRetry>() {
+                @Override
+                public void bind(CallRetry callRetry, BulkWriter.Row columns) {
+                    columns.set("id", callRetry.getId())
+                            .set("subscriptionId", callRetry.getSubscriptionId())
+                            .set("msisdn", callRetry.getMsisdn())
+                            .set("callStage", callRetry.getCallStage())
+                            .set("contentFileName", callRetry.getContentFileName())
+                            .set("weekId", callRetry.getWeekId())
+                            .set("languageLocationCode", callRetry.getLanguageLocationCode())
+                            .set("circle", callRetry.getCircle())
+                            .set("subscriptionOrigin", callRetry.getSubscriptionOrigin())
+                            .set("targetFiletimestamp", callRetry.getTargetFiletimestamp())
+                            .set("invalidNumberCount", callRetry.getInvalidNumberCount())
+                            .set("opt_in_call_eligibility", callRetry.isOpt_in_call_eligibility())
+                            .set("stateId", callRetry.getStateId());
+                }
+            })
+            .build();
+
     private SubscriptionDataService subscriptionDataService;
     private SubscriptionService subscriptionService;
     private CallRetryDataService callRetryDataService;
@@ -51,6 +97,9 @@ public class CsrServiceImpl implements CsrService {
     private CsrVerifierService csrVerifierService;
     private DeactivatedBeneficiaryDataService deactivatedBeneficiaryDataService;
 
+    @Autowired
+    private ActiveSubscriptionCounter activeSubscriptionCounter;
+
     @Autowired
     public CsrServiceImpl(SubscriptionDataService subscriptionDataService, SubscriptionService subscriptionService,
                           CallRetryDataService callRetryDataService, AlertService alertService,
@@ -77,8 +126,10 @@ public class CsrServiceImpl implements CsrService {
         }
 
         // Mark the subscription completed
+        SubscriptionStatus previousStatus = subscription.getStatus();
         subscription.setStatus(SubscriptionStatus.COMPLETED);
         subscriptionDataService.update(subscription);
+        activeSubscriptionCounter.transition(previousStatus, SubscriptionStatus.COMPLETED);
         SubscriptionServiceImpl.createDeactivatedUser(deactivatedBeneficiaryDataService, subscription, null, true);
     }
 
@@ -92,28 +143,31 @@ public class CsrServiceImpl implements CsrService {
         }
 
         // Mark the subscription completed
+        SubscriptionStatus previousStatus = subscription.getStatus();
         subscription.setStatus(SubscriptionStatus.COMPLETED);
         subscriptionDataService.update(subscription);
+        activeSubscriptionCounter.transition(previousStatus, SubscriptionStatus.COMPLETED);
         SubscriptionServiceImpl.createDeactivatedUser(deactivatedBeneficiaryDataService, subscription, null, true);
     }
 
-    private void switchIVRfromWhatsAppIfOpted(Subscription subscription, CallSummaryRecordDto callSummaryRecordDto, CallRetry callRetry){
+    private void switchIVRfromWhatsAppIfOpted(Subscription subscription, CallSummaryRecordDto callSummaryRecordDto, CallRetry callRetry,
+                                              CsrLookup lookup){
         if (subscription.isNeedsWelcomeOptInForWP() && SubscriptionStatus.ACTIVE.equals(subscription.getStatus())){
             LOGGER.info("INSIDE processCallSummaryRecord -INSIDE switchIVRfromWhatsAppIfOpted TEND TO change status");
             switch (WhatsAppOptInStatusCode.valueOf(callSummaryRecordDto.getOpt_in_input())){
                 case OPTED_FOR_WHATSAPP:
                     switchToWhatsApp(subscription);
                     if (callRetry != null) {
-                            callRetryDataService.delete(callRetry);
-                        }
+                        lookup.deleteCallRetry(callRetry);
+                    }
                     break;
                 case OPTED_FOR_IVR:
                     if (callRetry != null) {
-                        callRetryDataService.delete(callRetry);
+                        lookup.deleteCallRetry(callRetry);
                     }
                     break;
                 default:
-                    doRescheduleOptIn(subscription, callSummaryRecordDto, callRetry);
+                    doRescheduleOptIn(subscription, callSummaryRecordDto, callRetry, lookup);
             }
         }
     }
@@ -142,13 +196,14 @@ public class CsrServiceImpl implements CsrService {
     }
 
 
-     private void doReschedule(Subscription subscription, CallRetry existingCallRetry, CallSummaryRecordDto csrDto) {
+     private void doReschedule(Subscription subscription, CallRetry existingCallRetry, CallSummaryRecordDto csrDto,
+                              CsrLookup lookup) {
 
         boolean invalidNr = StatusCode.fromInt(csrDto.getStatusCode()).equals(StatusCode.OBD_FAILED_INVALIDNUMBER);
 
         if (existingCallRetry == null && SubscriptionStatus.ACTIVE.equals(subscription.getStatus())) {
             // We've never retried this call, let's do it
-            callRetryDataService.create(new CallRetry(
+            lookup.createCallRetry(subscription, new CallRetry(
                     subscription.getSubscriptionId(),
                     subscription.getSubscriber().getCallingNumber(),
                     CallStage.RETRY_1,
@@ -174,9 +229,11 @@ public class CsrServiceImpl implements CsrService {
             // See https://github.com/motech-implementations/mim/issues/169
             if (existingCallRetry != null && existingCallRetry.getInvalidNumberCount() != null &&
                     existingCallRetry.getInvalidNumberCount() == subscription.getSubscriptionPack().retryCount()) {
+                SubscriptionStatus previousStatus = subscription.getStatus();
                 subscription.setStatus(SubscriptionStatus.DEACTIVATED);
                 subscription.setDeactivationReason(DeactivationReason.INVALID_NUMBER);
                 subscriptionDataService.update(subscription);
+                activeSubscriptionCounter.transition(previousStatus, SubscriptionStatus.DEACTIVATED);
                 SubscriptionServiceImpl.createDeactivatedUser(deactivatedBeneficiaryDataService, subscription, DeactivationReason.INVALID_NUMBER, false);
             }
             if (existingCallRetry != null && existingCallRetry.isOpt_in_call_eligibility()
@@ -199,10 +256,10 @@ public class CsrServiceImpl implements CsrService {
                             )
                     );*/
                     existingCallRetry.setContentFileName("opt_in.wav");
-                    callRetryDataService.update(existingCallRetry);
+                    lookup.updateCallRetry(existingCallRetry);
                 } else {
                     completeSubscriptionIfNeeded(subscription, csrDto.getContentFileName());
-                    callRetryDataService.delete(existingCallRetry);
+                    lookup.deleteCallRetry(existingCallRetry);
                     LOGGER.info("subscription is : {}", subscription);
                     LOGGER.info("csrDto is : {}", csrDto);
                     LOGGER.info("whatsAppOptSMSDataService is  : {}", whatsAppOptSMSDataService);
@@ -222,7 +279,7 @@ public class CsrServiceImpl implements CsrService {
                 return;
             }
             if (existingCallRetry != null) {
-                callRetryDataService.delete(existingCallRetry);
+                lookup.deleteCallRetry(existingCallRetry);
             }
 
             // Does subscription need to be marked complete, even if we failed to send the last message?
@@ -237,18 +294,19 @@ public class CsrServiceImpl implements CsrService {
             existingCallRetry.setCallStage(existingCallRetry.getCallStage().nextStage());
             existingCallRetry.setInvalidNumberCount(existingCallRetry.getInvalidNumberCount() == null ? 0 :
                     (existingCallRetry.getInvalidNumberCount() + (invalidNr ? 1 : 0)));
-            callRetryDataService.update(existingCallRetry);
+            lookup.updateCallRetry(existingCallRetry);
         }
 
     }
 
-    private void doRescheduleOptIn(Subscription subscription,CallSummaryRecordDto callSummaryRecordDto, CallRetry callRetry){
+    private void doRescheduleOptIn(Subscription subscription,CallSummaryRecordDto callSummaryRecordDto, CallRetry callRetry,
+                                   CsrLookup lookup){
         LOGGER.info("INSIDE doRescheduleOptIn -before resheduling");
         boolean invalidNr = StatusCode.fromInt(callSummaryRecordDto.getStatusCode()).equals(StatusCode.OBD_FAILED_INVALIDNUMBER);
-        CallRetry callRetry1 = callRetryDataService.findBySubscriptionId(subscription.getSubscriptionId());
+        CallRetry callRetry1 = lookup.findCallRetry(subscription.getSubscriptionId());
         if ((callRetry1 !=null && callRetry.getCallStage() == CallStage.RETRY_LAST)) {
             // Only way flow reach here when opt-in call has no response
-            callRetryDataService.delete(callRetry);
+            lookup.deleteCallRetry(callRetry);
             // write insertion of message table logic here
             LOGGER.info("subscription is : {}", subscription);
             LOGGER.info("csrDto is : {}", callSummaryRecordDto);
@@ -268,7 +326,7 @@ public class CsrServiceImpl implements CsrService {
         }
         if (callRetry1 == null && SubscriptionStatus.ACTIVE.equals(subscription.getStatus()) && subscription.isNeedsWelcomeOptInForWP()) {
             // A seperate OPT-IN needs to be sent in case of no response
-            callRetryDataService.create(new CallRetry(
+            lookup.createCallRetry(subscription, new CallRetry(
                             subscription.getSubscriptionId(),
                             subscription.getSubscriber().getCallingNumber(),
                             CallStage.RETRY_LAST,
@@ -288,34 +346,64 @@ public class CsrServiceImpl implements CsrService {
 
     @MotechListener(subjects = {KilkariConstants.NMS_IMI_KK_PROCESS_CSR_SUBJECT}) //NO CHECKSTYLE Cyclomatic Complexity
     @Transactional
-    public void processCallSummaryRecord(MotechEvent event) { //NOPMD NcssMethodCount
+    public void processCallSummaryRecord(MotechEvent event) {
+        processCallSummaryRecord(event.getParameters(), new CsrLookup());
+    }
+
+    @Override
+    @Transactional
+    public void processCallSummaryRecords(List<CallSummaryRecordDto> csrDtos) {
+
+        Timer timer = new Timer("csr", "csrs");
+
+        Set<String> subscriptionIds = new HashSet<>();
+        for (CallSummaryRecordDto csrDto : csrDtos) {
+            if (csrDto.getSubscriptionId() != null) {
+                subscriptionIds.add(csrDto.getSubscriptionId());
+            }
+        }
+
+        PrefetchedCsrLookup lookup = new PrefetchedCsrLookup(findSubscriptions(subscriptionIds),
+                findCallRetries(subscriptionIds));
+        LOGGER.debug("Prefetched {} subscriptions and {} call retries for {} csrs", lookup.subscriptions.size(),
+                lookup.callRetries.size(), csrDtos.size());
+
+        for (CallSummaryRecordDto csrDto : csrDtos) {
+            processCallSummaryRecord(CallSummaryRecordDto.toParams(csrDto), lookup);
+        }
+        lookup.flush();
+
+        LOGGER.debug("processCallSummaryRecords {}", timer.frequency(csrDtos.size()));
+    }
+
+    private void processCallSummaryRecord(Map<String, Object> params, CsrLookup lookup) { //NO CHECKSTYLE Cyclomatic Complexity //NOPMD NcssMethodCount
 
         Timer timer = new Timer();
         String whatHappened = "##";
 
         String subscriptionId = "###INVALID###";
         try {
-            CallSummaryRecordDto csrDto = CallSummaryRecordDto.fromParams(event.getParameters());
+            CallSummaryRecordDto csrDto = CallSummaryRecordDto.fromParams(params);
             subscriptionId = csrDto.getSubscriptionId();
             csrVerifierService.verify(csrDto);
 
-            Subscription subscription = subscriptionDataService.findBySubscriptionId(subscriptionId);
+            Subscription subscription = lookup.findSubscription(subscriptionId);
             if (subscription == null) {
                 throw new NoSuchSubscriptionException(subscriptionId);
             }
 
-            CallRetry callRetry = callRetryDataService.findBySubscriptionId(subscriptionId);
+            CallRetry callRetry = lookup.findCallRetry(subscriptionId);
             switch (FinalCallStatus.fromInt(csrDto.getFinalStatus())) {
                 case SUCCESS:
                     completeSubscriptionIfNeeded(subscription, csrDto.getContentFileName());
                     if (callRetry != null) {
                         if (!callRetry.getContentFileName().equals("opt_in.wav")) {
-                            callRetryDataService.delete(callRetry);
+                            lookup.deleteCallRetry(callRetry);
                         }
                     }
                     if(csrDto.isOpt_in_call_eligibility() && (csrDto.getContentFileName().equals(SubscriptionPackMessage.getWelcomeMessage().getMessageFileName())
                             || csrDto.getContentFileName().equals("opt_in.wav"))) {
-                        switchIVRfromWhatsAppIfOpted(subscription, csrDto, callRetry);
+                        switchIVRfromWhatsAppIfOpted(subscription, csrDto, callRetry, lookup);
                     }
                     whatHappened = "SU";
                     break;
@@ -327,12 +415,12 @@ public class CsrServiceImpl implements CsrService {
                     //always gets w1 message initially
                     if(!csrDto.getWeekId().equals("w1_1")&&!weekId.equals(csrDto.getWeekId())){
                         if(callRetry!=null){
-                            callRetryDataService.delete(callRetry);
+                            lookup.deleteCallRetry(callRetry);
                         }
                     } else {
                         if (callRetry == null ||
                                 !csrDto.getTargetFileTimeStamp().equals(callRetry.getTargetFiletimestamp())) {
-                            doReschedule(subscription, callRetry, csrDto);
+                            doReschedule(subscription, callRetry, csrDto, lookup);
                         }
                     }
                     whatHappened = "FA";
@@ -499,6 +587,231 @@ public class CsrServiceImpl implements CsrService {
         }
     }
 
+    private Map<String, Subscription> findSubscriptions(Collection<String> subscriptionIds) {
+        Map<String, Subscription> subscriptions = new HashMap<>();
+        if (subscriptionIds.isEmpty()) {
+            return subscriptions;
+        }
+
+        final Map<String, Object> params = new HashMap<>();
+        final String inClause = namedParameters(subscriptionIds, params);
+
+        @SuppressWarnings("unchecked")
+        SqlQueryExecution<List<Subscription>> queryExecution = new SqlQueryExecution<List<Subscription>>() {
+
+            @Override
+            public String getSqlQuery() {
+                String query = "SELECT * FROM nms_subscriptions WHERE subscriptionId IN (" + inClause + ")";
+                LOGGER.debug("SQL QUERY: {}", query);
+                return query;
+            }
+
+            @Override
+            public List<Subscription> execute(Query query) {
+                query.setClass(Subscription.class);
+                return (List<Subscription>) query.executeWithMap(params);
+            }
+        };
+
+        for (Subscription subscription : subscriptionDataService.executeSQLQuery(queryExecution)) {
+            subscriptions.put(subscription.getSubscriptionId(), subscription);
+        }
+        return subscriptions;
+    }
+
+    private Map<String, CallRetry> findCallRetries(Collection<String> subscriptionIds) {
+        Map<String, CallRetry> callRetries = new HashMap<>();
+        if (subscriptionIds.isEmpty()) {
+            return callRetries;
+        }
+
+        final Map<String, Object> params = new HashMap<>();
+        final String inClause = namedParameters(subscriptionIds, params);
+
+        @SuppressWarnings("unchecked")
+        SqlQueryExecution<List<CallRetry>> queryExecution = new SqlQueryExecution<List<CallRetry>>() {
+
+            @Override
+            public String getSqlQuery() {
+                String query = "SELECT * FROM nms_kk_retry_records WHERE subscriptionId IN (" + inClause + ")";
+                LOGGER.debug("SQL QUERY: {}", query);
+                return query;
+            }
+
+            @Override
+            public List<CallRetry> execute(Query query) {
+                query.setClass(CallRetry.class);
+                return (List<CallRetry>) query.executeWithMap(params);
+            }
+        };
+
+        // detached, so the changes made while the chunk is processed are only written by the lookup's flush
+        for (CallRetry callRetry : callRetryDataService.detachedCopyAll(
+                callRetryDataService.executeSQLQuery(queryExecution))) {
+            callRetries.put(callRetry.getSubscriptionId(), callRetry);
+        }
+        return callRetries;
+    }
+
+    private void deleteCallRetries(Collection<Long> ids) {
+        final Map<String, Object> params = new HashMap<>();
+        final String inClause = namedParameters(ids, params);
+
+        @SuppressWarnings("unchecked")
+        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
+
+            @Override
+            public String getSqlQuery() {
+                String query = "DELETE FROM nms_kk_retry_records WHERE id IN (" + inClause + ")";
+                LOGGER.debug("SQL QUERY: {}", query);
+                return query;
+            }
+
+            @Override
+            public Long execute(Query query) {
+                return (Long) query.executeWithMap(params);
+            }
+        };
+
+        Timer timer = new Timer();
+        long rowCount = callRetryDataService.executeSQLQuery(queryExecution);
+        LOGGER.debug("Deleted {} rows from nms_kk_retry_records in {}", rowCount, timer.time());
+    }
+
+    /**
+     * @return the state of the mother or child the subscription is for, or null if it has none
+     */
+    private static Long beneficiaryStateId(Subscription subscription) {
+        Subscriber subscriber = subscription.getSubscriber();
+        MctsBeneficiary beneficiary = subscription.getSubscriptionPack().getType() == SubscriptionPackType.PREGNANCY ?
+                subscriber.getMother() : subscriber.getChild();
+        if (beneficiary == null || beneficiary.getState() == null) {
+            return null;
+        }
+        return beneficiary.getState().getId();
+    }
+
+    private static String namedParameters(Collection<?> values, Map<String, Object> params) {
+        StringBuilder result = new StringBuilder();
+        int i = 0;
+        for (Object value : values) {
+            String paramName = "a" + (++i);
+            params.put(paramName, value);
+            if (i > 1) {
+                result.append(", ");
+            }
+            result.append(':').append(paramName);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Subscription and call retry access for a single CSR, straight through the data services.
+     */
+    private class CsrLookup {
+
+        Subscription findSubscription(String subscriptionId) {
+            return subscriptionDataService.findBySubscriptionId(subscriptionId);
+        }
+
+        CallRetry findCallRetry(String subscriptionId) {
+            return callRetryDataService.findBySubscriptionId(subscriptionId);
+        }
+
+        void createCallRetry(Subscription subscription, CallRetry callRetry) {
+            callRetry.setStateId(beneficiaryStateId(subscription));
+            callRetryDataService.create(callRetry);
+        }
+
+        void updateCallRetry(CallRetry callRetry) {
+            callRetryDataService.update(callRetry);
+        }
+
+        void deleteCallRetry(CallRetry callRetry) {
+            callRetryDataService.delete(callRetry);
+        }
+    }
+
+    /**
+     * Lookup used for a whole chunk of CSRs. Subscriptions and call retries are loaded up front with one IN query
+     * each and kept up to date as the chunk is processed. The call retries are detached copies: their creates,
+     * updates and deletes are queued and issued by {@link #flush()} as one DELETE and one multi-row upsert.
+     */
+    private class PrefetchedCsrLookup extends CsrLookup {
+
+        private final Map<String, Subscription> subscriptions;
+        private final Map<String, CallRetry> callRetries;
+        private final Set<Long> pendingDeletes = new HashSet<>();
+        private final Map<Long, CallRetry> pendingUpdates = new LinkedHashMap<>();
+        private final Map<CallRetry, Boolean> pendingCreates = new IdentityHashMap<>();
+
+        PrefetchedCsrLookup(Map<String, Subscription> subscriptions, Map<String, CallRetry> callRetries) {
+            this.subscriptions = subscriptions;
+            this.callRetries = callRetries;
+        }
+
+        @Override
+        Subscription findSubscription(String subscriptionId) {
+            return subscriptions.get(subscriptionId);
+        }
+
+        @Override
+        CallRetry findCallRetry(String subscriptionId) {
+            return callRetries.get(subscriptionId);
+        }
+
+        @Override
+        void createCallRetry(Subscription subscription, CallRetry callRetry) {
+            callRetry.setStateId(beneficiaryStateId(subscription));
+            callRetries.put(callRetry.getSubscriptionId(), callRetry);
+            pendingCreates.put(callRetry, Boolean.TRUE);
+        }
+
+        @Override
+        void updateCallRetry(CallRetry callRetry) {
+            // a queued create is written with whatever it holds when flushed
+            if (!pendingCreates.containsKey(callRetry)) {
+                pendingUpdates.put(callRetry.getId(), callRetry);
+            }
+        }
+
+        @Override
+        void deleteCallRetry(CallRetry callRetry) {
+            callRetries.remove(callRetry.getSubscriptionId());
+            if (pendingCreates.remove(callRetry) == null) {
+                pendingUpdates.remove(callRetry.getId());
+                pendingDeletes.add(callRetry.getId());
+            }
+        }
+
+        /**
+         * Deletes go first: subscriptionId is unique in nms_kk_retry_records and a retry deleted in this chunk may
+         * have been created again for the same subscription
+         */
+        void flush() {
+            boolean written = false;
+            if (!pendingDeletes.isEmpty()) {
+                deleteCallRetries(pendingDeletes);
+                pendingDeletes.clear();
+                written = true;
+            }
+            if (!pendingUpdates.isEmpty() || !pendingCreates.isEmpty()) {
+                List<CallRetry> rows = new ArrayList<>(pendingUpdates.values());
+                rows.addAll(pendingCreates.keySet());
+                long affected = CALL_RETRY_WRITER.write(callRetryDataService, rows, CALL_RETRY_BATCH_SIZE);
+                LOGGER.debug("Wrote {} updated and {} new call retries, {} rows affected", pendingUpdates.size(),
+                        pendingCreates.size(), affected);
+                pendingUpdates.clear();
+                pendingCreates.clear();
+                written = true;
+            }
+            if (written) {
+                // the rows were written without the persistence manager, its level 2 cache may hold stale copies
+                callRetryDataService.evictEntityCache(false);
+            }
+        }
+    }
+
     private String getWeekIdForSubscription(DateTime startDate) {
         int daysIntoSubscription = Days.daysBetween(startDate, DateTime.now()).getDays();
         int currentWeek = (daysIntoSubscription / 7) + 1;
@@ -0,0 +1,179 @@
+package org.motechproject.nms.kilkari.service.impl;
+
+import org.motechproject.metrics.service.Timer;
+import org.motechproject.nms.kilkari.service.ImportExecutionService;
+import org.motechproject.nms.tracking.utils.SettingsHelper;
+import org.motechproject.server.config.SettingsFacade;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service("importExecutionService")
+public class ImportExecutionServiceImpl implements ImportExecutionService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImportExecutionServiceImpl.class);
+
+    private static final String IMPORT_THREADS = "kilkari.import.threads";
+    private static final int IMPORT_THREADS_DEFAULT = 8;
+    private static final String IMPORT_QUEUE_SIZE = "kilkari.import.queue.size";
+    private static final int IMPORT_QUEUE_SIZE_DEFAULT = 16;
+    private static final String DB_POOL_SIZE = "kilkari.import.db.pool.size";
+    private static final int DB_POOL_SIZE_DEFAULT = 20;
+    private static final String DB_POOL_HEADROOM = "kilkari.import.db.pool.headroom";
+    private static final int DB_POOL_HEADROOM_DEFAULT = 4;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 60;
+
+    private final ThreadPoolExecutor executor;
+
+    @Autowired
+    public ImportExecutionServiceImpl(@Qualifier("kilkariSettings") SettingsFacade settingsFacade) {
+        int configuredThreads = SettingsHelper.getPositiveInteger(settingsFacade, IMPORT_THREADS,
+                IMPORT_THREADS_DEFAULT);
+        int queueSize = SettingsHelper.getPositiveInteger(settingsFacade, IMPORT_QUEUE_SIZE, IMPORT_QUEUE_SIZE_DEFAULT);
+        int poolSize = SettingsHelper.getPositiveInteger(settingsFacade, DB_POOL_SIZE, DB_POOL_SIZE_DEFAULT);
+        int headroom = SettingsHelper.getPositiveInteger(settingsFacade, DB_POOL_HEADROOM, DB_POOL_HEADROOM_DEFAULT);
+        int threads = effectiveThreads(configuredThreads, poolSize, headroom);
+
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), new ImportThreadFactory(), new BlockWhenFull());
+        LOGGER.info("Import executor started with {} workers ({}={}, connection pool of {} minus {} kept for the " +
+                "rest of the server) and a queue of {}", threads, IMPORT_THREADS, configuredThreads, poolSize,
+                headroom, queueSize);
+    }
+
+    /**
+     * Every worker holds a database connection while it imports a group, so the workers are capped at the connection
+     * pool size minus the headroom left to the other users of the pool, with at least one worker
+     */
+    public static int effectiveThreads(int configuredThreads, int poolSize, int headroom) {
+        int cap = Math.max(1, poolSize - headroom);
+        if (configuredThreads > cap) {
+            LOGGER.warn("{}={} exceeds the {} connections the imports may use, using {} workers", IMPORT_THREADS,
+                    configuredThreads, cap, cap);
+            return cap;
+        }
+        return configuredThreads;
+    }
+
+    @Override
+    public <T> List<Future<T>> submitAll(String importName, List<? extends Callable<T>> tasks) {
+        ImportProgress progress = new ImportProgress(importName, tasks.size());
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            futures.add(executor.submit(new TrackedTask<>(task, progress)));
+        }
+        LOGGER.debug("{}: {} groups submitted, {} workers active, {} groups queued", importName, tasks.size(),
+                executor.getActiveCount(), executor.getQueue().size());
+        return futures;
+    }
+
+    /**
+     * Lets the groups already submitted finish, imports submitting after this point are rejected
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warn("Import workers still running after {}s, interrupting them", SHUTDOWN_TIMEOUT_SECONDS);
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Back pressure: the submitting import waits for room in the queue rather than the task being dropped. A task
+     * queued while the executor shuts down could be left behind by the workers, so it's taken back and rejected.
+     */
+    private static class BlockWhenFull implements RejectedExecutionHandler {
+        private static final long OFFER_TIMEOUT_MILLIS = 1000;
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            try {
+                while (!executor.getQueue().offer(r, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    rejectIfShutdown(executor);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting to submit an import task", e);
+            }
+            if (executor.isShutdown() && executor.getQueue().remove(r)) {
+                rejectIfShutdown(executor);
+            }
+        }
+
+        private static void rejectIfShutdown(ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Import executor is shut down");
+            }
+        }
+    }
+
+    private static class ImportThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "nms-import-" + count.incrementAndGet());
+        }
+    }
+
+    private static class ImportProgress {
+        private final String importName;
+        private final int total;
+        private final AtomicInteger completed = new AtomicInteger();
+        private final Timer timer = new Timer("group", "groups");
+
+        ImportProgress(String importName, int total) {
+            this.importName = importName;
+            this.total = total;
+        }
+
+        void taskDone() {
+            int done = completed.incrementAndGet();
+            if (done == total) {
+                LOGGER.info("{}: all {} groups processed, {}", importName, total, timer.frequency(total));
+            } else {
+                LOGGER.debug("{}: {}/{} groups processed, {}", importName, done, total, timer.frequency(done));
+            }
+        }
+    }
+
+    private static class TrackedTask<T> implements Callable<T> {
+        private final Callable<T> task;
+        private final ImportProgress progress;
+
+        TrackedTask(Callable<T> task, ImportProgress progress) {
+            this.task = task;
+            this.progress = progress;
+        }
+
+        @Override
+        public T call() throws Exception {
+            try {
+                return task.call();
+            } finally {
+                progress.taskDone();
+            }
+        }
+    }
+}
@@ -13,6 +13,7 @@ import org.motechproject.nms.kilkari.domain.MctsMother;
 import org.motechproject.nms.kilkari.domain.ThreadProcessorObject;
 import org.motechproject.nms.kilkari.domain.SubscriptionOrigin;
 import org.motechproject.nms.kilkari.service.ChildCsvThreadProcessor;
+import org.motechproject.nms.kilkari.service.ImportExecutionService;
 import org.motechproject.nms.kilkari.service.MctsBeneficiaryImportReaderService;
 import org.motechproject.nms.kilkari.service.MctsBeneficiaryImportService;
 import org.motechproject.nms.kilkari.service.MctsBeneficiaryValueProcessor;
@@ -41,12 +42,9 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 
 @Service("mctsBeneficiaryImportReaderService")
 public class MctsBeneficiaryImportReaderServiceImpl implements MctsBeneficiaryImportReaderService {
@@ -60,13 +58,15 @@ public class MctsBeneficiaryImportReaderServiceImpl implements MctsBeneficiaryIm
     private MctsBeneficiaryImportService mctsBeneficiaryImportService;
     private LocationService locationService;
     private SettingsFacade settingsFacade;
+    private ImportExecutionService importExecutionService;
 
     @Autowired
-    public MctsBeneficiaryImportReaderServiceImpl(@Qualifier("kilkariSettings") SettingsFacade settingsFacade, MctsBeneficiaryValueProcessor mctsBeneficiaryValueProcessor, MctsBeneficiaryImportService mctsBeneficiaryImportService, LocationService locationService) {
+    public MctsBeneficiaryImportReaderServiceImpl(@Qualifier("kilkariSettings") SettingsFacade settingsFacade, MctsBeneficiaryValueProcessor mctsBeneficiaryValueProcessor, MctsBeneficiaryImportService mctsBeneficiaryImportService, LocationService locationService, ImportExecutionService importExecutionService) {
         this.mctsBeneficiaryValueProcessor = mctsBeneficiaryValueProcessor;
         this.mctsBeneficiaryImportService = mctsBeneficiaryImportService;
         this.locationService = locationService;
         this.settingsFacade = settingsFacade;
+        this.importExecutionService = importExecutionService;
     }
 
     @Override //NO CHECKSTYLE Cyclomatic Complexity
@@ -106,15 +106,14 @@ public class MctsBeneficiaryImportReaderServiceImpl implements MctsBeneficiaryIm
 
             LOGGER.debug("Thread Processing Start");
             Integer recordsProcessed = 0;
-            ExecutorService executor = Executors.newCachedThreadPool();
-            List<Future<ThreadProcessorObject>> list = new ArrayList<>();
+            List<Callable<ThreadProcessorObject>> callables = new ArrayList<>();
 
             for (int i = 0; i < recordListArray.size(); i++) {
                 Callable<ThreadProcessorObject> callable = new ChildCsvThreadProcessor(recordListArray.get(i), mctsImport, importOrigin, locationFinder,
                         mctsBeneficiaryValueProcessor, mctsBeneficiaryImportService);
-                Future<ThreadProcessorObject> future = executor.submit(callable);
-                list.add(future);
+                callables.add(callable);
             }
+            List<Future<ThreadProcessorObject>> list = importExecutionService.submitAll(importOrigin + " children", callables);
 
             for (Future<ThreadProcessorObject> fut : list) {
                 try {
@@ -126,12 +125,6 @@ public class MctsBeneficiaryImportReaderServiceImpl implements MctsBeneficiaryIm
                     LOGGER.error("Error while running thread", e);
                 }
             }
-            executor.shutdown();
-            try {
-                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-            } catch (InterruptedException e) {
-                LOGGER.error("Error while Terminating thread", e);
-            }
             LOGGER.debug("Thread Processing End");
             try {
 
@@ -204,16 +197,15 @@ public class MctsBeneficiaryImportReaderServiceImpl implements MctsBeneficiaryIm
 
 
             Integer recordsProcessed = 0;
-            ExecutorService executor = Executors.newCachedThreadPool();
-            List<Future<ThreadProcessorObject>> list = new ArrayList<>();
+            List<Callable<ThreadProcessorObject>> callables = new ArrayList<>();
 
             for (int i = 0; i < recordListArray.size(); i++) {
                 LOGGER.debug("Thread Processing Start" + i);
                 Callable<ThreadProcessorObject> callable = new MotherCsvThreadProcessor(recordListArray.get(i), mctsImport, importOrigin, locationFinder,
                         mctsBeneficiaryValueProcessor, mctsBeneficiaryImportService);
-                Future<ThreadProcessorObject> future = executor.submit(callable);
-                list.add(future);
+                callables.add(callable);
             }
+            List<Future<ThreadProcessorObject>> list = importExecutionService.submitAll(importOrigin + " mothers", callables);
 
             for (Future<ThreadProcessorObject> fut : list) {
                 try {
@@ -225,12 +217,6 @@ public class MctsBeneficiaryImportReaderServiceImpl implements MctsBeneficiaryIm
                     LOGGER.error("Error while running thread", e);
                 }
             }
-            executor.shutdown();
-            try {
-                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-            } catch (InterruptedException e) {
-                LOGGER.error("Error while Terminating thread", e);
-            }
             LOGGER.debug("Thread Processing End" );
             try {
                 if (mctsImport) {
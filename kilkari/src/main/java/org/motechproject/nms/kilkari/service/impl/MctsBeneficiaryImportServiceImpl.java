@@ -122,6 +122,9 @@ public class MctsBeneficiaryImportServiceImpl implements MctsBeneficiaryImportSe
     @Autowired
     private ActionFinderService actionFinderService;
 
+    @Autowired
+    private ActiveSubscriptionCounter activeSubscriptionCounter;
+
     @Override
     public void setRecords(int i){this.records.set(i);}
 
@@ -253,7 +256,7 @@ public class MctsBeneficiaryImportServiceImpl implements MctsBeneficiaryImportSe
             if(records.get()%chunkSize==0||records.get()==1) {
                 Long maxActiveSubscriptions = Long.parseLong(settingsFacade.getProperty(KilkariConstants.SUBSCRIPTION_CAP));
                 LOGGER.info("Subscription Cap" + maxActiveSubscriptions + " " + records);
-                Long currentActive = subscriptionDataService.countFindByStatus(SubscriptionStatus.ACTIVE);
+                Long currentActive = activeSubscriptionCounter.get();
                 LOGGER.info("current active" + currentActive);
                 SubscriptionServiceImpl.isCapacityAvailable.set(currentActive < maxActiveSubscriptions);
             }
@@ -529,7 +532,7 @@ public class MctsBeneficiaryImportServiceImpl implements MctsBeneficiaryImportSe
             if(childRecords.get()%chunkSize==0||childRecords.get()==1) {
                 Long maxActiveSubscriptions = Long.parseLong(settingsFacade.getProperty(KilkariConstants.SUBSCRIPTION_CAP));
                 LOGGER.info("subscription capacity" + maxActiveSubscriptions + " " + childRecords);
-                Long currentActive = subscriptionDataService.countFindByStatus(SubscriptionStatus.ACTIVE);
+                Long currentActive = activeSubscriptionCounter.get();
                 LOGGER.info("current active" + currentActive);
                 SubscriptionServiceImpl.isCapacityAvailable.set(currentActive < maxActiveSubscriptions);
             }
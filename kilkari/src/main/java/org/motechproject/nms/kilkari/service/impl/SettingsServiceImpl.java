@@ -0,0 +1,24 @@
+package org.motechproject.nms.kilkari.service.impl;
+
+import org.motechproject.nms.kilkari.service.SettingsService;
+import org.motechproject.server.config.SettingsFacade;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+/**
+ * Lets ITs change the kilkari settings, eg: to turn the response cache on or count active subscriptions exactly
+ */
+@Service("kilkariSettingsService")
+public class SettingsServiceImpl implements SettingsService {
+    private SettingsFacade settingsFacade;
+
+    @Autowired
+    SettingsServiceImpl(@Qualifier("kilkariSettings") SettingsFacade settingsFacade) {
+        this.settingsFacade = settingsFacade;
+    }
+
+    public SettingsFacade getSettingsFacade() {
+        return settingsFacade;
+    }
+}
@@ -0,0 +1,123 @@
+package org.motechproject.nms.kilkari.service.impl;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventRelay;
+import org.motechproject.nms.kilkari.utils.KilkariConstants;
+import org.motechproject.nms.tracking.utils.TransactionBuffer;
+import org.motechproject.server.config.SettingsFacade;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tells the caches keyed by calling number (eg: the Kilkari inbox/user API responses) on every node that a subscriber
+ * or one of their subscriptions changed. The calling numbers and subscription ids changed in a transaction are
+ * collected and broadcast in one message once it commits; the caches map the subscription ids to the numbers they
+ * cached them for, so storing a subscription doesn't have to look its subscriber up. The message carries neither when
+ * every entry has to go. Nothing is broadcast unless the caches are turned on with kilkari.response_cache.
+ */
+@Component("subscriberCacheEvictBroadcaster")
+public class SubscriberCacheEvictBroadcaster {
+
+    /**
+     * Past this many numbers and subscription ids in one transaction, the caches are cleared instead
+     */
+    private static final int MAX_KEYS_PER_MESSAGE = 10000;
+
+    private static final String RESPONSE_CACHE = "kilkari.response_cache";
+
+    private EventRelay eventRelay;
+
+    private SettingsFacade settingsFacade;
+
+    private final TransactionBuffer<ChangedKeys> transactionChanges = new TransactionBuffer<ChangedKeys>() {
+        @Override
+        protected ChangedKeys newBuffer() {
+            return new ChangedKeys();
+        }
+
+        @Override
+        protected void committed(ChangedKeys changes) {
+            broadcast(changes);
+        }
+    };
+
+    @Autowired
+    public SubscriberCacheEvictBroadcaster(EventRelay eventRelay, @Qualifier("kilkariSettings") SettingsFacade settingsFacade) {
+        this.eventRelay = eventRelay;
+        this.settingsFacade = settingsFacade;
+    }
+
+    /**
+     * @return whether any cache is keyed by calling number, the listeners have nothing to do otherwise
+     */
+    public boolean isEnabled() {
+        return "true".equalsIgnoreCase(settingsFacade.getProperty(RESPONSE_CACHE));
+    }
+
+    public void subscriberChanged(Long callingNumber) {
+        if (callingNumber == null || !isEnabled()) {
+            return;
+        }
+        ChangedKeys pending = transactionChanges.current();
+        if (pending == null) {
+            pending = new ChangedKeys();
+            pending.callingNumbers.add(callingNumber);
+            broadcast(pending);
+            return;
+        }
+        pending.callingNumbers.add(callingNumber);
+    }
+
+    /**
+     * @param subscriptionId id of a stored subscription, new ones are known through their subscriber's number
+     */
+    public void subscriptionChanged(Long subscriptionId) {
+        if (subscriptionId == null || !isEnabled()) {
+            return;
+        }
+        ChangedKeys pending = transactionChanges.current();
+        if (pending == null) {
+            pending = new ChangedKeys();
+            pending.subscriptionIds.add(subscriptionId);
+            broadcast(pending);
+            return;
+        }
+        pending.subscriptionIds.add(subscriptionId);
+    }
+
+    /**
+     * For bulk updates that don't go through the persistence layer
+     */
+    public void allSubscribersChanged() {
+        if (!isEnabled()) {
+            return;
+        }
+        eventRelay.broadcastEventMessage(new MotechEvent(KilkariConstants.SUBSCRIBER_CACHE_EVICT_SUBJECT));
+    }
+
+    private void broadcast(ChangedKeys changes) {
+        if (changes.callingNumbers.size() + changes.subscriptionIds.size() > MAX_KEYS_PER_MESSAGE) {
+            allSubscribersChanged();
+            return;
+        }
+        Map<String, Object> params = new HashMap<>();
+        params.put(KilkariConstants.SUBSCRIBER_CACHE_EVICT_CALLING_NUMBERS, new ArrayList<>(changes.callingNumbers));
+        params.put(KilkariConstants.SUBSCRIBER_CACHE_EVICT_SUBSCRIPTION_IDS, new ArrayList<>(changes.subscriptionIds));
+        eventRelay.broadcastEventMessage(new MotechEvent(KilkariConstants.SUBSCRIBER_CACHE_EVICT_SUBJECT, params));
+    }
+
+    /**
+     * The calling numbers and subscription ids changed in a transaction
+     */
+    private static final class ChangedKeys {
+        private final Set<Long> callingNumbers = new HashSet<>();
+        private final Set<Long> subscriptionIds = new HashSet<>();
+    }
+}
@@ -66,6 +66,12 @@ public class SubscriberServiceImpl implements SubscriberService {
     private MctsChildDataService mctsChildDataService;
     private MctsMotherDataService mctsMotherDataService;
 
+    @Autowired
+    private SubscriberCacheEvictBroadcaster subscriberCacheEvictBroadcaster;
+
+    @Autowired
+    private ActiveSubscriptionCounter activeSubscriptionCounter;
+
     @Autowired
     public SubscriberServiceImpl(SubscriberDataService subscriberDataService, SubscriptionService subscriptionService,
                                  SubscriptionDataService subscriptionDataService,
@@ -302,7 +308,7 @@ public class SubscriberServiceImpl implements SubscriberService {
                 motherUpdate.setDateOfBirth(motherDOB);
                 motherUpdate.setLastMenstrualPeriod(lmp);
                 motherUpdate.setUpdatedDateNic(lastUpdatedDateNic);
-                subscriberByMctsId.setCallingNumber(msisdn);
+                changeCallingNumber(subscriberByMctsId, msisdn);
                 Subscription subscription = subscriptionService.getActiveSubscription(subscriberByMctsId, pack.getType());
                 subscriberByMctsId.setLastMenstrualPeriod(lmp);
                 subscriberByMctsId.setModificationDate(DateTime.now());
@@ -382,7 +388,7 @@ public class SubscriberServiceImpl implements SubscriberService {
                     return null;
                 }
                 subscriptionService.deleteBlockedMsisdn(motherUpdate.getId(), subscriberByRchId.getCallingNumber(), msisdn);
-                subscriberByRchId.setCallingNumber(msisdn);
+                changeCallingNumber(subscriberByRchId, msisdn);
                 Subscription subscription = subscriptionService.getActiveSubscription(subscriberByRchId, pack.getType());
                 Subscription latestDeactivatedSubscription = subscriptionService.getLatestDeactivatedSubscription(subscriberByRchId, pack.getType(), true);
                 if(caseNo > subscriberByRchId.getCaseNo()){
@@ -495,7 +501,7 @@ public class SubscriberServiceImpl implements SubscriberService {
                         }
                     }
                 }
-                    subscriberByRchId.setCallingNumber(msisdn);
+                    changeCallingNumber(subscriberByRchId, msisdn);
                     subscriberByRchId.setCaseNo(caseNo);
                     motherUpdate.setMaxCaseNo(caseNo);
                     subscriberByRchId.setModificationDate(DateTime.now());
@@ -531,7 +537,7 @@ public class SubscriberServiceImpl implements SubscriberService {
                             subscriberByMotherMctsId.setChild(childUpdate);
                             subscriberByMotherMctsId.setDateOfBirth(dob);
                             subscriptionService.deleteBlockedMsisdn(childUpdate.getMother().getId(), subscriberByMotherMctsId.getCallingNumber(), msisdn);
-                            subscriberByMotherMctsId.setCallingNumber(msisdn);
+                            changeCallingNumber(subscriberByMotherMctsId, msisdn);
                             subscriberByMotherMctsId.setModificationDate(DateTime.now());
                             finalSubscription = subscriptionService.createSubscription(subscriberByMotherMctsId, msisdn, language, circle, pack, SubscriptionOrigin.MCTS_IMPORT);
                         }
@@ -592,7 +598,7 @@ public class SubscriberServiceImpl implements SubscriberService {
             if (subscriberByMsisdns.isEmpty() && childUpdate.getMother() != null) {   // no subscriber attached to the new number
                 // We got here because beneficiary's phone number changed
                 subscriptionService.deleteBlockedMsisdn(childUpdate.getMother().getId(), subscriberByMctsId.getCallingNumber(), msisdn);
-                subscriberByMctsId.setCallingNumber(msisdn);
+                changeCallingNumber(subscriberByMctsId, msisdn);
                 if (subscriberByMctsId.getMother() == null) {
                     subscriberByMctsId.setMother(childUpdate.getMother());
                 }
@@ -601,7 +607,7 @@ public class SubscriberServiceImpl implements SubscriberService {
                 subscriberByMctsId.setModificationDate(DateTime.now());
                 finalSubscription = updateOrCreateSubscription(subscriberByMctsId, subscription, dob, pack, language, circle, SubscriptionOrigin.MCTS_IMPORT, false);
             } else if (subscriberByMsisdns.isEmpty() && childUpdate.getMother() == null) {
-                subscriberByMctsId.setCallingNumber(msisdn);
+                changeCallingNumber(subscriberByMctsId, msisdn);
                 Subscription subscription = subscriptionService.getActiveSubscription(subscriberByMctsId, pack.getType());
                 subscriberByMctsId.setDateOfBirth(dob);
                 subscriberByMctsId.setModificationDate(DateTime.now());
@@ -710,7 +716,7 @@ public class SubscriberServiceImpl implements SubscriberService {
                     liveBirthChildCheck(motherSubscription);
                 }
                 subscriptionService.deleteBlockedMsisdn(childUpdate.getId(), subscriberByRchId.getCallingNumber(), msisdn);
-                subscriberByRchId.setCallingNumber(msisdn);
+                changeCallingNumber(subscriberByRchId, msisdn);
                 if (subscriberByRchId.getMother() == null) {
                     subscriberByRchId.setMother(childUpdate.getMother());
                 }
@@ -769,7 +775,7 @@ public class SubscriberServiceImpl implements SubscriberService {
                         if (subscriptionService.activeSubscriptionByMsisdnRch(subscribersByMsisdn, msisdn, SubscriptionPackType.CHILD, motherRchId, childUpdate.getRchId())) {
                             return childRejectionRch(convertMapToRchChild(record), false, RejectionReasons.MOBILE_NUMBER_ALREADY_SUBSCRIBED.toString(), action);
                         } else {
-                            subscriberByRchId.setCallingNumber(msisdn);
+                            changeCallingNumber(subscriberByRchId, msisdn);
                             if (subscriberByRchId.getMother() == null) {
                                 subscriberByRchId.setMother(childUpdate.getMother());
                             }
@@ -805,7 +811,7 @@ public class SubscriberServiceImpl implements SubscriberService {
                     if ((!Objects.equals(subscriber.getCallingNumber(), msisdn) || (subscriber.getDateOfBirth() == null || subscriber.getDateOfBirth().getDayOfYear() != dob.getDayOfYear())) && subscription!=null){
                         subscriptionService.deleteCallRetry(subscription.getSubscriptionId());
                     }
-                    subscriber.setCallingNumber(msisdn);
+                    changeCallingNumber(subscriber, msisdn);
                     subscriber.setDateOfBirth(dob);
                     subscriber.setChild(childUpdate);
                     subscriber.setModificationDate(DateTime.now());
@@ -844,7 +850,7 @@ public class SubscriberServiceImpl implements SubscriberService {
                         if (subscriptionService.activeSubscriptionByMsisdnRch(subscribersByMsisdn, msisdn, SubscriptionPackType.CHILD, motherRchId, childUpdate.getRchId())) {
                             return childRejectionRch(convertMapToRchChild(record), false, RejectionReasons.MOBILE_NUMBER_ALREADY_SUBSCRIBED.toString(), action);
                         } else {
-                            subscriberByRchId.setCallingNumber(msisdn);
+                            changeCallingNumber(subscriberByRchId, msisdn);
                             if (subscriberByRchId.getMother() == null) {
                                 subscriberByRchId.setMother(childUpdate.getMother());
                             }
@@ -881,7 +887,7 @@ public class SubscriberServiceImpl implements SubscriberService {
                 motherSubscriberByRchId.setDateOfBirth(dob);
                 motherSubscriberByRchId.setChild(childUpdate);
                 motherSubscriberByRchId.setModificationDate(DateTime.now());
-                motherSubscriberByRchId.setCallingNumber(msisdn);
+                changeCallingNumber(motherSubscriberByRchId, msisdn);
                 finalSubscription = updateOrCreateSubscription(motherSubscriberByRchId, subscription, dob, pack, language, circle, SubscriptionOrigin.RCH_IMPORT, false);
             }
             else {
@@ -1016,8 +1022,10 @@ public class SubscriberServiceImpl implements SubscriberService {
         reactivatedBeneficiaryAudit.setOrigin(subscription.getOrigin());
         reactivatedBeneficiaryAudit.setServiceReactivationDate(DateTime.now());
         reactivatedBeneficiaryAuditDataService.create(reactivatedBeneficiaryAudit);
+        SubscriptionStatus previousStatus = subscription.getStatus();
         if(SubscriptionServiceImpl.isCapacityAvailable.get()) subscription.setStatus(SubscriptionStatus.ACTIVE);
         else subscription.setStatus(SubscriptionStatus.HOLD);
+        activeSubscriptionCounter.transition(previousStatus, subscription.getStatus());
         subscription.setDeactivationReason(null);
         subscriptionService.updateStartDate(subscription, dateTime);
         if (subscriber.getMother() != null) {
@@ -1074,6 +1082,28 @@ public class SubscriberServiceImpl implements SubscriberService {
         }
     }
 
+    @Override
+    public void broadcastSubscriberCacheEvictMessage(Subscriber subscriber) {
+        subscriberCacheEvictBroadcaster.subscriberChanged(subscriber.getCallingNumber());
+    }
+
+    @Override
+    public boolean isResponseCacheEnabled() {
+        return subscriberCacheEvictBroadcaster.isEnabled();
+    }
+
+    /**
+     * The store listener only sees the new number, so the caches of the number the subscriber is moved off are
+     * evicted here
+     */
+    private void changeCallingNumber(Subscriber subscriber, Long msisdn) {
+        Long oldCallingNumber = subscriber.getCallingNumber();
+        if (oldCallingNumber != null && !oldCallingNumber.equals(msisdn)) {
+            subscriberCacheEvictBroadcaster.subscriberChanged(oldCallingNumber);
+        }
+        subscriber.setCallingNumber(msisdn);
+    }
+
     @Override
     public void deactivateAllSubscriptionsForSubscriber(long callingNumber, DeactivationReason deactivationReason) {
         LOGGER.info("Receieved Release Number {} for Deactivation.", callingNumber);
@@ -3,6 +3,7 @@ package org.motechproject.nms.kilkari.service.impl;
 import org.apache.commons.lang.StringUtils;
 import org.datanucleus.store.rdbms.query.ForwardQueryResult;
 import org.joda.time.DateTime;
+import org.joda.time.Days;
 import org.joda.time.Weeks;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
@@ -10,12 +11,11 @@ import org.motechproject.commons.date.util.DateUtil;
 import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.EventRelay;
 import org.motechproject.event.listener.annotations.MotechListener;
-import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.query.SqlQueryExecution;
-import org.motechproject.mds.util.InstanceSecurityRestriction;
 import org.motechproject.metrics.service.Timer;
 import org.motechproject.nms.kilkari.domain.*;
+import org.motechproject.nms.kilkari.dto.FreshCallRowDto;
 import org.motechproject.nms.kilkari.repository.*;
 import org.motechproject.nms.kilkari.service.CsrVerifierService;
 import org.motechproject.nms.kilkari.service.SubscriptionService;
@@ -62,6 +62,21 @@ public class SubscriptionServiceImpl implements SubscriptionService {
     public static AtomicBoolean isCapacityAvailable = new AtomicBoolean(true);
     private static final String HIGH_PRIORITY_BLOCK = "kilkari.highPriority.blockId";
 
+    /**
+     * Detached copies of the packs by name for the fresh call rows, with their messages loaded, so they aren't tied
+     * to the transaction that loaded them. Dropped with the "pack" cache.
+     */
+    private volatile Map<String, SubscriptionPack> freshCallPacks;
+
+    @Autowired
+    private SubscriberCacheEvictBroadcaster subscriberCacheEvictBroadcaster;
+
+    @Autowired
+    private ClosedSubscriptionPurger closedSubscriptionPurger;
+
+    @Autowired
+    private ActiveSubscriptionCounter activeSubscriptionCounter;
+
 
     @Autowired
     public SubscriptionServiceImpl(@Qualifier("kilkariSettings") SettingsFacade settingsFacade, // NO CHECKSTYLE More than 7 parameters
@@ -98,61 +113,15 @@ public class SubscriptionServiceImpl implements SubscriptionService {
         return  "true".equalsIgnoreCase(settingsFacade.getProperty(KilkariConstants.ACCEPT_NEW_SUBSCRIPTION_FOR_BLOCKED_MSISDN));
     }
 
-    @Transactional
+    @Override
     public void purgeOldInvalidSubscriptions() {
         int weeksToKeepInvalidFLWs = Integer.parseInt(settingsFacade.getProperty(KilkariConstants.WEEKS_TO_KEEP_CLOSED_SUBSCRIPTIONS));
-        final SubscriptionStatus completed = SubscriptionStatus.COMPLETED;
-        final SubscriptionStatus deactivated = SubscriptionStatus.DEACTIVATED;
-        final DateTime cutoff = DateTime.now().minusWeeks(weeksToKeepInvalidFLWs).withTimeAtStartOfDay();
-
-        @SuppressWarnings("unchecked")
-        QueryExecution<List<Subscription>> queryExecution = new QueryExecution<List<Subscription>>() {
-            @Override
-            public List<Subscription> execute(Query query, InstanceSecurityRestriction restriction) {
-
-                query.setFilter("(status == completed || status == deactivated) && endDate < cutoff");
-                query.declareParameters("org.motechproject.nms.kilkari.domain.SubscriptionStatus completed, " +
-                        "org.motechproject.nms.kilkari.domain.SubscriptionStatus deactivated, " +
-                        "org.joda.time.DateTime cutoff");
-
-
-                return (List<Subscription>) query.execute(completed, deactivated, cutoff);
-            }
-        };
-
-        List<Subscription> purgeList = subscriptionDataService.executeQuery(queryExecution);
-
-        int purgedSubscribers = 0;
-        int purgedSubscriptions = 0;
-        for (Subscription subscription : purgeList) {
-            String subscriptionId = subscription.getSubscriptionId();
-
-            // If, for some reason, there is a retry record for that subscription, delete it too.
-            CallRetry callRetry = callRetryDataService.findBySubscriptionId(subscription.getSubscriptionId());
-            if (callRetry != null) {
-                LOGGER.debug("Purging CallRetry record for subscription {}", subscription.getSubscriptionId());
-                callRetryDataService.delete(callRetry);
-            }
-
-            LOGGER.debug("Purging subscription {}", subscription.getSubscriptionId());
-            Subscriber subscriber = subscription.getSubscriber();
-            subscriptionDataService.delete(subscription);
-
-            // I need to load the subscriber since I deleted one of their subscription prior
-            purgedSubscriptions++;
-            if (subscriber.getSubscriptions().size() == 0) {
-                LOGGER.debug("Purging subscriber for subscription {} as it was the last subscription for that subscriber",
-                        subscriptionId);
-                deleteSubscriber(subscriber.getId());
-                purgedSubscribers++;
-            }
-        }
+        DateTime cutoff = DateTime.now().minusWeeks(weeksToKeepInvalidFLWs).withTimeAtStartOfDay();
 
-        LOGGER.info(String.format("Purged %s subscribers and %s subscriptions with status (%s or %s) and " + "endDate date before %s", purgedSubscribers, purgedSubscriptions, SubscriptionStatus.COMPLETED, SubscriptionStatus.DEACTIVATED, cutoff.toString()));
+        closedSubscriptionPurger.purge(cutoff);
     }
 
 
-
     @Override
     public void completePastDueSubscriptions() {
 
@@ -199,6 +168,11 @@ public class SubscriptionServiceImpl implements SubscriptionService {
         Long rowCount = subscriptionDataService.executeSQLQuery(queryExecution);
         LOGGER.debug(String.format("Updated %d subscription(s) to COMPLETED", rowCount));
         subscriptionDataService.evictEntityCache(true); // no need to evict sub-entity classes
+        subscriberCacheEvictBroadcaster.allSubscribersChanged();
+        if (rowCount != null && rowCount > 0) {
+            // the row count doesn't tell how many of them were active
+            activeSubscriptionCounter.recount();
+        }
     }
 
     @Override
@@ -445,7 +419,9 @@ public class SubscriptionServiceImpl implements SubscriptionService {
         subscription.setServiceStatus(ServiceStatus.IVR);
         subscription.setWhatsAppSelfOptIn(false);
 
-        return subscriptionDataService.create(subscription);
+        Subscription created = subscriptionDataService.create(subscription);
+        activeSubscriptionCounter.transition(null, created.getStatus());
+        return created;
     }
 
     /**
@@ -494,7 +470,9 @@ public class SubscriptionServiceImpl implements SubscriptionService {
             }
 
             LOGGER.info("Creating Subscription ()" + subscription.getSubscriptionId()+" with status "+subscription.getStatus().toString());
-            return subscriptionDataService.create(subscription);
+            Subscription created = subscriptionDataService.create(subscription);
+            activeSubscriptionCounter.transition(null, created.getStatus());
+            return created;
     }
 
     /**
@@ -717,6 +695,7 @@ public class SubscriptionServiceImpl implements SubscriptionService {
 
     @Override
     public void updateStartDate(Subscription subscription, DateTime newReferenceDate) {
+        SubscriptionStatus previousStatus = subscription.getStatus();
         try {
             if (subscription.getSubscriptionPack().getType() == SubscriptionPackType.PREGNANCY) {
                 subscription.setStartDate(newReferenceDate.plusDays(KilkariConstants.THREE_MONTHS));
@@ -734,6 +713,7 @@ public class SubscriptionServiceImpl implements SubscriptionService {
             }
             LOGGER.info("Updating subscription "+subscription.getSubscriptionId()+" with status "+subscription.getStatus().toString());
             subscriptionDataService.update(subscription);
+            activeSubscriptionCounter.transition(previousStatus, subscription.getStatus());
         } catch (ConstraintViolationException e) {
             LOGGER.error("3: List of constraints: {}", e.getConstraintViolations());
             throw e;
@@ -742,22 +722,24 @@ public class SubscriptionServiceImpl implements SubscriptionService {
 
     @Override
     public void activateSubscription(Subscription subscription) {
+        SubscriptionStatus previousStatus = subscription.getStatus();
         subscription.setStatus(SubscriptionStatus.ACTIVE);
         subscriptionDataService.update(subscription);
+        activeSubscriptionCounter.transition(previousStatus, SubscriptionStatus.ACTIVE);
     }
 
     @Override
     public Boolean activatePendingSubscriptionsUpTo(final DateTime upToDateTime, long maxActiveSubscriptions) {
 
-        long currentActive = subscriptionDataService.countFindByStatus(SubscriptionStatus.ACTIVE);
+        long currentActive = activeSubscriptionCounter.get();
         LOGGER.info("Found {} active subscriptions", currentActive);
 
-        final long openSlots = maxActiveSubscriptions - subscriptionDataService.countFindByStatus(SubscriptionStatus.ACTIVE);
+        final long openSlots = maxActiveSubscriptions - currentActive;
         if (openSlots < 1) {
             LOGGER.info("No open slots found for hold subscription activation. Slots: {}", openSlots);
             return false;
         }
-        SqlQueryExecution sqe = new SqlQueryExecution() {
+        SqlQueryExecution<Long> sqe = new SqlQueryExecution<Long>() {
 
             @Override
             public String getSqlQuery() {
@@ -768,17 +750,18 @@ public class SubscriptionServiceImpl implements SubscriptionService {
             }
 
             @Override
-            public Object execute(Query query) {
+            public Long execute(Query query) {
                 Map params = new HashMap();
                 params.put("now", DateTime.now().toString(KilkariConstants.TIME_FORMATTER));
                 params.put("upto", upToDateTime.toString(KilkariConstants.TIME_FORMATTER));
                 params.put("count", openSlots);
-                query.executeWithMap(params);
-                return null;
+                return (Long) query.executeWithMap(params);
             }
         };
-        subscriptionDataService.executeSQLQuery(sqe);
+        Long activated = subscriptionDataService.executeSQLQuery(sqe);
+        activeSubscriptionCounter.changed(activated == null ? 0 : activated);
         subscriptionDataService.evictEntityCache(true);
+        subscriberCacheEvictBroadcaster.allSubscribersChanged();
         return true;
     }
 
@@ -788,7 +771,7 @@ public class SubscriptionServiceImpl implements SubscriptionService {
     @Override
     public void toggleMctsSubscriptionCreation(long maxActiveSubscriptions) {
 
-        long currentActive = subscriptionDataService.countFindByStatus(SubscriptionStatus.ACTIVE);
+        long currentActive = activeSubscriptionCounter.get();
         LOGGER.info("Found {} active subscriptions", currentActive);
         this.allowMctsSubscriptions = (currentActive < maxActiveSubscriptions);
 
@@ -805,7 +788,7 @@ public class SubscriptionServiceImpl implements SubscriptionService {
 
         LOGGER.info("Activating hold subscriptions up to {}", maxActiveSubscriptions);
 
-        long openSlots = maxActiveSubscriptions - subscriptionDataService.countFindByStatus(SubscriptionStatus.ACTIVE);
+        long openSlots = maxActiveSubscriptions - activeSubscriptionCounter.get();
         if (!this.allowMctsSubscriptions || openSlots < 1) {
             LOGGER.info("No open slots found for hold subscription activation. Slots: {}", openSlots);
             return 0;
@@ -827,6 +810,11 @@ public class SubscriptionServiceImpl implements SubscriptionService {
         return activated;
     }
 
+    @Override
+    public long getActiveSubscriptionCountDrift() {
+        return activeSubscriptionCounter.getDrift();
+    }
+
     private boolean activateHoldSubscription(Subscription currentSubscription) {
 
         Subscriber currentSubscriber = currentSubscription.getSubscriber();
@@ -835,6 +823,7 @@ public class SubscriptionServiceImpl implements SubscriptionService {
         if (enrollmentPreconditionCheckForUpkeep(currentSubscriber, currentPack, currentSubscription.getOrigin()) == 2) { // Don't need a full check but it doesn't hurt
             currentSubscription.setStatus(SubscriptionStatus.ACTIVE);
             subscriptionDataService.update(currentSubscription);
+            activeSubscriptionCounter.transition(SubscriptionStatus.HOLD, SubscriptionStatus.ACTIVE);
             return true;
         } else if (enrollmentPreconditionCheckForUpkeep(currentSubscriber, currentPack, currentSubscription.getOrigin()) == 1) {
             currentSubscription.setStatus(SubscriptionStatus.PENDING_ACTIVATION);
@@ -948,9 +937,11 @@ public class SubscriptionServiceImpl implements SubscriptionService {
     public void deactivateSubscription(Subscription subscription, DeactivationReason reason) {
         if (subscription != null && (subscription.getStatus() == SubscriptionStatus.ACTIVE ||
                 subscription.getStatus() == SubscriptionStatus.PENDING_ACTIVATION || subscription.getStatus() == SubscriptionStatus.HOLD)) {
+            SubscriptionStatus previousStatus = subscription.getStatus();
             subscription.setStatus(SubscriptionStatus.DEACTIVATED);
             subscription.setDeactivationReason(reason);
             Subscription subscriptionDeativated = subscriptionDataService.update(subscription);
+            activeSubscriptionCounter.transition(previousStatus, SubscriptionStatus.DEACTIVATED);
             LOGGER.info("Deactivated Subscription " + subscriptionDeativated.getSubscriptionId());
 
             SubscriptionServiceImpl.createDeactivatedUser(deactivatedBeneficiaryDataService, subscription, reason, false);
@@ -1035,6 +1026,162 @@ public class SubscriptionServiceImpl implements SubscriptionService {
     }
 
 
+    @Override
+    @Transactional
+    public List<FreshCallRowDto> findActiveFreshCallRowsForDay(final DayOfTheWeek dow, final DateTime timestamp,
+                                                               final long offset, final long maxId, final int rowCount) {
+        Timer queryTimer = new Timer();
+
+        @SuppressWarnings("unchecked")
+        SqlQueryExecution<List<Object[]>> queryExecution = new SqlQueryExecution<List<Object[]>>() {
+
+            @Override
+            public String getSqlQuery() {
+                String query =  "SELECT s.id, s.subscriptionId, s.origin, s.status, s.startDate, " +
+                                "s.needsWelcomeMessageViaObd, s.needsWelcomeOptInForWP, p.name, sr.callingNumber, " +
+                                "l.code, c.name, " +
+                                "CASE WHEN sr.mother_id_OID IS NULL THEN ch.state_id_OID ELSE m.state_id_OID END, " +
+                                "ts.timeStamp1, ts.timeStamp2, ts.timeStamp3 " +
+                                "FROM nms_subscriptions AS s " +
+                                "INNER JOIN nms_subscription_packs AS p ON s.subscriptionPack_id_OID = p.id " +
+                                "INNER JOIN nms_subscribers AS sr ON s.subscriber_id_OID = sr.id " +
+                                "LEFT JOIN nms_languages AS l ON sr.language_id_OID = l.id " +
+                                "LEFT JOIN nms_circles AS c ON sr.circle_id_OID = c.id " +
+                                "LEFT JOIN nms_mcts_mothers AS m ON sr.mother_id_OID = m.id " +
+                                "LEFT JOIN nms_mcts_children AS ch ON sr.child_id_OID = ch.id " +
+                                // one time slot row per subscription, the latest one as the time slot lookup used
+                                "LEFT JOIN nms_subscriptions_time_slot AS ts ON ts.subscription_id = " +
+                                "(SELECT MAX(t.subscription_id) FROM nms_subscriptions_time_slot AS t " +
+                                "WHERE t.subscriptionId = s.subscriptionId) " +
+                                "WHERE s.id > :offset AND s.id <= :maxId AND " +
+                                "(s.firstMessageDayOfWeek = :dow OR " +
+                                "(s.secondMessageDayOfWeek = :dow AND p.messagesPerWeek = 2)) AND " +
+                                "s.status = 'ACTIVE' AND "+
+                                " (s.serviceStatus IN ('IVR', 'IVR_AND_WHATSAPP') OR s.serviceStatus IS NULL) "+
+                                "ORDER BY s.id " +
+                                "LIMIT :max";
+                LOGGER.debug(KilkariConstants.SQL_QUERY_LOG, query);
+                return query;
+            }
+
+            @Override
+            public List<Object[]> execute(Query query) {
+                Map<String, Object> params = new HashMap<>();
+                params.put("offset", offset);
+                params.put("maxId", maxId);
+                params.put("dow", dow.toString());
+                params.put("max", rowCount);
+                return new ArrayList<>((List<Object[]>) query.executeWithMap(params));
+            }
+        };
+
+        List<Object[]> results = subscriptionDataService.executeSQLQuery(queryExecution);
+        Map<String, SubscriptionPack> packs = getFreshCallPacks();
+        List<FreshCallRowDto> rows = new ArrayList<>(results.size());
+        for (Object[] result : results) {
+            rows.add(toFreshCallRow(result, packs, timestamp));
+        }
+        LOGGER.debug("findActiveFreshCallRowsForDay(dow={}, offset={}, maxId={}, rowCount={}) {}", dow, offset, maxId,
+                rowCount, queryTimer.time());
+        return rows;
+    }
+
+    private FreshCallRowDto toFreshCallRow(Object[] result, Map<String, SubscriptionPack> packs,
+                                           DateTime timestamp) {
+        FreshCallRowDto row = new FreshCallRowDto();
+        String subscriptionId = (String) result[1];
+        DateTime startDate = new DateTime(result[4]);
+        boolean needsWelcomeMessageViaObd = toBoolean(result[5]);
+
+        row.setId(((Number) result[0]).longValue());
+        row.setSubscriptionId(subscriptionId);
+        row.setOrigin(SubscriptionOrigin.valueOf((String) result[2]));
+        row.setNeedsWelcomeOptInForWP(toBoolean(result[6]));
+        row.setCallingNumber(((Number) result[8]).longValue());
+        // we are happy with empty language and circle since they are optional
+        row.setLanguageCode(result[9] == null ? "" : (String) result[9]);
+        row.setCircleName(result[10] == null ? "" : (String) result[10]);
+        row.setStateId(result[11] == null ? null : ((Number) result[11]).longValue());
+        row.setTimeStamp1(toInteger(result[12]));
+        row.setTimeStamp2(toInteger(result[13]));
+        row.setTimeStamp3(toInteger(result[14]));
+
+        try {
+            SubscriptionPack pack = packs.get((String) result[7]);
+            int daysIntoPack = Days.daysBetween(startDate, timestamp).getDays();
+            if (daysIntoPack == pack.getWeeks() * 7) {
+                // Same rule as the serial target file path, see https://applab.atlassian.net/browse/NMS-301
+                row.setLastDayOfPack(true);
+                return row;
+            }
+
+            SubscriptionPackMessage msg = Subscription.nextScheduledMessage(subscriptionId, pack,
+                    SubscriptionStatus.valueOf((String) result[3]), startDate, needsWelcomeMessageViaObd, timestamp);
+            row.setMessageFileName(msg.getMessageFileName());
+            row.setWeekId(msg.getWeekId());
+        } catch (IllegalStateException se) {
+            row.setError(se.toString());
+        }
+        return row;
+    }
+
+    /**
+     * Loads the packs on first use, in the calling transaction, and keeps detached copies with their messages and
+     * message index
+     */
+    private Map<String, SubscriptionPack> getFreshCallPacks() {
+        Map<String, SubscriptionPack> packs = freshCallPacks;
+        if (packs == null) {
+            List<SubscriptionPack> attached = subscriptionPackDataService.retrieveAll();
+            for (SubscriptionPack pack : attached) {
+                // load the messages, so they are copied along
+                pack.getMessages().size();
+            }
+            packs = new HashMap<>();
+            for (SubscriptionPack pack : subscriptionPackDataService.detachedCopyAll(attached)) {
+                pack.getMessage(1, 1);
+                packs.put(pack.getName(), pack);
+            }
+            freshCallPacks = packs;
+        }
+        return packs;
+    }
+
+    private static boolean toBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return value instanceof Number && ((Number) value).intValue() != 0;
+    }
+
+    private static Integer toInteger(Object value) {
+        return value == null ? null : ((Number) value).intValue();
+    }
+
+    @Override
+    public long getMaxSubscriptionId() {
+        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
+
+            @Override
+            public String getSqlQuery() {
+                String query = "SELECT MAX(id) FROM nms_subscriptions";
+                LOGGER.debug(KilkariConstants.SQL_QUERY_LOG, query);
+                return query;
+            }
+
+            @Override
+            public Long execute(Query query) {
+                query.setUnique(true);
+                Object result = query.execute();
+                return result == null ? 0L : ((Number) result).longValue();
+            }
+        };
+
+        Long maxId = subscriptionDataService.executeSQLQuery(queryExecution);
+        return maxId == null ? 0L : maxId;
+    }
+
+
     @Override
     public List<Subscription> findActiveSubscriptionsForDayWP(final DayOfTheWeek dow, final long offset,
                                                               final int rowCount, final Date date) {
@@ -1221,14 +1368,33 @@ public class SubscriptionServiceImpl implements SubscriptionService {
 
     @CacheEvict(value = {"pack" }, allEntries = true)
     public void broadcastCacheEvictMessage(SubscriptionPack pack) {
+        freshCallPacks = null;
         MotechEvent motechEvent = new MotechEvent(KilkariConstants.PACK_CACHE_EVICT_MESSAGE_SUBJECT);
         eventRelay.broadcastEventMessage(motechEvent);
     }
 
 
+    @Override
+    public void broadcastSubscriberCacheEvictMessage(Subscription subscription) {
+        if (!subscriberCacheEvictBroadcaster.isEnabled()) {
+            return;
+        }
+        if (subscription.getId() == null) {
+            // not stored yet, its subscriber is already in memory
+            Subscriber subscriber = subscription.getSubscriber();
+            if (subscriber != null) {
+                subscriberCacheEvictBroadcaster.subscriberChanged(subscriber.getCallingNumber());
+            }
+            return;
+        }
+        // the caches know which calling number they cached the subscription for, no need to look it up here
+        subscriberCacheEvictBroadcaster.subscriptionChanged(subscription.getId());
+    }
+
     @MotechListener(subjects = { KilkariConstants.PACK_CACHE_EVICT_MESSAGE_SUBJECT })
     @CacheEvict(value = {"pack" }, allEntries = true)
     public void cacheEvict(MotechEvent event) {
+        freshCallPacks = null;
         csrVerifierService.cacheEvict();
     }
 
@@ -124,6 +124,9 @@ public final class KilkariConstants {
     public static final String NMS_IMI_KK_WHATSAPP_PROCESS_CSR_SUBJECT = "nms.imi.whatsApp_process_csr";
 
     public static final String CSR_VERIFIER_CACHE_EVICT_SUBJECT = "nms.kk.cache.evict.csv_verifier";
+    public static final String SUBSCRIBER_CACHE_EVICT_SUBJECT = "nms.kilkari.cache.evict.subscriber";
+    public static final String SUBSCRIBER_CACHE_EVICT_CALLING_NUMBERS = "callingNumbers";
+    public static final String SUBSCRIBER_CACHE_EVICT_SUBSCRIPTION_IDS = "subscriptionIds";
     public static final String CIRCLE_CACHE_EVICT_SUBJECT = "nms.region.cache.evict.language";
     public static final String LANGUAGE_CACHE_EVICT_SUBJECT = "nms.region.cache.evict.language";
     public static final String TOGGLE_SUBSCRIPTION_CAPPING = "nms.kilkari.subscription.capping";
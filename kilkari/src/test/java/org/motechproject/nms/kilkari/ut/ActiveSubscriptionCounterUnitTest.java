@@ -0,0 +1,73 @@
+package org.motechproject.nms.kilkari.ut;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.nms.kilkari.domain.SubscriptionStatus;
+import org.motechproject.nms.kilkari.repository.SubscriptionDataService;
+import org.motechproject.nms.kilkari.service.impl.ActiveSubscriptionCounter;
+import org.motechproject.server.config.SettingsFacade;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ActiveSubscriptionCounterUnitTest {
+
+    @Mock
+    private SettingsFacade settingsFacade;
+
+    @Mock
+    private SubscriptionDataService subscriptionDataService;
+
+    private ActiveSubscriptionCounter counter;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+        when(settingsFacade.getProperty("kilkari.active_count.reconcile_minutes")).thenReturn("60");
+        counter = new ActiveSubscriptionCounter(settingsFacade, subscriptionDataService);
+    }
+
+    @Test
+    public void verifyTransitionsMoveTheCountUntilReconciled() {
+        when(subscriptionDataService.countFindByStatus(SubscriptionStatus.ACTIVE)).thenReturn(10L);
+        assertEquals(10, counter.get());
+
+        counter.transition(null, SubscriptionStatus.ACTIVE);
+        counter.transition(SubscriptionStatus.HOLD, SubscriptionStatus.ACTIVE);
+        counter.transition(SubscriptionStatus.ACTIVE, SubscriptionStatus.COMPLETED);
+        counter.transition(SubscriptionStatus.PENDING_ACTIVATION, SubscriptionStatus.DEACTIVATED);
+        counter.changed(5);
+        assertEquals(16, counter.get());
+        verify(subscriptionDataService, times(1)).countFindByStatus(SubscriptionStatus.ACTIVE);
+
+        when(subscriptionDataService.countFindByStatus(SubscriptionStatus.ACTIVE)).thenReturn(13L);
+        assertEquals(13, counter.reconcile());
+        assertEquals(3, counter.getDrift());
+        assertEquals(13, counter.get());
+    }
+
+    @Test
+    public void verifyRecountAfterBulkUpdateIsNotDrift() {
+        when(subscriptionDataService.countFindByStatus(SubscriptionStatus.ACTIVE)).thenReturn(10L);
+        assertEquals(10, counter.get());
+
+        when(subscriptionDataService.countFindByStatus(SubscriptionStatus.ACTIVE)).thenReturn(4L);
+        assertEquals(4, counter.recount());
+        assertEquals(0, counter.getDrift());
+        assertEquals(4, counter.get());
+    }
+
+    @Test
+    public void verifyEveryReadCountsWithoutReconcileInterval() {
+        when(settingsFacade.getProperty("kilkari.active_count.reconcile_minutes")).thenReturn("0");
+        when(subscriptionDataService.countFindByStatus(SubscriptionStatus.ACTIVE)).thenReturn(10L);
+
+        counter.get();
+        counter.get();
+        verify(subscriptionDataService, times(2)).countFindByStatus(SubscriptionStatus.ACTIVE);
+    }
+}
@@ -0,0 +1,50 @@
+package org.motechproject.nms.kilkari.ut;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.nms.kilkari.service.impl.ImportExecutionServiceImpl;
+import org.motechproject.server.config.SettingsFacade;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ImportExecutionServiceUnitTest {
+
+    @Mock
+    private SettingsFacade settingsFacade;
+
+    private ImportExecutionServiceImpl importExecutionService;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+        when(settingsFacade.getProperty("kilkari.import.threads")).thenReturn("1");
+        when(settingsFacade.getProperty("kilkari.import.queue.size")).thenReturn("1");
+        importExecutionService = new ImportExecutionServiceImpl(settingsFacade);
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void verifyTasksSubmittedAfterShutdownAreRejected() {
+        importExecutionService.shutdown();
+
+        importExecutionService.submitAll("test", Collections.singletonList(new Callable<Object>() {
+            @Override
+            public Object call() {
+                return null;
+            }
+        }));
+    }
+
+    @Test
+    public void verifyWorkersAreCappedByTheConnectionPool() {
+        assertEquals(8, ImportExecutionServiceImpl.effectiveThreads(8, 20, 4));
+        assertEquals(2, ImportExecutionServiceImpl.effectiveThreads(8, 6, 4));
+        assertEquals(1, ImportExecutionServiceImpl.effectiveThreads(8, 4, 4));
+    }
+}
@@ -1,10 +1,13 @@
 package org.motechproject.nms.kilkari.ut;
 
 import org.joda.time.DateTime;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.motechproject.nms.kilkari.domain.*;
 import org.motechproject.nms.kilkari.service.impl.SubscriptionServiceImpl;
 import org.motechproject.nms.props.domain.DayOfTheWeek;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.ArrayList;
@@ -15,11 +18,18 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 
 public class SubscriptionUnitTest {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(SubscriptionUnitTest.class);
+
+    private static final int BENCHMARK_ROWS = 100000;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 50;
+
     @Autowired
     private SubscriptionServiceImpl subscriptionServiceImpl = new SubscriptionServiceImpl() ;
 
@@ -168,4 +178,88 @@ public class SubscriptionUnitTest {
         boolean flag2 = subscriptionServiceImpl.activeSubscriptionByMsisdnRch(subscribers , msisdn , SubscriptionPackType.PREGNANCY , null , childRchId);
         assertEquals(flag2 , true);
     }
+
+    @Test
+    public void verifyMessageLookupByWeekAndMessage() {
+        SubscriptionPack pack = createSubscriptionPack("pack", SubscriptionPackType.PREGNANCY, 72, 2);
+        Subscription subscription = new Subscription(new Subscriber(1111111111L), pack, SubscriptionOrigin.IVR);
+
+        assertSame(pack.getMessages().get(0), subscription.getMessageByWeekAndMessageId(1, 1));
+        assertSame(pack.getMessages().get(143), subscription.getMessageByWeekAndMessageId(72, 2));
+        assertNull(pack.getMessage(73, 1));
+        assertNull(pack.getMessage(1, 3));
+        assertNull(pack.getMessage(0, 1));
+
+        // replacing the messages rebuilds the index
+        pack.setMessages(createSubscriptionPack("pack", SubscriptionPackType.PREGNANCY, 80, 2).getMessages());
+        assertEquals("w80_2", subscription.getMessageByWeekAndMessageId(80, 2).getWeekId());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void verifyMessageLookupFailsForMissingWeek() {
+        Subscription subscription = new Subscription(new Subscriber(1111111111L),
+                createSubscriptionPack("pack", SubscriptionPackType.CHILD, 48, 1), SubscriptionOrigin.IVR);
+        subscription.getMessageByWeekAndMessageId(48, 2);
+    }
+
+    /**
+     * Compares the message lookup done for each target file row with the previous linear search of the pack, for
+     * subscriptions spread over the whole 72 week pack. Run by hand.
+     */
+    @Ignore
+    @Test
+    public void benchmarkMessageLookupPerTargetFileRow() {
+        SubscriptionPack pack = createSubscriptionPack("pack", SubscriptionPackType.PREGNANCY, 72, 2);
+        Subscription subscription = new Subscription(new Subscriber(1111111111L), pack, SubscriptionOrigin.IVR);
+        int[] weeks = new int[BENCHMARK_ROWS];
+        int[] days = new int[BENCHMARK_ROWS];
+        for (int i = 0; i < BENCHMARK_ROWS; i++) {
+            int daysIntoPack = i % (72 * 7);
+            weeks[i] = daysIntoPack / 7 + 1;
+            days[i] = daysIntoPack % 7 < 4 ? 1 : 2;
+        }
+
+        long checksum = 0;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            checksum += runLinearSearch(pack, weeks, days) + runIndexed(subscription, weeks, days);
+        }
+
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            checksum += runLinearSearch(pack, weeks, days);
+        }
+        long linearNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            checksum += runIndexed(subscription, weeks, days);
+        }
+        long indexedNanos = System.nanoTime() - start;
+
+        LOGGER.info("Message lookup per target file row: {} ns linear search, {} ns indexed ({})",
+                linearNanos / ((double) ROUNDS * BENCHMARK_ROWS), indexedNanos / ((double) ROUNDS * BENCHMARK_ROWS),
+                checksum);
+    }
+
+    private static long runLinearSearch(SubscriptionPack pack, int[] weeks, int[] days) {
+        long durations = 0;
+        for (int i = 0; i < weeks.length; i++) {
+            String weekId = String.format("w%d_%d", weeks[i], days[i]);
+            for (SubscriptionPackMessage message : pack.getMessages()) {
+                if (message.getWeekId().equals(weekId)) {
+                    durations += message.getDuration();
+                    break;
+                }
+            }
+        }
+        return durations;
+    }
+
+    private static long runIndexed(Subscription subscription, int[] weeks, int[] days) {
+        long durations = 0;
+        for (int i = 0; i < weeks.length; i++) {
+            durations += subscription.getMessageByWeekAndMessageId(weeks[i], days[i]).getDuration();
+        }
+        return durations;
+    }
 }
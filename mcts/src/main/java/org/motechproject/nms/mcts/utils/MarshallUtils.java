@@ -4,18 +4,40 @@ import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public final class MarshallUtils {
 
+    /**
+     * JAXBContext is thread safe and expensive to build, so one is kept per set of bound classes. Unmarshallers are
+     * not thread safe and are still created per call.
+     */
+    private static final ConcurrentMap<List<Class>, JAXBContext> CONTEXTS = new ConcurrentHashMap<>();
+
     private MarshallUtils() {
     }
 
     public static Object unmarshall(String xml, Class... classesToBeBound) throws JAXBException {
 
-        JAXBContext context = JAXBContext.newInstance(classesToBeBound);
-        Unmarshaller unmarshaller = context.createUnmarshaller();
+        Unmarshaller unmarshaller = getContext(classesToBeBound).createUnmarshaller();
         StringReader reader = new StringReader(xml);
 
         return unmarshaller.unmarshal(reader);
     }
+
+    private static JAXBContext getContext(Class... classesToBeBound) throws JAXBException {
+        List<Class> key = Arrays.asList(classesToBeBound);
+        JAXBContext context = CONTEXTS.get(key);
+        if (context == null) {
+            context = JAXBContext.newInstance(classesToBeBound);
+            JAXBContext existing = CONTEXTS.putIfAbsent(key, context);
+            if (existing != null) {
+                context = existing;
+            }
+        }
+        return context;
+    }
 }
@@ -58,6 +58,10 @@ public class MobileAcademyServiceImpl implements MobileAcademyService {
 
     private static final String COURSE_COMPLETED = "nms.ma.course.completed";
 
+    private static final String COURSE_CACHE_EVICT = "nms.ma.course.cache_evict";
+
+    private static final String COURSE_CACHE = "ma.course_cache";
+
     private static final String SCORES_KEY = "scoresByChapter";
 
     private static final String BOOKMARK_KEY = "bookmark";
@@ -117,6 +121,13 @@ public class MobileAcademyServiceImpl implements MobileAcademyService {
 
     private MtrainingModuleActivityRecordAuditDataService mtrainingModuleActivityRecordAuditDataService;
 
+    /**
+     * Course read from the database, kept when ma.course_cache=true until the course changes on any node
+     */
+    private final boolean courseCacheEnabled;
+    private MaCourse cachedCourse;
+    private long courseGeneration;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(MobileAcademyServiceImpl.class);
 
     @Autowired
@@ -140,20 +151,18 @@ public class MobileAcademyServiceImpl implements MobileAcademyService {
         this.mtrainingModuleActivityRecordAuditDataService = mtrainingModuleActivityRecordAuditDataService;
         this.courseCompletionRecordDataService = courseCompletionRecordDataService;
         this.frontLineWorkerService = frontLineWorkerService;
+        this.courseCacheEnabled = "true".equalsIgnoreCase(settingsFacade.getProperty(COURSE_CACHE));
         bootstrapCourse();
     }
 
     @Override
     public MaCourse getCourse() {
 
-        NmsCourse course = nmsCourseDataService.getCourseByName(COURSE_NAME);
-
-        if (course == null) {
-            alertService.create(COURSE_ENTITY_NAME, COURSE_NAME, "Could not find course", AlertType.CRITICAL, AlertStatus.NEW, 0, null);
-            throw new IllegalStateException("No course bootstrapped. Check deployment");
+        if (courseCacheEnabled) {
+            return copy(getCachedCourse());
         }
 
-        return mapCourseDomainToDto(course);
+        return mapCourseDomainToDto(findCourse());
     }
 
     @Override
@@ -171,6 +180,15 @@ public class MobileAcademyServiceImpl implements MobileAcademyService {
     @Override
     public long getCourseVersion() {
 
+        if (courseCacheEnabled) {
+            return getCachedCourse().getVersion();
+        }
+
+        NmsCourse course = findCourse();
+        return course.getModificationDate().getMillis() / MILLIS_PER_SEC; //Unix epoch is represented in seconds
+    }
+
+    private NmsCourse findCourse() {
         NmsCourse course = nmsCourseDataService.getCourseByName(COURSE_NAME);
 
         if (course == null) {
@@ -178,7 +196,66 @@ public class MobileAcademyServiceImpl implements MobileAcademyService {
             throw new IllegalStateException("No course bootstrapped. Check deployment");
         }
 
-        return course.getModificationDate().getMillis() / MILLIS_PER_SEC; //Unix epoch is represented in seconds
+        return course;
+    }
+
+    private MaCourse getCachedCourse() {
+        long generation;
+        synchronized (this) {
+            if (cachedCourse != null) {
+                return cachedCourse;
+            }
+            generation = courseGeneration;
+        }
+
+        MaCourse course = mapCourseDomainToDto(findCourse());
+
+        synchronized (this) {
+            // don't keep a course read before it was changed
+            if (generation == courseGeneration) {
+                cachedCourse = course;
+            }
+        }
+        return course;
+    }
+
+    private static MaCourse copy(MaCourse course) {
+        return new MaCourse(course.getName(), course.getVersion(), course.getContent());
+    }
+
+    /**
+     * Drops the cached course on every node once the change is committed
+     */
+    private void courseChanged() {
+        if (!courseCacheEnabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    evictCourse();
+                }
+            });
+        } else {
+            evictCourse();
+        }
+    }
+
+    private void evictCourse() {
+        clearCachedCourse();
+        eventRelay.broadcastEventMessage(new MotechEvent(COURSE_CACHE_EVICT));
+    }
+
+    @MotechListener(subjects = { COURSE_CACHE_EVICT })
+    public void courseCacheEvict(MotechEvent event) {
+        clearCachedCourse();
+        LOGGER.debug("Course cache evicted");
+    }
+
+    private synchronized void clearCachedCourse() {
+        courseGeneration++;
+        cachedCourse = null;
     }
 
     @Override
@@ -438,6 +515,7 @@ public class MobileAcademyServiceImpl implements MobileAcademyService {
 
         if (existing == null) {
             nmsCourseDataService.create(new NmsCourse(courseDto.getName(), courseDto.getContent()));
+            courseChanged();
             LOGGER.debug("Successfully created new course");
             return;
         }
@@ -447,6 +525,7 @@ public class MobileAcademyServiceImpl implements MobileAcademyService {
         } else {
             existing.setContent(courseDto.getContent());
             nmsCourseDataService.update(existing);
+            courseChanged();
             LOGGER.debug("Found updated to course data and did the needful");
         }
     }
@@ -1,8 +1,34 @@
 package org.motechproject.nms.props.service;
 
+import org.motechproject.event.MotechEvent;
+import org.motechproject.mds.annotations.InstanceLifecycleListener;
+import org.motechproject.mds.annotations.InstanceLifecycleListenerType;
+import org.motechproject.nms.props.domain.DeployedService;
 import org.motechproject.nms.props.domain.Service;
 import org.motechproject.nms.region.domain.State;
 
 public interface PropertyService {
+
+    /**
+     * Broadcast once the deployed services changed, every node then drops what it keeps derived from them
+     */
+    String DEPLOYED_SERVICES_CACHE_EVICT_MESSAGE = "nms.props.cache.evict.deployed_services";
+
     boolean isServiceDeployedInState(Service service, State state);
+
+    /**
+     * Lifecycle listener that drops the deployed services every node keeps in memory, once the change is committed
+     *
+     * @param deployedService
+     */
+    @InstanceLifecycleListener({ InstanceLifecycleListenerType.POST_CREATE, InstanceLifecycleListenerType.PRE_DELETE,
+            InstanceLifecycleListenerType.PRE_STORE })
+    void deployedServiceChanged(DeployedService deployedService);
+
+    /**
+     *
+     * Deployed services cache evict, also for changes made without the persistence layer
+     *
+     */
+    void deployedServicesCacheEvict(MotechEvent event);
 }
@@ -1,22 +1,44 @@
 package org.motechproject.nms.props.service.impl;
 
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventRelay;
+import org.motechproject.event.listener.annotations.MotechListener;
 import org.motechproject.mds.query.QueryExecution;
+import org.motechproject.mds.query.SqlQueryExecution;
 import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.nms.props.domain.DeployedService;
 import org.motechproject.nms.props.repository.DeployedServiceDataService;
 import org.motechproject.nms.props.service.PropertyService;
 import org.motechproject.nms.region.domain.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 @Service("propertyService")
 public class PropertyServiceImpl implements PropertyService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PropertyServiceImpl.class);
+
     private DeployedServiceDataService deployedServiceDataService;
+    private EventRelay eventRelay;
+
+    private DeployedServices deployedServices;
+    private long deployedServicesGeneration;
 
     @Autowired
-    public PropertyServiceImpl(DeployedServiceDataService deployedServiceDataService) {
+    public PropertyServiceImpl(DeployedServiceDataService deployedServiceDataService, EventRelay eventRelay) {
         this.deployedServiceDataService = deployedServiceDataService;
+        this.eventRelay = eventRelay;
     }
 
     @Override
@@ -26,6 +48,10 @@ public class PropertyServiceImpl implements PropertyService {
             return true;
         }
 
+        if (state.getId() != null) {
+            return getDeployedServices().isDeployed(state.getId(), service);
+        }
+
 
         QueryExecution<Long> stateQueryExecution = new QueryExecution<Long>() {
             @Override
@@ -48,4 +74,113 @@ public class PropertyServiceImpl implements PropertyService {
 
         return false;
     }
+
+    @Override
+    public void deployedServiceChanged(DeployedService deployedService) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    evictDeployedServices();
+                }
+            });
+        } else {
+            evictDeployedServices();
+        }
+    }
+
+    private void evictDeployedServices() {
+        clearDeployedServices();
+        eventRelay.broadcastEventMessage(new MotechEvent(DEPLOYED_SERVICES_CACHE_EVICT_MESSAGE));
+    }
+
+    @Override
+    @MotechListener(subjects = { DEPLOYED_SERVICES_CACHE_EVICT_MESSAGE })
+    public void deployedServicesCacheEvict(MotechEvent event) {
+        clearDeployedServices();
+        LOGGER.debug("Deployed services cache evicted");
+    }
+
+    private synchronized void clearDeployedServices() {
+        deployedServicesGeneration++;
+        deployedServices = null;
+    }
+
+    private DeployedServices getDeployedServices() {
+        long generation;
+        synchronized (this) {
+            if (deployedServices != null) {
+                return deployedServices;
+            }
+            generation = deployedServicesGeneration;
+        }
+
+        DeployedServices loaded = loadDeployedServices();
+
+        synchronized (this) {
+            // don't keep deployed services read before they were changed
+            if (generation == deployedServicesGeneration) {
+                deployedServices = loaded;
+            }
+        }
+        return loaded;
+    }
+
+    private DeployedServices loadDeployedServices() {
+        @SuppressWarnings("unchecked")
+        SqlQueryExecution<List<Object[]>> queryExecution = new SqlQueryExecution<List<Object[]>>() {
+
+            @Override
+            public String getSqlQuery() {
+                return "SELECT state_id_OID, service FROM nms_deployed_services";
+            }
+
+            @Override
+            public List<Object[]> execute(Query query) {
+                return new ArrayList<>((List<Object[]>) query.execute());
+            }
+        };
+
+        Map<Long, Integer> masks = new TreeMap<>();
+        for (Object[] row : deployedServiceDataService.executeSQLQuery(queryExecution)) {
+            Long stateId = ((Number) row[0]).longValue();
+            org.motechproject.nms.props.domain.Service service =
+                    org.motechproject.nms.props.domain.Service.valueOf((String) row[1]);
+            Integer mask = masks.get(stateId);
+            masks.put(stateId, (mask == null ? 0 : mask) | DeployedServices.bit(service));
+        }
+
+        long[] stateIds = new long[masks.size()];
+        int[] serviceMasks = new int[masks.size()];
+        int i = 0;
+        for (Map.Entry<Long, Integer> entry : masks.entrySet()) {
+            stateIds[i] = entry.getKey();
+            serviceMasks[i] = entry.getValue();
+            i++;
+        }
+        LOGGER.debug("Loaded the deployed services of {} state(s)", stateIds.length);
+        return new DeployedServices(stateIds, serviceMasks);
+    }
+
+    /**
+     * The services deployed in each state, as one bit per service for each state id, sorted for a binary search
+     */
+    private static final class DeployedServices {
+        private final long[] stateIds;
+        private final int[] serviceMasks;
+
+        private DeployedServices(long[] stateIds, int[] serviceMasks) {
+            this.stateIds = stateIds;
+            this.serviceMasks = serviceMasks;
+        }
+
+        private static int bit(org.motechproject.nms.props.domain.Service service) {
+            return 1 << service.ordinal();
+        }
+
+        private boolean isDeployed(long stateId, org.motechproject.nms.props.domain.Service service) {
+            int i = Arrays.binarySearch(stateIds, stateId);
+            return i >= 0 && (serviceMasks[i] & bit(service)) != 0;
+        }
+    }
 }
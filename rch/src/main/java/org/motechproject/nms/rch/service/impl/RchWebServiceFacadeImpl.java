@@ -71,6 +71,7 @@ import org.motechproject.nms.kilkari.domain.SubscriptionOrigin;
 import org.motechproject.nms.kilkari.domain.SubscriptionPackType;
 import org.motechproject.nms.kilkari.domain.ThreadProcessorObject;
 import org.motechproject.nms.kilkari.service.ChildCsvThreadProcessor;
+import org.motechproject.nms.kilkari.service.ImportExecutionService;
 import org.motechproject.nms.kilkari.service.MctsBeneficiaryImportReaderService;
 import org.motechproject.nms.kilkari.service.MctsBeneficiaryImportService;
 import org.motechproject.nms.kilkari.service.MctsBeneficiaryValueProcessor;
@@ -123,6 +124,7 @@ import javax.jdo.Query;
 import javax.xml.bind.JAXBException;
 import javax.xml.namespace.QName;
 import javax.xml.rpc.ServiceException;
+import javax.xml.stream.XMLStreamException;
 import java.io.*;
 import java.io.BufferedReader;
 import java.io.File;
@@ -158,10 +160,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 
 import static org.motechproject.nms.kilkari.utils.ObjectListCleaner.cleanRchChildRecords;
 import static org.motechproject.nms.kilkari.utils.ObjectListCleaner.cleanRchMotherRecords;
@@ -185,6 +184,7 @@ public class RchWebServiceFacadeImpl implements RchWebServiceFacade {
     private static final String TAB = "\t";
     private static final Integer LOCATION_PART_SIZE = 1000;
     private static final String RECORDS = "Records";
+    private static final String NEW_DATA_SET = "NewDataSet";
 
     private static final String QUOTATION = "'";
     private static final String SQL_QUERY_LOG = "SQL QUERY: {}";
@@ -261,6 +261,9 @@ public class RchWebServiceFacadeImpl implements RchWebServiceFacade {
     @Autowired
     private MctsBeneficiaryImportReaderService mctsBeneficiaryImportReaderService;
 
+    @Autowired
+    private ImportExecutionService importExecutionService;
+
 
     @Autowired
     private FlwRejectionService flwRejectionService;
@@ -520,6 +523,11 @@ public class RchWebServiceFacadeImpl implements RchWebServiceFacade {
             localResponseFile = fullFileName(name, remoteLocation);
             String result = null;
 
+            if (streamingXmlImport() && (userType == RchUserType.MOTHER || userType == RchUserType.CHILD)) {
+                streamByUserTypeAllData(userType, localResponseFile, startDate);
+                continue;
+            }
+
             try {
                 if (userType == RchUserType.MOTHER || userType == RchUserType.CHILD || userType == RchUserType.ASHA) {
                     LOGGER.debug("Reading XMLFiles ");
@@ -538,78 +546,129 @@ public class RchWebServiceFacadeImpl implements RchWebServiceFacade {
         List<RchMotherXMLData> rchMotherAllData = new ArrayList<>();
         LOGGER.info("Adding records in Table ");
         for(RchMotherRecord rchMotherRecord : motherRecords){
-            RchMotherXMLData motherAllData1 = new RchMotherXMLData(
-                    rchMotherRecord.getStateId(),
-                    rchMotherRecord.getDistrictId() ,
-                    rchMotherRecord.getDistrictName(),
-                    rchMotherRecord.getTalukaId(),
-                    rchMotherRecord.getTalukaName(),
-                    rchMotherRecord.getHealthBlockId(),
-                    rchMotherRecord.getHealthBlockName(),
-                    rchMotherRecord.getPhcId(),
-                    rchMotherRecord.getPhcName(),
-                    rchMotherRecord.getSubCentreId(),
-                    rchMotherRecord.getSubCentreName(),
-                    rchMotherRecord.getVillageId(),
-                    rchMotherRecord.getVillageName(),
-                    rchMotherRecord.getMctsIdNo(),
-                    rchMotherRecord.getRegistrationNo(),
-                    rchMotherRecord.getCaseNo(),
-                    rchMotherRecord.getName(),
-                    rchMotherRecord.getMobileNo(),
-                    rchMotherRecord.getRegistrationDate(),
-                    rchMotherRecord.getRchAshaId(),
-                    rchMotherRecord.getLmpDate(),
-                    rchMotherRecord.getBirthDate(),
-                    rchMotherRecord.getAbortionType(),
-                    rchMotherRecord.getDeliveryOutcomes(),
-                    rchMotherRecord.getEntryType() ,
-                    rchMotherRecord.getExecDate(),
-                    startDate
-            );
-            rchMotherAllData.add(rchImportAllDataMotherXML.create(motherAllData1));
-            LOGGER.debug("Mother Data added with Registration Number added: " + motherAllData1.getRegistrationNo());
+            rchMotherAllData.add(saveMotherDataFromXML(rchMotherRecord, startDate));
         }
 
     }
 
+    private RchMotherXMLData saveMotherDataFromXML(RchMotherRecord rchMotherRecord, LocalDate startDate) {
+        RchMotherXMLData motherAllData1 = new RchMotherXMLData(
+                rchMotherRecord.getStateId(),
+                rchMotherRecord.getDistrictId() ,
+                rchMotherRecord.getDistrictName(),
+                rchMotherRecord.getTalukaId(),
+                rchMotherRecord.getTalukaName(),
+                rchMotherRecord.getHealthBlockId(),
+                rchMotherRecord.getHealthBlockName(),
+                rchMotherRecord.getPhcId(),
+                rchMotherRecord.getPhcName(),
+                rchMotherRecord.getSubCentreId(),
+                rchMotherRecord.getSubCentreName(),
+                rchMotherRecord.getVillageId(),
+                rchMotherRecord.getVillageName(),
+                rchMotherRecord.getMctsIdNo(),
+                rchMotherRecord.getRegistrationNo(),
+                rchMotherRecord.getCaseNo(),
+                rchMotherRecord.getName(),
+                rchMotherRecord.getMobileNo(),
+                rchMotherRecord.getRegistrationDate(),
+                rchMotherRecord.getRchAshaId(),
+                rchMotherRecord.getLmpDate(),
+                rchMotherRecord.getBirthDate(),
+                rchMotherRecord.getAbortionType(),
+                rchMotherRecord.getDeliveryOutcomes(),
+                rchMotherRecord.getEntryType() ,
+                rchMotherRecord.getExecDate(),
+                startDate
+        );
+        RchMotherXMLData created = rchImportAllDataMotherXML.create(motherAllData1);
+        LOGGER.debug("Mother Data added with Registration Number added: " + motherAllData1.getRegistrationNo());
+        return created;
+    }
+
 
     private void processChildDataFromXML(List<RchChildRecord> childRecords, LocalDate startDate ){
         List<RchChildXMLData> rchChildAllData = new ArrayList<>();
         LOGGER.info("Adding records in Table ");
         for(RchChildRecord rchChildRecord : childRecords){
-            RchChildXMLData childAllData1 = new RchChildXMLData(
-                    rchChildRecord.getStateId(),
-                    rchChildRecord.getDistrictId(),
-                    rchChildRecord.getDistrictName(),
-                    rchChildRecord.getTalukaId(),
-                    rchChildRecord.getTalukaName(),
-                    rchChildRecord.getHealthBlockId(),
-                    rchChildRecord.getHealthBlockName(),
-                    rchChildRecord.getPhcId(),
-                    rchChildRecord.getPhcName(),
-                    rchChildRecord.getSubCentreId(),
-                    rchChildRecord.getSubCentreName(),
-                    rchChildRecord.getVillageId(),
-                    rchChildRecord.getVillageName(),
-                    rchChildRecord.getName(),
-                    rchChildRecord.getMobileNo(),
-                    rchChildRecord.getBirthdate(),
-                    rchChildRecord.getRegistrationDate(),
-                    rchChildRecord.getRchAshaId(),
-                    rchChildRecord.getRegistrationNo(),
-                    rchChildRecord.getMotherRegistrationNo(),
-                    rchChildRecord.getEntryType(),
-                    rchChildRecord.getMctsId(),
-                    rchChildRecord.getMctsMotherIdNo(),
-                    rchChildRecord.getExecDate(),
-                    startDate
-            );
-            rchChildAllData.add(rchImportAllDataChildXML.create(childAllData1));
-            LOGGER.debug("Child Data added with Registration Number: " + childAllData1.getRegistrationNo());
+            rchChildAllData.add(saveChildDataFromXML(rchChildRecord, startDate));
         }
     }
 
+    private RchChildXMLData saveChildDataFromXML(RchChildRecord rchChildRecord, LocalDate startDate) {
+        RchChildXMLData childAllData1 = new RchChildXMLData(
+                rchChildRecord.getStateId(),
+                rchChildRecord.getDistrictId(),
+                rchChildRecord.getDistrictName(),
+                rchChildRecord.getTalukaId(),
+                rchChildRecord.getTalukaName(),
+                rchChildRecord.getHealthBlockId(),
+                rchChildRecord.getHealthBlockName(),
+                rchChildRecord.getPhcId(),
+                rchChildRecord.getPhcName(),
+                rchChildRecord.getSubCentreId(),
+                rchChildRecord.getSubCentreName(),
+                rchChildRecord.getVillageId(),
+                rchChildRecord.getVillageName(),
+                rchChildRecord.getName(),
+                rchChildRecord.getMobileNo(),
+                rchChildRecord.getBirthdate(),
+                rchChildRecord.getRegistrationDate(),
+                rchChildRecord.getRchAshaId(),
+                rchChildRecord.getRegistrationNo(),
+                rchChildRecord.getMotherRegistrationNo(),
+                rchChildRecord.getEntryType(),
+                rchChildRecord.getMctsId(),
+                rchChildRecord.getMctsMotherIdNo(),
+                rchChildRecord.getExecDate(),
+                startDate
+        );
+        RchChildXMLData created = rchImportAllDataChildXML.create(childAllData1);
+        LOGGER.debug("Child Data added with Registration Number: " + childAllData1.getRegistrationNo());
+        return created;
+    }
+
+    private boolean streamingXmlImport() {
+        return "true".equalsIgnoreCase(settingsFacade.getProperty(Constants.RCH_STREAMING_XML_IMPORT));
+    }
+
+    /**
+     * Same as {@link #processByUserTypeAllData(RchUserType, String, LocalDate)}, but the records are read from the
+     * response file one at a time and saved as they are parsed instead of loading the whole data set in memory.
+     */
+    private void streamByUserTypeAllData(RchUserType rchUserType, File responseFile, final LocalDate startDate) {
+        Timer timer = new Timer("record", "records");
+        int count = 0;
+        try {
+            switch (rchUserType) {
+                case MOTHER:
+                    count = MarshallUtils.unmarshallRecords(responseFile, NEW_DATA_SET, RECORDS, RchMotherRecord.class,
+                            new MarshallUtils.RecordHandler<RchMotherRecord>() {
+                                @Override
+                                public void handle(RchMotherRecord record) {
+                                    saveMotherDataFromXML(record, startDate);
+                                }
+                            });
+                    break;
+                case CHILD:
+                    count = MarshallUtils.unmarshallRecords(responseFile, NEW_DATA_SET, RECORDS, RchChildRecord.class,
+                            new MarshallUtils.RecordHandler<RchChildRecord>() {
+                                @Override
+                                public void handle(RchChildRecord record) {
+                                    saveChildDataFromXML(record, startDate);
+                                }
+                            });
+                    break;
+                default:
+                    return;
+            }
+        } catch (JAXBException | XMLStreamException | IOException e) {
+            LOGGER.info(e.toString());
+        }
+        LOGGER.info("Streamed {} {} records from {}: {}", count, rchUserType, responseFile.getName(),
+                timer.frequency(count));
+    }
+
     private void processByUserTypeAllData(RchUserType rchUserType , String result, LocalDate startDate) throws JAXBException {
         switch (rchUserType) {
             case MOTHER:
@@ -2344,15 +2403,14 @@ public class RchWebServiceFacadeImpl implements RchWebServiceFacade {
         LOGGER.debug("Thread Processing Start");
         Integer recordsProcessed = 0;
         mctsBeneficiaryImportService.setRecords(0);
-        ExecutorService executor = Executors.newCachedThreadPool();
-        List<Future<ThreadProcessorObject>> list = new ArrayList<>();
+        List<Callable<ThreadProcessorObject>> callables = new ArrayList<>();
 
         for (int i = 0; i < recordListArray.size(); i++) {
             Callable<ThreadProcessorObject> callable = new MotherCsvThreadProcessor(recordListArray.get(i), false, SubscriptionOrigin.RCH_IMPORT, locationFinder,
                     mctsBeneficiaryValueProcessor, mctsBeneficiaryImportService);
-            Future<ThreadProcessorObject> future = executor.submit(callable);
-            list.add(future);
+            callables.add(callable);
         }
+        List<Future<ThreadProcessorObject>> list = importExecutionService.submitAll("RCH mothers, state " + stateCode, callables);
 
         for (Future<ThreadProcessorObject> fut : list) {
             try {
@@ -2369,12 +2427,6 @@ public class RchWebServiceFacadeImpl implements RchWebServiceFacade {
                 LOGGER.error("Error while running thread", e);
             }
         }
-        executor.shutdown();
-        try {
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-        } catch (InterruptedException e) {
-            LOGGER.error("Error while Terminating thread", e);
-        }
         LOGGER.debug("Thread Processing End");
 
         LOGGER.debug(KilkariConstants.IMPORTED, timer.frequency(recordsProcessed));
@@ -2485,15 +2537,14 @@ public class RchWebServiceFacadeImpl implements RchWebServiceFacade {
 
         LOGGER.debug("Thread Processing Start");
         Integer recordsProcessed = 0;
-        ExecutorService executor = Executors.newCachedThreadPool();
-        List<Future<ThreadProcessorObject>> list = new ArrayList<>();
+        List<Callable<ThreadProcessorObject>> callables = new ArrayList<>();
 
         for (int i = 0; i < recordListArray.size(); i++) {
             Callable<ThreadProcessorObject> callable = new ChildCsvThreadProcessor(recordListArray.get(i), false, SubscriptionOrigin.RCH_IMPORT, locationFinder,
                     mctsBeneficiaryValueProcessor, mctsBeneficiaryImportService);
-            Future<ThreadProcessorObject> future = executor.submit(callable);
-            list.add(future);
+            callables.add(callable);
         }
+        List<Future<ThreadProcessorObject>> list = importExecutionService.submitAll("RCH children, state " + stateCode, callables);
 
         for (Future<ThreadProcessorObject> fut : list) {
             try {
@@ -2511,12 +2562,6 @@ public class RchWebServiceFacadeImpl implements RchWebServiceFacade {
                 LOGGER.error("Error while running thread", e);
             }
         }
-        executor.shutdown();
-        try {
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-        } catch (InterruptedException e) {
-            LOGGER.error("Error while Terminating thread", e);
-        }
         LOGGER.debug("Thread Processing End");
 
         LOGGER.debug(KilkariConstants.IMPORTED, timer.frequency(recordsProcessed));
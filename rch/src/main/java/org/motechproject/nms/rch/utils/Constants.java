@@ -10,6 +10,7 @@ public final class Constants {
     public static final String RCH_PROJECT_ID = "rch.credentials.project_id";
     public static final String RCH_DTID = "rch.credentials.dtid";
     public static final String RCH_LOCATIONS = "rch.state_ids";
+    public static final String RCH_STREAMING_XML_IMPORT = "rch.streaming_xml_import";
     //public static final String RCH_SYNC_CRON = "rch.sync.cron";
 
     public static final String RCH_SYNC_MOTHER_CRON = "rch.sync.cron.mother";
@@ -3,19 +3,212 @@ package org.motechproject.nms.rch.utils;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public final class MarshallUtils {
 
+    /**
+     * JAXBContext is thread safe and expensive to build, so one is kept per set of bound classes. Unmarshallers are
+     * not thread safe and are still created per call.
+     */
+    private static final ConcurrentMap<List<Class>, JAXBContext> CONTEXTS = new ConcurrentHashMap<>();
+
+    /**
+     * Namespaces of the attributes .NET adds to the rows of a diffgram, eg: diffgr:id="Records1" msdata:rowOrder="0"
+     */
+    private static final String DIFFGRAM_NAMESPACE = "urn:schemas-microsoft-com:xml-diffgram-v1";
+    private static final String MSDATA_NAMESPACE = "urn:schemas-microsoft-com:xml-msdata";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
     private MarshallUtils() {
     }
 
+    /**
+     * Receives the records parsed by {@link #unmarshallRecords(File, String, String, Class, RecordHandler)}, one at
+     * a time.
+     * @param <T> the record type
+     */
+    public interface RecordHandler<T> {
+        void handle(T record);
+    }
+
     public static Object unmarshall(String xml, Class... classesToBeBound) throws JAXBException {
 
-        JAXBContext context = JAXBContext.newInstance(classesToBeBound);
-        Unmarshaller unmarshaller = context.createUnmarshaller();
+        Unmarshaller unmarshaller = getContext(classesToBeBound).createUnmarshaller();
         StringReader reader = new StringReader(xml);
 
         return unmarshaller.unmarshal(reader);
     }
+
+    /**
+     * Streams an XML file with StAX and unmarshalls the recordElement children of the first element named
+     * dataSetElement, handing each record to the handler as soon as it has been read. Records anywhere else in the
+     * document, eg: in the diffgr:before section of a diffgram, are skipped, and so are the diffgram attributes of
+     * the records. Only one record is held in memory at a time, whatever the size of the file.
+     * @param file the XML file to read
+     * @param dataSetElement local name of the element holding the records, eg: NewDataSet
+     * @param recordElement local name of the record elements, eg: Records
+     * @param recordClass the JAXB type of a single record
+     * @param handler called for every record, in document order
+     * @param <T> the record type
+     * @return the number of records read
+     */
+    public static <T> int unmarshallRecords(File file, String dataSetElement, String recordElement,
+                                            Class<T> recordClass, RecordHandler<T> handler)
+            throws JAXBException, XMLStreamException, IOException {
+
+        Unmarshaller unmarshaller = getContext(recordClass).createUnmarshaller();
+        int count = 0;
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            XMLStreamReader reader = new DiffgramAttributeFilter(XML_INPUT_FACTORY.createXMLStreamReader(in));
+            try {
+                // depth counts the open elements, dataSetDepth is the depth of the data set once it has been opened
+                int depth = 0;
+                int dataSetDepth = -1;
+                while (reader.hasNext()) {
+                    int event = reader.getEventType();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        if (depth == dataSetDepth && recordElement.equals(reader.getLocalName())) {
+                            // unmarshal leaves the reader on the event following the record's end element
+                            handler.handle(unmarshaller.unmarshal(reader, recordClass).getValue());
+                            count++;
+                            continue;
+                        }
+                        depth++;
+                        if (dataSetDepth < 0 && dataSetElement.equals(reader.getLocalName())) {
+                            dataSetDepth = depth;
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        if (depth == dataSetDepth) {
+                            break;
+                        }
+                        depth--;
+                    }
+                    reader.next();
+                }
+            } finally {
+                reader.close();
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Hides the diffgr:* and msdata:* attributes of the elements, so the records are read the same whether or not
+     * the data set was sent as a diffgram
+     */
+    private static class DiffgramAttributeFilter extends StreamReaderDelegate {
+
+        DiffgramAttributeFilter(XMLStreamReader reader) {
+            super(reader);
+        }
+
+        private boolean isDiffgramAttribute(int index) {
+            String namespace = super.getAttributeNamespace(index);
+            return DIFFGRAM_NAMESPACE.equals(namespace) || MSDATA_NAMESPACE.equals(namespace);
+        }
+
+        /**
+         * @return the index in the underlying reader of the index-th attribute left visible
+         */
+        private int underlyingIndex(int index) {
+            int visible = -1;
+            for (int i = 0; i < super.getAttributeCount(); i++) {
+                if (!isDiffgramAttribute(i) && ++visible == index) {
+                    return i;
+                }
+            }
+            throw new IndexOutOfBoundsException("No attribute at index " + index);
+        }
+
+        @Override
+        public int getAttributeCount() {
+            int count = 0;
+            for (int i = 0; i < super.getAttributeCount(); i++) {
+                if (!isDiffgramAttribute(i)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public QName getAttributeName(int index) {
+            return super.getAttributeName(underlyingIndex(index));
+        }
+
+        @Override
+        public String getAttributeNamespace(int index) {
+            return super.getAttributeNamespace(underlyingIndex(index));
+        }
+
+        @Override
+        public String getAttributeLocalName(int index) {
+            return super.getAttributeLocalName(underlyingIndex(index));
+        }
+
+        @Override
+        public String getAttributePrefix(int index) {
+            return super.getAttributePrefix(underlyingIndex(index));
+        }
+
+        @Override
+        public String getAttributeType(int index) {
+            return super.getAttributeType(underlyingIndex(index));
+        }
+
+        @Override
+        public String getAttributeValue(int index) {
+            return super.getAttributeValue(underlyingIndex(index));
+        }
+
+        @Override
+        public String getAttributeValue(String namespaceUri, String localName) {
+            if (DIFFGRAM_NAMESPACE.equals(namespaceUri) || MSDATA_NAMESPACE.equals(namespaceUri)) {
+                return null;
+            }
+            return super.getAttributeValue(namespaceUri, localName);
+        }
+
+        @Override
+        public boolean isAttributeSpecified(int index) {
+            return super.isAttributeSpecified(underlyingIndex(index));
+        }
+    }
+
+    private static JAXBContext getContext(Class... classesToBeBound) throws JAXBException {
+        List<Class> key = Arrays.asList(classesToBeBound);
+        JAXBContext context = CONTEXTS.get(key);
+        if (context == null) {
+            context = JAXBContext.newInstance(classesToBeBound);
+            JAXBContext existing = CONTEXTS.putIfAbsent(key, context);
+            if (existing != null) {
+                context = existing;
+            }
+        }
+        return context;
+    }
 }
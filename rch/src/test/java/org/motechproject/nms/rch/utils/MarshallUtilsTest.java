@@ -0,0 +1,68 @@
+package org.motechproject.nms.rch.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.motechproject.nms.kilkari.contract.RchMotherRecord;
+import org.motechproject.nms.rch.contract.RchMothersDataSet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class MarshallUtilsTest {
+
+    private File fixture(String name) {
+        return new File(getClass().getClassLoader().getResource(name).getFile());
+    }
+
+    @Test
+    public void shouldOnlyReadTheRecordsOfTheDataSet() throws Exception {
+        final List<RchMotherRecord> records = new ArrayList<>();
+
+        int count = MarshallUtils.unmarshallRecords(fixture("rch/mothers_diffgram.xml"), "NewDataSet", "Records",
+                RchMotherRecord.class, new MarshallUtils.RecordHandler<RchMotherRecord>() {
+                    @Override
+                    public void handle(RchMotherRecord record) {
+                        records.add(record);
+                    }
+                });
+
+        // the Records of the schema and of diffgr:before are not part of the data set
+        assertEquals(2, count);
+        assertEquals(2, records.size());
+        assertEquals(Long.valueOf(21), records.get(0).getStateId());
+        assertEquals("121004563170", records.get(0).getRegistrationNo());
+        assertEquals("Shanti Ekka", records.get(0).getName());
+        assertEquals("9439986187", records.get(0).getMobileNo());
+        assertEquals("121004563171", records.get(1).getRegistrationNo());
+        assertEquals("Sita Devi", records.get(1).getName());
+    }
+
+    @Test
+    public void shouldReadTheSameRecordsAsTheDataSetUnmarshaller() throws Exception {
+        File file = fixture("rch/mothers_diffgram.xml");
+
+        // what the non streaming import does with the response file
+        String xml = "<NewDataSet" + FileUtils.readFileToString(file).split("NewDataSet")[3] + "NewDataSet>";
+        xml = xml.replaceAll("<Records diffgr:id=\"Records[0-9]+\" msdata:rowOrder=\"[0-9]+\">", "<Records >");
+        RchMothersDataSet dataSet = (RchMothersDataSet) MarshallUtils.unmarshall(xml, RchMothersDataSet.class);
+        List<String> expected = new ArrayList<>();
+        for (RchMotherRecord record : dataSet.getRecords()) {
+            expected.add(record.getRegistrationNo() + ":" + record.getMobileNo());
+        }
+
+        final List<String> streamed = new ArrayList<>();
+        MarshallUtils.unmarshallRecords(file, "NewDataSet", "Records",
+                RchMotherRecord.class, new MarshallUtils.RecordHandler<RchMotherRecord>() {
+                    @Override
+                    public void handle(RchMotherRecord record) {
+                        streamed.add(record.getRegistrationNo() + ":" + record.getMobileNo());
+                    }
+                });
+
+        assertEquals(2, expected.size());
+        assertEquals(expected, streamed);
+    }
+}
@@ -17,7 +17,9 @@ import org.motechproject.nms.region.repository.StateDataService;
 import org.motechproject.nms.region.service.DistrictService;
 import org.motechproject.nms.region.service.HealthBlockService;
 import org.motechproject.nms.region.service.HealthFacilityService;
+import org.motechproject.nms.region.service.LocationCacheService;
 import org.motechproject.nms.region.service.TalukaService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 import org.supercsv.cellprocessor.ift.CellProcessor;
 
@@ -37,6 +39,8 @@ public abstract class BaseLocationImportService<T> {
 
     private Class<T> type;
 
+    private LocationCacheService locationCacheService;
+
     public BaseLocationImportService(Class<T> type) {
         this.type = type;
     }
@@ -59,6 +63,12 @@ public abstract class BaseLocationImportService<T> {
             throw new CsvImportDataException(createErrorMessage(e.getMessage(),
                 csvImporter.getRowNumber()), e);
         }
+        locationCacheService.broadcastEvict();
+    }
+
+    @Autowired
+    public void setLocationCacheService(LocationCacheService locationCacheService) {
+        this.locationCacheService = locationCacheService;
     }
 
     protected CellProcessor mapState(final StateDataService stateDataService) {
@@ -18,6 +18,7 @@ import org.motechproject.nms.region.repository.DistrictDataService;
 import org.motechproject.nms.region.repository.LanguageDataService;
 import org.motechproject.nms.region.repository.StateDataService;
 import org.motechproject.nms.region.service.DistrictService;
+import org.motechproject.nms.region.service.LocationCacheService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -52,6 +53,7 @@ public class LanguageLocationImportServiceImpl implements LanguageLocationImport
     private StateDataService stateDataService;
     private DistrictDataService districtDataService;
     private DistrictService districtService;
+    private LocationCacheService locationCacheService;
 
     @Override
     @Transactional
@@ -68,6 +70,7 @@ public class LanguageLocationImportServiceImpl implements LanguageLocationImport
                         ConstraintViolationUtils.toString(e.getConstraintViolations())), e);
             }
         }
+        locationCacheService.broadcastEvict();
     }
 
     @Override
@@ -116,6 +119,7 @@ public class LanguageLocationImportServiceImpl implements LanguageLocationImport
             dbState.setName(name);
             dbState.setCode(code);
             stateDataService.update(dbState);
+            locationCacheService.broadcastEvict(Collections.singletonList(dbState));
         }
 
     }
@@ -263,4 +267,9 @@ public class LanguageLocationImportServiceImpl implements LanguageLocationImport
     public void setDistrictService(DistrictService districtService) {
         this.districtService = districtService;
     }
+
+    @Autowired
+    public void setLocationCacheService(LocationCacheService locationCacheService) {
+        this.locationCacheService = locationCacheService;
+    }
 }
@@ -0,0 +1,105 @@
+package org.motechproject.nms.region.service;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.mds.annotations.InstanceLifecycleListener;
+import org.motechproject.mds.annotations.InstanceLifecycleListenerType;
+import org.motechproject.nms.region.domain.District;
+import org.motechproject.nms.region.domain.HealthBlock;
+import org.motechproject.nms.region.domain.HealthFacility;
+import org.motechproject.nms.region.domain.HealthSubFacility;
+import org.motechproject.nms.region.domain.State;
+import org.motechproject.nms.region.domain.Taluka;
+import org.motechproject.nms.region.domain.Village;
+
+import java.util.Collection;
+
+/**
+ * Evicts the location cache every node keeps, per state, to resolve the locations of imported records by code
+ */
+public interface LocationCacheService {
+
+    /**
+     * Lifecycle listener that evicts the location's state from the cache of every node, once the change is committed
+     *
+     * @param state
+     */
+    @InstanceLifecycleListener({ InstanceLifecycleListenerType.POST_CREATE, InstanceLifecycleListenerType.PRE_DELETE,
+            InstanceLifecycleListenerType.PRE_STORE })
+    void stateChanged(State state);
+
+    /**
+     * Lifecycle listener that evicts the location's state from the cache of every node, once the change is committed
+     *
+     * @param district
+     */
+    @InstanceLifecycleListener({ InstanceLifecycleListenerType.POST_CREATE, InstanceLifecycleListenerType.PRE_DELETE,
+            InstanceLifecycleListenerType.PRE_STORE })
+    void districtChanged(District district);
+
+    /**
+     * Lifecycle listener that evicts the location's state from the cache of every node, once the change is committed
+     *
+     * @param taluka
+     */
+    @InstanceLifecycleListener({ InstanceLifecycleListenerType.POST_CREATE, InstanceLifecycleListenerType.PRE_DELETE,
+            InstanceLifecycleListenerType.PRE_STORE })
+    void talukaChanged(Taluka taluka);
+
+    /**
+     * Lifecycle listener that evicts the location's state from the cache of every node, once the change is committed
+     *
+     * @param village
+     */
+    @InstanceLifecycleListener({ InstanceLifecycleListenerType.POST_CREATE, InstanceLifecycleListenerType.PRE_DELETE,
+            InstanceLifecycleListenerType.PRE_STORE })
+    void villageChanged(Village village);
+
+    /**
+     * Lifecycle listener that evicts the location's state from the cache of every node, once the change is committed
+     *
+     * @param healthBlock
+     */
+    @InstanceLifecycleListener({ InstanceLifecycleListenerType.POST_CREATE, InstanceLifecycleListenerType.PRE_DELETE,
+            InstanceLifecycleListenerType.PRE_STORE })
+    void healthBlockChanged(HealthBlock healthBlock);
+
+    /**
+     * Lifecycle listener that evicts the location's state from the cache of every node, once the change is committed
+     *
+     * @param healthFacility
+     */
+    @InstanceLifecycleListener({ InstanceLifecycleListenerType.POST_CREATE, InstanceLifecycleListenerType.PRE_DELETE,
+            InstanceLifecycleListenerType.PRE_STORE })
+    void healthFacilityChanged(HealthFacility healthFacility);
+
+    /**
+     * Lifecycle listener that evicts the location's state from the cache of every node, once the change is committed
+     *
+     * @param healthSubFacility
+     */
+    @InstanceLifecycleListener({ InstanceLifecycleListenerType.POST_CREATE, InstanceLifecycleListenerType.PRE_DELETE,
+            InstanceLifecycleListenerType.PRE_STORE })
+    void healthSubFacilityChanged(HealthSubFacility healthSubFacility);
+
+    /**
+     * Evicts all the states from the location cache of every node once the current transaction commits, for
+     * locations written without the persistence layer when the states written aren't known
+     */
+    void broadcastEvict();
+
+    /**
+     * Evicts the given states from the location cache of every node once the current transaction commits, for
+     * locations written without the persistence layer (bulk SQL)
+     *
+     * @param states the states whose locations were written, null elements are ignored
+     */
+    void broadcastEvict(Collection<State> states);
+
+    /**
+     * Location cache evict, also for changes made without the persistence layer. Evicts the states whose ids are in
+     * the stateIds parameter of the event, or all of them if there is no such parameter or no event
+     *
+     * @param event
+     */
+    void cacheEvict(MotechEvent event);
+}
@@ -15,7 +15,9 @@ import org.motechproject.nms.region.domain.LocationRejectionReasons;
 import org.motechproject.nms.region.domain.State;
 import org.motechproject.nms.region.repository.DistrictDataService;
 import org.motechproject.nms.region.service.DistrictService;
+import org.motechproject.nms.region.service.LocationCacheService;
 import org.motechproject.nms.region.utils.LocationConstants;
+import org.motechproject.nms.rejectionhandler.domain.DistrictImportRejection;
 import org.motechproject.nms.rejectionhandler.service.DistrictRejectionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,12 +42,16 @@ public class DistrictServiceImpl implements DistrictService {
 
     private DistrictRejectionService districtRejectionService;
 
+    private LocationCacheService locationCacheService;
+
     private static Boolean rejectionChecks=true;
 
     @Autowired
-    public DistrictServiceImpl(DistrictDataService districtDataService, DistrictRejectionService districtRejectionService) {
+    public DistrictServiceImpl(DistrictDataService districtDataService, DistrictRejectionService districtRejectionService,
+                               LocationCacheService locationCacheService) {
         this.districtDataService = districtDataService;
         this.districtRejectionService  = districtRejectionService;
+        this.locationCacheService = locationCacheService;
     }
 
 
@@ -176,6 +182,7 @@ public class DistrictServiceImpl implements DistrictService {
         Long createdDistricts = 0L;
         if (!stateHashMap.isEmpty() && !queryExecution.getSqlQuery().isEmpty()) {
             createdDistricts = districtDataService.executeSQLQuery(queryExecution);
+            locationCacheService.broadcastEvict(stateHashMap.values());
         }
 
         return createdDistricts;
@@ -184,8 +191,7 @@ public class DistrictServiceImpl implements DistrictService {
     private String districtQuerySet(List<Map<String, Object>> districts, Map<String, State> stateHashMap) {
         StringBuilder stringBuilder = new StringBuilder();
         int i = 0;
-        StringBuilder rejectionStringBuilder = new StringBuilder();
-        int k= 0; // no of rejected records
+        List<DistrictImportRejection> rejections = new ArrayList<>();
         DateTime dateTimeNow = new DateTime();
         DateTimeFormatter dateTimeFormatter = DateTimeFormat.forPattern(DATE_FORMAT_STRING);
         for (Map<String, Object> district : districts) {
@@ -241,31 +247,18 @@ public class DistrictServiceImpl implements DistrictService {
             if(!rejectionReason.isEmpty()){
                 Long stateCode=(Long) district.get(LocationConstants.STATE_CODE_ID);
                 Long mdds_Code=(Long) district.get(LocationConstants.MDDS_CODE);
-                if (k != 0) {
-                    rejectionStringBuilder.append(", ");
-                }
-                rejectionStringBuilder.append("(");
-                rejectionStringBuilder.append( district.get(LocationConstants.CSV_STATE_ID) + ", ");
-                rejectionStringBuilder.append( district.get(LocationConstants.DISTRICT_ID)+ ", ");
-                rejectionStringBuilder.append(QUOTATION + StringEscapeUtils.escapeSql(district.get(LocationConstants.DISTRICT_NAME) == null ?
-                        "" : district.get(LocationConstants.DISTRICT_NAME).toString().replaceAll(":", "")) + QUOTATION_COMMA);
-                rejectionStringBuilder.append( 0+ ", ");
-
-                rejectionStringBuilder.append( QUOTATION+rejectionReason+QUOTATION+ ", ");
-                rejectionStringBuilder.append(MOTECH_STRING);
-                rejectionStringBuilder.append(MOTECH_STRING);
-                rejectionStringBuilder.append(MOTECH_STRING);
-                rejectionStringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-                rejectionStringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-                rejectionStringBuilder.append(QUOTATION + stateCode + QUOTATION_COMMA);
-                rejectionStringBuilder.append(QUOTATION + mdds_Code + QUOTATION);
-                rejectionStringBuilder.append(")");
-
-                k++;
+                DistrictImportRejection rejection = new DistrictImportRejection(
+                        (Long) district.get(LocationConstants.CSV_STATE_ID),
+                        (Long) district.get(LocationConstants.DISTRICT_ID),
+                        district.get(LocationConstants.DISTRICT_NAME) == null ? "" : district.get(LocationConstants.DISTRICT_NAME).toString(),
+                        false, rejectionReason);
+                rejection.setStateCode(stateCode);
+                rejection.setMddsCode(mdds_Code);
+                rejections.add(rejection);
             }
         }
-        if(k>0){
-            districtRejectionService.saveRejectedDistrictInBulk(rejectionStringBuilder.toString());
+        if(!rejections.isEmpty()){
+            districtRejectionService.saveRejectedDistrictInBulk(rejections);
         }
         rejectionChecks=false;
         return stringBuilder.toString();
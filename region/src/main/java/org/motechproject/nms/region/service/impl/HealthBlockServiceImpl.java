@@ -10,10 +10,13 @@ import org.motechproject.metrics.service.Timer;
 import org.motechproject.nms.region.domain.*;
 import org.motechproject.nms.region.repository.HealthBlockDataService;
 import org.motechproject.nms.region.service.HealthBlockService;
+import org.motechproject.nms.region.service.LocationCacheService;
 import org.motechproject.nms.region.utils.LocationConstants;
 import org.motechproject.nms.rejectionhandler.domain.TalukaHealthBlockImportRejection;
+import org.motechproject.nms.rejectionhandler.domain.HealthBlockImportRejection;
 import org.motechproject.nms.rejectionhandler.service.HealthBlockRejectionService;
 import org.motechproject.nms.rejectionhandler.service.TalukaHealthBlockRejectionService;
+import org.motechproject.nms.utils.BulkWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,6 +37,37 @@ public class HealthBlockServiceImpl implements HealthBlockService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HealthBlockServiceImpl.class);
 
+    private static final int BATCH_SIZE = 5000;
+
+    /**
+     * Links a taluka to a health block of its district, both looked up by their codes in the state of the record
+     */
+    private static final BulkWriter<Map<String, Object>> TALUKA_HEALTH_BLOCK_WRITER = BulkWriter
+            .<Map<String, Object>>insertInto("nms_taluka_healthblock", TalukaHealthBlock.class)
+            .columns("taluka_id", "healthBlock_id", "talukaName", "districtCode")
+            .select("t.id, h.id, :talukaName, :districtCode",
+                    "nms_states s " +
+                    "JOIN nms_districts d ON d.state_id_OID = s.id " +
+                    "JOIN nms_talukas t ON t.district_id_OID = d.id AND t.code = :talukaCode " +
+                    "JOIN nms_health_blocks h ON h.district_id_OID = t.district_id_OID AND h.code = :healthBlockCode " +
+                    "WHERE s.code = :stateCode",
+                    "stateCode", "talukaCode", "healthBlockCode", "talukaName", "districtCode")
+            .now("creationDate", "modificationDate")
+            .ignoreDuplicates()
+            .updateOnDuplicateKey("modificationDate", "talukaName", "districtCode")
+            .binder(new BulkWriter.RowBinder<Map<String, Object>>() {
+                @Override
+                public void bind(Map<String, Object> record, BulkWriter.Row columns) {
+                    columns.set("stateCode", record.get(LocationConstants.CSV_STATE_ID))
+                            .set("talukaCode", record.get(LocationConstants.TALUKA_ID).toString().trim())
+                            .set("healthBlockCode", record.get(LocationConstants.HEALTHBLOCK_ID))
+                            .set("talukaName", record.get(LocationConstants.TALUKA_NAME) == null ? null :
+                                    record.get(LocationConstants.TALUKA_NAME).toString())
+                            .set("districtCode", record.get(LocationConstants.DISTRICT_ID));
+                }
+            })
+            .build();
+
     private static Boolean rejectionChecks=true;
 
     @Autowired
@@ -45,6 +79,9 @@ public class HealthBlockServiceImpl implements HealthBlockService {
     @Autowired
     private TalukaHealthBlockRejectionService talukaHealthBlockRejectionService;
 
+    @Autowired
+    private LocationCacheService locationCacheService;
+
     @Override
     // Since Taluka <-> HealthBlocks are many to many, but we don't model that in our system
     // We instead just want to find a taluka with a matching code in the same state as the
@@ -185,6 +222,7 @@ public class HealthBlockServiceImpl implements HealthBlockService {
         Long createdHealthBlocks = 0L;
         if (!queryExecution.getSqlQuery().isEmpty() && !districtHashMap.isEmpty() && !talukaHashMap.isEmpty()) {
             createdHealthBlocks = healthBlockDataService.executeSQLQuery(queryExecution);
+            locationCacheService.broadcastEvict(stateHashMap.values());
         }
 
         return createdHealthBlocks;
@@ -262,8 +300,7 @@ public class HealthBlockServiceImpl implements HealthBlockService {
     private String healthBlockQuerySet(List<Map<String, Object>> healthBlocks, Map<String, State> stateHashMap, Map<String, District> districtHashMap, Map<String, Taluka> talukaHashMap) { //NO CHECKSTYLE Cyclomatic Complexity
         StringBuilder stringBuilder = new StringBuilder();
         int i = 0;
-        StringBuilder rejectionStringBuilder = new StringBuilder();
-        int k= 0;
+        List<HealthBlockImportRejection> rejections = new ArrayList<>();
         DateTime dateTimeNow = new DateTime();
         DateTimeFormatter dateTimeFormatter = DateTimeFormat.forPattern(DATE_FORMAT_STRING);
         for (Map<String, Object> healthBlock : healthBlocks) {
@@ -330,33 +367,19 @@ public class HealthBlockServiceImpl implements HealthBlockService {
             }
 
             if(!rejectionReason.isEmpty()){
-                if (k != 0) {
-                    rejectionStringBuilder.append(", ");
-                }
-                rejectionStringBuilder.append("(");
-                rejectionStringBuilder.append( healthBlock.get(LocationConstants.CSV_STATE_ID) + ", ");
-                rejectionStringBuilder.append( healthBlock.get(LocationConstants.DISTRICT_ID)+ ", ");
-                rejectionStringBuilder.append( QUOTATION + StringEscapeUtils.escapeSql(healthBlock.get(LocationConstants.TALUKA_ID) == null ?
-                        "" : healthBlock.get(LocationConstants.TALUKA_ID).toString().replaceAll(":", "")) + QUOTATION_COMMA);
-                rejectionStringBuilder.append( healthBlock.get(LocationConstants.HEALTHBLOCK_ID)+ ", ");
-                rejectionStringBuilder.append(QUOTATION + StringEscapeUtils.escapeSql(healthBlock.get(LocationConstants.HEALTHBLOCK_NAME) == null ?
-                        "" : healthBlock.get(LocationConstants.HEALTHBLOCK_NAME).toString().replaceAll(":", "")) + QUOTATION_COMMA);
-                rejectionStringBuilder.append( 0+ ", ");
-
-                rejectionStringBuilder.append( QUOTATION+rejectionReason+QUOTATION+ ", ");
-                rejectionStringBuilder.append(MOTECH_STRING);
-                rejectionStringBuilder.append(MOTECH_STRING);
-                rejectionStringBuilder.append(MOTECH_STRING);
-                rejectionStringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-                rejectionStringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-                rejectionStringBuilder.append(QUOTATION + mdds_Code + QUOTATION);
-                rejectionStringBuilder.append(")");
-
-                k++;
+                HealthBlockImportRejection rejection = new HealthBlockImportRejection(
+                        (Long) healthBlock.get(LocationConstants.CSV_STATE_ID),
+                        (Long) healthBlock.get(LocationConstants.DISTRICT_ID),
+                        healthBlock.get(LocationConstants.TALUKA_ID) == null ? "" : healthBlock.get(LocationConstants.TALUKA_ID).toString(),
+                        (Long) healthBlock.get(LocationConstants.HEALTHBLOCK_ID),
+                        healthBlock.get(LocationConstants.HEALTHBLOCK_NAME) == null ? "" : healthBlock.get(LocationConstants.HEALTHBLOCK_NAME).toString(),
+                        false, rejectionReason);
+                rejection.setMddsCode(mdds_Code);
+                rejections.add(rejection);
             }
         }
-        if(k>0){
-            healthBlockRejectionService.saveRejectedHealthBlockInBulk(rejectionStringBuilder.toString());
+        if(!rejections.isEmpty()){
+            healthBlockRejectionService.saveRejectedHealthBlockInBulk(rejections);
         }
         rejectionChecks=false;
         return stringBuilder.toString();
@@ -366,58 +389,19 @@ public class HealthBlockServiceImpl implements HealthBlockService {
     @Transactional
     public Long createUpdateTalukaHealthBlock(final List<Map<String, Object>> recordList) {
         Timer queryTimer = new Timer();
-        @SuppressWarnings("unchecked")
-        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
-
-            @Override
-            public String getSqlQuery() {
-                String query1 = "INSERT IGNORE into nms_taluka_healthblock (taluka_id, healthBlock_id, creationDate, modificationDate, talukaName, districtCode) ";
-                int count = recordList.size();
-                String query2 = "";
-                for (Map<String, Object> record : recordList) {
-                    if (record.get(LocationConstants.TALUKA_ID) != null && record.get(LocationConstants.CSV_STATE_ID) != null
-                            && record.get(LocationConstants.HEALTHBLOCK_ID) != null) {
-                        if (count != recordList.size()) {
-                            query2 += " UNION ";
-                        }
-                        query2 += " select t.id, h.id, now(), now()" +", "+"'"+record.get(LocationConstants.TALUKA_NAME).toString()+"'"+", "+record.get(LocationConstants.DISTRICT_ID)+
-                                " from nms_states s " +
-                                " join nms_districts d on  d.state_id_OID = s.id " +
-                                " join nms_talukas t on t.district_id_OID = d.id and t.code = " + "'" +
-                                record.get(LocationConstants.TALUKA_ID).toString().trim() + "'" +
-                                " join nms_health_blocks h on h.district_id_OID = t.district_id_OID and h.code = " +
-                                record.get(LocationConstants.HEALTHBLOCK_ID).toString() +
-                                " where s.code = " + record.get(LocationConstants.CSV_STATE_ID).toString();
-                        count--;
-                    }
-                    else {
-                        TalukaHealthBlockImportRejection talukaHealthBlockImportRejection = new TalukaHealthBlockImportRejection((Long)record.get(LocationConstants.CSV_STATE_ID),(String)record.get(LocationConstants.TALUKA_ID),(Long)record.get(LocationConstants.HEALTHBLOCK_ID),false,LocationRejectionReasons.PARENT_LOCATION_ID_NOT_PRESENT_IN_FILE.toString());
-                        talukaHealthBlockRejectionService.saveRejectedTalukaHealthBlock(talukaHealthBlockImportRejection);
-                    }
-                }
-
-                if (query2.isEmpty()) {
-                    LOGGER.debug("Taluka_HEALTHBLOCK Query: {}", query2);
-                    return query2;
-                }
-
-                String query3=" ON DUPLICATE KEY UPDATE " +
-                        "modificationDate = VALUES(modificationDate), talukaName = VALUES(talukaName), districtCode = VALUES(districtCode)";
-
-                LOGGER.debug("Taluka_HEALTHBLOCK Query: {}", query1 + query2+query3);
-                return query1 + query2+query3;
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Map<String, Object> record : recordList) {
+            if (record.get(LocationConstants.TALUKA_ID) != null && record.get(LocationConstants.CSV_STATE_ID) != null
+                    && record.get(LocationConstants.HEALTHBLOCK_ID) != null) {
+                rows.add(record);
             }
-
-            @Override
-            public Long execute(Query query) {
-                return (Long) query.execute();
+            else {
+                TalukaHealthBlockImportRejection talukaHealthBlockImportRejection = new TalukaHealthBlockImportRejection((Long)record.get(LocationConstants.CSV_STATE_ID),(String)record.get(LocationConstants.TALUKA_ID),(Long)record.get(LocationConstants.HEALTHBLOCK_ID),false,LocationRejectionReasons.PARENT_LOCATION_ID_NOT_PRESENT_IN_FILE.toString());
+                talukaHealthBlockRejectionService.saveRejectedTalukaHealthBlock(talukaHealthBlockImportRejection);
             }
-        };
-
-        Long healthBlockTalukaCount = 0L;
-        if (!queryExecution.getSqlQuery().isEmpty()) {
-            healthBlockTalukaCount = healthBlockDataService.executeSQLQuery(queryExecution);
         }
+
+        Long healthBlockTalukaCount = TALUKA_HEALTH_BLOCK_WRITER.write(healthBlockDataService, rows, BATCH_SIZE);
         LOGGER.debug("Taluka_HEALTHBLOCKs inserted : {}", healthBlockTalukaCount);
         LOGGER.debug("Taluka_HEALTHBLOCKs INSERT Query time: {}", queryTimer.time());
         return healthBlockTalukaCount;
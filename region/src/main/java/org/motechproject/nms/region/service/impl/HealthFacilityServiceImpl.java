@@ -10,7 +10,9 @@ import org.motechproject.metrics.service.Timer;
 import org.motechproject.nms.region.domain.*;
 import org.motechproject.nms.region.repository.HealthFacilityDataService;
 import org.motechproject.nms.region.service.HealthFacilityService;
+import org.motechproject.nms.region.service.LocationCacheService;
 import org.motechproject.nms.region.utils.LocationConstants;
+import org.motechproject.nms.rejectionhandler.domain.HealthFacilityImportRejection;
 import org.motechproject.nms.rejectionhandler.service.HealthFacilityRejectionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,6 +21,7 @@ import org.springframework.stereotype.Service;
 
 import javax.jdo.Query;
 import javax.jdo.annotations.Transactional;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -45,6 +48,9 @@ public class HealthFacilityServiceImpl implements HealthFacilityService {
     @Autowired
     private HealthFacilityRejectionService healthFacilityRejectionService;
 
+    @Autowired
+    private LocationCacheService locationCacheService;
+
     @Override
     public HealthFacility findByHealthBlockAndCode(final HealthBlock healthBlock, final Long code) {
         if (healthBlock == null) { return null; }
@@ -142,6 +148,7 @@ public class HealthFacilityServiceImpl implements HealthFacilityService {
         Long createdHealthFacilities = 0L;
         if (!queryExecution.getSqlQuery().isEmpty() && !talukaHashMap.isEmpty() && !healthBlockHashMap.isEmpty()) {
             createdHealthFacilities = dataService.executeSQLQuery(queryExecution);
+            locationCacheService.broadcastEvict(stateHashMap.values());
         }
 
         return createdHealthFacilities;
@@ -221,8 +228,7 @@ public class HealthFacilityServiceImpl implements HealthFacilityService {
     private String healthFacilityQuerySet(List<Map<String, Object>> healthFacilities, Map<String, State> stateHashMap, Map<String, District> districtHashMap, Map<String, Taluka> talukaHashMap, Map<String, HealthBlock> healthBlockHashMap) { //NO CHECKSTYLE Cyclomatic Complexity
         StringBuilder stringBuilder = new StringBuilder();
         int i = 0;
-        StringBuilder rejectionStringBuilder = new StringBuilder();
-        int k= 0;
+        List<HealthFacilityImportRejection> rejections = new ArrayList<>();
         DateTime dateTimeNow = new DateTime();
         DateTimeFormatter dateTimeFormatter = DateTimeFormat.forPattern(DATE_FORMAT_STRING);
         for (Map<String, Object> healthFacility : healthFacilities) {
@@ -307,34 +313,20 @@ public class HealthFacilityServiceImpl implements HealthFacilityService {
             }
 
             if(!rejectionReason.isEmpty()){
-                if (k != 0) {
-                    rejectionStringBuilder.append(", ");
-                }
-                rejectionStringBuilder.append("(");
-                rejectionStringBuilder.append( healthFacility.get(LocationConstants.CSV_STATE_ID) + ", ");
-                rejectionStringBuilder.append( healthFacility.get(LocationConstants.DISTRICT_ID)+ ", ");
-                rejectionStringBuilder.append( QUOTATION + StringEscapeUtils.escapeSql(healthFacility.get(LocationConstants.TALUKA_ID) == null ?
-                        "" : healthFacility.get(LocationConstants.TALUKA_ID).toString().replaceAll(":", "")) + QUOTATION_COMMA);
-                rejectionStringBuilder.append( healthFacility.get(LocationConstants.HEALTHBLOCK_ID)+ ", ");
-                rejectionStringBuilder.append( healthFacility.get(LocationConstants.HEALTHFACILITY_ID)+ ", ");
-                rejectionStringBuilder.append(QUOTATION + StringEscapeUtils.escapeSql(healthFacility.get(LocationConstants.HEALTHFACILITY_NAME) == null ?
-                        "" : healthFacility.get(LocationConstants.HEALTHFACILITY_NAME).toString().replaceAll(":", "")) + QUOTATION_COMMA);
-
-                rejectionStringBuilder.append( 0+ ", ");
-                rejectionStringBuilder.append( QUOTATION+rejectionReason+QUOTATION+ ", ");
-                rejectionStringBuilder.append(MOTECH_STRING);
-                rejectionStringBuilder.append(MOTECH_STRING);
-                rejectionStringBuilder.append(MOTECH_STRING);
-                rejectionStringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-                rejectionStringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-                rejectionStringBuilder.append(QUOTATION +  healthfacilityType+ QUOTATION);
-                rejectionStringBuilder.append(")");
-
-                k++;
+                HealthFacilityImportRejection rejection = new HealthFacilityImportRejection(
+                        (Long) healthFacility.get(LocationConstants.CSV_STATE_ID),
+                        (Long) healthFacility.get(LocationConstants.DISTRICT_ID),
+                        healthFacility.get(LocationConstants.TALUKA_ID) == null ? "" : healthFacility.get(LocationConstants.TALUKA_ID).toString(),
+                        (Long) healthFacility.get(LocationConstants.HEALTHBLOCK_ID),
+                        (Long) healthFacility.get(LocationConstants.HEALTHFACILITY_ID),
+                        healthFacility.get(LocationConstants.HEALTHFACILITY_NAME) == null ? "" : healthFacility.get(LocationConstants.HEALTHFACILITY_NAME).toString(),
+                        false, rejectionReason);
+                rejection.setHealthfacilityType(healthfacilityType);
+                rejections.add(rejection);
             }
         }
-        if(k>0){
-            healthFacilityRejectionService.saveRejectedHealthFacilityInBulk(rejectionStringBuilder.toString());
+        if(!rejections.isEmpty()){
+            healthFacilityRejectionService.saveRejectedHealthFacilityInBulk(rejections);
         }
         rejectionChecks=false;
         return stringBuilder.toString();
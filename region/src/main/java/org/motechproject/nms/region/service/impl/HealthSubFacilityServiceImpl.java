@@ -10,10 +10,13 @@ import org.motechproject.metrics.service.Timer;
 import org.motechproject.nms.region.domain.*;
 import org.motechproject.nms.region.repository.HealthSubFacilityDataService;
 import org.motechproject.nms.region.service.HealthSubFacilityService;
+import org.motechproject.nms.region.service.LocationCacheService;
 import org.motechproject.nms.region.utils.LocationConstants;
 import org.motechproject.nms.rejectionhandler.domain.VillageHealthSubFacilityImportRejection;
+import org.motechproject.nms.rejectionhandler.domain.HealthSubFacilityImportRejection;
 import org.motechproject.nms.rejectionhandler.service.HealthSubFacilityRejectionService;
 import org.motechproject.nms.rejectionhandler.service.VillageHealthSubFacilityRejectionService;
+import org.motechproject.nms.utils.BulkWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,6 +24,7 @@ import org.springframework.stereotype.Service;
 
 import javax.jdo.Query;
 import javax.jdo.annotations.Transactional;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -36,6 +40,42 @@ public class HealthSubFacilityServiceImpl implements HealthSubFacilityService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HealthSubFacilityServiceImpl.class);
 
+    private static final int BATCH_SIZE = 5000;
+
+    /**
+     * Links a village to a health sub facility, both looked up by their codes in the state of the record
+     */
+    private static final BulkWriter<Map<String, Object>> VILLAGE_HEALTH_SUB_FACILITY_WRITER = BulkWriter
+            .<Map<String, Object>>insertInto("nms_village_healthsubfacility", VillageHealthSubFacility.class)
+            .columns("village_id", "healthSubFacility_id", "districtCode", "talukaCode", "villageName",
+                    "healthFacilityCode")
+            .select("v.id, hsf.id, :districtCode, :talukaCode, :villageName, :healthFacilityCode",
+                    "nms_states s " +
+                    "JOIN nms_districts d ON s.id = d.state_id_oid " +
+                    "JOIN nms_talukas t ON t.district_id_oid = d.id " +
+                    "JOIN nms_villages v ON v.taluka_id_oid = t.id AND v.vcode = :villageCode AND v.svid = 0 " +
+                    "JOIN nms_health_sub_facilities hsf ON hsf.taluka_id_oid = v.taluka_id_oid " +
+                    "AND hsf.code = :healthSubFacilityCode " +
+                    "WHERE s.code = :stateCode",
+                    "stateCode", "villageCode", "healthSubFacilityCode", "districtCode", "talukaCode", "villageName",
+                    "healthFacilityCode")
+            .now("creationDate", "modificationDate")
+            .ignoreDuplicates()
+            .updateOnDuplicateKey("modificationDate", "districtCode", "talukaCode", "villageName", "healthFacilityCode")
+            .binder(new BulkWriter.RowBinder<Map<String, Object>>() {
+                @Override
+                public void bind(Map<String, Object> record, BulkWriter.Row columns) {
+                    columns.set("stateCode", record.get(LocationConstants.CSV_STATE_ID))
+                            .set("villageCode", record.get(LocationConstants.VILLAGE_ID))
+                            .set("healthSubFacilityCode", record.get(LocationConstants.HEALTHSUBFACILITY_ID))
+                            .set("districtCode", record.get(LocationConstants.DISTRICT_ID))
+                            .set("talukaCode", toStringOrNull(record.get(LocationConstants.TALUKA_ID)))
+                            .set("villageName", toStringOrNull(record.get(LocationConstants.VILLAGE_NAME)))
+                            .set("healthFacilityCode", record.get(LocationConstants.HEALTHFACILITY_ID));
+                }
+            })
+            .build();
+
     private static Boolean rejectionChecks=true;
 
     @Autowired
@@ -47,6 +87,9 @@ public class HealthSubFacilityServiceImpl implements HealthSubFacilityService {
     @Autowired
     private VillageHealthSubFacilityRejectionService villageHealthSubFacilityRejectionService;
 
+    @Autowired
+    private LocationCacheService locationCacheService;
+
     @Override
     public HealthSubFacility findByHealthFacilityAndCode(final HealthFacility healthFacility, final Long code) {
         if (healthFacility == null) { return null; }
@@ -144,6 +187,7 @@ public class HealthSubFacilityServiceImpl implements HealthSubFacilityService {
         Long createdHealthSubFacilities = 0L;
         if (!queryExecution.getSqlQuery().isEmpty() && !healthFacilityHashMap.isEmpty() && !talukaHashMap.isEmpty() ) {
             createdHealthSubFacilities = dataService.executeSQLQuery(queryExecution);
+            locationCacheService.broadcastEvict(stateHashMap.values());
         }
 
         return createdHealthSubFacilities;
@@ -152,8 +196,7 @@ public class HealthSubFacilityServiceImpl implements HealthSubFacilityService {
     private String healthSubFacilityQuerySet(List<Map<String, Object>> healthSubFacilities, Map<String, State> stateHashMap, Map<String, District> districtHashMap, Map<String, Taluka> talukaHashMap, Map<String, HealthFacility> healthFacilityHashMap) { //NO CHECKSTYLE Cyclomatic Complexity
         StringBuilder stringBuilder = new StringBuilder();
         int i = 0;
-        StringBuilder rejectionStringBuilder = new StringBuilder();
-        int k= 0;
+        List<HealthSubFacilityImportRejection> rejections = new ArrayList<>();
         DateTime dateTimeNow = new DateTime();
         DateTimeFormatter dateTimeFormatter = DateTimeFormat.forPattern(DATE_FORMAT_STRING);
         for (Map<String, Object> healthSubFacility : healthSubFacilities) {
@@ -226,33 +269,19 @@ public class HealthSubFacilityServiceImpl implements HealthSubFacilityService {
             }
 
             if(!rejectionReason.isEmpty()){
-                if (k != 0) {
-                    rejectionStringBuilder.append(", ");
-                }
-                rejectionStringBuilder.append("(");
-                rejectionStringBuilder.append( healthSubFacility.get(LocationConstants.CSV_STATE_ID) + ", ");
-                rejectionStringBuilder.append( healthSubFacility.get(LocationConstants.DISTRICT_ID)+ ", ");
-                rejectionStringBuilder.append( QUOTATION + StringEscapeUtils.escapeSql(healthSubFacility.get(LocationConstants.TALUKA_ID) == null ?
-                        "" : healthSubFacility.get(LocationConstants.TALUKA_ID).toString().replaceAll(":", "")) + QUOTATION_COMMA);
-                rejectionStringBuilder.append( healthSubFacility.get(LocationConstants.HEALTHFACILITY_ID)+ ", ");
-                rejectionStringBuilder.append( healthSubFacility.get(LocationConstants.HEALTHSUBFACILITY_ID)+ ", ");
-                rejectionStringBuilder.append(QUOTATION + StringEscapeUtils.escapeSql(healthSubFacility.get(LocationConstants.HEALTHSUBFACILITY_NAME) == null ?
-                        "" : healthSubFacility.get(LocationConstants.HEALTHSUBFACILITY_NAME).toString().replaceAll(":", "")) + QUOTATION_COMMA);
-
-                rejectionStringBuilder.append( 0+ ", ");
-                rejectionStringBuilder.append( QUOTATION+rejectionReason+QUOTATION+ ", ");
-                rejectionStringBuilder.append(MOTECH_STRING);
-                rejectionStringBuilder.append(MOTECH_STRING);
-                rejectionStringBuilder.append(MOTECH_STRING);
-                rejectionStringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-                rejectionStringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION);
-                rejectionStringBuilder.append(")");
-
-                k++;
+                HealthSubFacilityImportRejection rejection = new HealthSubFacilityImportRejection(
+                        (Long) healthSubFacility.get(LocationConstants.CSV_STATE_ID),
+                        (Long) healthSubFacility.get(LocationConstants.DISTRICT_ID),
+                        healthSubFacility.get(LocationConstants.TALUKA_ID) == null ? "" : healthSubFacility.get(LocationConstants.TALUKA_ID).toString(),
+                        (Long) healthSubFacility.get(LocationConstants.HEALTHFACILITY_ID),
+                        (Long) healthSubFacility.get(LocationConstants.HEALTHSUBFACILITY_ID),
+                        healthSubFacility.get(LocationConstants.HEALTHSUBFACILITY_NAME) == null ? "" : healthSubFacility.get(LocationConstants.HEALTHSUBFACILITY_NAME).toString(),
+                        false, rejectionReason);
+                rejections.add(rejection);
             }
         }
-        if(k>0){
-            healthSubFacilityRejectionService.saveRejectedHealthSubFacilityInBulk(rejectionStringBuilder.toString());
+        if(!rejections.isEmpty()){
+            healthSubFacilityRejectionService.saveRejectedHealthSubFacilityInBulk(rejections);
         }
         rejectionChecks=false;
         return stringBuilder.toString();
@@ -262,64 +291,24 @@ public class HealthSubFacilityServiceImpl implements HealthSubFacilityService {
     @Transactional
     public Long createUpdateVillageHealthSubFacility(final List<Map<String, Object>> recordList) {
         Timer queryTimer = new Timer();
-
-        @SuppressWarnings("unchecked")
-        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
-
-            @Override
-            public String getSqlQuery() {
-                String query = "INSERT IGNORE into nms_village_healthsubfacility (village_id, healthSubFacility_id, creationDate, modificationDate, districtCode, talukaCode, villageName, healthFacilityCode) ";
-                String query2 = "";
-                int count = recordList.size();
-                for (Map<String, Object> record : recordList) {
-                    if (record.get(LocationConstants.CSV_STATE_ID) != null
-                            && record.get(LocationConstants.HEALTHSUBFACILITY_ID) != null && record.get(LocationConstants.VILLAGE_ID) != null) {
-                        if (count != recordList.size()) {
-                            query2 += " UNION ";
-                        }
-                        String village_name=record.get(LocationConstants.VILLAGE_NAME).toString();
-                        village_name=village_name.replaceAll("\"","");
-                        village_name=village_name.replaceAll("'","");
-                        query2 += " select v.id as village_Id, hsf.id as healthSubFacility_Id, now(), now()" +", "+record.get(LocationConstants.DISTRICT_ID)+", "+"'"+record.get(LocationConstants.TALUKA_ID)+"'"+", '"+village_name+"', "+record.get(LocationConstants.HEALTHFACILITY_ID)+
-                                " from nms_states s " +
-                                " JOIN nms_districts d on s.id=d.state_id_oid " +
-                                " JOIN nms_talukas t on t.district_id_oid = d.id " +
-                                " JOIN nms_villages v on v.taluka_id_oid = t.id and v.vcode = " +
-                                record.get(LocationConstants.VILLAGE_ID).toString() +
-                                " and v.svid = 0 " +
-                                " JOIN nms_health_sub_facilities hsf on hsf.taluka_id_oid = v.taluka_id_oid and hsf.code =  " +
-                                record.get(LocationConstants.HEALTHSUBFACILITY_ID).toString() +
-                                " where s.code = " + record.get(LocationConstants.CSV_STATE_ID).toString();
-                        count--;
-                    }else {
-                        VillageHealthSubFacilityImportRejection villageHealthSubFacilityImportRejection = new VillageHealthSubFacilityImportRejection((Long)record.get(LocationConstants.CSV_STATE_ID),(Long) record.get(LocationConstants.DISTRICT_ID),(Long)record.get(LocationConstants.VILLAGE_ID),(Long)record.get(LocationConstants.HEALTHSUBFACILITY_ID),false,LocationRejectionReasons.PARENT_LOCATION_ID_NOT_PRESENT_IN_FILE.toString());
-                        villageHealthSubFacilityRejectionService.saveRejectedVillageHealthSubFacility(villageHealthSubFacilityImportRejection);
-                    }
-                }
-
-                if (query2.isEmpty()) {
-                    LOGGER.debug("VILLAGE_HEALTHSUBFACILITY Query: {}", query2);
-                    return query2;
-                }
-                String query3=" ON DUPLICATE KEY UPDATE " +
-                        "modificationDate = VALUES(modificationDate), districtCode = VALUES(districtCode), talukaCode = VALUES(talukaCode), villageName = VALUES(villageName), healthFacilityCode = VALUES(healthFacilityCode)";
-                LOGGER.debug("VILLAGE_HEALTHSUBFACILITY Query: {}", query + query2);
-                return query + query2+query3;
-            }
-
-            @Override
-            public Long execute(Query query) {
-                return (Long) query.execute();
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Map<String, Object> record : recordList) {
+            if (record.get(LocationConstants.CSV_STATE_ID) != null
+                    && record.get(LocationConstants.HEALTHSUBFACILITY_ID) != null && record.get(LocationConstants.VILLAGE_ID) != null) {
+                rows.add(record);
+            } else {
+                VillageHealthSubFacilityImportRejection villageHealthSubFacilityImportRejection = new VillageHealthSubFacilityImportRejection((Long)record.get(LocationConstants.CSV_STATE_ID),(Long) record.get(LocationConstants.DISTRICT_ID),(Long)record.get(LocationConstants.VILLAGE_ID),(Long)record.get(LocationConstants.HEALTHSUBFACILITY_ID),false,LocationRejectionReasons.PARENT_LOCATION_ID_NOT_PRESENT_IN_FILE.toString());
+                villageHealthSubFacilityRejectionService.saveRejectedVillageHealthSubFacility(villageHealthSubFacilityImportRejection);
             }
-        };
-
-        Long villageHealthSubFacilityCount = 0L;
-        if (!queryExecution.getSqlQuery().isEmpty()) {
-            villageHealthSubFacilityCount = dataService.executeSQLQuery(queryExecution);
         }
+
+        Long villageHealthSubFacilityCount = VILLAGE_HEALTH_SUB_FACILITY_WRITER.write(dataService, rows, BATCH_SIZE);
         LOGGER.debug("VILLAGE_HEALTHSUBFACILITYs inserted : {}", villageHealthSubFacilityCount);
         LOGGER.debug("VILLAGE_HEALTHSUBFACILITYs INSERT Query time: {}", queryTimer.time());
         return villageHealthSubFacilityCount;
     }
 
+    private static String toStringOrNull(Object value) {
+        return value == null ? null : value.toString();
+    }
 }
@@ -0,0 +1,388 @@
+package org.motechproject.nms.region.service.impl;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventRelay;
+import org.motechproject.event.listener.annotations.MotechListener;
+import org.motechproject.mds.query.SqlQueryExecution;
+import org.motechproject.metrics.service.Timer;
+import org.motechproject.nms.region.domain.District;
+import org.motechproject.nms.region.domain.HealthBlock;
+import org.motechproject.nms.region.domain.HealthFacility;
+import org.motechproject.nms.region.domain.HealthSubFacility;
+import org.motechproject.nms.region.domain.State;
+import org.motechproject.nms.region.domain.Taluka;
+import org.motechproject.nms.region.domain.Village;
+import org.motechproject.nms.region.repository.StateDataService;
+import org.motechproject.nms.region.service.LocationCacheService;
+import org.motechproject.nms.tracking.utils.TransactionBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process wide cache of the location hierarchy, used to resolve the locations of RCH/MCTS import records without
+ * looking them up by code. For every state it holds the ids of its locations keyed by their codes; a state is loaded
+ * with one query per location type the first time it's needed, or when the node warms its cache after startup. The
+ * ids are resolved to locations by the caller, in its own transaction, so no persistent instance is shared.
+ *
+ * Every location written through the persistence layer evicts its state from the cache of every node once its
+ * transaction commits, and so do the region services writing locations with bulk SQL. Evictions bump the cache
+ * version, a state load that was running while the cache was evicted is returned to its caller but not kept.
+ */
+@Service("locationCache")
+public class LocationCache implements LocationCacheService {
+
+    public static final String LOCATION_CACHE_EVICT_MESSAGE = "nms.region.cache.evict.location";
+
+    /**
+     * Event parameter holding the ids of the states to evict, all the states are evicted when it's missing
+     */
+    public static final String STATE_IDS_PARAM = "stateIds";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocationCache.class);
+
+    private static final String STATE_ID = "stateId";
+
+    private final ConcurrentMap<Long, StateLocations> states = new ConcurrentHashMap<>();
+
+    private final TransactionBuffer<PendingEviction> transactionChanges = new TransactionBuffer<PendingEviction>() {
+        @Override
+        protected PendingEviction newBuffer() {
+            return new PendingEviction();
+        }
+
+        @Override
+        protected void committed(PendingEviction eviction) {
+            LOGGER.debug("Location changes committed, evicting {}", eviction.all ? "all states" : eviction.stateIds);
+            evict(eviction.all ? null : eviction.stateIds);
+        }
+    };
+
+    private long version;
+
+    @Autowired
+    private StateDataService stateDataService;
+
+    @Autowired
+    private EventRelay eventRelay;
+
+    /**
+     * Every node warms its own cache. Warming loads every state, so it's done by a background thread rather than
+     * holding the bundle start; lookups made meanwhile load their state themselves.
+     */
+    @PostConstruct
+    public void startWarmUp() {
+        Thread warmUp = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    warmUp();
+                } catch (RuntimeException e) {
+                    LOGGER.error("Unable to warm the location cache, states will be loaded when first needed", e);
+                }
+            }
+        }, "location-cache-warm-up");
+        warmUp.setDaemon(true);
+        warmUp.start();
+    }
+
+    private void warmUp() {
+        Timer timer = new Timer("state", "states");
+        int count = 0;
+        for (State state : stateDataService.retrieveAll()) {
+            if (getState(state.getCode()) != null) {
+                count++;
+            }
+        }
+        LOGGER.info("Location cache warmed: {}", timer.frequency(count));
+    }
+
+    /**
+     * @param stateCode the state code
+     * @return the cached location ids of the state, or null if there is no such state
+     */
+    public StateLocations getState(Long stateCode) {
+        StateLocations cached = states.get(stateCode);
+        if (cached != null) {
+            return cached;
+        }
+
+        long loadVersion = currentVersion();
+        StateLocations loaded = load(stateCode);
+        if (loaded == null) {
+            return null;
+        }
+
+        synchronized (this) {
+            if (version != loadVersion) {
+                return loaded;
+            }
+            cached = states.putIfAbsent(stateCode, loaded);
+        }
+        return cached == null ? loaded : cached;
+    }
+
+    @Override
+    public void stateChanged(State state) {
+        locationChanged(state.getId());
+    }
+
+    @Override
+    public void districtChanged(District district) {
+        locationChanged(district.getState() == null ? null : district.getState().getId());
+    }
+
+    @Override
+    public void talukaChanged(Taluka taluka) {
+        locationChanged(taluka.getStateIdOID());
+    }
+
+    @Override
+    public void villageChanged(Village village) {
+        locationChanged(village.getStateIdOID());
+    }
+
+    @Override
+    public void healthBlockChanged(HealthBlock healthBlock) {
+        locationChanged(healthBlock.getStateIdOID());
+    }
+
+    @Override
+    public void healthFacilityChanged(HealthFacility healthFacility) {
+        locationChanged(healthFacility.getStateIdOID());
+    }
+
+    @Override
+    public void healthSubFacilityChanged(HealthSubFacility healthSubFacility) {
+        locationChanged(healthSubFacility.getStateIdOID());
+    }
+
+    @Override
+    public void broadcastEvict() {
+        locationChanged(null);
+    }
+
+    @Override
+    public void broadcastEvict(Collection<State> changedStates) {
+        for (State state : changedStates) {
+            if (state != null) {
+                locationChanged(state.getId());
+            }
+        }
+    }
+
+    @Override
+    @MotechListener(subjects = { LOCATION_CACHE_EVICT_MESSAGE })
+    public void cacheEvict(MotechEvent event) {
+        @SuppressWarnings("unchecked")
+        Collection<Long> stateIds = event == null ? null : (Collection<Long>) event.getParameters().get(STATE_IDS_PARAM);
+        synchronized (this) {
+            version++;
+            if (stateIds == null) {
+                states.clear();
+            } else {
+                Iterator<StateLocations> cached = states.values().iterator();
+                while (cached.hasNext()) {
+                    if (stateIds.contains(cached.next().getStateId())) {
+                        cached.remove();
+                    }
+                }
+            }
+        }
+        LOGGER.debug("Location cache evicted: {}", stateIds == null ? "all states" : stateIds);
+    }
+
+    /**
+     * The states are evicted once per transaction, however many locations it writes
+     * @param stateId id of the state of the location, null if unknown, which evicts all the states
+     */
+    private void locationChanged(Long stateId) {
+        PendingEviction eviction = transactionChanges.current();
+        if (eviction == null) {
+            evict(stateId == null ? null : Collections.singleton(stateId));
+        } else if (stateId == null) {
+            eviction.all = true;
+        } else {
+            eviction.stateIds.add(stateId);
+        }
+    }
+
+    /**
+     * @param stateIds ids of the states to evict, null for all of them
+     */
+    private void evict(Collection<Long> stateIds) {
+        Map<String, Object> params = new HashMap<>();
+        if (stateIds != null) {
+            params.put(STATE_IDS_PARAM, new ArrayList<>(stateIds));
+        }
+        MotechEvent event = new MotechEvent(LOCATION_CACHE_EVICT_MESSAGE, params);
+        cacheEvict(event);
+        eventRelay.broadcastEventMessage(event);
+    }
+
+    private synchronized long currentVersion() {
+        return version;
+    }
+
+    private StateLocations load(Long stateCode) {
+        Timer timer = new Timer();
+        State state = stateDataService.findByCode(stateCode);
+        if (state == null) {
+            return null;
+        }
+
+        StateLocations stateLocations = new StateLocations(state.getId());
+        for (Object[] row : findByState("SELECT code, id FROM nms_districts", state)) {
+            stateLocations.districts.put(toLong(row[0]), toLong(row[1]));
+        }
+        for (Object[] row : findByState("SELECT code, id FROM nms_talukas", state)) {
+            stateLocations.talukas.put(talukaKey((String) row[0]), toLong(row[1]));
+        }
+        for (Object[] row : findByState("SELECT vcode, svid, id FROM nms_villages", state)) {
+            stateLocations.villages.put(new VillageKey(toLong(row[0]), toLong(row[1])), toLong(row[2]));
+        }
+        for (Object[] row : findByState("SELECT code, id FROM nms_health_blocks", state)) {
+            stateLocations.healthBlocks.put(toLong(row[0]), toLong(row[1]));
+        }
+        for (Object[] row : findByState("SELECT code, id FROM nms_health_facilities", state)) {
+            stateLocations.healthFacilities.put(toLong(row[0]), toLong(row[1]));
+        }
+        for (Object[] row : findByState("SELECT code, id FROM nms_health_sub_facilities", state)) {
+            stateLocations.healthSubFacilities.put(toLong(row[0]), toLong(row[1]));
+        }
+
+        LOGGER.debug("Loaded state {} in the location cache ({} villages) in {}", stateCode,
+                stateLocations.villages.size(), timer.time());
+        return stateLocations;
+    }
+
+    private List<Object[]> findByState(final String select, final State state) {
+        @SuppressWarnings("unchecked")
+        SqlQueryExecution<List<Object[]>> queryExecution = new SqlQueryExecution<List<Object[]>>() {
+
+            @Override
+            public String getSqlQuery() {
+                return select + " where state_id_OID = :" + STATE_ID;
+            }
+
+            @Override
+            public List<Object[]> execute(Query query) {
+                Map<String, Object> params = new HashMap<>();
+                params.put(STATE_ID, state.getId());
+                return (List<Object[]>) query.executeWithMap(params);
+            }
+        };
+
+        return stateDataService.executeSQLQuery(queryExecution);
+    }
+
+    private static Long toLong(Object value) {
+        return value == null ? null : ((Number) value).longValue();
+    }
+
+    /**
+     * Taluka codes are compared by the database ignoring case and trailing spaces
+     */
+    private static String talukaKey(String code) {
+        return code == null ? null : code.replaceAll("\\s+$", "").toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * The states to evict once the transaction commits
+     */
+    private static final class PendingEviction {
+
+        private final Set<Long> stateIds = new HashSet<>();
+        private boolean all;
+    }
+
+    /**
+     * The location ids of one state, keyed by code
+     */
+    public static final class StateLocations {
+
+        private final Long stateId;
+        private final Map<Long, Long> districts = new HashMap<>();
+        private final Map<String, Long> talukas = new HashMap<>();
+        private final Map<VillageKey, Long> villages = new HashMap<>();
+        private final Map<Long, Long> healthBlocks = new HashMap<>();
+        private final Map<Long, Long> healthFacilities = new HashMap<>();
+        private final Map<Long, Long> healthSubFacilities = new HashMap<>();
+
+        private StateLocations(Long stateId) {
+            this.stateId = stateId;
+        }
+
+        public Long getStateId() {
+            return stateId;
+        }
+
+        public Long getDistrictId(long code) {
+            return districts.get(code);
+        }
+
+        public Long getTalukaId(String code) {
+            return talukas.get(talukaKey(code));
+        }
+
+        public Long getVillageId(long vcode, long svid) {
+            return villages.get(new VillageKey(vcode, svid));
+        }
+
+        public Long getHealthBlockId(long code) {
+            return healthBlocks.get(code);
+        }
+
+        public Long getHealthFacilityId(long code) {
+            return healthFacilities.get(code);
+        }
+
+        public Long getHealthSubFacilityId(long code) {
+            return healthSubFacilities.get(code);
+        }
+    }
+
+    private static final class VillageKey {
+
+        private final long vcode;
+        private final long svid;
+
+        private VillageKey(long vcode, long svid) {
+            this.vcode = vcode;
+            this.svid = svid;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof VillageKey)) {
+                return false;
+            }
+            VillageKey that = (VillageKey) o;
+            return vcode == that.vcode && svid == that.svid;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (vcode ^ (vcode >>> 32)) + (int) (svid ^ (svid >>> 32));
+        }
+    }
+}
@@ -3,8 +3,9 @@ package org.motechproject.nms.region.service.impl;
 import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.fileupload.disk.DiskFileItem;
 import org.apache.commons.io.IOUtils;
-import org.datanucleus.store.rdbms.query.ForwardQueryResult;
+import org.motechproject.mds.domain.MdsEntity;
 import org.motechproject.mds.query.SqlQueryExecution;
+import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.metrics.service.Timer;
 import org.motechproject.nms.csv.exception.CsvImportDataException;
 import org.motechproject.nms.csv.utils.ConstraintViolationUtils;
@@ -56,8 +57,6 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.List;
@@ -76,6 +75,8 @@ public class LocationServiceImpl implements LocationService {
 
     private static final Integer PARTITION_SIZE = 2000;
 
+    private static final String STATE_ID_OID = "state_id_OID";
+
     private StateService stateService;
 
     private StateDataService stateDataService;
@@ -104,6 +105,9 @@ public class LocationServiceImpl implements LocationService {
 
     private HealthSubFacilityDataService healthSubFacilityDataService;
 
+    @Autowired
+    private LocationCache locationCache;
+
     @Autowired
     public LocationServiceImpl(StateService stateService, StateDataService stateDataService, DistrictService districtService,
                                TalukaService talukaService, VillageService villageService,
@@ -156,14 +160,24 @@ public class LocationServiceImpl implements LocationService {
         if (!isValidID(map, STATE_ID)) {
             return locations;
         }
-        State state = stateDataService.findByCode((Long) map.get(STATE_ID));
+        // ids resolved by the location cache are loaded by primary key, codes it doesn't know by code
+        LocationCache.StateLocations cached = locationCache.getState((Long) map.get(STATE_ID));
+        State state = cached == null ? null : findById(cached.getStateId(), stateDataService);
+        if (state == null) {
+            state = stateDataService.findByCode((Long) map.get(STATE_ID));
+        }
         LOGGER.info("state {}", state);
         if (state == null) { // we are here because stateId wasn't null but fetch returned no data
             throw new InvalidLocationException(String.format(INVALID, STATE_ID, map.get(STATE_ID)));
         }
         locations.put(STATE_ID, state);
 
-        District district = districtService.findByStateAndCode(state, (Long) map.get(DISTRICT_ID));
+        Long districtCode = (Long) map.get(DISTRICT_ID);
+        District district = cached == null || districtCode == null ? null :
+                findById(cached.getDistrictId(districtCode), districtDataService);
+        if (district == null) {
+            district = districtService.findByStateAndCode(state, districtCode);
+        }
         if (district == null) {
             throw new InvalidLocationException(String.format(INVALID, DISTRICT_ID, map.get(DISTRICT_ID)));
         }
@@ -171,7 +185,12 @@ public class LocationServiceImpl implements LocationService {
 
 
         // set and/or create taluka
-        Taluka taluka = talukaService.findByStateAndCode(state, (String) map.get(TALUKA_ID));
+        String talukaCode = (String) map.get(TALUKA_ID);
+        Taluka taluka = cached == null || talukaCode == null ? null :
+                findById(cached.getTalukaId(talukaCode), talukaDataService);
+        if (taluka == null) {
+            taluka = talukaService.findByStateAndCode(state, talukaCode);
+        }
         if (taluka == null && createIfNotExists) {
             taluka = new Taluka();
             taluka.setCode((String) map.get(TALUKA_ID));
@@ -190,7 +209,10 @@ public class LocationServiceImpl implements LocationService {
         Long vcode = map.get(VILLAGE_ID) == null ? 0 : (Long) map.get(VILLAGE_ID);
         Village village = new Village();
         if (vcode != 0 || svid != 0) {
-            village = villageService.findByStateAndVcodeAndSvid(state, vcode, svid);
+            village = cached == null ? null : findById(cached.getVillageId(vcode, svid), villageDataService);
+            if (village == null) {
+                village = villageService.findByStateAndVcodeAndSvid(state, vcode, svid);
+            }
             if (village == null && createIfNotExists) {
                 village = new Village();
                 village.setSvid(svid);
@@ -207,7 +229,12 @@ public class LocationServiceImpl implements LocationService {
 
 
         // set and/or create health block
-        HealthBlock healthBlock = healthBlockService.findByStateAndCode(state, (Long) map.get(HEALTHBLOCK_ID));
+        Long healthBlockCode = (Long) map.get(HEALTHBLOCK_ID);
+        HealthBlock healthBlock = cached == null || healthBlockCode == null ? null :
+                findById(cached.getHealthBlockId(healthBlockCode), healthBlockDataService);
+        if (healthBlock == null) {
+            healthBlock = healthBlockService.findByStateAndCode(state, healthBlockCode);
+        }
         if (healthBlock == null && createIfNotExists) {
             healthBlock = new HealthBlock();
             //TODO HARITHA removing talukas commenting 2 lines
@@ -226,7 +253,12 @@ public class LocationServiceImpl implements LocationService {
 
 
         // set and/or create health facility
-        HealthFacility healthFacility = healthFacilityService.findByStateAndCode(state, (Long) map.get(PHC_ID));
+        Long healthFacilityCode = (Long) map.get(PHC_ID);
+        HealthFacility healthFacility = cached == null || healthFacilityCode == null ? null :
+                findById(cached.getHealthFacilityId(healthFacilityCode), healthFacilityDataService);
+        if (healthFacility == null) {
+            healthFacility = healthFacilityService.findByStateAndCode(state, healthFacilityCode);
+        }
         if (healthFacility == null && createIfNotExists) {
             healthFacility = new HealthFacility();
             healthFacility.setHealthBlock(healthBlock);
@@ -244,7 +276,12 @@ public class LocationServiceImpl implements LocationService {
         if (!isValidID(map, SUBCENTRE_ID)) {
             return locations;
         }
-        HealthSubFacility healthSubFacility = healthSubFacilityService.findByStateAndCode(state, (Long) map.get(SUBCENTRE_ID));
+        Long healthSubFacilityCode = (Long) map.get(SUBCENTRE_ID);
+        HealthSubFacility healthSubFacility = cached == null ? null :
+                findById(cached.getHealthSubFacilityId(healthSubFacilityCode), healthSubFacilityDataService);
+        if (healthSubFacility == null) {
+            healthSubFacility = healthSubFacilityService.findByStateAndCode(state, healthSubFacilityCode);
+        }
         if (healthSubFacility == null && createIfNotExists) {
             //TODO HARITHA commented 2 lines m-n taluka hb
             healthSubFacility = new HealthSubFacility();
@@ -264,6 +301,14 @@ public class LocationServiceImpl implements LocationService {
         return locations;
     }
 
+    /**
+     * Loads a location by primary key, which the persistence layer can serve from its caches
+     * @return the location, or null if id is null or there is no such location
+     */
+    private static <T> T findById(Long id, MotechDataService<T> dataService) {
+        return id == null ? null : dataService.findById(id);
+    }
+
     @Override
     public Taluka updateTaluka(Map<String, Object> flw, Boolean createIfNotExists) {
         State state = stateDataService.findByCode((Long) flw.get(STATE_ID));
@@ -540,7 +585,16 @@ public class LocationServiceImpl implements LocationService {
             throw new CsvImportDataException(String.format("Locations import error, constraints violated: %s",
                     ConstraintViolationUtils.toString(e.getConstraintViolations())), e);
         }
-        if (!stateHashMap.isEmpty()) {
+        if (!stateHashMap.isEmpty() && fillFromCache(stateHashMap, districtHashMap, talukaHashMap, villageHashMap,
+                healthBlockHashMap, healthFacilityHashMap, healthSubFacilityHashMap)) {
+            locationFinder.setStateHashMap(stateHashMap);
+            locationFinder.setDistrictHashMap(districtHashMap);
+            locationFinder.setTalukaHashMap(talukaHashMap);
+            locationFinder.setVillageHashMap(villageHashMap);
+            locationFinder.setHealthBlockHashMap(healthBlockHashMap);
+            locationFinder.setHealthFacilityHashMap(healthFacilityHashMap);
+            locationFinder.setHealthSubFacilityHashMap(healthSubFacilityHashMap);
+        } else if (!stateHashMap.isEmpty()) {
             fillStates(stateHashMap);
             locationFinder.setStateHashMap(stateHashMap);
 
@@ -627,7 +681,7 @@ public class LocationServiceImpl implements LocationService {
 
     public Long createLocationPart(List<Map<String, Object>> recordList, LocationEnum locationType, String rchImportFileName, int partNumber) { //NOPMD NcssMethodCount
 
-        Map<String, State> stateHashMap;
+        Map<String, State> stateHashMap = null;
         Map<String, District> districtHashMap;
         Map<String, Taluka> talukaHashMap;
         Map<String, HealthBlock> healthBlockHashMap;
@@ -689,6 +743,9 @@ public class LocationServiceImpl implements LocationService {
             }
         }
         LOGGER.debug("File {}, Part {} processed. {} records updated", rchImportFileName, partNumber, updatedRecords);
+        if (stateHashMap != null && updatedRecords != null && updatedRecords > 0) {
+            locationCache.broadcastEvict(stateHashMap.values());
+        }
         return updatedRecords;
 
     }
@@ -845,46 +902,158 @@ public class LocationServiceImpl implements LocationService {
 
 
     /**
-     * Fills the stateHashMap with State objects from database
-     * @param stateHashMap contains (stateCode, State) with dummy State objects
+     * Same as the fill methods below, but resolves the keys to ids from the location cache and loads the locations by
+     * primary key, in the caller's transaction. Keys the cache doesn't know, or whose location no longer exists, are
+     * filled from the database by code; keys that are not found there either keep their dummy value.
+     * @return false if any of the states isn't known, the caller then has to go to the database
      */
-    private void fillStates(Map<String, State> stateHashMap) {
-        Timer queryTimer = new Timer();
-        final Set<String> stateKeys = stateHashMap.keySet();
-
-        @SuppressWarnings("unchecked")
-        SqlQueryExecution<List<State>> queryExecution = new SqlQueryExecution<List<State>>() {
-
-            @Override
-            public String getSqlQuery() {
-                String query = "SELECT * from nms_states where";
-                int count = stateKeys.size();
-                for (String stateString : stateKeys) {
-                    count--;
-                    query += " code = " + stateString;
-                    if (count > 0) {
-                        query += OR_SQL_STRING;
-                    }
-                }
+    private boolean fillFromCache(Map<String, State> stateHashMap, Map<String, District> districtHashMap, //NO CHECKSTYLE More than 7 parameters
+                                  Map<String, Taluka> talukaHashMap, Map<String, Village> villageHashMap,
+                                  Map<String, HealthBlock> healthBlockHashMap,
+                                  Map<String, HealthFacility> healthFacilityHashMap,
+                                  Map<String, HealthSubFacility> healthSubFacilityHashMap) {
+        Timer timer = new Timer();
+        Map<String, LocationCache.StateLocations> cached = new HashMap<>();
+        Map<String, Long> ids = new HashMap<>();
+        for (String stateKey : stateHashMap.keySet()) {
+            LocationCache.StateLocations stateLocations = locationCache.getState(Long.valueOf(stateKey));
+            if (stateLocations == null) {
+                return false;
+            }
+            cached.put(stateKey, stateLocations);
+            ids.put(stateKey, stateLocations.getStateId());
+        }
+        if (!fillByIds(stateHashMap, ids, "nms_states", State.class, stateDataService).isEmpty()) {
+            return false;
+        }
+
+        ids.clear();
+        for (String key : districtHashMap.keySet()) {
+            String[] codes = key.split("_");
+            ids.put(key, cached.get(codes[0]).getDistrictId(Long.parseLong(codes[1])));
+        }
+        Map<String, District> districts = fillByIds(districtHashMap, ids, "nms_districts", District.class,
+                districtDataService);
+        if (!districts.isEmpty()) {
+            fillDistricts(districts, stateHashMap);
+            districtHashMap.putAll(districts);
+        }
+
+        ids.clear();
+        for (String key : talukaHashMap.keySet()) {
+            String[] codes = key.split("_");
+            ids.put(key, cached.get(codes[0]).getTalukaId(codes[1]));
+        }
+        Map<String, Taluka> talukas = fillByIds(talukaHashMap, ids, "nms_talukas", Taluka.class, talukaDataService);
+        if (!talukas.isEmpty()) {
+            fillTalukas(talukas, stateHashMap);
+            talukaHashMap.putAll(talukas);
+        }
+
+        ids.clear();
+        for (String key : villageHashMap.keySet()) {
+            String[] codes = key.split("_");
+            ids.put(key, cached.get(codes[0]).getVillageId(Long.parseLong(codes[1]), Long.parseLong(codes[2])));
+        }
+        Map<String, Village> villages = fillByIds(villageHashMap, ids, "nms_villages", Village.class,
+                villageDataService);
+        if (!villages.isEmpty()) {
+            fillVillages(villages, stateHashMap);
+            villageHashMap.putAll(villages);
+        }
 
-                LOGGER.debug("STATE Query: {}", query);
-                return query;
+        ids.clear();
+        for (String key : healthBlockHashMap.keySet()) {
+            String[] codes = key.split("_");
+            ids.put(key, cached.get(codes[0]).getHealthBlockId(Long.parseLong(codes[1])));
+        }
+        Map<String, HealthBlock> healthBlocks = fillByIds(healthBlockHashMap, ids, "nms_health_blocks",
+                HealthBlock.class, healthBlockDataService);
+        if (!healthBlocks.isEmpty()) {
+            fillHealthBlocks(healthBlocks, stateHashMap);
+            healthBlockHashMap.putAll(healthBlocks);
+        }
+
+        ids.clear();
+        for (String key : healthFacilityHashMap.keySet()) {
+            String[] codes = key.split("_");
+            ids.put(key, cached.get(codes[0]).getHealthFacilityId(Long.parseLong(codes[1])));
+        }
+        Map<String, HealthFacility> healthFacilities = fillByIds(healthFacilityHashMap, ids, "nms_health_facilities",
+                HealthFacility.class, healthFacilityDataService);
+        if (!healthFacilities.isEmpty()) {
+            fillHealthFacilities(healthFacilities, stateHashMap);
+            healthFacilityHashMap.putAll(healthFacilities);
+        }
+
+        ids.clear();
+        for (String key : healthSubFacilityHashMap.keySet()) {
+            String[] codes = key.split("_");
+            ids.put(key, cached.get(codes[0]).getHealthSubFacilityId(Long.parseLong(codes[1])));
+        }
+        Map<String, HealthSubFacility> healthSubFacilities = fillByIds(healthSubFacilityHashMap, ids,
+                "nms_health_sub_facilities", HealthSubFacility.class, healthSubFacilityDataService);
+        if (!healthSubFacilities.isEmpty()) {
+            fillHealthSubFacilities(healthSubFacilities, stateHashMap);
+            healthSubFacilityHashMap.putAll(healthSubFacilities);
+        }
+
+        LOGGER.debug("Locations resolved from cache in {}", timer.time());
+        return true;
+    }
+
+    /**
+     * Replaces the dummy values of the keys resolved to an id with the locations loaded by id
+     * @param hashMap contains (key, location) with dummy location objects
+     * @param ids contains (key, id) as resolved by the location cache, null if the cache doesn't know the key
+     * @return (key, dummy location) for the keys that are not resolved or whose location no longer exists
+     */
+    private <T extends MdsEntity> Map<String, T> fillByIds(Map<String, T> hashMap, Map<String, Long> ids, String table,
+                                                           Class<T> clazz, MotechDataService<T> dataService) {
+        Map<String, T> missing = new HashMap<>();
+        Map<Long, List<String>> idKeys = new HashMap<>();
+        List<Object[]> keys = new ArrayList<>();
+        for (Map.Entry<String, T> entry : hashMap.entrySet()) {
+            Long id = ids.get(entry.getKey());
+            if (id == null) {
+                missing.put(entry.getKey(), entry.getValue());
+                continue;
             }
+            // taluka codes differing only by case or trailing spaces share an id
+            List<String> idKey = idKeys.get(id);
+            if (idKey == null) {
+                idKey = new ArrayList<>();
+                idKeys.put(id, idKey);
+                keys.add(new Object[] { id });
+            }
+            idKey.add(entry.getKey());
+        }
 
-            @Override
-            public List<State> execute(Query query) {
-                query.setClass(State.class);
-                ForwardQueryResult fqr = (ForwardQueryResult) query.execute();
-                List<State> states;
-                if (fqr.isEmpty()) {
-                    return null;
-                }
-                states = (List<State>) fqr;
-                return states;
+        for (T location : findByKeys(table, new String[] { "id" }, keys, clazz, dataService)) {
+            for (String key : idKeys.remove(location.getId())) {
+                hashMap.put(key, location);
+            }
+        }
+        for (List<String> idKey : idKeys.values()) {
+            for (String key : idKey) {
+                missing.put(key, hashMap.get(key));
             }
-        };
+        }
+        return missing;
+    }
 
-        List<State> states = stateDataService.executeSQLQuery(queryExecution);
+    /**
+     * Fills the stateHashMap with State objects from database
+     * @param stateHashMap contains (stateCode, State) with dummy State objects
+     */
+    private void fillStates(Map<String, State> stateHashMap) {
+        Timer queryTimer = new Timer();
+        List<Object[]> keys = new ArrayList<>();
+        for (String stateString : stateHashMap.keySet()) {
+            keys.add(new Object[] { Long.valueOf(stateString) });
+        }
+
+        List<State> states = findByKeys("nms_states", new String[] { "code" }, keys, State.class, stateDataService);
         LOGGER.debug("STATE Query time: {}", queryTimer.time());
         for (State state : states) {
             stateHashMap.put(state.getCode().toString(), state);
@@ -898,48 +1067,15 @@ public class LocationServiceImpl implements LocationService {
      */
     private void fillDistricts(Map<String, District> districtHashMap, final Map<String, State> stateHashMap) {
         Timer queryTimer = new Timer();
-        final Set<String> districtKeys = districtHashMap.keySet();
-        Map<Long, String> stateIdMap = new HashMap<>();
-        for (String stateKey : stateHashMap.keySet()) {
-            stateIdMap.put(stateHashMap.get(stateKey).getId(), stateKey);
+        Map<Long, String> stateIdMap = stateIdMap(stateHashMap);
+        List<Object[]> keys = new ArrayList<>();
+        for (String districtString : districtHashMap.keySet()) {
+            String[] ids = districtString.split("_");
+            keys.add(new Object[] { Long.valueOf(ids[1]), stateHashMap.get(ids[0]).getId() });
         }
 
-
-        @SuppressWarnings("unchecked")
-        SqlQueryExecution<List<District>> queryExecution = new SqlQueryExecution<List<District>>() {
-
-            @Override
-            public String getSqlQuery() {
-                String query = "SELECT * from nms_districts where";
-                int count = districtKeys.size();
-                for (String districtString : districtKeys) {
-                    count--;
-                    String[] ids = districtString.split("_");
-                    Long stateId = stateHashMap.get(ids[0]).getId();
-                    query += CODE_SQL_STRING + ids[1] + " and state_id_oid = " + stateId + ")";
-                    if (count > 0) {
-                        query += OR_SQL_STRING;
-                    }
-                }
-
-                LOGGER.debug("DISTRICT Query: {}", query);
-                return query;
-            }
-
-            @Override
-            public List<District> execute(Query query) {
-                query.setClass(District.class);
-                ForwardQueryResult fqr = (ForwardQueryResult) query.execute();
-                List<District> districts;
-                if (fqr.isEmpty()) {
-                    return null;
-                }
-                districts = (List<District>) fqr;
-                return districts;
-            }
-        };
-
-        List<District> districts = districtDataService.executeSQLQuery(queryExecution);
+        List<District> districts = findByKeys("nms_districts", new String[] { "code", STATE_ID_OID }, keys,
+                District.class, districtDataService);
         LOGGER.debug("DISTRICT Query time: {}", queryTimer.time());
         for (District district : districts) {
             String stateKey = stateIdMap.get(district.getState().getId());
@@ -955,53 +1091,19 @@ public class LocationServiceImpl implements LocationService {
      */
     private void fillTalukas(Map<String, Taluka> talukaHashMap, final Map<String, State> stateHashMap) {
         Timer queryTimer = new Timer();
-        final Set<String> talukaKeys = talukaHashMap.keySet();
-        Map<Long, String> stateIdMap = new HashMap<>();
-        for (String stateKey : stateHashMap.keySet()) {
-            stateIdMap.put(stateHashMap.get(stateKey).getId(), stateKey);
-        }
-
-        @SuppressWarnings("unchecked")
-        SqlQueryExecution<List<Taluka>> queryExecution = new SqlQueryExecution<List<Taluka>>() {
-
-            @Override
-            public String getSqlQuery() {
-                String query = "SELECT * from nms_talukas where";
-                int count = talukaKeys.size();
-                for (String talukaString : talukaKeys) {
-                    count--;
-                    String[] ids = talukaString.split("_");
-                    Long stateId = stateHashMap.get(ids[0]).getId();
-                    query += CODE_SQL_STRING +"'"+ids[1]+"'" + " and state_id_OID = " + stateId + ")";
-                    if (count > 0) {
-                        query += OR_SQL_STRING;
-                    }
-                }
-
-                LOGGER.debug("TALUKA Query: {}", query);
-                return query;
-            }
-
-            @Override
-            public List<Taluka> execute(Query query) {
-                query.setClass(Taluka.class);
-                ForwardQueryResult fqr = (ForwardQueryResult) query.execute();
-                List<Taluka> talukas;
-                if (fqr.isEmpty()) {
-                    return null;
-                }
-                talukas = (List<Taluka>) fqr;
-                return talukas;
-            }
-        };
+        Map<Long, String> stateIdMap = stateIdMap(stateHashMap);
+        List<Object[]> keys = new ArrayList<>();
+        for (String talukaString : talukaHashMap.keySet()) {
+            String[] ids = talukaString.split("_");
+            keys.add(new Object[] { ids[1], stateHashMap.get(ids[0]).getId() });
+        }
 
-        List<Taluka> talukas = talukaDataService.executeSQLQuery(queryExecution);
+        List<Taluka> talukas = findByKeys("nms_talukas", new String[] { "code", STATE_ID_OID }, keys,
+                Taluka.class, talukaDataService);
         LOGGER.debug("TALUKA Query time: {}", queryTimer.time());
-        if(talukas != null && !talukas.isEmpty()) {
-            for (Taluka taluka : talukas) {
-                String stateKey = stateIdMap.get(taluka.getStateIdOID());
-                talukaHashMap.put(stateKey + "_" + taluka.getCode(), taluka);
-            }
+        for (Taluka taluka : talukas) {
+            String stateKey = stateIdMap.get(taluka.getStateIdOID());
+            talukaHashMap.put(stateKey + "_" + taluka.getCode(), taluka);
         }
     }
 
@@ -1012,70 +1114,20 @@ public class LocationServiceImpl implements LocationService {
      * @param stateHashMap contains (stateCode, state) with original state objects from database
      */
     private void fillVillages(Map<String, Village> villageHashMap,  final Map<String, State> stateHashMap) {
-        int count = 0;
         Timer queryTimer = new Timer();
-        List<Village> villagesTotal = new ArrayList<>();
-        Map<Long, String> stateIdMap = new HashMap<>();
-        for (String stateKey : stateHashMap.keySet()) {
-            stateIdMap.put(stateHashMap.get(stateKey).getId(), stateKey);
-        }
-        final Set<String> villageKeys = villageHashMap.keySet();
-        Iterator<String> iterator = villageKeys.iterator();
-
-        while (iterator.hasNext()) {
-            final Set<String> villageKeysPart = new HashSet<>();
-            while (villageKeysPart.size() < PARTITION_SIZE && count < villageKeys.size()) {
-                villageKeysPart.add(iterator.next());
-                count++;
-            }
-
-
-            @SuppressWarnings("unchecked")
-            SqlQueryExecution<List<Village>> queryExecution = new SqlQueryExecution<List<Village>>() {
-
-                @Override
-                public String getSqlQuery() {
-                    String query = "SELECT * from nms_villages where";
-                    int count = villageKeysPart.size();
-                    for (String villageString : villageKeysPart) {
-                        count--;
-                        String[] ids = villageString.split("_");
-                        Long stateId = stateHashMap.get(ids[0]).getId();
-                        query += " (vcode = " + ids[1] + " and svid = " + ids[2] + " and state_id_OID = " + stateId + ")";
-                        if (count > 0) {
-                            query += OR_SQL_STRING;
-                        }
-                    }
-
-                    LOGGER.debug("VILLAGE Query: {}", query);
-                    return query;
-                }
-
-                @Override
-                public List<Village> execute(Query query) {
-                    query.setClass(Village.class);
-                    ForwardQueryResult fqr = (ForwardQueryResult) query.execute();
-                    List<Village> villages;
-                    if (fqr.isEmpty()) {
-                        return null;
-                    }
-                    villages = (List<Village>) fqr;
-                    return villages;
-                }
-            };
-
-            List<Village> villages = villageDataService.executeSQLQuery(queryExecution);
-            if (villages != null) {
-                villagesTotal.addAll(villages);
-            }
+        Map<Long, String> stateIdMap = stateIdMap(stateHashMap);
+        List<Object[]> keys = new ArrayList<>();
+        for (String villageString : villageHashMap.keySet()) {
+            String[] ids = villageString.split("_");
+            keys.add(new Object[] { Long.valueOf(ids[1]), Long.valueOf(ids[2]), stateHashMap.get(ids[0]).getId() });
         }
 
+        List<Village> villages = findByKeys("nms_villages", new String[] { "vcode", "svid", STATE_ID_OID }, keys,
+                Village.class, villageDataService);
         LOGGER.debug("VILLAGE Query time: {}", queryTimer.time());
-        if(villagesTotal != null && !villagesTotal.isEmpty()) {
-            for (Village village : villagesTotal) {
-                String stateKey = stateIdMap.get(village.getStateIdOID());
-                villageHashMap.put(stateKey + "_" + village.getVcode() + "_" + village.getSvid(), village);
-            }
+        for (Village village : villages) {
+            String stateKey = stateIdMap.get(village.getStateIdOID());
+            villageHashMap.put(stateKey + "_" + village.getVcode() + "_" + village.getSvid(), village);
         }
     }
 
@@ -1087,53 +1139,19 @@ public class LocationServiceImpl implements LocationService {
      */
     private void fillHealthBlocks(Map<String, HealthBlock> healthBlockHashMap, final Map<String, State> stateHashMap) {
         Timer queryTimer = new Timer();
-        final Set<String> healthBlockKeys = healthBlockHashMap.keySet();
-        Map<Long, String> stateIdMap = new HashMap<>();
-        for (String stateKey : stateHashMap.keySet()) {
-            stateIdMap.put(stateHashMap.get(stateKey).getId(), stateKey);
-        }
-
-        @SuppressWarnings("unchecked")
-        SqlQueryExecution<List<HealthBlock>> queryExecution = new SqlQueryExecution<List<HealthBlock>>() {
-
-            @Override
-            public String getSqlQuery() {
-                String query = "SELECT * from nms_health_blocks where";
-                int count = healthBlockKeys.size();
-                for (String healthBlockString : healthBlockKeys) {
-                    count--;
-                    String[] ids = healthBlockString.split("_");
-                    Long stateId = stateHashMap.get(ids[0]).getId();
-                    query += "(code = " + ids[1] +  " and state_id_OID = " + stateId + ")";
-                    if (count > 0) {
-                        query += OR_SQL_STRING;
-                    }
-                }
-
-                LOGGER.debug("HEALTHBLOCK Query: {}", query);
-                return query;
-            }
-
-            @Override
-            public List<HealthBlock> execute(Query query) {
-                query.setClass(HealthBlock.class);
-                ForwardQueryResult fqr = (ForwardQueryResult) query.execute();
-                List<HealthBlock> healthBlocks;
-                if (fqr.isEmpty()) {
-                    return null;
-                }
-                healthBlocks = (List<HealthBlock>) fqr;
-                return healthBlocks;
-            }
-        };
+        Map<Long, String> stateIdMap = stateIdMap(stateHashMap);
+        List<Object[]> keys = new ArrayList<>();
+        for (String healthBlockString : healthBlockHashMap.keySet()) {
+            String[] ids = healthBlockString.split("_");
+            keys.add(new Object[] { Long.valueOf(ids[1]), stateHashMap.get(ids[0]).getId() });
+        }
 
-        List<HealthBlock> healthBlocks = healthBlockDataService.executeSQLQuery(queryExecution);
+        List<HealthBlock> healthBlocks = findByKeys("nms_health_blocks", new String[] { "code", STATE_ID_OID }, keys,
+                HealthBlock.class, healthBlockDataService);
         LOGGER.debug("HEALTHBLOCK Query time: {}", queryTimer.time());
-        if(healthBlocks != null && !healthBlocks.isEmpty()) {
-            for (HealthBlock healthBlock : healthBlocks) {
-                    String stateKey = stateIdMap.get(healthBlock.getStateIdOID());
-                    healthBlockHashMap.put(stateKey + "_" + healthBlock.getCode(), healthBlock);
-            }
+        for (HealthBlock healthBlock : healthBlocks) {
+            String stateKey = stateIdMap.get(healthBlock.getStateIdOID());
+            healthBlockHashMap.put(stateKey + "_" + healthBlock.getCode(), healthBlock);
         }
     }
 
@@ -1146,69 +1164,20 @@ public class LocationServiceImpl implements LocationService {
      *                           with original State objects from database
      */
     private void fillHealthFacilities(Map<String, HealthFacility> healthFacilityHashMap, final Map<String, State> stateHashMap) {
-        int count = 0;
-        List<HealthFacility> healthFacilitiesTotal = new ArrayList<>();
         Timer queryTimer = new Timer();
-        Map<Long, String> stateIdMap = new HashMap<>();
-        for (String stateKey : stateHashMap.keySet()) {
-            stateIdMap.put(stateHashMap.get(stateKey).getId(), stateKey);
+        Map<Long, String> stateIdMap = stateIdMap(stateHashMap);
+        List<Object[]> keys = new ArrayList<>();
+        for (String healthFacilityString : healthFacilityHashMap.keySet()) {
+            String[] ids = healthFacilityString.split("_");
+            keys.add(new Object[] { Long.valueOf(ids[1]), stateHashMap.get(ids[0]).getId() });
         }
-        final Set<String> healthFacilityKeys = healthFacilityHashMap.keySet();
-        Iterator<String> iterator = healthFacilityKeys.iterator();
-
-        while (iterator.hasNext()) {
-            final Set<String> healthFacilityKeysPart = new HashSet<>();
-            while (healthFacilityKeysPart.size() < PARTITION_SIZE && count < healthFacilityKeys.size()) {
-                healthFacilityKeysPart.add(iterator.next());
-                count++;
-            }
-
-
-            @SuppressWarnings("unchecked")
-            SqlQueryExecution<List<HealthFacility>> queryExecution = new SqlQueryExecution<List<HealthFacility>>() {
-
-                @Override
-                public String getSqlQuery() {
-                    String query = "SELECT * from nms_health_facilities where";
-                    int count = healthFacilityKeysPart.size();
-                    for (String healthFacilityString : healthFacilityKeysPart) {
-                        count--;
-                        String[] ids = healthFacilityString.split("_");
-                        Long stateId = stateHashMap.get(ids[0]).getId();
-                        query += CODE_SQL_STRING + ids[1] + " and state_id_OID = " + stateId + ")";
-                        if (count > 0) {
-                            query += OR_SQL_STRING;
-                        }
-                    }
-
-                    LOGGER.debug("HEALTHFACILITY Query: {}", query);
-                    return query;
-                }
-
-                @Override
-                public List<HealthFacility> execute(Query query) {
-                    query.setClass(HealthFacility.class);
-                    ForwardQueryResult fqr = (ForwardQueryResult) query.execute();
-                    List<HealthFacility> healthFacilities;
-                    if (fqr.isEmpty()) {
-                        return null;
-                    }
-                    healthFacilities = (List<HealthFacility>) fqr;
-                    return healthFacilities;
-                }
-            };
 
-            List<HealthFacility> healthFacilities = healthFacilityDataService.executeSQLQuery(queryExecution);
-            if (healthFacilities != null) {
-                healthFacilitiesTotal.addAll(healthFacilities);
-            }
-        }
+        List<HealthFacility> healthFacilities = findByKeys("nms_health_facilities", new String[] { "code", STATE_ID_OID },
+                keys, HealthFacility.class, healthFacilityDataService);
         LOGGER.debug("HEALTHFACILITY Query time: {}", queryTimer.time());
-        if(healthFacilitiesTotal != null && !healthFacilitiesTotal.isEmpty()) {
-            for (HealthFacility healthFacility : healthFacilitiesTotal) {
-                String stateKey = stateIdMap.get(healthFacility.getStateIdOID());
-                healthFacilityHashMap.put(stateKey + "_" + healthFacility.getCode(), healthFacility);
-            }
+        for (HealthFacility healthFacility : healthFacilities) {
+            String stateKey = stateIdMap.get(healthFacility.getStateIdOID());
+            healthFacilityHashMap.put(stateKey + "_" + healthFacility.getCode(), healthFacility);
         }
     }
 
@@ -1221,69 +1190,97 @@ public class LocationServiceImpl implements LocationService {
      *                           with original State objects from database
      */
     private void fillHealthSubFacilities(Map<String, HealthSubFacility> healthSubFacilityHashMap, final Map<String, State> stateHasMap) {
-        int count = 0;
-        List<HealthSubFacility> healthSubFacilitiesTotal = new ArrayList<>();
         Timer queryTimer = new Timer();
-        Map<Long, String> stateIdMap = new HashMap<>();
-        for (String stateKey : stateHasMap.keySet()) {
-            stateIdMap.put(stateHasMap.get(stateKey).getId(), stateKey);
+        Map<Long, String> stateIdMap = stateIdMap(stateHasMap);
+        List<Object[]> keys = new ArrayList<>();
+        for (String healthSubFacilityString : healthSubFacilityHashMap.keySet()) {
+            String[] ids = healthSubFacilityString.split("_");
+            keys.add(new Object[] { Long.valueOf(ids[1]), stateHasMap.get(ids[0]).getId() });
         }
-        final Set<String> healthSubFacilityKeys = healthSubFacilityHashMap.keySet();
-        Iterator<String> iterator = healthSubFacilityKeys.iterator();
 
-        while (iterator.hasNext()) {
-            final Set<String> healthSubFacilityKeysPart = new HashSet<>();
-            while (healthSubFacilityKeysPart.size() < PARTITION_SIZE && count < healthSubFacilityKeys.size()) {
-                healthSubFacilityKeysPart.add(iterator.next());
-                count++;
+        List<HealthSubFacility> healthSubFacilities = findByKeys("nms_health_sub_facilities",
+                new String[] { "code", STATE_ID_OID }, keys, HealthSubFacility.class, healthSubFacilityDataService);
+        LOGGER.debug("HEALTHSUBFACILITY Query time: {}", queryTimer.time());
+        for (HealthSubFacility healthSubFacility : healthSubFacilities) {
+            String stateKey = stateIdMap.get(healthSubFacility.getStateIdOID());
+            healthSubFacilityHashMap.put(stateKey + "_" + healthSubFacility.getCode(), healthSubFacility);
+        }
+    }
+
+    private Map<Long, String> stateIdMap(Map<String, State> stateHashMap) {
+        Map<Long, String> stateIdMap = new HashMap<>();
+        for (Map.Entry<String, State> entry : stateHashMap.entrySet()) {
+            if (entry.getValue() != null) {
+                stateIdMap.put(entry.getValue().getId(), entry.getKey());
             }
+        }
+        return stateIdMap;
+    }
+
+    /**
+     * Loads the rows of a location table matching any of the given keys, PARTITION_SIZE keys per statement, using
+     * a tuple IN list with every value bound as a parameter:
+     * SELECT * FROM table WHERE (col1, col2) IN ((:k0_0, :k0_1), (:k1_0, :k1_1), ...)
+     * Unlike a chain of OR'ed conditions this is resolved through the (state, code) unique indexes, and the
+     * statement text only depends on the number of keys so the server doesn't have to parse a new one for each
+     * import.
+     * @param table the location table
+     * @param columns the key columns, in the order of the values of each key
+     * @param keys the keys to look up
+     * @param clazz the location entity class
+     * @param dataService data service of the location entity
+     * @return the locations found, never null
+     */
+    private <T> List<T> findByKeys(final String table, final String[] columns, List<Object[]> keys,
+                                   final Class<T> clazz, MotechDataService<T> dataService) {
+        List<T> found = new ArrayList<>();
+
+        for (int from = 0; from < keys.size(); from += PARTITION_SIZE) {
+            List<Object[]> part = keys.subList(from, Math.min(from + PARTITION_SIZE, keys.size()));
+            final Map<String, Object> params = new HashMap<>();
+            final String query = tupleInQuery(table, columns, part, params);
 
             @SuppressWarnings("unchecked")
-            SqlQueryExecution<List<HealthSubFacility>> queryExecution = new SqlQueryExecution<List<HealthSubFacility>>() {
+            SqlQueryExecution<List<T>> queryExecution = new SqlQueryExecution<List<T>>() {
 
                 @Override
                 public String getSqlQuery() {
-                    String query = "SELECT * from nms_health_sub_facilities where";
-                    int count = healthSubFacilityKeysPart.size();
-                    for (String healthFacilityString : healthSubFacilityKeysPart) {
-                        count--;
-                        String[] ids = healthFacilityString.split("_");
-                        Long stateId = stateHasMap.get(ids[0]).getId();
-                        query += CODE_SQL_STRING + ids[1] + " and state_id_OID = " + stateId + ")";
-                        if (count > 0) {
-                            query += OR_SQL_STRING;
-                        }
-                    }
-
-                    LOGGER.debug("HEALTHSUBFACILITY Query: {}", query);
+                    LOGGER.debug("{} Query: {} ({} keys)", table, query, params.size() / columns.length);
                     return query;
                 }
 
                 @Override
-                public List<HealthSubFacility> execute(Query query) {
-                    query.setClass(HealthSubFacility.class);
-                    ForwardQueryResult fqr = (ForwardQueryResult) query.execute();
-                    List<HealthSubFacility> healthSubFacilities;
-                    if (fqr.isEmpty()) {
-                        return null;
-                    }
-                    healthSubFacilities = (List<HealthSubFacility>) fqr;
-                    return healthSubFacilities;
+                public List<T> execute(Query query) {
+                    query.setClass(clazz);
+                    return (List<T>) query.executeWithMap(params);
                 }
             };
 
-            List<HealthSubFacility> healthSubFacilities = healthSubFacilityDataService.executeSQLQuery(queryExecution);
-            if (healthSubFacilities != null) {
-                healthSubFacilitiesTotal.addAll(healthSubFacilities);
+            List<T> locations = dataService.executeSQLQuery(queryExecution);
+            if (locations != null) {
+                found.addAll(locations);
             }
         }
-        LOGGER.debug("HEALTHSUBFACILITY Query time: {}", queryTimer.time());
-        if(healthSubFacilitiesTotal != null && !healthSubFacilitiesTotal.isEmpty()) {
-            for (HealthSubFacility healthSubFacility : healthSubFacilitiesTotal) {
-                String stateKey = stateIdMap.get(healthSubFacility.getStateIdOID());
-                healthSubFacilityHashMap.put(stateKey + "_" + healthSubFacility.getCode(), healthSubFacility);
+
+        return found;
+    }
+
+    private static String tupleInQuery(String table, String[] columns, List<Object[]> keys, Map<String, Object> params) {
+        StringBuilder query = new StringBuilder("SELECT * from ").append(table).append(" where (");
+        for (int c = 0; c < columns.length; c++) {
+            query.append(c == 0 ? "" : ", ").append(columns[c]);
+        }
+        query.append(") IN (");
+        for (int k = 0; k < keys.size(); k++) {
+            query.append(k == 0 ? "(" : ", (");
+            for (int c = 0; c < columns.length; c++) {
+                String paramName = "k" + k + "_" + c;
+                params.put(paramName, keys.get(k)[c]);
+                query.append(c == 0 ? ":" : ", :").append(paramName);
             }
+            query.append(')');
         }
+        return query.append(')').toString();
     }
 
 }
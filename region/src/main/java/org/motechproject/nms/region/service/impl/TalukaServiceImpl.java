@@ -13,7 +13,9 @@ import org.motechproject.nms.region.domain.State;
 import org.motechproject.nms.region.domain.Taluka;
 import org.motechproject.nms.region.repository.TalukaDataService;
 import org.motechproject.nms.region.service.TalukaService;
+import org.motechproject.nms.region.service.LocationCacheService;
 import org.motechproject.nms.region.utils.LocationConstants;
+import org.motechproject.nms.rejectionhandler.domain.TalukaImportRejection;
 import org.motechproject.nms.rejectionhandler.service.TalukaRejectionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,6 +24,7 @@ import org.springframework.stereotype.Service;
 
 import javax.jdo.Query;
 import javax.jdo.annotations.Transactional;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -47,6 +50,9 @@ public class TalukaServiceImpl implements TalukaService {
     @Autowired
     private TalukaRejectionService talukaRejectionService;
 
+    @Autowired
+    private LocationCacheService locationCacheService;
+
     @Override
     public Taluka findByDistrictAndCode(final District district, final String code) {
         if (district == null) { return null; }
@@ -144,6 +150,7 @@ public class TalukaServiceImpl implements TalukaService {
         Long createdTalukas = 0L;
         if (!queryExecution.getSqlQuery().isEmpty() && !districtHashMap.isEmpty()) {
             createdTalukas = dataService.executeSQLQuery(queryExecution);
+            locationCacheService.broadcastEvict(stateHashMap.values());
         }
 
         return createdTalukas;
@@ -225,8 +232,7 @@ public class TalukaServiceImpl implements TalukaService {
     private String talukaQuerySet(List<Map<String, Object>> talukas, Map<String, State> stateHashMap, Map<String, District> districtHashMap) {
         StringBuilder stringBuilder = new StringBuilder();
         int i = 0;
-        StringBuilder rejectionStringBuilder = new StringBuilder();
-        int k= 0;
+        List<TalukaImportRejection> rejections = new ArrayList<>();
         DateTime dateTimeNow = new DateTime();
         DateTimeFormatter dateTimeFormatter = DateTimeFormat.forPattern(DATE_FORMAT_STRING);
         for (Map<String, Object> taluka : talukas) {
@@ -281,33 +287,19 @@ public class TalukaServiceImpl implements TalukaService {
             }
 
             if(!rejectionReason.isEmpty()){
-                if (k != 0) {
-                    rejectionStringBuilder.append(", ");
-                }
-                rejectionStringBuilder.append("(");
-                rejectionStringBuilder.append( taluka.get(LocationConstants.CSV_STATE_ID) + ", ");
-                rejectionStringBuilder.append( taluka.get(LocationConstants.DISTRICT_ID)+ ", ");
-                rejectionStringBuilder.append( QUOTATION + StringEscapeUtils.escapeSql(taluka.get(LocationConstants.TALUKA_ID) == null ?
-                        "" : taluka.get(LocationConstants.TALUKA_ID).toString().replaceAll(":", "")) + QUOTATION_COMMA);
-                rejectionStringBuilder.append(QUOTATION + StringEscapeUtils.escapeSql(taluka.get(LocationConstants.TALUKA_NAME) == null ?
-                        "" : taluka.get(LocationConstants.TALUKA_NAME).toString().replaceAll(":", "")) + QUOTATION_COMMA);
-
-                rejectionStringBuilder.append( 0+ ", ");
-                rejectionStringBuilder.append( QUOTATION+rejectionReason+QUOTATION+ ", ");
-                rejectionStringBuilder.append(MOTECH_STRING);
-                rejectionStringBuilder.append(MOTECH_STRING);
-                rejectionStringBuilder.append(MOTECH_STRING);
-                rejectionStringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-                rejectionStringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-                rejectionStringBuilder.append(QUOTATION + stateCode + QUOTATION_COMMA);
-                rejectionStringBuilder.append(QUOTATION + mdds_Code + QUOTATION);
-                rejectionStringBuilder.append(")");
-
-                k++;
+                TalukaImportRejection rejection = new TalukaImportRejection(
+                        (Long) taluka.get(LocationConstants.CSV_STATE_ID),
+                        (Long) taluka.get(LocationConstants.DISTRICT_ID),
+                        taluka.get(LocationConstants.TALUKA_ID) == null ? "" : taluka.get(LocationConstants.TALUKA_ID).toString(),
+                        taluka.get(LocationConstants.TALUKA_NAME) == null ? "" : taluka.get(LocationConstants.TALUKA_NAME).toString(),
+                        false, rejectionReason);
+                rejection.setStateCode(stateCode);
+                rejection.setMddsCode(mdds_Code);
+                rejections.add(rejection);
             }
         }
-        if(k>0){
-            talukaRejectionService.saveRejectedTalukaInBulk(rejectionStringBuilder.toString());
+        if(!rejections.isEmpty()){
+            talukaRejectionService.saveRejectedTalukaInBulk(rejections);
         }
         rejectionChecks=false;
         return stringBuilder.toString();
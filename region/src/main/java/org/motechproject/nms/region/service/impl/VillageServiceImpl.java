@@ -1,17 +1,16 @@
 package org.motechproject.nms.region.service.impl;
 
-import org.apache.commons.lang.StringEscapeUtils;
 import org.datanucleus.store.rdbms.query.ForwardQueryResult;
-import org.joda.time.DateTime;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
 import org.motechproject.mds.query.SqlQueryExecution;
 import org.motechproject.metrics.service.Timer;
 import org.motechproject.nms.region.domain.*;
 import org.motechproject.nms.region.repository.VillageDataService;
 import org.motechproject.nms.region.service.VillageService;
+import org.motechproject.nms.region.service.LocationCacheService;
 import org.motechproject.nms.region.utils.LocationConstants;
+import org.motechproject.nms.rejectionhandler.domain.VillageImportRejection;
 import org.motechproject.nms.rejectionhandler.service.VillageRejectionService;
+import org.motechproject.nms.utils.BulkWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,21 +18,38 @@ import org.springframework.stereotype.Service;
 
 import javax.jdo.Query;
 import javax.jdo.annotations.Transactional;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 @Service("villageService")
 public class VillageServiceImpl implements VillageService {
 
-    private static final String QUOTATION = "'";
-    private static final String QUOTATION_COMMA = "', ";
-    private static final String MOTECH_STRING = "'motech', ";
-    private static final String SQL_QUERY_LOG = "SQL QUERY: {}";
-    private static final String DATE_FORMAT_STRING = "yyyy-MM-dd HH:mm:ss";
+    private static final int BATCH_SIZE = 5000;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(VillageServiceImpl.class);
 
-    private static Boolean rejectionChecks=true;
+    private static final BulkWriter<VillageRow> VILLAGE_WRITER = BulkWriter
+            .<VillageRow>insertInto("nms_villages", Village.class)
+            .columns("vcode", "name", "state_id_OID", "district_id_OID", "taluka_id_OID", "mddsCode", "state_code")
+            .constant("svid", 0)
+            .motechAudit()
+            .now("creationDate", "modificationDate")
+            .updateOnDuplicateKey("name", "district_id_OID", "taluka_id_OID", "modificationDate", "modifiedBy",
+                    "mddsCode", "state_code")
+            .binder(new BulkWriter.RowBinder<VillageRow>() {
+                @Override
+                public void bind(VillageRow village, BulkWriter.Row columns) {
+                    columns.set("vcode", village.vcode)
+                            .set("name", village.name)
+                            .set("state_id_OID", village.stateId)
+                            .set("district_id_OID", village.districtId)
+                            .set("taluka_id_OID", village.talukaId)
+                            .set("mddsCode", village.mddsCode)
+                            .set("state_code", village.stateCode);
+                }
+            })
+            .build();
 
     @Autowired
     private VillageDataService dataService;
@@ -41,6 +57,9 @@ public class VillageServiceImpl implements VillageService {
     @Autowired
     private VillageRejectionService villageRejectionService;
 
+    @Autowired
+    private LocationCacheService locationCacheService;
+
 
     @Override
     public Village findByTalukaAndVcodeAndSvid(final Taluka taluka, final long vcode, final long svid) {
@@ -112,46 +131,25 @@ public class VillageServiceImpl implements VillageService {
     @Transactional
     public Long createUpdateVillages(final List<Map<String, Object>> villages, final Map<String, State> stateHashMap, final Map<String, District> districtHashMap, final Map<String, Taluka> talukaHashMap) {
         Timer queryTimer = new Timer();
-        rejectionChecks=true;
-        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
-
-            @Override
-            public String getSqlQuery() {
-                String villageValues = villageQuerySet(villages, stateHashMap, districtHashMap, talukaHashMap);
-                String query = "";
-                if (!villageValues.isEmpty()) {
-                    query = "INSERT into nms_villages (`vcode`, `svid`, `name`, `state_id_OID`, `district_id_OID`,`taluka_id_OID`, " +
-                            " `creator`, `modifiedBy`, `owner`, `creationDate`, `modificationDate`, `mddsCode`, `state_code`) VALUES " +
-                            villageValues +
-                            " ON DUPLICATE KEY UPDATE " +
-                            "name = VALUES(name), district_id_OID = VALUES(district_id_OID), taluka_id_OID = VALUES(taluka_id_OID), modificationDate = VALUES(modificationDate), modifiedBy = VALUES(modifiedBy), mddsCode=VALUES(mddsCode), state_code=VALUES(state_code) ";
-                }
-                LOGGER.debug(SQL_QUERY_LOG, query);
-                return query;
-            }
-
-            @Override
-            public Long execute(Query query) {
-                return (Long) query.execute();
-            }
-        };
+        List<VillageRow> rows = new ArrayList<>();
+        List<VillageImportRejection> rejections = new ArrayList<>();
+        collectVillages(villages, stateHashMap, districtHashMap, talukaHashMap, rows, rejections);
 
+        if (!rejections.isEmpty()) {
+            villageRejectionService.saveRejectedVillageInBulk(rejections);
+        }
         Long createdVillages = 0L;
-        if (!queryExecution.getSqlQuery().isEmpty() && !talukaHashMap.isEmpty()) {
-            createdVillages = dataService.executeSQLQuery(queryExecution);
+        if (!rows.isEmpty() && !talukaHashMap.isEmpty()) {
+            createdVillages = VILLAGE_WRITER.write(dataService, rows, BATCH_SIZE);
+            locationCacheService.broadcastEvict(stateHashMap.values());
         }
         LOGGER.debug("VILLAGE Query time: {}", queryTimer.time());
 
         return createdVillages;
     }
 
-    private String villageQuerySet(List<Map<String, Object>> villages, Map<String, State> stateHashMap, Map<String, District> districtHashMap, Map<String, Taluka> talukaHashMap) { //NO CHECKSTYLE Cyclomatic Complexity
-        StringBuilder stringBuilder = new StringBuilder();
-        int i = 0;
-        StringBuilder rejectionStringBuilder = new StringBuilder();
-        int k= 0;
-        DateTime dateTimeNow = new DateTime();
-        DateTimeFormatter dateTimeFormatter = DateTimeFormat.forPattern(DATE_FORMAT_STRING);
+    private void collectVillages(List<Map<String, Object>> villages, Map<String, State> stateHashMap, Map<String, District> districtHashMap, Map<String, Taluka> talukaHashMap, //NO CHECKSTYLE Cyclomatic Complexity
+                                 List<VillageRow> rows, List<VillageImportRejection> rejections) {
         for (Map<String, Object> village : villages) {
             String rejectionReason="";
             Long stateCode=(Long) village.get(LocationConstants.STATE_CODE_ID);
@@ -166,29 +164,10 @@ public class VillageServiceImpl implements VillageService {
                 Long villageCode = (Long) village.get(LocationConstants.VILLAGE_ID);
                 String villageName = (String) village.get(LocationConstants.VILLAGE_NAME);
                 if (taluka != null && taluka.getId() != null && (villageName != null && !villageName.trim().isEmpty()) && villageCode != null && !((Long) (0L)).equals(villageCode)) {
-                    if (i != 0) {
-                        stringBuilder.append(", ");
-                    }
-                    stringBuilder.append("(");
-                    stringBuilder.append(villageCode + ", ");
-                    stringBuilder.append(0 + ", ");
-                    stringBuilder.append(QUOTATION + StringEscapeUtils.escapeSql(village.get(LocationConstants.VILLAGE_NAME) == null ?
-                            "" : village.get(LocationConstants.VILLAGE_NAME).toString().replaceAll(":", "")) + QUOTATION_COMMA);
-                    stringBuilder.append(state.getId() + ", ");
-                    stringBuilder.append(district.getId() + ", ");
-                    stringBuilder.append(taluka.getId() + ", ");
-                    stringBuilder.append(MOTECH_STRING);
-                    stringBuilder.append(MOTECH_STRING);
-                    stringBuilder.append(MOTECH_STRING);
-                    stringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-                    stringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-                    stringBuilder.append(QUOTATION + mdds_Code + QUOTATION_COMMA);
-                    stringBuilder.append(QUOTATION + stateCode + QUOTATION);
-                    stringBuilder.append(")");
-
-                    i++;
+                    rows.add(new VillageRow(villageCode, villageName, state.getId(), district.getId(), taluka.getId(),
+                            mdds_Code, stateCode));
                 }
-                else if(rejectionChecks){
+                else {
                     if(villageCode == null ){
                         rejectionReason=LocationRejectionReasons.LOCATION_CODE_NOT_PRESENT_IN_FILE.toString();
                     }
@@ -208,36 +187,42 @@ public class VillageServiceImpl implements VillageService {
             }
 
             if(!rejectionReason.isEmpty()){
-                if (k != 0) {
-                    rejectionStringBuilder.append(", ");
-                }
-                rejectionStringBuilder.append("(");
-                rejectionStringBuilder.append( village.get(LocationConstants.CSV_STATE_ID) + ", ");
-                rejectionStringBuilder.append( village.get(LocationConstants.DISTRICT_ID)+ ", ");
-                rejectionStringBuilder.append( QUOTATION + StringEscapeUtils.escapeSql(village.get(LocationConstants.TALUKA_ID) == null ?
-                        "" : village.get(LocationConstants.TALUKA_ID).toString().replaceAll(":", "")) + QUOTATION_COMMA);
-                rejectionStringBuilder.append( village.get(LocationConstants.VILLAGE_ID)+ ", ");
-                rejectionStringBuilder.append(QUOTATION + StringEscapeUtils.escapeSql(village.get(LocationConstants.VILLAGE_NAME) == null ?
-                        "" : village.get(LocationConstants.VILLAGE_NAME).toString().replaceAll(":", "")) + QUOTATION_COMMA);
-
-                rejectionStringBuilder.append( 0+ ", ");
-                rejectionStringBuilder.append( QUOTATION+rejectionReason+QUOTATION+ ", ");
-                rejectionStringBuilder.append(MOTECH_STRING);
-                rejectionStringBuilder.append(MOTECH_STRING);
-                rejectionStringBuilder.append(MOTECH_STRING);
-                rejectionStringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-                rejectionStringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-                rejectionStringBuilder.append( 0);
-                rejectionStringBuilder.append(","+QUOTATION + mdds_Code + QUOTATION_COMMA);
-                rejectionStringBuilder.append(QUOTATION + stateCode + QUOTATION);
-                rejectionStringBuilder.append(")");
-                k++;
+                VillageImportRejection rejection = new VillageImportRejection(
+                        (Long) village.get(LocationConstants.CSV_STATE_ID),
+                        (Long) village.get(LocationConstants.DISTRICT_ID),
+                        village.get(LocationConstants.TALUKA_ID) == null ? "" : village.get(LocationConstants.TALUKA_ID).toString(),
+                        (Long) village.get(LocationConstants.VILLAGE_ID),
+                        village.get(LocationConstants.VILLAGE_NAME) == null ? "" : village.get(LocationConstants.VILLAGE_NAME).toString(),
+                        false, rejectionReason);
+                rejection.setSvid(0);
+                rejection.setMddsCode(mdds_Code);
+                rejection.setState_code(stateCode);
+                rejections.add(rejection);
             }
         }
-        if(k>0){
-            villageRejectionService.saveRejectedVillageInBulk(rejectionStringBuilder.toString());
+    }
+
+    /**
+     * A census village of the file, with its parent locations resolved
+     */
+    private static final class VillageRow {
+        private final Long vcode;
+        private final String name;
+        private final Long stateId;
+        private final Long districtId;
+        private final Long talukaId;
+        private final Long mddsCode;
+        private final Long stateCode;
+
+        private VillageRow(Long vcode, String name, Long stateId, Long districtId, Long talukaId, Long mddsCode, //NO CHECKSTYLE ParameterNumber
+                           Long stateCode) {
+            this.vcode = vcode;
+            this.name = name;
+            this.stateId = stateId;
+            this.districtId = districtId;
+            this.talukaId = talukaId;
+            this.mddsCode = mddsCode;
+            this.stateCode = stateCode;
         }
-        rejectionChecks=false;
-        return stringBuilder.toString();
     }
 }
@@ -1,6 +1,9 @@
 package org.motechproject.nms.rejectionhandler.service;
 
+import org.motechproject.nms.rejectionhandler.domain.DistrictImportRejection;
+
+import java.util.List;
 
 public interface DistrictRejectionService {
-    Long saveRejectedDistrictInBulk(String rejectedDistrictValues);
+    Long saveRejectedDistrictInBulk(List<DistrictImportRejection> rejectedDistricts);
 }
@@ -1,5 +1,9 @@
 package org.motechproject.nms.rejectionhandler.service;
 
+import org.motechproject.nms.rejectionhandler.domain.HealthBlockImportRejection;
+
+import java.util.List;
+
 public interface HealthBlockRejectionService {
-    Long saveRejectedHealthBlockInBulk(String rejectedHealthBlockValues);
-}
\ No newline at end of file
+    Long saveRejectedHealthBlockInBulk(List<HealthBlockImportRejection> rejectedHealthBlocks);
+}
@@ -1,5 +1,9 @@
 package org.motechproject.nms.rejectionhandler.service;
 
+import org.motechproject.nms.rejectionhandler.domain.HealthFacilityImportRejection;
+
+import java.util.List;
+
 public interface HealthFacilityRejectionService {
-    Long saveRejectedHealthFacilityInBulk(String rejectedHealthFacilityValues);
+    Long saveRejectedHealthFacilityInBulk(List<HealthFacilityImportRejection> rejectedHealthFacilities);
 }
@@ -1,5 +1,9 @@
 package org.motechproject.nms.rejectionhandler.service;
 
+import org.motechproject.nms.rejectionhandler.domain.HealthSubFacilityImportRejection;
+
+import java.util.List;
+
 public interface HealthSubFacilityRejectionService {
-    Long saveRejectedHealthSubFacilityInBulk(String rejectedHealthSubFacilityValues);
+    Long saveRejectedHealthSubFacilityInBulk(List<HealthSubFacilityImportRejection> rejectedHealthSubFacilities);
 }
@@ -1,5 +1,9 @@
 package org.motechproject.nms.rejectionhandler.service;
 
+import org.motechproject.nms.rejectionhandler.domain.TalukaImportRejection;
+
+import java.util.List;
+
 public interface TalukaRejectionService {
-    Long saveRejectedTalukaInBulk(String talukarejectedValues);
+    Long saveRejectedTalukaInBulk(List<TalukaImportRejection> rejectedTalukas);
 }
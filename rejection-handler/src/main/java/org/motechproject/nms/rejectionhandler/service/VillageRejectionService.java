@@ -1,5 +1,9 @@
 package org.motechproject.nms.rejectionhandler.service;
 
+import org.motechproject.nms.rejectionhandler.domain.VillageImportRejection;
+
+import java.util.List;
+
 public interface VillageRejectionService {
-    Long saveRejectedVillageInBulk(String rejectedVillageValues);
+    Long saveRejectedVillageInBulk(List<VillageImportRejection> rejectedVillages);
 }
@@ -1,15 +1,14 @@
 package org.motechproject.nms.rejectionhandler.service.impl;
 
-import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.commons.lang.StringUtils;
 import org.datanucleus.store.rdbms.query.ForwardQueryResult;
 import org.joda.time.DateTime;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
 import org.motechproject.mds.query.SqlQueryExecution;
 import org.motechproject.metrics.service.Timer;
 import org.motechproject.nms.rejectionhandler.domain.ChildImportRejection;
 import org.motechproject.nms.rejectionhandler.repository.ChildRejectionDataService;
 import org.motechproject.nms.rejectionhandler.service.ChildRejectionService;
+import org.motechproject.nms.utils.BulkWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -34,11 +33,37 @@ public class ChildRejectionServiceImpl implements ChildRejectionService {
     private ChildRejectionDataService childRejectionDataService;
 
     private static final String QUOTATION = "'";
-    private static final String QUOTATION_COMMA = "', ";
-    private static final String MOTECH_STRING = "'motech', ";
     private static final String SQL_QUERY_LOG = "SQL QUERY: {}";
     private static final String CHILD_LOG_STRING = "List of child rejects in {}";
-    private static final String DATE_FORMAT_STRING = "yyyy-MM-dd HH:mm:ss";
+    private static final String TABLE = "nms_child_rejects";
+    private static final String MOTECH = "motech";
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String[] MCTS_COLUMNS = {
+            "stateId", "districtId", "districtName", "talukaId", "talukaName", "healthBlockId", "healthBlockName",
+            "phcId", "phcName", "subcentreId", "subcentreName", "villageId", "villageName", "yr", "cityMaholla",
+            "gPVillage", "address", "idNo", "name", "motherName", "mCTSMotherIDNo", "phoneNumberWhom", "mobileNo",
+            "birthDate", "registrationDate", "placeOfDelivery", "bloodGroup", "caste", "subcenterName1", "aNMName",
+            "aNMPhone", "ashaName", "ashaPhone", "bCGDt", "oPV0Dt", "hepatitisB1Dt", "dPT1Dt", "oPV1Dt",
+            "hepatitisB2Dt", "dPT2Dt", "oPV2Dt", "hepatitisB3Dt", "dPT3Dt", "oPV3Dt", "hepatitisB4Dt", "measlesDt",
+            "vitADose1Dt", "mRDt", "dPTBoosterDt", "oPVBoosterDt", "vitADose2Dt", "vitADose3Dt", "jEDt",
+            "vitADose9Dt", "dT5Dt", "tT10Dt", "tT16Dt", "cLDRegDATE", "sex", "vitADose5Dt", "vitADose6Dt",
+            "vitADose7Dt", "vitADose8Dt", "lastUpdateDate", "remarks", "aNMID", "ashaID", "createdBy", "updatedBy",
+            "measles2Dt", "weightOfChild", "childAadhaarNo", "childEID", "childEIDTime", "fatherName",
+            "birthCertificateNumber", "entryType", "source", "accepted", "rejectionReason", "action"
+    };
+
+    private static final String[] RCH_COLUMNS = {
+            "subcentreId", "subcentreName", "villageId", "villageName", "name", "mobileNo", "stateId", "districtId",
+            "districtName", "talukaId", "talukaName", "healthBlockId", "healthBlockName", "phcId", "phcName",
+            "birthDate", "registrationDate", "rchAshaId", "registrationNo", "entryType", "idNo", "mCTSMotherIDNo",
+            "rCHMotherIDNo", "execDate", "source", "accepted", "rejectionReason", "action"
+    };
+
+    private static final BulkWriter<ChildImportRejection> MCTS_INSERT = rejectsWriter(true, false);
+    private static final BulkWriter<ChildImportRejection> MCTS_UPDATE = rejectsWriter(true, true);
+    private static final BulkWriter<ChildImportRejection> RCH_INSERT = rejectsWriter(false, false);
+    private static final BulkWriter<ChildImportRejection> RCH_UPDATE = rejectsWriter(false, true);
 
     @Override //NO CHECKSTYLE CyclomaticComplexity
     public boolean createOrUpdateChild(ChildImportRejection childImportRejection) {
@@ -155,452 +180,184 @@ public class ChildRejectionServiceImpl implements ChildRejectionService {
 
     @Override
     public Long rchBulkInsert(final List<ChildImportRejection> createObjects) {
-
-        Timer queryTimer = new Timer();
-
-        @SuppressWarnings("unchecked")
-        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
-
-            @Override
-            public String getSqlQuery() {
-                String query = "Insert into nms_child_rejects (subcentreId, subcentreName, villageId, villageName, name, mobileNo, stateId, districtId, districtName, talukaId," +
-                        " talukaName, healthBlockId, healthBlockName, phcId, phcName, birthDate, registrationDate , rchAshaId, registrationNo, entryType, idNo, mCTSMotherIDNo, rCHMotherIDNo, execDate, source," +
-                        " accepted, rejectionReason, action, creator, modifiedBy, creationDate, modificationDate) " +
-                        "values  " +
-                        rchChildToQuerySet(createObjects);
-
-                LOGGER.debug(SQL_QUERY_LOG, query);
-                return query;
-            }
-
-            @Override
-            public Long execute(Query query) {
-                query.setClass(ChildImportRejection.class);
-                try {
-                    return (Long) query.execute();
-                } catch (Exception e) {
-                    LOGGER.debug("Error while running Child Rejection Bulk Insert", e);
-                    return 0L;
-                }
-            }
-        };
-
-        Long insertedNo = childRejectionDataService.executeSQLQuery(queryExecution);
-        LOGGER.debug(CHILD_LOG_STRING, queryTimer.time());
-        return insertedNo;
+        return RCH_INSERT.write(childRejectionDataService, createObjects, BATCH_SIZE);
     }
 
     @Override
     public Long mctsBulkInsert(final List<ChildImportRejection> createObjects) {
-
-        Timer queryTimer = new Timer();
-
-        @SuppressWarnings("unchecked")
-        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
-
-            @Override
-            public String getSqlQuery() {
-                String query = "Insert into nms_child_rejects (stateId, districtId, districtName, talukaId, talukaName, " +
-                        "healthBlockId, healthBlockName, phcId, phcName, subcentreId, subcentreName, villageId, " +
-                        "villageName, yr, cityMaholla, gPVillage, address, idNo, name, motherName, mCTSMotherIDNo, " +
-                        "phoneNumberWhom, mobileNo, birthDate, registrationDate , placeOfDelivery, bloodGroup, caste, subcenterName1, " +
-                        "aNMName, aNMPhone, ashaName, ashaPhone, bCGDt, oPV0Dt, hepatitisB1Dt, dPT1Dt, oPV1Dt, " +
-                        "hepatitisB2Dt, dPT2Dt, oPV2Dt, hepatitisB3Dt, dPT3Dt, oPV3Dt, hepatitisB4Dt, measlesDt, " +
-                        "vitADose1Dt, mRDt, dPTBoosterDt, oPVBoosterDt, vitADose2Dt, vitADose3Dt, jEDt, vitADose9Dt, " +
-                        "dT5Dt, tT10Dt, tT16Dt, cLDRegDATE, sex, vitADose5Dt, vitADose6Dt, vitADose7Dt, vitADose8Dt, " +
-                        "lastUpdateDate, remarks, aNMID, ashaID, createdBy, updatedBy, measles2Dt, weightOfChild, " +
-                        "childAadhaarNo, childEID, childEIDTime, fatherName, birthCertificateNumber, entryType, source, " +
-                        "accepted, rejectionReason, action, creator, modifiedBy, creationDate, modificationDate) values " +
-                        mctsChildToQuerySet(createObjects);
-
-                LOGGER.debug(SQL_QUERY_LOG, query);
-                return query;
-            }
-
-            @Override
-            public Long execute(Query query) {
-                query.setClass(ChildImportRejection.class);
-                try {
-                    return (Long) query.execute();
-                } catch (Exception e) {
-                    LOGGER.debug("Error while running Child Rejection Bulk Update", e);
-                    return 0L;
-                }
-            }
-        };
-
-        Long insertedNo = childRejectionDataService.executeSQLQuery(queryExecution);
-        LOGGER.debug(CHILD_LOG_STRING, queryTimer.time());
-        return insertedNo;
-    }
-
-    private String rchChildToQuerySet(List<ChildImportRejection> childList) {
-        StringBuilder stringBuilder = new StringBuilder();
-
-        DateTimeFormatter dateTimeFormatter = DateTimeFormat.forPattern(DATE_FORMAT_STRING);
-        DateTime dateTimeNow = new DateTime();
-
-        int i = 0;
-        for (ChildImportRejection child: childList) {
-            if (i != 0) {
-                stringBuilder.append(", ");
-            }
-            stringBuilder.append("(");
-            stringBuilder = rchQueryHelper(stringBuilder, child);
-            stringBuilder.append(MOTECH_STRING);
-            stringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION);
-            stringBuilder.append(")");
-            i++;
-        }
-        return stringBuilder.toString();
-    }
-    private String mctsChildToQuerySet(List<ChildImportRejection> childList) { //NOPMD NcssMethodCount
-        StringBuilder stringBuilder = new StringBuilder();
-
-        DateTimeFormatter dateTimeFormatter = DateTimeFormat.forPattern(DATE_FORMAT_STRING);
-        DateTime dateTimeNow = new DateTime();
-
-        int i = 0;
-        for (ChildImportRejection child: childList) {
-            if (i != 0) {
-                stringBuilder.append(", ");
-            }
-            stringBuilder.append("(");
-            stringBuilder = mctsQueryHelper(stringBuilder, child);
-            stringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION);
-            stringBuilder.append(")");
-            i++;
-        }
-        return stringBuilder.toString();
+        return MCTS_INSERT.write(childRejectionDataService, createObjects, BATCH_SIZE);
     }
 
     @Override
     public Long rchBulkUpdate(final List<ChildImportRejection> updateObjects) {
-
-        Timer queryTimer = new Timer();
-
-        @SuppressWarnings("unchecked")
-        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
-
-            @Override
-            public String getSqlQuery() {
-                String query = "Insert into nms_child_rejects (id, subcentreId, subcentreName, villageId, villageName, name, mobileNo, stateId, districtId, districtName, talukaId," +
-                        " talukaName, healthBlockId, healthBlockName, phcId, phcName, birthDate, registrationDate, rchAshaId, registrationNo, entryType, idNo, mCTSMotherIDNo, rCHMotherIDNo, execDate, source," +
-                        " accepted, rejectionReason, action, modifiedBy, creationDate, modificationDate, creator) " +
-                        "values  " +
-                        rchChildUpdateQuerySet(updateObjects) +
-                        " ON DUPLICATE KEY UPDATE " +
-                        "subcentreId = VALUES(subcentreId),  subcentreName = VALUES(subcentreName),  villageId = VALUES(villageId),  villageName = VALUES(villageName),  " +
-                        "name = VALUES(name),  mobileNo = VALUES(mobileNo),  stateId = VALUES(stateId),  districtId = VALUES(districtId),  districtName = VALUES(districtName),  talukaId = VALUES(talukaId),  talukaName = VALUES(talukaName),  " +
-                        "healthBlockId = VALUES(healthBlockId),  healthBlockName = VALUES(healthBlockName),  phcId = VALUES(phcId),  phcName = VALUES(phcName),  birthDate = VALUES(birthDate), registrationDate = VALUES(registrationDate), rchAshaId = VALUES(rchAshaId), registrationNo = VALUES(registrationNo), entryType = VALUES(entryType),  " +
-                        "idNo = VALUES(idNo),  mCTSMotherIDNo = VALUES(mCTSMotherIDNo),  rCHMotherIDNo = VALUES(rCHMotherIDNo),  execDate = VALUES(execDate),  source = VALUES(source),  " +
-                        "accepted = VALUES(accepted),  rejectionReason = VALUES(rejectionReason),  action = VALUES(action),  modifiedBy = VALUES(modifiedBy), creationDate = VALUES(creationDate), modificationDate = VALUES(modificationDate), creator = VALUES(creator)";
-
-                LOGGER.debug(SQL_QUERY_LOG, query);
-                return query;
-            }
-
-            @Override
-            public Long execute(Query query) {
-
-                query.setClass(ChildImportRejection.class);
-                try {
-                    return (Long) query.execute();
-                } catch (Exception e) {
-                    LOGGER.debug("Error while running Child Rejection Bulk Insert", e);
-                    return 0L;
-                }
-            }
-        };
-
-        Long updatedNo = childRejectionDataService.executeSQLQuery(queryExecution);
-        LOGGER.debug(CHILD_LOG_STRING, queryTimer.time());
-        return updatedNo;
+        return RCH_UPDATE.write(childRejectionDataService, updateObjects, BATCH_SIZE);
     }
 
     @Override
     public Long mctsBulkUpdate(final List<ChildImportRejection> updateObjects) {
+        return MCTS_UPDATE.write(childRejectionDataService, updateObjects, BATCH_SIZE);
+    }
 
-        Timer queryTimer = new Timer();
-
-        @SuppressWarnings("unchecked")
-        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
-
-            @Override
-            public String getSqlQuery() {
-                String query = "Insert into nms_child_rejects (id, stateId, districtId, districtName, talukaId, talukaName, " +
-                        "healthBlockId, healthBlockName, phcId, phcName, subcentreId, subcentreName, villageId, " +
-                        "villageName, yr, cityMaholla, gPVillage, address, idNo, name, motherName, mCTSMotherIDNo, " +
-                        "phoneNumberWhom, mobileNo, birthDate, registrationDate, placeOfDelivery, bloodGroup, caste, subcenterName1, " +
-                        "aNMName, aNMPhone, ashaName, ashaPhone, bCGDt, oPV0Dt, hepatitisB1Dt, dPT1Dt, oPV1Dt, " +
-                        "hepatitisB2Dt, dPT2Dt, oPV2Dt, hepatitisB3Dt, dPT3Dt, oPV3Dt, hepatitisB4Dt, measlesDt, " +
-                        "vitADose1Dt, mRDt, dPTBoosterDt, oPVBoosterDt, vitADose2Dt, vitADose3Dt, jEDt, vitADose9Dt, " +
-                        "dT5Dt, tT10Dt, tT16Dt, cLDRegDATE, sex, vitADose5Dt, vitADose6Dt, vitADose7Dt, vitADose8Dt, " +
-                        "lastUpdateDate, remarks, aNMID, ashaID, createdBy, updatedBy, measles2Dt, weightOfChild, " +
-                        "childAadhaarNo, childEID, childEIDTime, fatherName, birthCertificateNumber, entryType, source, " +
-                        "accepted, rejectionReason, action, creator, modifiedBy, creationDate, modificationDate) values " +
-                        mctsChildUpdateQuerySet(updateObjects) +
-                        " ON DUPLICATE KEY UPDATE " +
-                        "stateId = VALUES(stateId),  districtId = VALUES(districtId),  districtName = VALUES(districtName)," +
-                        "  talukaId = VALUES(talukaId),  talukaName = VALUES(talukaName),  healthBlockId = VALUES(healthBlockId)," +
-                        "  healthBlockName = VALUES(healthBlockName),  phcId = VALUES(phcId),  phcName = VALUES(phcName)," +
-                        "  subcentreId = VALUES(subcentreId),  subcentreName = VALUES(subcentreName)," +
-                        "  villageId = VALUES(villageId),  villageName = VALUES(villageName),  yr = VALUES(yr)," +
-                        "  cityMaholla = VALUES(cityMaholla),  gPVillage = VALUES(gPVillage),  address = VALUES(address)," +
-                        "  idNo = VALUES(idNo),  name = VALUES(name),  motherName = VALUES(motherName)," +
-                        "  mCTSMotherIDNo = VALUES(mCTSMotherIDNo),  phoneNumberWhom = VALUES(phoneNumberWhom)," +
-                        "  mobileNo = VALUES(mobileNo),  birthDate = VALUES(birthDate)," +
-                        "  registrationDate = VALUES(registrationDate)," +
-                        "  placeOfDelivery = VALUES(placeOfDelivery),  bloodGroup = VALUES(bloodGroup)," +
-                        "  caste = VALUES(caste), subcenterName1 = VALUES(subcenterName1), aNMName = VALUES(aNMName)," +
-                        "  aNMPhone = VALUES(aNMPhone),  ashaName = VALUES(ashaName),  ashaPhone = VALUES(ashaPhone)," +
-                        "  bCGDt = VALUES(bCGDt), oPV0Dt = VALUES(oPV0Dt), hepatitisB1Dt = VALUES(hepatitisB1Dt)," +
-                        "  dPT1Dt = VALUES(dPT1Dt), oPV1Dt = VALUES(oPV1Dt),  hepatitisB2Dt = VALUES(hepatitisB2Dt)," +
-                        "  dPT2Dt = VALUES(dPT2Dt),  oPV2Dt = VALUES(oPV2Dt), hepatitisB3Dt = VALUES(hepatitisB3Dt)," +
-                        "  dPT3Dt = VALUES(dPT3Dt), oPV3Dt = VALUES(oPV3Dt), hepatitisB4Dt = VALUES(hepatitisB4Dt)," +
-                        "  measlesDt = VALUES(measlesDt),  vitADose1Dt = VALUES(vitADose1Dt),  mRDt = VALUES(mRDt)," +
-                        "  dPTBoosterDt = VALUES(dPTBoosterDt), oPVBoosterDt = VALUES(oPVBoosterDt)," +
-                        "  vitADose2Dt = VALUES(vitADose2Dt), vitADose3Dt = VALUES(vitADose3Dt),  jEDt = VALUES(jEDt)," +
-                        "  vitADose9Dt = VALUES(vitADose9Dt),  dT5Dt = VALUES(dT5Dt), tT10Dt = VALUES(tT10Dt)," +
-                        "  tT16Dt = VALUES(tT16Dt), cLDRegDATE = VALUES(cLDRegDATE), sex = VALUES(sex)," +
-                        "  vitADose5Dt = VALUES(vitADose5Dt),  vitADose6Dt = VALUES(vitADose6Dt)," +
-                        "  vitADose7Dt = VALUES(vitADose7Dt), vitADose8Dt = VALUES(vitADose8Dt)," +
-                        "  lastUpdateDate = VALUES(lastUpdateDate), remarks = VALUES(remarks), aNMID = VALUES(aNMID)," +
-                        "  ashaID = VALUES(ashaID),  createdBy = VALUES(createdBy),  updatedBy = VALUES(updatedBy)," +
-                        "  measles2Dt = VALUES(measles2Dt), weightOfChild = VALUES(weightOfChild)," +
-                        "  childAadhaarNo = VALUES(childAadhaarNo), childEID = VALUES(childEID)," +
-                        "  childEIDTime = VALUES(childEIDTime),  fatherName = VALUES(fatherName)," +
-                        "  birthCertificateNumber = VALUES(birthCertificateNumber), entryType = VALUES(entryType)," +
-                        "  source = VALUES(source), accepted = VALUES(accepted), rejectionReason = VALUES(rejectionReason)," +
-                        "  action = VALUES(action),  creator = VALUES(creator),  modifiedBy = VALUES(modifiedBy)," +
-                        "  creationDate = VALUES(creationDate), modificationDate = VALUES(modificationDate)";
-                LOGGER.debug(SQL_QUERY_LOG, query);
-                return query;
-            }
-
+    private static BulkWriter<ChildImportRejection> rejectsWriter(final boolean mcts, final boolean update) {
+        BulkWriter.Builder<ChildImportRejection> builder = BulkWriter
+                .<ChildImportRejection>insertInto(TABLE, ChildImportRejection.class)
+                .columns(mcts ? MCTS_COLUMNS : RCH_COLUMNS)
+                .constant("creator", MOTECH)
+                .constant("modifiedBy", MOTECH)
+                .failSoft();
+        if (update) {
+            builder.columns("id", "creationDate").now("modificationDate").updateOnDuplicateKey();
+        } else {
+            builder.now("creationDate", "modificationDate");
+        }
+        return builder.binder(new BulkWriter.RowBinder<ChildImportRejection>() {
             @Override
-            public Long execute(Query query) {
-
-                query.setClass(ChildImportRejection.class);
-                try {
-                    return (Long) query.execute();
-                } catch (Exception e) {
-                    LOGGER.debug("Error while running Child Rejection Bulk Update", e);
-                    return 0L;
+            public void bind(ChildImportRejection child, BulkWriter.Row row) {
+                if (update) {
+                    bindIdentity(child, row);
+                }
+                if (mcts) {
+                    bindMcts(child, row);
+                } else {
+                    bindRch(child, row);
                 }
             }
-        };
-
-        Long updatedNo = childRejectionDataService.executeSQLQuery(queryExecution);
-        LOGGER.debug(CHILD_LOG_STRING, queryTimer.time());
-        return updatedNo;
-    }
-
-    private String mctsChildUpdateQuerySet(List<ChildImportRejection> childList) {
-        StringBuilder stringBuilder = new StringBuilder();
-        DateTimeFormatter dateTimeFormatter = DateTimeFormat.forPattern(DATE_FORMAT_STRING);
-        DateTime dateTimeNow = new DateTime();
-        int i = 0;
-        for (ChildImportRejection child: childList) {
-            String creationTime = "";
-            Long id = null;
-            if (i != 0) {
-                stringBuilder.append(", ");
-            }
-            try {
-                Method method = child.getClass().getMethod("getCreationDate");
-                DateTime dateTime = (DateTime) method.invoke(child);
-                creationTime = dateTimeFormatter.print(dateTime);
-
-                method = child.getClass().getMethod("getId");
-                id = (Long) method.invoke(child);
-            } catch (IllegalAccessException|SecurityException|IllegalArgumentException|NoSuchMethodException|
-            InvocationTargetException e) {
-                LOGGER.error("Ignoring creation date and setting as now");
-            }
-            stringBuilder.append("(");
-            stringBuilder.append(id + ", ");
-            stringBuilder = mctsQueryHelper(stringBuilder, child);
-            stringBuilder.append(QUOTATION + creationTime + QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION);
-            stringBuilder.append(")");
-            i++;
-        }
-        return stringBuilder.toString();
+        }).build();
     }
 
-    private String rchChildUpdateQuerySet(List<ChildImportRejection> childList) {
-        StringBuilder stringBuilder = new StringBuilder();
-        int i = 0;
-        DateTime dateTimeNow = new DateTime();
-        DateTimeFormatter dateTimeFormatter = DateTimeFormat.forPattern(DATE_FORMAT_STRING);
-        for (ChildImportRejection child: childList) {
-            Long id = null;
-            String creationTime = "";
-            try {
-                Method method = child.getClass().getMethod("getCreationDate");
-                DateTime dateTime = (DateTime) method.invoke(child);
-                method = child.getClass().getMethod("getId");
-                creationTime = dateTimeFormatter.print(dateTime);
-
-                id = (Long) method.invoke(child);
-            } catch (IllegalAccessException|SecurityException|IllegalArgumentException|NoSuchMethodException|
-                    InvocationTargetException e) {
-                LOGGER.error("Ignoring creation date and setting as now");
-            }
-            if (i != 0) {
-                stringBuilder.append(", ");
-            }
-            stringBuilder.append("(");
-            stringBuilder.append(id + ", ");
-            stringBuilder = rchQueryHelper(stringBuilder, child);
-            stringBuilder.append(QUOTATION + creationTime + QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-            stringBuilder.append("'motech'");
-            stringBuilder.append(")");
-            i++;
+    /**
+     * Sets the id and the creation date of an existing rejection, which are only reachable through the methods MDS
+     * adds to the entity
+     */
+    private static void bindIdentity(ChildImportRejection child, BulkWriter.Row columns) {
+        Long id = null;
+        DateTime creationDate = null;
+        try {
+            Method method = child.getClass().getMethod("getCreationDate");
+            creationDate = (DateTime) method.invoke(child);
+            method = child.getClass().getMethod("getId");
+            id = (Long) method.invoke(child);
+        } catch (IllegalAccessException|SecurityException|IllegalArgumentException|NoSuchMethodException|
+                InvocationTargetException e) {
+            LOGGER.error("Ignoring creation date and setting as now");
         }
-        return stringBuilder.toString();
-    }
-
-
-    private StringBuilder mctsQueryHelper(StringBuilder stringBuilder, ChildImportRejection child) { //NOPMD NcssMethodCount
-        stringBuilder.append(child.getStateId() + ", ");
-        stringBuilder.append(child.getDistrictId() + ", ");
-        stringBuilder.append(QUOTATION + child.getDistrictName() + QUOTATION_COMMA);
-        stringBuilder.append(child.getTalukaId() + ", ");
-        stringBuilder.append(QUOTATION + child.getTalukaName() + QUOTATION_COMMA);
-        stringBuilder.append(child.getHealthBlockId() + ", ");
-        stringBuilder.append(QUOTATION + StringEscapeUtils.escapeSql(child.getHealthBlockName()) + QUOTATION_COMMA);
-        stringBuilder.append(child.getPhcId() + ", ");
-        stringBuilder.append(QUOTATION + child.getPhcName() + QUOTATION_COMMA);
-        stringBuilder.append(child.getSubcentreId() + ", ");
-        stringBuilder.append(QUOTATION + child.getSubcentreName() + QUOTATION_COMMA);
-        stringBuilder.append(child.getVillageId() + ", ");
-        stringBuilder.append(QUOTATION + StringEscapeUtils.escapeSql(child.getVillageName()) + QUOTATION_COMMA);
-        stringBuilder.append(child.getYr() + ", ");
-        stringBuilder.append(QUOTATION + child.getCityMaholla() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getgPVillage() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getAddress() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getIdNo() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + StringEscapeUtils.escapeSql(child.getName()) + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + StringEscapeUtils.escapeSql(child.getMotherName()) + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getMotherId() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getPhoneNumberWhom() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getMobileNo() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getBirthDate() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getRegistrationDate() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getPlaceOfDelivery() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getBloodGroup() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getCaste() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getSubcenterName1() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + StringEscapeUtils.escapeSql(child.getaNMName()) + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getaNMPhone() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + StringEscapeUtils.escapeSql(child.getAshaName()) + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getAshaPhone() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getbCGDt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getoPV0Dt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getHepatitisB1Dt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getdPT1Dt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getoPV1Dt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getHepatitisB2Dt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getdPT2Dt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getoPV2Dt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getHepatitisB3Dt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getdPT3Dt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getoPV3Dt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getHepatitisB4Dt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getMeaslesDt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getVitADose1Dt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getmRDt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getdPTBoosterDt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getoPVBoosterDt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getVitADose2Dt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getVitADose3Dt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getjEDt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getVitADose9Dt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getdT5Dt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.gettT10Dt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.gettT16Dt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getcLDRegDATE() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getSex() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getVitADose5Dt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getVitADose6Dt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getVitADose7Dt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getVitADose8Dt() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getLastUpdateDate() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getRemarks() + QUOTATION_COMMA);
-        stringBuilder.append(child.getaNMID() + ", ");
-        stringBuilder.append(child.getAshaID() + ", ");
-        stringBuilder.append(child.getCreatedBy() + ", ");
-        stringBuilder.append(child.getUpdatedBy() + ", ");
-        stringBuilder.append(QUOTATION + child.getMeasles2Dt() + QUOTATION_COMMA);
-        stringBuilder.append(child.getWeightOfChild() + ", ");
-        stringBuilder.append(child.getChildAadhaarNo() + ", ");
-        stringBuilder.append(child.getChildEID() + ", ");
-        stringBuilder.append(QUOTATION + child.getChildEIDTime() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getFatherName() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getBirthCertificateNumber() + QUOTATION_COMMA);
-        stringBuilder.append(child.getEntryType() + ", ");
-        stringBuilder.append(QUOTATION + child.getSource() + QUOTATION_COMMA);
-        stringBuilder.append(child.getAccepted() + ", ");
-        stringBuilder.append(QUOTATION + child.getRejectionReason() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getAction() + QUOTATION_COMMA);
-        stringBuilder.append(MOTECH_STRING);
-        stringBuilder.append(MOTECH_STRING);
-        return stringBuilder;
+        columns.set("id", id);
+        columns.set("creationDate", creationDate == null ? new DateTime() : creationDate);
     }
 
-
-    private StringBuilder rchQueryHelper(StringBuilder stringBuilder, ChildImportRejection child) {
-        stringBuilder.append(child.getSubcentreId() + ", ");
-        stringBuilder.append(QUOTATION + validateName(child.getSubcentreName()) + QUOTATION_COMMA);
-        stringBuilder.append(child.getVillageId() + ", ");
-        stringBuilder.append(QUOTATION + validateName(child.getVillageName()) + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + validateName(child.getName()) + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getMobileNo() + QUOTATION_COMMA);
-        stringBuilder.append(child.getStateId() + ", ");
-        stringBuilder.append(child.getDistrictId() + ", ");
-        stringBuilder.append(QUOTATION + validateName(child.getDistrictName()) + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getTalukaId() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + validateName(child.getTalukaName()) + QUOTATION_COMMA);
-        stringBuilder.append(child.getHealthBlockId() + ", ");
-        stringBuilder.append(QUOTATION + validateName(child.getHealthBlockName()) + QUOTATION_COMMA);
-        stringBuilder.append(child.getPhcId() + ", ");
-        stringBuilder.append(QUOTATION + validateName(child.getPhcName()) + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getBirthDate() + QUOTATION_COMMA);
-        if(child.getRegistrationDate() == null){
-            stringBuilder.append(child.getRegistrationDate() + " , ");
-        }
-        else{
-            stringBuilder.append(QUOTATION + child.getRegistrationDate() + QUOTATION_COMMA);
-        }
-        if(child.getRchAshaId()==null || child.getRchAshaId().trim().isEmpty()){
-            stringBuilder.append("NULL,");
-        }
-        else {
-            stringBuilder.append(QUOTATION + child.getRchAshaId() + QUOTATION_COMMA);
-        }
-        stringBuilder.append(QUOTATION + child.getRegistrationNo() + QUOTATION_COMMA);
-        stringBuilder.append(child.getEntryType() + ", ");
-        stringBuilder.append(QUOTATION + child.getIdNo() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getmCTSMotherIDNo() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getMotherId() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getExecDate() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getSource() + QUOTATION_COMMA);
-        stringBuilder.append(child.getAccepted() + ", ");
-        stringBuilder.append(QUOTATION + child.getRejectionReason() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + child.getAction() + QUOTATION_COMMA);
-        stringBuilder.append(MOTECH_STRING);
-        return stringBuilder;
+    private static void bindMcts(ChildImportRejection child, BulkWriter.Row columns) { //NOPMD NcssMethodCount
+        columns.set("stateId", child.getStateId());
+        columns.set("districtId", child.getDistrictId());
+        columns.set("districtName", child.getDistrictName());
+        columns.set("talukaId", child.getTalukaId());
+        columns.set("talukaName", child.getTalukaName());
+        columns.set("healthBlockId", child.getHealthBlockId());
+        columns.set("healthBlockName", child.getHealthBlockName());
+        columns.set("phcId", child.getPhcId());
+        columns.set("phcName", child.getPhcName());
+        columns.set("subcentreId", child.getSubcentreId());
+        columns.set("subcentreName", child.getSubcentreName());
+        columns.set("villageId", child.getVillageId());
+        columns.set("villageName", child.getVillageName());
+        columns.set("yr", child.getYr());
+        columns.set("cityMaholla", child.getCityMaholla());
+        columns.set("gPVillage", child.getgPVillage());
+        columns.set("address", child.getAddress());
+        columns.set("idNo", child.getIdNo());
+        columns.set("name", child.getName());
+        columns.set("motherName", child.getMotherName());
+        columns.set("mCTSMotherIDNo", child.getMotherId());
+        columns.set("phoneNumberWhom", child.getPhoneNumberWhom());
+        columns.set("mobileNo", child.getMobileNo());
+        columns.set("birthDate", child.getBirthDate());
+        columns.set("registrationDate", child.getRegistrationDate());
+        columns.set("placeOfDelivery", child.getPlaceOfDelivery());
+        columns.set("bloodGroup", child.getBloodGroup());
+        columns.set("caste", child.getCaste());
+        columns.set("subcenterName1", child.getSubcenterName1());
+        columns.set("aNMName", child.getaNMName());
+        columns.set("aNMPhone", child.getaNMPhone());
+        columns.set("ashaName", child.getAshaName());
+        columns.set("ashaPhone", child.getAshaPhone());
+        columns.set("bCGDt", child.getbCGDt());
+        columns.set("oPV0Dt", child.getoPV0Dt());
+        columns.set("hepatitisB1Dt", child.getHepatitisB1Dt());
+        columns.set("dPT1Dt", child.getdPT1Dt());
+        columns.set("oPV1Dt", child.getoPV1Dt());
+        columns.set("hepatitisB2Dt", child.getHepatitisB2Dt());
+        columns.set("dPT2Dt", child.getdPT2Dt());
+        columns.set("oPV2Dt", child.getoPV2Dt());
+        columns.set("hepatitisB3Dt", child.getHepatitisB3Dt());
+        columns.set("dPT3Dt", child.getdPT3Dt());
+        columns.set("oPV3Dt", child.getoPV3Dt());
+        columns.set("hepatitisB4Dt", child.getHepatitisB4Dt());
+        columns.set("measlesDt", child.getMeaslesDt());
+        columns.set("vitADose1Dt", child.getVitADose1Dt());
+        columns.set("mRDt", child.getmRDt());
+        columns.set("dPTBoosterDt", child.getdPTBoosterDt());
+        columns.set("oPVBoosterDt", child.getoPVBoosterDt());
+        columns.set("vitADose2Dt", child.getVitADose2Dt());
+        columns.set("vitADose3Dt", child.getVitADose3Dt());
+        columns.set("jEDt", child.getjEDt());
+        columns.set("vitADose9Dt", child.getVitADose9Dt());
+        columns.set("dT5Dt", child.getdT5Dt());
+        columns.set("tT10Dt", child.gettT10Dt());
+        columns.set("tT16Dt", child.gettT16Dt());
+        columns.set("cLDRegDATE", child.getcLDRegDATE());
+        columns.set("sex", child.getSex());
+        columns.set("vitADose5Dt", child.getVitADose5Dt());
+        columns.set("vitADose6Dt", child.getVitADose6Dt());
+        columns.set("vitADose7Dt", child.getVitADose7Dt());
+        columns.set("vitADose8Dt", child.getVitADose8Dt());
+        columns.set("lastUpdateDate", child.getLastUpdateDate());
+        columns.set("remarks", child.getRemarks());
+        columns.set("aNMID", child.getaNMID());
+        columns.set("ashaID", child.getAshaID());
+        columns.set("createdBy", child.getCreatedBy());
+        columns.set("updatedBy", child.getUpdatedBy());
+        columns.set("measles2Dt", child.getMeasles2Dt());
+        columns.set("weightOfChild", child.getWeightOfChild());
+        columns.set("childAadhaarNo", child.getChildAadhaarNo());
+        columns.set("childEID", child.getChildEID());
+        columns.set("childEIDTime", child.getChildEIDTime());
+        columns.set("fatherName", child.getFatherName());
+        columns.set("birthCertificateNumber", child.getBirthCertificateNumber());
+        columns.set("entryType", child.getEntryType());
+        columns.set("source", child.getSource());
+        columns.set("accepted", child.getAccepted());
+        columns.set("rejectionReason", child.getRejectionReason());
+        columns.set("action", child.getAction());
     }
 
-    private static String validateName (String name){
-        if(name == null) return null;
-        name = name.replace("?" , "\\?").replace("\\" , "\\\\");
-        return StringEscapeUtils.escapeSql(name);
+    private static void bindRch(ChildImportRejection child, BulkWriter.Row columns) {
+        columns.set("subcentreId", child.getSubcentreId());
+        columns.set("subcentreName", child.getSubcentreName());
+        columns.set("villageId", child.getVillageId());
+        columns.set("villageName", child.getVillageName());
+        columns.set("name", child.getName());
+        columns.set("mobileNo", child.getMobileNo());
+        columns.set("stateId", child.getStateId());
+        columns.set("districtId", child.getDistrictId());
+        columns.set("districtName", child.getDistrictName());
+        columns.set("talukaId", child.getTalukaId());
+        columns.set("talukaName", child.getTalukaName());
+        columns.set("healthBlockId", child.getHealthBlockId());
+        columns.set("healthBlockName", child.getHealthBlockName());
+        columns.set("phcId", child.getPhcId());
+        columns.set("phcName", child.getPhcName());
+        columns.set("birthDate", child.getBirthDate());
+        columns.set("registrationDate", child.getRegistrationDate());
+        columns.set("rchAshaId", StringUtils.trimToNull(child.getRchAshaId()));
+        columns.set("registrationNo", child.getRegistrationNo());
+        columns.set("entryType", child.getEntryType());
+        columns.set("idNo", child.getIdNo());
+        columns.set("mCTSMotherIDNo", child.getmCTSMotherIDNo());
+        columns.set("rCHMotherIDNo", child.getMotherId());
+        columns.set("execDate", child.getExecDate());
+        columns.set("source", child.getSource());
+        columns.set("accepted", child.getAccepted());
+        columns.set("rejectionReason", child.getRejectionReason());
+        columns.set("action", child.getAction());
     }
 
     private static ChildImportRejection setNewData1(ChildImportRejection childImportRejection, ChildImportRejection childImportRejection1) {
@@ -1,52 +1,48 @@
 package org.motechproject.nms.rejectionhandler.service.impl;
 
-import org.motechproject.mds.query.SqlQueryExecution;
 import org.motechproject.nms.rejectionhandler.domain.DistrictImportRejection;
 import org.motechproject.nms.rejectionhandler.repository.DistrictRejectionDataService;
 import org.motechproject.nms.rejectionhandler.service.DistrictRejectionService;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.motechproject.nms.utils.BulkWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import javax.jdo.Query;
 import javax.jdo.annotations.Transactional;
+import java.util.List;
 
 @Service("districtRejectionService")
 public class DistrictRejectionServiceImpl implements DistrictRejectionService {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(DistrictRejectionServiceImpl.class);
+    private static final int BATCH_SIZE = 5000;
+
+    private static final BulkWriter<DistrictImportRejection> WRITER = BulkWriter
+            .<DistrictImportRejection>insertInto("nms_district_rejects", DistrictImportRejection.class)
+            .columns("stateId", "districtCode", "districtName", "accepted", "rejectionReason", "stateCode", "mddsCode")
+            .motechAudit()
+            .now("creationDate", "modificationDate")
+            .updateOnDuplicateKey("districtName", "accepted", "rejectionReason", "modificationDate", "modifiedBy",
+                    "stateCode", "mddsCode")
+            .binder(new BulkWriter.RowBinder<DistrictImportRejection>() {
+                @Override
+                public void bind(DistrictImportRejection district, BulkWriter.Row columns) {
+                    columns.set("stateId", district.getStateId())
+                            .set("districtCode", district.getDistrictCode())
+                            .set("districtName", district.getDistrictName())
+                            .set("accepted", district.getAccepted())
+                            .set("rejectionReason", district.getRejectionReason())
+                            .set("stateCode", district.getStateCode())
+                            .set("mddsCode", district.getMddsCode());
+                }
+            })
+            .build();
 
     @Autowired
-    DistrictRejectionDataService districtRejectionDataService;
+    private DistrictRejectionDataService districtRejectionDataService;
 
     @Override
     @Transactional
-    public Long saveRejectedDistrictInBulk(String rejectedDistrictValues) {
-        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
-            @Override
-            public String getSqlQuery() {
-                String query = "INSERT into nms_district_rejects (`stateId`, `districtCode`, `districtName`,`accepted`, `rejectionReason`, `creator`, `modifiedBy`, `owner`, `creationDate`, `modificationDate`, `stateCode`, `mddsCode` ) VALUES " +
-                        rejectedDistrictValues + " ON DUPLICATE KEY UPDATE " +
-                        " districtName = VALUES(districtName), accepted = VALUES(accepted), rejectionReason = VALUES(rejectionReason),modificationDate = VALUES(modificationDate), modifiedBy = VALUES(modifiedBy), stateCode=VALUES(stateCode), mddsCode=VALUES(mddsCode) ";
-                LOGGER.info("Printing Query for rejected District: "+ query);
-                return query;
-
-            }
-            @Override
-            public Long execute(Query query) {
-                query.setClass(DistrictImportRejection.class);
-                return (Long) query.execute();
-            }
-
-        };
-        Long rejectedDistricts = 0L;
-
-        if(!rejectedDistrictValues.isEmpty()){
-            rejectedDistricts = districtRejectionDataService.executeSQLQuery(queryExecution);
-        }
-
-        return rejectedDistricts;
+    public Long saveRejectedDistrictInBulk(List<DistrictImportRejection> rejectedDistricts) {
+        return WRITER.write(districtRejectionDataService, rejectedDistricts, BATCH_SIZE);
     }
 
 }
@@ -1,52 +1,50 @@
 package org.motechproject.nms.rejectionhandler.service.impl;
 
-import org.motechproject.mds.query.SqlQueryExecution;
 import org.motechproject.nms.rejectionhandler.domain.HealthBlockImportRejection;
 import org.motechproject.nms.rejectionhandler.repository.HealthBlockRejectionDataService;
 import org.motechproject.nms.rejectionhandler.service.HealthBlockRejectionService;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.motechproject.nms.utils.BulkWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import javax.jdo.Query;
 import javax.jdo.annotations.Transactional;
+import java.util.List;
 
 @Service("healthBlockRejectionService")
 public class HealthBlockRejectionServiceImpl implements HealthBlockRejectionService {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(HealthBlockRejectionServiceImpl.class);
+    private static final int BATCH_SIZE = 5000;
+
+    private static final BulkWriter<HealthBlockImportRejection> WRITER = BulkWriter
+            .<HealthBlockImportRejection>insertInto("nms_health_block_rejects", HealthBlockImportRejection.class)
+            .columns("stateId", "districtCode", "talukaCode", "healthBlockCode", "healthBlockName", "accepted",
+                    "rejectionReason", "mddsCode")
+            .motechAudit()
+            .now("creationDate", "modificationDate")
+            .updateOnDuplicateKey("districtCode", "talukaCode", "healthBlockName", "accepted", "rejectionReason",
+                    "modificationDate", "modifiedBy", "mddsCode")
+            .binder(new BulkWriter.RowBinder<HealthBlockImportRejection>() {
+                @Override
+                public void bind(HealthBlockImportRejection healthBlock, BulkWriter.Row columns) {
+                    columns.set("stateId", healthBlock.getStateId())
+                            .set("districtCode", healthBlock.getDistrictCode())
+                            .set("talukaCode", healthBlock.getTalukaCode())
+                            .set("healthBlockCode", healthBlock.getHealthBlockCode())
+                            .set("healthBlockName", healthBlock.getHealthBlockName())
+                            .set("accepted", healthBlock.getAccepted())
+                            .set("rejectionReason", healthBlock.getRejectionReason())
+                            .set("mddsCode", healthBlock.getMddsCode());
+                }
+            })
+            .build();
 
     @Autowired
     private HealthBlockRejectionDataService healthBlockRejectionDataService;
 
     @Override
     @Transactional
-    public Long saveRejectedHealthBlockInBulk(String rejectedHealthBlockValues) {
-        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
-            @Override
-            public String getSqlQuery() {
-                String query = "INSERT into nms_health_block_rejects (`stateId`, `districtCode`, `talukaCode`, `healthBlockCode`, `healthBlockName`, " +
-                        " `accepted`, `rejectionReason`, `creator`, `modifiedBy`, `owner`, `creationDate`, `modificationDate`, `mddsCode`) VALUES " +
-                        rejectedHealthBlockValues + " ON DUPLICATE KEY UPDATE " +
-                        "districtCode = VALUES(districtCode), talukaCode = VALUES(talukaCode), healthBlockName = VALUES(healthBlockName), accepted = VALUES(accepted), rejectionReason = VALUES(rejectionReason),modificationDate = VALUES(modificationDate), modifiedBy = VALUES(modifiedBy), mddsCode=VALUES(mddsCode) ";
-                LOGGER.info("Printing Query for rejected HB: "+ query);
-                return query;
-
-            }
-            @Override
-            public Long execute(Query query) {
-                query.setClass(HealthBlockImportRejection.class);
-                return (Long) query.execute();
-            }
-
-        };
-        Long rejectedHealthBlock = 0L;
-
-        if(!rejectedHealthBlockValues.isEmpty()){
-            rejectedHealthBlock = healthBlockRejectionDataService.executeSQLQuery(queryExecution);
-        }
-        return rejectedHealthBlock;
+    public Long saveRejectedHealthBlockInBulk(List<HealthBlockImportRejection> rejectedHealthBlocks) {
+        return WRITER.write(healthBlockRejectionDataService, rejectedHealthBlocks, BATCH_SIZE);
     }
 
 }
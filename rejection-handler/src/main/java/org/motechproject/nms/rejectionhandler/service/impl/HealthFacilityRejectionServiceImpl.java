@@ -1,51 +1,52 @@
 package org.motechproject.nms.rejectionhandler.service.impl;
 
-import org.motechproject.mds.query.SqlQueryExecution;
 import org.motechproject.nms.rejectionhandler.domain.HealthFacilityImportRejection;
 import org.motechproject.nms.rejectionhandler.repository.HealthFacilityRejectionDataService;
 import org.motechproject.nms.rejectionhandler.service.HealthFacilityRejectionService;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.motechproject.nms.utils.BulkWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import javax.jdo.Query;
 import javax.jdo.annotations.Transactional;
+import java.util.List;
 
 @Service("healthFacilityRejectionService")
 public class HealthFacilityRejectionServiceImpl implements HealthFacilityRejectionService {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(HealthFacilityRejectionServiceImpl.class);
+    private static final int BATCH_SIZE = 5000;
+
+    private static final BulkWriter<HealthFacilityImportRejection> WRITER = BulkWriter
+            .<HealthFacilityImportRejection>insertInto("nms_health_facility_rejects",
+                    HealthFacilityImportRejection.class)
+            .columns("stateId", "districtCode", "talukaCode", "healthBlockCode", "healthFacilityCode",
+                    "healthFacilityName", "accepted", "rejectionReason", "healthfacilityType")
+            .motechAudit()
+            .now("creationDate", "modificationDate")
+            .updateOnDuplicateKey("districtCode", "talukaCode", "healthBlockCode", "healthFacilityName", "accepted",
+                    "rejectionReason", "modificationDate", "modifiedBy", "healthfacilityType")
+            .binder(new BulkWriter.RowBinder<HealthFacilityImportRejection>() {
+                @Override
+                public void bind(HealthFacilityImportRejection healthFacility, BulkWriter.Row columns) {
+                    columns.set("stateId", healthFacility.getStateId())
+                            .set("districtCode", healthFacility.getDistrictCode())
+                            .set("talukaCode", healthFacility.getTalukaCode())
+                            .set("healthBlockCode", healthFacility.getHealthBlockCode())
+                            .set("healthFacilityCode", healthFacility.getHealthFacilityCode())
+                            .set("healthFacilityName", healthFacility.getHealthFacilityName())
+                            .set("accepted", healthFacility.getAccepted())
+                            .set("rejectionReason", healthFacility.getRejectionReason())
+                            .set("healthfacilityType", healthFacility.getHealthfacilityType());
+                }
+            })
+            .build();
 
     @Autowired
-    HealthFacilityRejectionDataService healthFacilityRejectionDataService;
+    private HealthFacilityRejectionDataService healthFacilityRejectionDataService;
 
     @Override
     @Transactional
-    public Long saveRejectedHealthFacilityInBulk(String rejectedHealthFacilityValues) {
-        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
-            @Override
-            public String getSqlQuery() {
-                String query = "INSERT into nms_health_facility_rejects (`stateId`, `districtCode`, `talukaCode`, `healthBlockCode`, `healthFacilityCode`, `healthFacilityName`," +
-                        " `accepted`, `rejectionReason`, `creator`, `modifiedBy`, `owner`, `creationDate`, `modificationDate`, `healthfacilityType` ) VALUES " +
-                        rejectedHealthFacilityValues + " ON DUPLICATE KEY UPDATE " +
-                        "districtCode = VALUES(districtCode), talukaCode = VALUES(talukaCode),healthBlockCode = VALUES(healthBlockCode), healthFacilityName = VALUES(healthFacilityName), accepted = VALUES(accepted), rejectionReason = VALUES(rejectionReason),modificationDate = VALUES(modificationDate), modifiedBy = VALUES(modifiedBy), healthfacilityType = VALUES(healthfacilityType) ";
-                LOGGER.info("Printing Query for rejected HF: "+ query);
-                return query;
-
-            }
-            @Override
-            public Long execute(Query query) {
-                query.setClass(HealthFacilityImportRejection.class);
-                return (Long) query.execute();
-            }
-        };
-
-        Long rejectedHealthFacility = 0L;
-
-        if(!rejectedHealthFacilityValues.isEmpty()){
-            rejectedHealthFacility = healthFacilityRejectionDataService.executeSQLQuery(queryExecution);
-        }
-        return rejectedHealthFacility;
+    public Long saveRejectedHealthFacilityInBulk(List<HealthFacilityImportRejection> rejectedHealthFacilities) {
+        return WRITER.write(healthFacilityRejectionDataService, rejectedHealthFacilities, BATCH_SIZE);
     }
+
 }
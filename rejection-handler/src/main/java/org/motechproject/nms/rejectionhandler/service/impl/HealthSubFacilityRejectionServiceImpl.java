@@ -1,52 +1,52 @@
 package org.motechproject.nms.rejectionhandler.service.impl;
 
-import org.motechproject.mds.query.SqlQueryExecution;
 import org.motechproject.nms.rejectionhandler.domain.HealthSubFacilityImportRejection;
 import org.motechproject.nms.rejectionhandler.repository.HealthSubFacilityRejectionDataService;
 import org.motechproject.nms.rejectionhandler.service.HealthSubFacilityRejectionService;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.motechproject.nms.utils.BulkWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import javax.jdo.Query;
 import javax.jdo.annotations.Transactional;
+import java.util.List;
 
 @Service("healthSubFacilityRejectionService")
 public class HealthSubFacilityRejectionServiceImpl implements HealthSubFacilityRejectionService {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(HealthSubFacilityRejectionServiceImpl.class);
+    private static final int BATCH_SIZE = 5000;
+
+    private static final BulkWriter<HealthSubFacilityImportRejection> WRITER = BulkWriter
+            .<HealthSubFacilityImportRejection>insertInto("nms_health_sub_facility_rejects",
+                    HealthSubFacilityImportRejection.class)
+            .columns("stateId", "districtCode", "talukaCode", "healthFacilityCode", "healthSubFacilityCode",
+                    "healthSubFacilityName", "accepted", "rejectionReason")
+            .motechAudit()
+            .now("creationDate", "modificationDate")
+            .updateOnDuplicateKey("districtCode", "talukaCode", "healthFacilityCode", "healthSubFacilityName",
+                    "accepted", "rejectionReason", "modificationDate", "modifiedBy")
+            .binder(new BulkWriter.RowBinder<HealthSubFacilityImportRejection>() {
+                @Override
+                public void bind(HealthSubFacilityImportRejection healthSubFacility, BulkWriter.Row columns) {
+                    columns.set("stateId", healthSubFacility.getStateId())
+                            .set("districtCode", healthSubFacility.getDistrictCode())
+                            .set("talukaCode", healthSubFacility.getTalukaCode())
+                            .set("healthFacilityCode", healthSubFacility.getHealthFacilityCode())
+                            .set("healthSubFacilityCode", healthSubFacility.getHealthSubFacilityCode())
+                            .set("healthSubFacilityName", healthSubFacility.getHealthSubFacilityName())
+                            .set("accepted", healthSubFacility.getAccepted())
+                            .set("rejectionReason", healthSubFacility.getRejectionReason());
+                }
+            })
+            .build();
 
     @Autowired
     private HealthSubFacilityRejectionDataService healthSubFacilityRejectionDataService;
 
     @Override
     @Transactional
-    public Long saveRejectedHealthSubFacilityInBulk(String rejectedHealthSubFacilityValues) {
-        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
-            @Override
-            public String getSqlQuery() {
-                String query = "INSERT into nms_health_sub_facility_rejects (`stateId`, `districtCode`, `talukaCode`, `healthFacilityCode`, `healthSubFacilityCode`, `healthSubFacilityName`," +
-                        " `accepted`, `rejectionReason`, `creator`, `modifiedBy`, `owner`, `creationDate`, `modificationDate`) VALUES " +
-                        rejectedHealthSubFacilityValues + " ON DUPLICATE KEY UPDATE " +
-                        "districtCode = VALUES(districtCode), talukaCode = VALUES(talukaCode),healthFacilityCode = VALUES(healthFacilityCode), healthSubFacilityName = VALUES(healthSubFacilityName), accepted = VALUES(accepted), rejectionReason = VALUES(rejectionReason),modificationDate = VALUES(modificationDate), modifiedBy = VALUES(modifiedBy) ";
-                LOGGER.info("Printing Query for rejected HSF: "+ query);
-                return query;
-            }
-            @Override
-            public Long execute(Query query) {
-                query.setClass(HealthSubFacilityImportRejection.class);
-                return (Long) query.execute();
-            }
-
-        };
-        Long rejectedHealthSubFacility = 0L;
-
-        if(!rejectedHealthSubFacilityValues.isEmpty()){
-            rejectedHealthSubFacility = healthSubFacilityRejectionDataService.executeSQLQuery(queryExecution);
-
-        }
-        return rejectedHealthSubFacility;
+    public Long saveRejectedHealthSubFacilityInBulk(List<HealthSubFacilityImportRejection>
+            rejectedHealthSubFacilities) {
+        return WRITER.write(healthSubFacilityRejectionDataService, rejectedHealthSubFacilities, BATCH_SIZE);
     }
 
 }
@@ -1,15 +1,14 @@
 package org.motechproject.nms.rejectionhandler.service.impl;
 
-import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.commons.lang.StringUtils;
 import org.datanucleus.store.rdbms.query.ForwardQueryResult;
 import org.joda.time.DateTime;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
 import org.motechproject.mds.query.SqlQueryExecution;
 import org.motechproject.metrics.service.Timer;
 import org.motechproject.nms.rejectionhandler.domain.MotherImportRejection;
 import org.motechproject.nms.rejectionhandler.repository.MotherRejectionDataService;
 import org.motechproject.nms.rejectionhandler.service.MotherRejectionService;
+import org.motechproject.nms.utils.BulkWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -30,11 +29,41 @@ import static org.motechproject.nms.tracking.utils.TrackChangeUtils.LOGGER;
 public class MotherRejectionServiceImpl implements MotherRejectionService {
 
     private static final String QUOTATION = "'";
-    private static final String QUOTATION_COMMA = "', ";
-    private static final String MOTECH_STRING = "'motech', ";
     private static final String SQL_QUERY_LOG = "SQL QUERY: {}";
     private static final String MOTHER_LOG_STRING = "List of mother rejects in {}";
-    private static final String DATE_FORMAT_STRING = "yyyy-MM-dd HH:mm:ss";
+    private static final String TABLE = "nms_mother_rejects";
+    private static final String MOTECH = "motech";
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String[] LOCATION_COLUMNS = {
+            "stateId", "districtId", "districtName", "talukaId", "talukaName", "healthBlockId", "healthBlockName",
+            "phcId", "phcName", "subcentreId", "subcentreName", "villageId", "villageName"
+    };
+
+    private static final String[] MCTS_COLUMNS = {
+            "yr", "gPVillage", "address", "idNo", "name", "husbandName", "phoneNumberWhom", "mobileNo", "birthDate",
+            "jSYBeneficiary", "caste", "subcenterName1", "aNMName", "aNMPhone", "ashaName", "ashaPhone",
+            "deliveryLnkFacility", "facilityName", "lmpDate", "aNC1Date", "aNC2Date", "aNC3Date", "aNC4Date",
+            "tT1Date", "tT2Date", "tTBoosterDate", "iFA100GivenDate", "anemia", "aNCComplication", "rTISTI",
+            "dlyDate", "dlyPlaceHomeType", "dlyPlacePublic", "dlyPlacePrivate", "dlyType", "dlyComplication",
+            "dischargeDate", "jSYPaidDate", "abortion", "pNCHomeVisit", "pNCComplication", "pPCMethod", "pNCCheckup",
+            "outcomeNos", "child1Name", "child1Sex", "child1Wt", "child1Brestfeeding", "child2Name", "child2Sex",
+            "child2Wt", "child2Brestfeeding", "child3Name", "child3Sex", "child3Wt", "child3Brestfeeding",
+            "child4Name", "child4Sex", "child4Wt", "child4Brestfeeding", "age", "mTHRREGDATE", "lastUpdateDate",
+            "remarks", "aNMID", "aSHAID", "callAns", "noCallReason", "noPhoneReason", "createdBy", "updatedBy",
+            "aadharNo", "bPLAPL", "eID", "eIDTime", "entryType", "source", "accepted", "rejectionReason", "action"
+    };
+
+    private static final String[] RCH_COLUMNS = {
+            "idNo", "registrationNo", "caseNo", "name", "mobileNo", "registrationDate", "rchAshaId", "lmpDate",
+            "birthDate", "abortionType", "deliveryOutcomes", "entryType", "execDate", "source", "accepted",
+            "rejectionReason", "action"
+    };
+
+    private static final BulkWriter<MotherImportRejection> MCTS_INSERT = rejectsWriter(true, false);
+    private static final BulkWriter<MotherImportRejection> MCTS_UPDATE = rejectsWriter(true, true);
+    private static final BulkWriter<MotherImportRejection> RCH_INSERT = rejectsWriter(false, false);
+    private static final BulkWriter<MotherImportRejection> RCH_UPDATE = rejectsWriter(false, true);
 
     @Autowired
     private MotherRejectionDataService motherRejectionDataService;
@@ -160,473 +189,192 @@ public class MotherRejectionServiceImpl implements MotherRejectionService {
 
     @Override
     public Long mctsBulkInsert(final List<MotherImportRejection> createObjects) {
-        Timer queryTimer = new Timer();
-
-        @SuppressWarnings("unchecked")
-        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
-
-            @Override
-            public String getSqlQuery() {
-                String query = "INSERT INTO nms_mother_rejects (stateId, districtId, districtName, talukaId, talukaName," +
-                        " healthBlockId, healthBlockName, phcId, phcName, subcentreId, subcentreName, villageId," +
-                        " villageName, yr, gPVillage, address, idNo, name, husbandName, phoneNumberWhom, mobileNo, birthDate," +
-                        " jSYBeneficiary, caste, subcenterName1, aNMName, aNMPhone, ashaName, ashaPhone, deliveryLnkFacility," +
-                        " facilityName, lmpDate, aNC1Date, aNC2Date, aNC3Date, aNC4Date, tT1Date, tT2Date, tTBoosterDate," +
-                        " iFA100GivenDate, anemia, aNCComplication, rTISTI, dlyDate, dlyPlaceHomeType, dlyPlacePublic," +
-                        " dlyPlacePrivate, dlyType, dlyComplication, dischargeDate, jSYPaidDate, abortion, pNCHomeVisit," +
-                        " pNCComplication, pPCMethod, pNCCheckup, outcomeNos, child1Name, child1Sex, child1Wt, child1Brestfeeding," +
-                        " child2Name, child2Sex, child2Wt, child2Brestfeeding, child3Name, child3Sex, child3Wt, child3Brestfeeding," +
-                        " child4Name, child4Sex, child4Wt, child4Brestfeeding, age, mTHRREGDATE, lastUpdateDate, remarks, aNMID," +
-                        " aSHAID, callAns, noCallReason, noPhoneReason, createdBy, updatedBy, aadharNo, bPLAPL, eID, eIDTime," +
-                        " entryType, source, accepted, rejectionReason, action, creator, modifiedBy, creationDate," +
-                        " modificationDate) values " +
-                        mctsMotherToQuerySet(createObjects);
-
-                LOGGER.debug(SQL_QUERY_LOG, query);
-                return query;
-            }
-
-            @Override
-            public Long execute(Query query) {
-                query.setClass(MotherImportRejection.class);
-                try {
-                    return (Long) query.execute();
-                } catch (Exception e) {
-                    LOGGER.debug("Error while running Mother Rejection Bulk Insert", e);
-                    return 0L;
-                }
-            }
-        };
-
-        Long insertedNo = motherRejectionDataService.executeSQLQuery(queryExecution);
-        LOGGER.debug(MOTHER_LOG_STRING, queryTimer.time());
-        return insertedNo;
+        return MCTS_INSERT.write(motherRejectionDataService, createObjects, BATCH_SIZE);
     }
 
     @Override
     public Long mctsBulkUpdate(final List<MotherImportRejection> updateObjects) {
-        Timer queryTimer = new Timer();
-
-        @SuppressWarnings("unchecked")
-        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
-
-            @Override
-            public String getSqlQuery() {
-                String query = "INSERT INTO nms_mother_rejects (id, stateId, districtId, districtName, talukaId, talukaName," +
-                        " healthBlockId, healthBlockName, phcId, phcName, subcentreId, subcentreName, villageId, villageName, yr," +
-                        " gPVillage, address, idNo, name, husbandName, phoneNumberWhom, mobileNo, birthDate, jSYBeneficiary, caste," +
-                        " subcenterName1, aNMName, aNMPhone, ashaName, ashaPhone, deliveryLnkFacility, facilityName, lmpDate, aNC1Date," +
-                        " aNC2Date, aNC3Date, aNC4Date, tT1Date, tT2Date, tTBoosterDate, iFA100GivenDate, anemia, aNCComplication," +
-                        " rTISTI, dlyDate, dlyPlaceHomeType, dlyPlacePublic, dlyPlacePrivate, dlyType, dlyComplication, dischargeDate," +
-                        " jSYPaidDate, abortion, pNCHomeVisit, pNCComplication, pPCMethod, pNCCheckup, outcomeNos, child1Name," +
-                        " child1Sex, child1Wt, child1Brestfeeding, child2Name, child2Sex, child2Wt, child2Brestfeeding, child3Name," +
-                        " child3Sex, child3Wt, child3Brestfeeding, child4Name, child4Sex, child4Wt, child4Brestfeeding, age," +
-                        " mTHRREGDATE, lastUpdateDate, remarks, aNMID, aSHAID, callAns, noCallReason, noPhoneReason, createdBy," +
-                        " updatedBy, aadharNo, bPLAPL, eID, eIDTime, entryType, source, accepted, rejectionReason, action, creator," +
-                        " modifiedBy, creationDate, modificationDate) values " +
-                        mctsMotherUpdateQuerySet(updateObjects) +
-                        " ON DUPLICATE KEY UPDATE " +
-                        " stateId = VALUES(stateId),  districtId = VALUES(districtId),  districtName = VALUES(districtName)," +
-                        " talukaId = VALUES(talukaId),  talukaName = VALUES(talukaName),  healthBlockId = VALUES(healthBlockId)," +
-                        " healthBlockName = VALUES(healthBlockName),  phcId = VALUES(phcId),  phcName = VALUES(phcName)," +
-                        " subcentreId = VALUES(subcentreId),  subcentreName = VALUES(subcentreName), villageId = VALUES(villageId)," +
-                        " villageName = VALUES(villageName),  yr = VALUES(yr), gPVillage = VALUES(gPVillage), address = VALUES(address)," +
-                        " idNo = VALUES(idNo), name = VALUES(name),  husbandName = VALUES(husbandName)," +
-                        " phoneNumberWhom = VALUES(phoneNumberWhom), mobileNo = VALUES(mobileNo),  birthDate = VALUES(birthDate)," +
-                        " jSYBeneficiary = VALUES(jSYBeneficiary), caste = VALUES(caste),  subcenterName1 = VALUES(subcenterName1)," +
-                        " aNMName = VALUES(aNMName), aNMPhone = VALUES(aNMPhone),  ashaName = VALUES(ashaName)," +
-                        " ashaPhone = VALUES(ashaPhone), deliveryLnkFacility = VALUES(deliveryLnkFacility)," +
-                        " facilityName = VALUES(facilityName),  lmpDate = VALUES(lmpDate), aNC1Date = VALUES(aNC1Date)," +
-                        " aNC2Date = VALUES(aNC2Date),  aNC3Date = VALUES(aNC3Date), aNC4Date = VALUES(aNC4Date)," +
-                        " tT1Date = VALUES(tT1Date),  tT2Date = VALUES(tT2Date), tTBoosterDate = VALUES(tTBoosterDate)," +
-                        " iFA100GivenDate = VALUES(iFA100GivenDate),  anemia = VALUES(anemia), aNCComplication = VALUES(aNCComplication)," +
-                        " rTISTI = VALUES(rTISTI),  dlyDate = VALUES(dlyDate), dlyPlaceHomeType = VALUES(dlyPlaceHomeType)," +
-                        " dlyPlacePublic = VALUES(dlyPlacePublic),  dlyPlacePrivate = VALUES(dlyPlacePrivate), dlyType = VALUES(dlyType)," +
-                        " dlyComplication = VALUES(dlyComplication),  dischargeDate = VALUES(dischargeDate), jSYPaidDate = VALUES(jSYPaidDate)," +
-                        " abortion = VALUES(abortion),  pNCHomeVisit = VALUES(pNCHomeVisit), pNCComplication = VALUES(pNCComplication)," +
-                        " pPCMethod = VALUES(pPCMethod),  pNCCheckup = VALUES(pNCCheckup), outcomeNos = VALUES(outcomeNos)," +
-                        " child1Name = VALUES(child1Name),  child1Sex = VALUES(child1Sex), child1Wt = VALUES(child1Wt)," +
-                        " child1Brestfeeding = VALUES(child1Brestfeeding), child2Name = VALUES(child2Name)," +
-                        " child2Sex = VALUES(child2Sex), child2Wt = VALUES(child2Wt), child2Brestfeeding = VALUES(child2Brestfeeding)," +
-                        " child3Name = VALUES(child3Name),  child3Sex = VALUES(child3Sex), child3Wt = VALUES(child3Wt)," +
-                        " child3Brestfeeding = VALUES(child3Brestfeeding), child4Name = VALUES(child4Name)," +
-                        " child4Sex = VALUES(child4Sex), child4Wt = VALUES(child4Wt), child4Brestfeeding = VALUES(child4Brestfeeding)," +
-                        " age = VALUES(age), mTHRREGDATE = VALUES(mTHRREGDATE), lastUpdateDate = VALUES(lastUpdateDate)," +
-                        " remarks = VALUES(remarks), aNMID = VALUES(aNMID), aSHAID = VALUES(aSHAID), callAns = VALUES(callAns)," +
-                        " noCallReason = VALUES(noCallReason), noPhoneReason = VALUES(noPhoneReason), createdBy = VALUES(createdBy)," +
-                        " updatedBy = VALUES(updatedBy), aadharNo = VALUES(aadharNo), bPLAPL = VALUES(bPLAPL), eID = VALUES(eID)," +
-                        " eIDTime = VALUES(eIDTime), entryType = VALUES(entryType), source = VALUES(source)," +
-                        " accepted = VALUES(accepted), rejectionReason = VALUES(rejectionReason), action = VALUES(action)," +
-                        " creator = VALUES(creator), modifiedBy = VALUES(modifiedBy), creationDate = VALUES(creationDate)," +
-                        " modificationDate = VALUES(modificationDate)";
-                LOGGER.debug(SQL_QUERY_LOG, query);
-                return query;
-            }
-
-            @Override
-            public Long execute(Query query) {
-
-                query.setClass(MotherImportRejection.class);
-                try {
-                    return (Long) query.execute();
-                } catch (Exception e) {
-                    LOGGER.debug("Error while running Mother Rejection Bulk Update", e);
-                    return 0L;
-                }
-            }
-        };
-
-        Long updatedNo = motherRejectionDataService.executeSQLQuery(queryExecution);
-        LOGGER.debug(MOTHER_LOG_STRING, queryTimer.time());
-        return updatedNo;
+        return MCTS_UPDATE.write(motherRejectionDataService, updateObjects, BATCH_SIZE);
     }
 
-
     @Override
     public Long rchBulkInsert(final List<MotherImportRejection> createObjects) {
-        Timer queryTimer = new Timer();
-
-        @SuppressWarnings("unchecked")
-        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
-
-            @Override
-            public String getSqlQuery() {
-                String query = "INSERT INTO nms_mother_rejects (stateId, districtId, districtName, talukaId, talukaName," +
-                        " healthBlockId, healthBlockName, phcId, phcName, subcentreId, subcentreName, villageId," +
-                        " villageName, idNo, registrationNo, caseNo, name, mobileNo, registrationDate, rchAshaId, lmpDate, birthDate, abortionType," +
-                        " deliveryOutcomes, entryType, execDate, source, accepted, rejectionReason, action, creator," +
-                        " modifiedBy, creationDate, modificationDate) " +
-                        "values  " +
-                        rchMotherToQuerySet(createObjects);
-
-                LOGGER.debug(SQL_QUERY_LOG, query);
-                return query;
-            }
-
-            @Override
-            public Long execute(Query query) {
-                query.setClass(MotherImportRejection.class);
-                try {
-                    return (Long) query.execute();
-                } catch (Exception e) {
-                    LOGGER.debug("Error while running Mother Rejection Bulk Insert", e);
-                    return 0L;
-                }
-            }
-        };
-
-        Long insertedNo = motherRejectionDataService.executeSQLQuery(queryExecution);
-        LOGGER.debug(MOTHER_LOG_STRING, queryTimer.time());
-        return insertedNo;
+        return RCH_INSERT.write(motherRejectionDataService, createObjects, BATCH_SIZE);
     }
 
     @Override
     public Long rchBulkUpdate(final List<MotherImportRejection> updateObjects) {
-        Timer queryTimer = new Timer();
-
-        @SuppressWarnings("unchecked")
-        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
-
-            @Override
-            public String getSqlQuery() {
-                String query = "INSERT INTO nms_mother_rejects (id, stateId, districtId, districtName, talukaId," +
-                        " talukaName, healthBlockId, healthBlockName, phcId, phcName, subcentreId, subcentreName," +
-                        " villageId, villageName, idNo, registrationNo, caseNo, name, mobileNo, registrationDate, rchAshaId, lmpDate, birthDate," +
-                        " abortionType, deliveryOutcomes, entryType, execDate, source, accepted, rejectionReason, action," +
-                        " creator, modifiedBy, creationDate, modificationDate)  " +
-                        "values  " +
-                        rchMotherUpdateQuerySet(updateObjects) +
-                        " ON DUPLICATE KEY UPDATE " +
-                        "stateId = VALUES(stateId), districtId = VALUES(districtId), districtName = VALUES(districtName)," +
-                        " talukaId = VALUES(talukaId), talukaName = VALUES(talukaName)," +
-                        " healthBlockId = VALUES(healthBlockId), healthBlockName = VALUES(healthBlockName), phcId = VALUES(phcId)," +
-                        " phcName = VALUES(phcName), subcentreId = VALUES(subcentreId), subcentreName = VALUES(subcentreName)," +
-                        " villageId = VALUES(villageId), villageName = VALUES(villageName), idNo = VALUES(idNo)," +
-                        " registrationNo = VALUES(registrationNo), caseNo = VALUES(caseNo), name = VALUES(name)," +
-                        " mobileNo = VALUES(mobileNo), registrationDate = VALUES(registrationDate) , rchAshaId = VALUES(rchAshaId), lmpDate = VALUES(lmpDate), birthDate = VALUES(birthDate)," +
-                        " abortionType = VALUES(abortionType), deliveryOutcomes = VALUES(deliveryOutcomes)," +
-                        " entryType = VALUES(entryType), execDate = VALUES(execDate), source = VALUES(source)," +
-                        " accepted = VALUES(accepted), rejectionReason = VALUES(rejectionReason), action = VALUES(action)," +
-                        " creator = VALUES(creator), modifiedBy = VALUES(modifiedBy), creationDate = VALUES(creationDate)," +
-                        " modificationDate = VALUES(modificationDate)";
-
-                LOGGER.debug(SQL_QUERY_LOG, query);
-                return query;
-            }
-
-            @Override
-            public Long execute(Query query) {
-
-                query.setClass(MotherImportRejection.class);
-                try {
-                    return (Long) query.execute();
-                } catch (Exception e) {
-                    LOGGER.debug("Error while running Mother Rejection Bulk Update", e);
-                    return 0L;
-                }
-            }
-        };
-
-        Long updatedNo = motherRejectionDataService.executeSQLQuery(queryExecution);
-        LOGGER.debug(MOTHER_LOG_STRING, queryTimer.time());
-        return updatedNo;
-    }
-
-    private String rchMotherToQuerySet(List<MotherImportRejection> createObjects) {
-        StringBuilder stringBuilder = new StringBuilder();
-
-        DateTimeFormatter dateTimeFormatter = DateTimeFormat.forPattern(DATE_FORMAT_STRING);
-        DateTime dateTimeNow = new DateTime();
-
-        int i = 0;
-        for (MotherImportRejection mother: createObjects) {
-            if (i != 0) {
-                stringBuilder.append(", ");
-            }
-            stringBuilder.append("(");
-            stringBuilder = rchQueryHelper(stringBuilder, mother);
-            stringBuilder.append(MOTECH_STRING);
-            stringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION);
-            stringBuilder.append(")");
-            i++;
-        }
-        return stringBuilder.toString();
+        return RCH_UPDATE.write(motherRejectionDataService, updateObjects, BATCH_SIZE);
     }
 
-    private String mctsMotherToQuerySet(List<MotherImportRejection> createObjects) {
-        StringBuilder stringBuilder = new StringBuilder();
-
-        DateTimeFormatter dateTimeFormatter = DateTimeFormat.forPattern(DATE_FORMAT_STRING);
-        DateTime dateTimeNow = new DateTime();
-
-        int i = 0;
-        for (MotherImportRejection mother: createObjects) {
-            if (i != 0) {
-                stringBuilder.append(", ");
-            }
-            stringBuilder.append("(");
-            stringBuilder = mctsQueryHelper(stringBuilder, mother);
-            stringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION);
-            stringBuilder.append(")");
-            i++;
+    private static BulkWriter<MotherImportRejection> rejectsWriter(final boolean mcts, final boolean update) {
+        BulkWriter.Builder<MotherImportRejection> builder = BulkWriter
+                .<MotherImportRejection>insertInto(TABLE, MotherImportRejection.class)
+                .columns(LOCATION_COLUMNS)
+                .columns(mcts ? MCTS_COLUMNS : RCH_COLUMNS)
+                .constant("creator", MOTECH)
+                .constant("modifiedBy", MOTECH)
+                .failSoft();
+        if (update) {
+            builder.columns("id", "creationDate").now("modificationDate").updateOnDuplicateKey();
+        } else {
+            builder.now("creationDate", "modificationDate");
         }
-        return stringBuilder.toString();
-    }
-
-    private String rchMotherUpdateQuerySet(List<MotherImportRejection> updateObjects) {
-        StringBuilder stringBuilder = new StringBuilder();
-        int i = 0;
-        DateTime dateTimeNow = new DateTime();
-        DateTimeFormatter dateTimeFormatter = DateTimeFormat.forPattern(DATE_FORMAT_STRING);
-        for (MotherImportRejection mother: updateObjects) {
-            Long id = null;
-            String creationTime = "";
-            try {
-                Method method = mother.getClass().getMethod("getCreationDate");
-                DateTime dateTime = (DateTime) method.invoke(mother);
-                method = mother.getClass().getMethod("getId");
-                creationTime = dateTimeFormatter.print(dateTime);
-
-                id = (Long) method.invoke(mother);
-            } catch (IllegalAccessException|SecurityException|IllegalArgumentException|NoSuchMethodException|
-                    InvocationTargetException e) {
-                LOGGER.error("Ignoring creation date and setting as now");
-            }
-            if (i != 0) {
-                stringBuilder.append(", ");
+        return builder.binder(new BulkWriter.RowBinder<MotherImportRejection>() {
+            @Override
+            public void bind(MotherImportRejection mother, BulkWriter.Row row) {
+                if (update) {
+                    bindIdentity(mother, row);
+                }
+                bindLocations(mother, row);
+                if (mcts) {
+                    bindMcts(mother, row);
+                } else {
+                    bindRch(mother, row);
+                }
             }
-            stringBuilder.append("(");
-            stringBuilder.append(id + ", ");
-            stringBuilder = rchQueryHelper(stringBuilder, mother);
-            stringBuilder.append(MOTECH_STRING);
-            stringBuilder.append(QUOTATION + creationTime + QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION);
-            stringBuilder.append(")");
-            i++;
-        }
-        return stringBuilder.toString();
+        }).build();
     }
 
-    private String mctsMotherUpdateQuerySet(List<MotherImportRejection> updateObjects) {
-        StringBuilder stringBuilder = new StringBuilder();
-        DateTimeFormatter dateTimeFormatter = DateTimeFormat.forPattern(DATE_FORMAT_STRING);
-        DateTime dateTimeNow = new DateTime();
-        int i = 0;
-        for (MotherImportRejection mother: updateObjects) {
-            String creationTime = "";
-            Long id = null;
-            if (i != 0) {
-                stringBuilder.append(", ");
-            }
-            try {
-                Method method = mother.getClass().getMethod("getCreationDate");
-                DateTime dateTime = (DateTime) method.invoke(mother);
-                creationTime = dateTimeFormatter.print(dateTime);
-
-                method = mother.getClass().getMethod("getId");
-                id = (Long) method.invoke(mother);
-            } catch (IllegalAccessException|SecurityException|IllegalArgumentException|NoSuchMethodException|
-                    InvocationTargetException e) {
-                LOGGER.error("Ignoring creation date and setting as now");
-            }
-            stringBuilder.append("(");
-            stringBuilder.append(id + ", ");
-            stringBuilder = mctsQueryHelper(stringBuilder, mother);
-            stringBuilder.append(QUOTATION + creationTime + QUOTATION_COMMA);
-            stringBuilder.append(QUOTATION + dateTimeFormatter.print(dateTimeNow) + QUOTATION);
-            stringBuilder.append(")");
-            i++;
+    /**
+     * Sets the id and the creation date of an existing rejection, which are only reachable through the methods MDS
+     * adds to the entity
+     */
+    private static void bindIdentity(MotherImportRejection mother, BulkWriter.Row columns) {
+        Long id = null;
+        DateTime creationDate = null;
+        try {
+            Method method = mother.getClass().getMethod("getCreationDate");
+            creationDate = (DateTime) method.invoke(mother);
+            method = mother.getClass().getMethod("getId");
+            id = (Long) method.invoke(mother);
+        } catch (IllegalAccessException|SecurityException|IllegalArgumentException|NoSuchMethodException|
+                InvocationTargetException e) {
+            LOGGER.error("Ignoring creation date and setting as now");
         }
-        return stringBuilder.toString();
+        columns.set("id", id);
+        columns.set("creationDate", creationDate == null ? new DateTime() : creationDate);
     }
 
-    private StringBuilder mctsQueryHelper(StringBuilder stringBuilder1, MotherImportRejection mother) { //NOPMD NcssMethodCount
-        StringBuilder stringBuilder = addLocations(stringBuilder1, mother);
-        stringBuilder.append(mother.getYr() + ", ");
-        stringBuilder.append(QUOTATION + mother.getgPVillage() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getAddress() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getIdNo() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + StringEscapeUtils.escapeSql(mother.getName()) + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + StringEscapeUtils.escapeSql(mother.getHusbandName()) + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getPhoneNumberWhom() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getMobileNo() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getBirthDate() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getjSYBeneficiary() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getCaste() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getSubcenterName1() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + StringEscapeUtils.escapeSql(mother.getaNMName()) + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getaNMPhone() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + StringEscapeUtils.escapeSql(mother.getAshaName()) + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getAshaPhone() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getDeliveryLnkFacility() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getFacilityName() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getLmpDate() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getaNC1Date() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getaNC2Date() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getaNC3Date() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getaNC4Date() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.gettT1Date() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.gettT2Date() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.gettTBoosterDate() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getiFA100GivenDate() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getAnemia() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getaNCComplication() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getrTISTI() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getDlyDate() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getDlyPlaceHomeType() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getDlyPlacePublic() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getDlyPlacePrivate() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getDlyType() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getDlyComplication() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getDischargeDate() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getjSYPaidDate() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getAbortion() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getpNCHomeVisit() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getpNCComplication() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getpPCMethod() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getpNCCheckup() + QUOTATION_COMMA);
-        stringBuilder.append(mother.getOutcomeNos() + ", ");
-        stringBuilder.append(QUOTATION + StringEscapeUtils.escapeSql(mother.getChild1Name()) + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getChild1Sex() + QUOTATION_COMMA);
-        stringBuilder.append(mother.getChild1Wt() + ", ");
-        stringBuilder.append(QUOTATION + mother.getChild1Brestfeeding() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + StringEscapeUtils.escapeSql(mother.getChild2Name()) + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getChild2Sex() + QUOTATION_COMMA);
-        stringBuilder.append(mother.getChild2Wt() + ", ");
-        stringBuilder.append(QUOTATION + mother.getChild2Brestfeeding() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + StringEscapeUtils.escapeSql(mother.getChild3Name()) + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getChild3Sex() + QUOTATION_COMMA);
-        stringBuilder.append(mother.getChild3Wt() + ", ");
-        stringBuilder.append(QUOTATION + mother.getChild3Brestfeeding() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + StringEscapeUtils.escapeSql(mother.getChild4Name()) + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getChild4Sex() + QUOTATION_COMMA);
-        stringBuilder.append(mother.getChild4Wt() + ", ");
-        stringBuilder.append(QUOTATION + mother.getChild4Brestfeeding() + QUOTATION_COMMA);
-        stringBuilder.append(mother.getAge() + ", ");
-        stringBuilder.append(QUOTATION + mother.getmTHRREGDATE() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getLastUpdateDate() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getRemarks() + QUOTATION_COMMA);
-        stringBuilder.append(mother.getaNMID() + ", ");
-        stringBuilder.append(mother.getaSHAID() + ", ");
-        stringBuilder.append(mother.getCallAns() + ", ");
-        stringBuilder.append(mother.getNoCallReason() + ", ");
-        stringBuilder.append(mother.getNoPhoneReason() + ", ");
-        stringBuilder.append(mother.getCreatedBy() + ", ");
-        stringBuilder.append(mother.getUpdatedBy() + ", ");
-        stringBuilder.append(mother.getAadharNo() + ", ");
-        stringBuilder.append(mother.getbPLAPL() + ", ");
-        stringBuilder.append(mother.geteID() + ", ");
-        stringBuilder.append(QUOTATION + mother.geteIDTime() + QUOTATION_COMMA);
-        stringBuilder.append(mother.getEntryType() + ", ");
-        stringBuilder.append(QUOTATION + mother.getSource() + QUOTATION_COMMA);
-        stringBuilder.append(mother.getAccepted() + ", ");
-        stringBuilder.append(QUOTATION + mother.getRejectionReason() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getAction() + QUOTATION_COMMA);
-        stringBuilder.append(MOTECH_STRING);
-        stringBuilder.append(MOTECH_STRING);
-        return stringBuilder;
+    private static void bindLocations(MotherImportRejection mother, BulkWriter.Row columns) {
+        columns.set("stateId", mother.getStateId());
+        columns.set("districtId", mother.getDistrictId());
+        columns.set("districtName", mother.getDistrictName());
+        columns.set("talukaId", mother.getTalukaId());
+        columns.set("talukaName", mother.getTalukaName());
+        columns.set("healthBlockId", mother.getHealthBlockId());
+        columns.set("healthBlockName", mother.getHealthBlockName());
+        columns.set("phcId", mother.getPhcId());
+        columns.set("phcName", mother.getPhcName());
+        columns.set("subcentreId", mother.getSubcentreId());
+        columns.set("subcentreName", mother.getSubcentreName());
+        columns.set("villageId", mother.getVillageId());
+        columns.set("villageName", mother.getVillageName());
     }
 
-
-    private StringBuilder rchQueryHelper(StringBuilder stringBuilder1, MotherImportRejection mother) {
-        StringBuilder stringBuilder = addLocations(stringBuilder1, mother);
-        stringBuilder.append(QUOTATION + mother.getIdNo() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getRegistrationNo() + QUOTATION_COMMA);
-        stringBuilder.append(mother.getCaseNo() + ", ");
-        stringBuilder.append(QUOTATION + validateName(mother.getName()) + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getMobileNo() + QUOTATION_COMMA);
-        if(mother.getRegistrationDate() == null){
-            stringBuilder.append(mother.getRegistrationDate() + " , ");
-        }
-        else{
-            stringBuilder.append(QUOTATION + mother.getRegistrationDate() + QUOTATION_COMMA);
-        }
-        if(mother.getRchAshaId()==null || mother.getRchAshaId().trim().isEmpty()){
-            stringBuilder.append("NULL,");
-        }
-        else {
-            stringBuilder.append(QUOTATION + mother.getRchAshaId() + QUOTATION_COMMA);
-        }
-        stringBuilder.append(QUOTATION + mother.getLmpDate() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getBirthDate() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getAbortionType() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getDeliveryOutcomes() + QUOTATION_COMMA);
-        stringBuilder.append(mother.getEntryType() + ", ");
-        stringBuilder.append(QUOTATION + mother.getExecDate() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getSource() + QUOTATION_COMMA);
-        stringBuilder.append(mother.getAccepted() + ", ");
-        stringBuilder.append(QUOTATION + mother.getRejectionReason() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getAction() + QUOTATION_COMMA);
-        stringBuilder.append(MOTECH_STRING);
-        return stringBuilder;
+    private static void bindMcts(MotherImportRejection mother, BulkWriter.Row columns) { //NOPMD NcssMethodCount
+        columns.set("yr", mother.getYr());
+        columns.set("gPVillage", mother.getgPVillage());
+        columns.set("address", mother.getAddress());
+        columns.set("idNo", mother.getIdNo());
+        columns.set("name", mother.getName());
+        columns.set("husbandName", mother.getHusbandName());
+        columns.set("phoneNumberWhom", mother.getPhoneNumberWhom());
+        columns.set("mobileNo", mother.getMobileNo());
+        columns.set("birthDate", mother.getBirthDate());
+        columns.set("jSYBeneficiary", mother.getjSYBeneficiary());
+        columns.set("caste", mother.getCaste());
+        columns.set("subcenterName1", mother.getSubcenterName1());
+        columns.set("aNMName", mother.getaNMName());
+        columns.set("aNMPhone", mother.getaNMPhone());
+        columns.set("ashaName", mother.getAshaName());
+        columns.set("ashaPhone", mother.getAshaPhone());
+        columns.set("deliveryLnkFacility", mother.getDeliveryLnkFacility());
+        columns.set("facilityName", mother.getFacilityName());
+        columns.set("lmpDate", mother.getLmpDate());
+        columns.set("aNC1Date", mother.getaNC1Date());
+        columns.set("aNC2Date", mother.getaNC2Date());
+        columns.set("aNC3Date", mother.getaNC3Date());
+        columns.set("aNC4Date", mother.getaNC4Date());
+        columns.set("tT1Date", mother.gettT1Date());
+        columns.set("tT2Date", mother.gettT2Date());
+        columns.set("tTBoosterDate", mother.gettTBoosterDate());
+        columns.set("iFA100GivenDate", mother.getiFA100GivenDate());
+        columns.set("anemia", mother.getAnemia());
+        columns.set("aNCComplication", mother.getaNCComplication());
+        columns.set("rTISTI", mother.getrTISTI());
+        columns.set("dlyDate", mother.getDlyDate());
+        columns.set("dlyPlaceHomeType", mother.getDlyPlaceHomeType());
+        columns.set("dlyPlacePublic", mother.getDlyPlacePublic());
+        columns.set("dlyPlacePrivate", mother.getDlyPlacePrivate());
+        columns.set("dlyType", mother.getDlyType());
+        columns.set("dlyComplication", mother.getDlyComplication());
+        columns.set("dischargeDate", mother.getDischargeDate());
+        columns.set("jSYPaidDate", mother.getjSYPaidDate());
+        columns.set("abortion", mother.getAbortion());
+        columns.set("pNCHomeVisit", mother.getpNCHomeVisit());
+        columns.set("pNCComplication", mother.getpNCComplication());
+        columns.set("pPCMethod", mother.getpPCMethod());
+        columns.set("pNCCheckup", mother.getpNCCheckup());
+        columns.set("outcomeNos", mother.getOutcomeNos());
+        columns.set("child1Name", mother.getChild1Name());
+        columns.set("child1Sex", mother.getChild1Sex());
+        columns.set("child1Wt", mother.getChild1Wt());
+        columns.set("child1Brestfeeding", mother.getChild1Brestfeeding());
+        columns.set("child2Name", mother.getChild2Name());
+        columns.set("child2Sex", mother.getChild2Sex());
+        columns.set("child2Wt", mother.getChild2Wt());
+        columns.set("child2Brestfeeding", mother.getChild2Brestfeeding());
+        columns.set("child3Name", mother.getChild3Name());
+        columns.set("child3Sex", mother.getChild3Sex());
+        columns.set("child3Wt", mother.getChild3Wt());
+        columns.set("child3Brestfeeding", mother.getChild3Brestfeeding());
+        columns.set("child4Name", mother.getChild4Name());
+        columns.set("child4Sex", mother.getChild4Sex());
+        columns.set("child4Wt", mother.getChild4Wt());
+        columns.set("child4Brestfeeding", mother.getChild4Brestfeeding());
+        columns.set("age", mother.getAge());
+        columns.set("mTHRREGDATE", mother.getmTHRREGDATE());
+        columns.set("lastUpdateDate", mother.getLastUpdateDate());
+        columns.set("remarks", mother.getRemarks());
+        columns.set("aNMID", mother.getaNMID());
+        columns.set("aSHAID", mother.getaSHAID());
+        columns.set("callAns", mother.getCallAns());
+        columns.set("noCallReason", mother.getNoCallReason());
+        columns.set("noPhoneReason", mother.getNoPhoneReason());
+        columns.set("createdBy", mother.getCreatedBy());
+        columns.set("updatedBy", mother.getUpdatedBy());
+        columns.set("aadharNo", mother.getAadharNo());
+        columns.set("bPLAPL", mother.getbPLAPL());
+        columns.set("eID", mother.geteID());
+        columns.set("eIDTime", mother.geteIDTime());
+        columns.set("entryType", mother.getEntryType());
+        columns.set("source", mother.getSource());
+        columns.set("accepted", mother.getAccepted());
+        columns.set("rejectionReason", mother.getRejectionReason());
+        columns.set("action", mother.getAction());
     }
 
-    private static String validateName (String name){
-        if(name == null) return null;
-        name = name.replace("?" , "").replace("\\" , "\\\\");
-        return StringEscapeUtils.escapeSql(name);
+    private static void bindRch(MotherImportRejection mother, BulkWriter.Row columns) {
+        columns.set("idNo", mother.getIdNo());
+        columns.set("registrationNo", mother.getRegistrationNo());
+        columns.set("caseNo", mother.getCaseNo());
+        columns.set("name", mother.getName());
+        columns.set("mobileNo", mother.getMobileNo());
+        columns.set("registrationDate", mother.getRegistrationDate());
+        columns.set("rchAshaId", StringUtils.trimToNull(mother.getRchAshaId()));
+        columns.set("lmpDate", mother.getLmpDate());
+        columns.set("birthDate", mother.getBirthDate());
+        columns.set("abortionType", mother.getAbortionType());
+        columns.set("deliveryOutcomes", mother.getDeliveryOutcomes());
+        columns.set("entryType", mother.getEntryType());
+        columns.set("execDate", mother.getExecDate());
+        columns.set("source", mother.getSource());
+        columns.set("accepted", mother.getAccepted());
+        columns.set("rejectionReason", mother.getRejectionReason());
+        columns.set("action", mother.getAction());
     }
 
-    private StringBuilder addLocations(StringBuilder stringBuilder, MotherImportRejection mother) {
-        stringBuilder.append(mother.getStateId() + ", ");
-        stringBuilder.append(mother.getDistrictId() + ", ");
-        stringBuilder.append(QUOTATION + validateName(mother.getDistrictName()) + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + mother.getTalukaId() + QUOTATION_COMMA);
-        stringBuilder.append(QUOTATION + validateName(mother.getTalukaName()) + QUOTATION_COMMA);
-        stringBuilder.append(mother.getHealthBlockId() + ", ");
-        stringBuilder.append(QUOTATION + validateName(mother.getHealthBlockName()) + QUOTATION_COMMA);
-        stringBuilder.append(mother.getPhcId() + ", ");
-        stringBuilder.append(QUOTATION + validateName(mother.getPhcName()) + QUOTATION_COMMA);
-        stringBuilder.append(mother.getSubcentreId() + ", ");
-        stringBuilder.append(QUOTATION + validateName(mother.getSubcentreName()) + QUOTATION_COMMA);
-        stringBuilder.append(mother.getVillageId() + ", ");
-        stringBuilder.append(QUOTATION + validateName(mother.getVillageName()) + QUOTATION_COMMA);
-        return stringBuilder;
-    }
-
-
     private static MotherImportRejection setNewData1(MotherImportRejection motherImportRejection, MotherImportRejection motherImportRejection1) {
         motherImportRejection1.setStateId(motherImportRejection.getStateId());
         motherImportRejection1.setDistrictId(motherImportRejection.getDistrictId());
@@ -1,52 +1,50 @@
 package org.motechproject.nms.rejectionhandler.service.impl;
 
-import org.motechproject.mds.query.SqlQueryExecution;
 import org.motechproject.nms.rejectionhandler.domain.TalukaImportRejection;
 import org.motechproject.nms.rejectionhandler.repository.TalukaRejectionDataService;
 import org.motechproject.nms.rejectionhandler.service.TalukaRejectionService;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.motechproject.nms.utils.BulkWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import javax.jdo.Query;
 import javax.jdo.annotations.Transactional;
+import java.util.List;
 
 @Service("talukaRejectionService")
 public class TalukaRejectionServiceImpl implements TalukaRejectionService {
 
-
-    private static final Logger LOGGER = LoggerFactory.getLogger(TalukaRejectionServiceImpl.class);
+    private static final int BATCH_SIZE = 5000;
+
+    private static final BulkWriter<TalukaImportRejection> WRITER = BulkWriter
+            .<TalukaImportRejection>insertInto("nms_taluka_rejects", TalukaImportRejection.class)
+            .columns("stateId", "districtCode", "talukaCode", "talukaName", "accepted", "rejectionReason", "stateCode",
+                    "mddsCode")
+            .motechAudit()
+            .now("creationDate", "modificationDate")
+            .updateOnDuplicateKey("districtCode", "talukaName", "accepted", "rejectionReason", "modificationDate",
+                    "modifiedBy", "stateCode", "mddsCode")
+            .binder(new BulkWriter.RowBinder<TalukaImportRejection>() {
+                @Override
+                public void bind(TalukaImportRejection taluka, BulkWriter.Row columns) {
+                    columns.set("stateId", taluka.getStateId())
+                            .set("districtCode", taluka.getDistrictCode())
+                            .set("talukaCode", taluka.getTalukaCode())
+                            .set("talukaName", taluka.getTalukaName())
+                            .set("accepted", taluka.getAccepted())
+                            .set("rejectionReason", taluka.getRejectionReason())
+                            .set("stateCode", taluka.getStateCode())
+                            .set("mddsCode", taluka.getMddsCode());
+                }
+            })
+            .build();
 
     @Autowired
-    TalukaRejectionDataService talukaRejectionDataService;
+    private TalukaRejectionDataService talukaRejectionDataService;
 
     @Override
     @Transactional
-    public Long saveRejectedTalukaInBulk(String talukarejectedValues){
-        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
-            @Override
-            public String getSqlQuery() {
-                String query = "INSERT into nms_taluka_rejects (`stateId`, `districtCode`, `talukaCode`, `talukaName`," +
-                        " `accepted`, `rejectionReason`, `creator`, `modifiedBy`, `owner`, `creationDate`, `modificationDate`, `stateCode`, `mddsCode`) VALUES " +
-                        talukarejectedValues + " ON DUPLICATE KEY UPDATE " +
-                        "districtCode = VALUES(districtCode), talukaName = VALUES(talukaName), accepted = VALUES(accepted), rejectionReason = VALUES(rejectionReason),modificationDate = VALUES(modificationDate), modifiedBy = VALUES(modifiedBy), stateCode=VALUES(stateCode), mddsCode=VALUES(mddsCode) ";
-                LOGGER.info("Printing Query for rejected Taluka: "+ query);
-                return query;
-
-            }
-            @Override
-            public Long execute(Query query) {
-                query.setClass(TalukaImportRejection.class);
-                return (Long) query.execute();
-            }
-
-        };
-        Long rejectedTaluka = 0L;
-        if(!talukarejectedValues.isEmpty()){
-            rejectedTaluka = talukaRejectionDataService.executeSQLQuery(queryExecution);
-
-        }
-        return rejectedTaluka;
+    public Long saveRejectedTalukaInBulk(List<TalukaImportRejection> rejectedTalukas) {
+        return WRITER.write(talukaRejectionDataService, rejectedTalukas, BATCH_SIZE);
     }
+
 }
@@ -2,14 +2,17 @@ package org.motechproject.nms.testing.service.impl;
 
 import org.motechproject.mds.query.SqlQueryExecution;
 import org.motechproject.metrics.service.Timer;
+import org.motechproject.nms.flw.service.WhitelistService;
 import org.motechproject.nms.kilkari.domain.SubscriptionPack;
 import org.motechproject.nms.kilkari.domain.SubscriptionPackMessage;
 import org.motechproject.nms.kilkari.domain.SubscriptionPackType;
 import org.motechproject.nms.kilkari.repository.SubscriptionPackDataService;
 import org.motechproject.nms.kilkari.service.SubscriptionService;
+import org.motechproject.nms.props.service.PropertyService;
 import org.motechproject.nms.region.repository.DistrictDataService;
 import org.motechproject.nms.region.repository.StateDataService;
 import org.motechproject.nms.region.service.LanguageService;
+import org.motechproject.nms.region.service.LocationCacheService;
 import org.motechproject.nms.testing.service.TestingService;
 import org.motechproject.server.config.SettingsFacade;
 import org.slf4j.Logger;
@@ -121,6 +124,8 @@ public class TestingServiceImpl implements TestingService {
         "nms_inbox_call_details__TRASH",
         "nms_kk_retry_records",
         "nms_kk_retry_records__TRASH",
+        "nms_kk_purge_checkpoints",
+        "nms_kk_purge_checkpoints__TRASH",
         "nms_ma_course_completion_records",
         "nms_ma_course_completion_records__TRASH",
         "nms_ma_course",
@@ -138,6 +143,8 @@ public class TestingServiceImpl implements TestingService {
         "nms_national_default_language__TRASH",
         "nms_service_usage_caps",
         "nms_service_usage_caps__TRASH",
+        "nms_flw_monthly_service_usage",
+        "nms_flw_monthly_service_usage__TRASH",
         "nms_states",
         "nms_states__TRASH",
         "nms_languages",
@@ -186,6 +193,12 @@ public class TestingServiceImpl implements TestingService {
     @Autowired
     private LanguageService languageService;
     @Autowired
+    private LocationCacheService locationCacheService;
+    @Autowired
+    private PropertyService propertyService;
+    @Autowired
+    private WhitelistService whitelistService;
+    @Autowired
     private StateDataService stateDataService;
 
 
@@ -339,6 +352,9 @@ public class TestingServiceImpl implements TestingService {
         enableConstraints();
 
         languageService.cacheEvict(null);
+        locationCacheService.cacheEvict(null);
+        propertyService.deployedServicesCacheEvict(null);
+        whitelistService.whitelistCacheEvict(null);
 
         LOGGER.debug("clearDatabase: {}", timer.time());
     }
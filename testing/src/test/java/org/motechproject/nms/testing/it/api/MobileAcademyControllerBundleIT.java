@@ -352,6 +352,36 @@ public class MobileAcademyControllerBundleIT extends BasePaxIT {
                 EntityUtils.toString(httpResponse.getEntity()));
     }
 
+    /**
+     * To verify Get MA Course API tags the course with an ETag and answers a request with a matching If-None-Match
+     * with a 304 and no body.
+     */
+    @Test
+    public void verifyCourseNotModified() throws IOException, InterruptedException {
+        setupMaCourse();
+
+        String endpoint = String.format("http://localhost:%d/api/mobileacademy/course", TestContext.getJettyPort());
+        HttpResponse httpResponse = SimpleHttpClient.httpRequestAndResponse(RequestBuilder.createGetRequest(endpoint),
+                RequestBuilder.ADMIN_USERNAME, RequestBuilder.ADMIN_PASSWORD);
+        assertEquals(HttpStatus.SC_OK, httpResponse.getStatusLine().getStatusCode());
+        String etag = httpResponse.getFirstHeader("ETag").getValue();
+        EntityUtils.consume(httpResponse.getEntity());
+
+        HttpGet request = RequestBuilder.createGetRequest(endpoint);
+        request.addHeader("If-None-Match", etag);
+        httpResponse = SimpleHttpClient.httpRequestAndResponse(request, RequestBuilder.ADMIN_USERNAME,
+                RequestBuilder.ADMIN_PASSWORD);
+        assertEquals(HttpStatus.SC_NOT_MODIFIED, httpResponse.getStatusLine().getStatusCode());
+        assertNull(httpResponse.getEntity());
+
+        request = RequestBuilder.createGetRequest(endpoint);
+        request.addHeader("If-None-Match", "\"0-00000000\"");
+        httpResponse = SimpleHttpClient.httpRequestAndResponse(request, RequestBuilder.ADMIN_USERNAME,
+                RequestBuilder.ADMIN_PASSWORD);
+        assertEquals(HttpStatus.SC_OK, httpResponse.getStatusLine().getStatusCode());
+        assertEquals(etag, httpResponse.getFirstHeader("ETag").getValue());
+    }
+
     HttpGet createHttpGetBookmarkWithScore(String callingNo, String callId) {
         StringBuilder sb = new StringBuilder();
         sb.append(String.format(
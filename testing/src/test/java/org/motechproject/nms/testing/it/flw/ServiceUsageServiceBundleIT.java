@@ -6,9 +6,12 @@ import org.junit.runner.RunWith;
 import org.motechproject.nms.flw.domain.CallDetailRecord;
 import org.motechproject.nms.flw.domain.FrontLineWorker;
 import org.motechproject.nms.flw.domain.FrontLineWorkerStatus;
+import org.motechproject.nms.flw.domain.MonthlyServiceUsage;
 import org.motechproject.nms.flw.domain.ServiceUsage;
 import org.motechproject.nms.flw.repository.CallDetailRecordDataService;
 import org.motechproject.nms.flw.repository.FrontLineWorkerDataService;
+import org.motechproject.nms.flw.repository.MonthlyServiceUsageDataService;
+import org.motechproject.nms.flw.service.CallDetailRecordService;
 import org.motechproject.nms.flw.service.FrontLineWorkerService;
 import org.motechproject.nms.flw.service.ServiceUsageService;
 import org.motechproject.nms.props.domain.Service;
@@ -24,6 +27,7 @@ import javax.inject.Inject;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 /**
  * Verify that HelloWorldService present, functional.
@@ -48,6 +52,12 @@ public class ServiceUsageServiceBundleIT extends BasePaxIT {
     @Inject
     CallDetailRecordDataService callDetailRecordDataService;
 
+    @Inject
+    CallDetailRecordService callDetailRecordService;
+
+    @Inject
+    MonthlyServiceUsageDataService monthlyServiceUsageDataService;
+
     private void setupData() {
         testingService.clearDatabase();
 
@@ -176,4 +186,54 @@ public class ServiceUsageServiceBundleIT extends BasePaxIT {
         frontLineWorkerService.delete(flw);
     }
 
+
+    @Test
+    public void testMonthlyUsageAggregates() throws Exception {
+        setupData();
+        FrontLineWorker flw = new FrontLineWorker("Valid Worker", 1111111111L);
+        frontLineWorkerService.add(flw);
+        DateTime now = DateTime.now();
+        int thisMonth = now.getYear() * 100 + now.getMonthOfYear();
+        DateTime twoMonthsAgo = now.minusMonths(2);
+        int otherMonth = twoMonthsAgo.getYear() * 100 + twoMonthsAgo.getMonthOfYear();
+
+        callDetailRecordDataService.create(usageRecord(flw, 3, 1, true, twoMonthsAgo));
+        callDetailRecordDataService.create(usageRecord(flw, 2, 0, false, now));
+        callDetailRecordDataService.create(usageRecord(flw, 1, 1, true, now));
+
+        serviceUsageService.rebuildMonthlyUsage();
+
+        MonthlyServiceUsage usage = monthlyServiceUsageDataService.findByFrontLineWorkerServiceAndMonth(flw.getId(),
+                Service.MOBILE_ACADEMY, thisMonth);
+        assertEquals(3, usage.getUsageInPulses());
+        assertEquals(1, usage.getEndOfUsage());
+        assertEquals(true, usage.getWelcomePrompt());
+        usage = monthlyServiceUsageDataService.findByFrontLineWorkerServiceAndMonth(flw.getId(),
+                Service.MOBILE_ACADEMY, otherMonth);
+        assertEquals(3, usage.getUsageInPulses());
+        assertNull(monthlyServiceUsageDataService.findByFrontLineWorkerServiceAndMonth(flw.getId(),
+                Service.MOBILE_KUNJI, thisMonth));
+
+        // records added through the service are added to the aggregate of their month
+        callDetailRecordService.add(usageRecord(flw, 4, 2, false, now));
+
+        usage = monthlyServiceUsageDataService.findByFrontLineWorkerServiceAndMonth(flw.getId(),
+                Service.MOBILE_ACADEMY, thisMonth);
+        assertEquals(7, usage.getUsageInPulses());
+        assertEquals(3, usage.getEndOfUsage());
+        assertEquals(true, usage.getWelcomePrompt());
+    }
+
+    private CallDetailRecord usageRecord(FrontLineWorker flw, int pulses, int endOfUsage, boolean welcomePrompt,
+                                         DateTime callStartTime) {
+        CallDetailRecord record = new CallDetailRecord();
+        record.setFrontLineWorker(flw);
+        record.setCallingNumber(1111111111L);
+        record.setService(Service.MOBILE_ACADEMY);
+        record.setCallDurationInPulses(pulses);
+        record.setEndOfUsagePromptCounter(endOfUsage);
+        record.setWelcomePrompt(welcomePrompt);
+        record.setCallStartTime(callStartTime);
+        return record;
+    }
 }
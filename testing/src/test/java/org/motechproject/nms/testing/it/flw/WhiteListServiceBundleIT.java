@@ -157,4 +157,19 @@ public class WhiteListServiceBundleIT extends BasePaxIT {
         result = whitelistService.numberWhitelistedForState(nonWhitelistState, NOT_WHITELIST_CONTACT_NUMBER);
         assertTrue(result);
     }
+
+    // Test whitelist changes made after a lookup are seen by the next one
+    @Test
+    public void testWhitelistChangesAfterLookup() throws Exception {
+        setupData();
+
+        assertFalse(whitelistService.numberWhitelistedForState(whitelistState, NOT_WHITELIST_CONTACT_NUMBER));
+        assertTrue(whitelistService.numberWhitelistedForState(nonWhitelistState, NOT_WHITELIST_CONTACT_NUMBER));
+
+        whitelistEntryDataService.create(new WhitelistEntry(NOT_WHITELIST_CONTACT_NUMBER, whitelistState));
+        whitelistStateDataService.create(new WhitelistState(nonWhitelistState));
+
+        assertTrue(whitelistService.numberWhitelistedForState(whitelistState, NOT_WHITELIST_CONTACT_NUMBER));
+        assertFalse(whitelistService.numberWhitelistedForState(nonWhitelistState, NOT_WHITELIST_CONTACT_NUMBER));
+    }
 }
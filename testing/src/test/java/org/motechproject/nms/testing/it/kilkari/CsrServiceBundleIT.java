@@ -16,6 +16,8 @@ import org.motechproject.nms.imi.repository.CallDetailRecordDataService;
 import org.motechproject.nms.kilkari.domain.CallRetry;
 import org.motechproject.nms.kilkari.domain.CallStage;
 import org.motechproject.nms.kilkari.domain.DeactivationReason;
+import org.motechproject.nms.kilkari.domain.MctsChild;
+import org.motechproject.nms.kilkari.domain.Subscriber;
 import org.motechproject.nms.kilkari.domain.Subscription;
 import org.motechproject.nms.kilkari.domain.SubscriptionOrigin;
 import org.motechproject.nms.kilkari.domain.SubscriptionPackType;
@@ -25,6 +27,7 @@ import org.motechproject.nms.kilkari.repository.CallRetryDataService;
 import org.motechproject.nms.kilkari.repository.SubscriberDataService;
 import org.motechproject.nms.kilkari.repository.SubscriptionDataService;
 import org.motechproject.nms.kilkari.repository.SubscriptionPackDataService;
+import org.motechproject.nms.kilkari.service.CallRetryService;
 import org.motechproject.nms.kilkari.service.CsrService;
 import org.motechproject.nms.kilkari.service.SubscriberService;
 import org.motechproject.nms.kilkari.service.SubscriptionService;
@@ -49,6 +52,7 @@ import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
 import org.ops4j.pax.exam.spi.reactors.PerSuite;
 
 import javax.inject.Inject;
+import java.util.Collections;
 import java.util.List;
 
 import static junit.framework.Assert.assertNull;
@@ -82,6 +86,8 @@ public class CsrServiceBundleIT extends BasePaxIT {
     @Inject
     CallRetryDataService callRetryDataService;
     @Inject
+    CallRetryService callRetryService;
+    @Inject
     CircleDataService circleDataService;
     @Inject
     StateDataService stateDataService;
@@ -1267,5 +1273,49 @@ public class CsrServiceBundleIT extends BasePaxIT {
 
     }
 
+    /**
+     * To verify the retry created for a failed call keeps the state of the beneficiary, which the retry target file
+     * is split by, and that retries stored without it get it filled in.
+     */
+    @Test
+    public void verifyRetryKeepsBeneficiaryState() {
+        Subscriber subscriber = new Subscriber(9999911122L, rh.hindiLanguage(), rh.delhiCircle());
+        subscriber.setDateOfBirth(DateTime.now().minusDays(14));
+        MctsChild child = new MctsChild("123456789");
+        child.setState(rh.delhiState());
+        subscriber.setChild(child);
+        subscriber = subscriberDataService.create(subscriber);
+
+        Subscription subscription = new Subscription(subscriber, sh.childPack(), SubscriptionOrigin.MCTS_IMPORT);
+        subscription.setStartDate(DateTime.now().minusDays(14));
+        subscription.setStatus(SubscriptionStatus.ACTIVE);
+        subscription = subscriptionService.create(subscription);
+
+        processCsr(new CallSummaryRecordDto(
+                subscription,
+                StatusCode.OBD_FAILED_NOANSWER,
+                FinalCallStatus.FAILED,
+                sh.getContentMessageFile(subscription, 2),
+                sh.getWeekId(subscription, 2),
+                rh.hindiLanguage(),
+                rh.delhiCircle(),
+                "20151119124330"));
+
+        Long stateId = rh.delhiState().getId();
+        CallRetry callRetry = callRetryDataService.findBySubscriptionId(subscription.getSubscriptionId());
+        assertEquals(stateId, callRetry.getStateId());
+
+        List<Long> states = Collections.singletonList(stateId);
+        assertEquals(1, callRetryService.retrieveAllIVR(0, 10, states).size());
+        assertTrue(callRetryService.retrieveAllNonIVR(0, 10, states).isEmpty());
+        assertEquals(1, callRetryService.retrieveAllNonIVR(0, 10, Collections.singletonList(stateId + 1)).size());
 
+        callRetry.setStateId(null);
+        callRetryDataService.update(callRetry);
+        assertTrue(callRetryService.retrieveAllIVR(0, 10, states).isEmpty());
+
+        callRetryService.backfillStateIds();
+        assertEquals(stateId, callRetryDataService.findBySubscriptionId(subscription.getSubscriptionId()).getStateId());
+        assertEquals(1, callRetryService.retrieveAllIVR(0, 10, states).size());
+    }
 }
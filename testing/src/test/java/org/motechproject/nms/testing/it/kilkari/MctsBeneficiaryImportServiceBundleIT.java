@@ -3,6 +3,7 @@ package org.motechproject.nms.testing.it.kilkari;
 
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
 import org.joda.time.DateTime;
 import org.joda.time.Days;
 import org.joda.time.format.DateTimeFormat;
@@ -18,6 +19,7 @@ import org.motechproject.nms.csv.repository.CsvAuditRecordDataService;
 import org.motechproject.nms.kilkari.domain.*;
 import org.motechproject.nms.kilkari.repository.*;
 import org.motechproject.nms.kilkari.service.MctsBeneficiaryImportReaderService;
+import org.motechproject.nms.kilkari.service.SettingsService;
 import org.motechproject.nms.kilkari.service.SubscriberService;
 import org.motechproject.nms.kilkari.service.SubscriptionService;
 import org.motechproject.nms.region.domain.*;
@@ -122,6 +124,9 @@ public class MctsBeneficiaryImportServiceBundleIT extends BasePaxIT {
     @Inject
     PlatformTransactionManager transactionManager;
 
+    @Inject
+    SettingsService settingsService;
+
     @Inject
     private CsvAuditRecordDataService csvAuditRecordDataService;
 
@@ -129,6 +134,7 @@ public class MctsBeneficiaryImportServiceBundleIT extends BasePaxIT {
     RegionHelper rh;
 
     public static final String SUCCESS = "Success";
+    private static final String RESPONSE_CACHE = "kilkari.response_cache";
     private String deactivationRequest = String.format("http://localhost:%d/api/ops/deactivationRequest",
             TestContext.getJettyPort());
 
@@ -1685,6 +1691,35 @@ public class MctsBeneficiaryImportServiceBundleIT extends BasePaxIT {
         transactionManager.commit(status);
     }
 
+    // The inbox answer cached for a number must not outlive the subscriber moving to another number
+    @Test
+    public void verifyInboxOfOldMsisdnIsNotServedFromCacheAfterMsisdnChange() throws Exception {
+        String responseCache = settingsService.getSettingsFacade().getProperty(RESPONSE_CACHE);
+        settingsService.getSettingsFacade().setProperty(RESPONSE_CACHE, "true");
+        try {
+            String dobString = getDateString(DateTime.now().minusDays(100));
+            mctsBeneficiaryImportReaderService.importChildData(createChildDataReader(
+                    "21\t3\t\t\t\t\t9876543219\tBaby1 of Shanti Ekka\t1234567819\t9439986119\t" + dobString + "\t\t"),
+                    SubscriptionOrigin.MCTS_IMPORT);
+            assertTrue(SimpleHttpClient.execHttpRequest(inboxRequest(9439986119L), HttpStatus.SC_OK));
+
+            mctsBeneficiaryImportReaderService.importChildData(createChildDataReader(
+                    "21\t3\t\t\t\t\t9876543219\tBaby1 of Shanti Ekka\t1234567819\t9439986198\t" + dobString + "\t\t"),
+                    SubscriptionOrigin.MCTS_IMPORT);
+            assertTrue(subscriberService.getSubscriber(9439986119L).isEmpty());
+
+            assertTrue(SimpleHttpClient.execHttpRequest(inboxRequest(9439986119L), HttpStatus.SC_NOT_FOUND));
+            assertTrue(SimpleHttpClient.execHttpRequest(inboxRequest(9439986198L), HttpStatus.SC_OK));
+        } finally {
+            settingsService.getSettingsFacade().setProperty(RESPONSE_CACHE, responseCache);
+        }
+    }
+
+    private HttpGet inboxRequest(Long callingNumber) {
+        return new HttpGet(String.format("http://localhost:%d/api/kilkari/inbox?callingNumber=%d&callId=%s",
+                TestContext.getJettyPort(), callingNumber, "1234567890123456789012345"));
+    }
+
     // Test SubscriberMsisdnTracker in Child Import without mother
     @Ignore
     @Test
@@ -2,6 +2,7 @@ package org.motechproject.nms.testing.it.kilkari;
 
 import org.joda.time.DateTime;
 import org.joda.time.Days;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Rule;
@@ -15,11 +16,13 @@ import org.motechproject.nms.kilkari.domain.*;
 import org.motechproject.nms.kilkari.repository.CallRetryDataService;
 import org.motechproject.nms.kilkari.repository.InboxCallDataDataService;
 import org.motechproject.nms.kilkari.repository.InboxCallDetailRecordDataService;
+import org.motechproject.nms.kilkari.repository.PurgeCheckpointDataService;
 import org.motechproject.nms.kilkari.repository.SubscriberDataService;
 import org.motechproject.nms.kilkari.repository.SubscriptionDataService;
 import org.motechproject.nms.kilkari.repository.SubscriptionPackDataService;
 import org.motechproject.nms.kilkari.repository.SubscriptionPackMessageDataService;
 import org.motechproject.nms.kilkari.service.InboxService;
+import org.motechproject.nms.kilkari.service.SettingsService;
 import org.motechproject.nms.kilkari.service.SubscriberService;
 import org.motechproject.nms.kilkari.service.SubscriptionService;
 import org.motechproject.nms.kilkari.utils.KilkariConstants;
@@ -106,16 +109,27 @@ public class SubscriptionServiceBundleIT extends BasePaxIT {
     @Inject
     ChangeLogDataService changeLogDataService;
     @Inject
+    PurgeCheckpointDataService purgeCheckpointDataService;
+    @Inject
     PlatformTransactionManager transactionManager;
+    @Inject
+    SettingsService settingsService;
+
+    private static final String RECONCILE_MINUTES = "kilkari.active_count.reconcile_minutes";
 
     private RegionHelper rh;
     private SubscriptionHelper sh;
+    private String reconcileMinutes;
 
 
     @Before
     public void setupTestData() {
         testingService.clearDatabase();
 
+        // the capping tests need the exact active subscription count, clearDatabase deletes without moving it
+        reconcileMinutes = settingsService.getSettingsFacade().getProperty(RECONCILE_MINUTES);
+        settingsService.getSettingsFacade().setProperty(RECONCILE_MINUTES, "0");
+
         rh = new RegionHelper(languageDataService, languageService, circleDataService, stateDataService,
                 districtDataService, districtService);
 
@@ -142,6 +156,11 @@ public class SubscriptionServiceBundleIT extends BasePaxIT {
         transactionManager.commit(status);
     }
 
+    @After
+    public void restoreSettings() {
+        settingsService.getSettingsFacade().setProperty(RECONCILE_MINUTES, reconcileMinutes);
+    }
+
     @Test
     public void testServicePresent() throws Exception {
         assertNotNull(subscriptionService);
@@ -335,6 +354,53 @@ public class SubscriptionServiceBundleIT extends BasePaxIT {
         transactionManager.commit(status);
     }
 
+    @Test
+    public void testPurgeOldClosedSubscriptionsResumesInterruptedPurge() {
+        TransactionStatus status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+
+        Subscriber s7 = new Subscriber(1000000006L, rh.hindiLanguage());
+        s7.setDateOfBirth(DateTime.now().minusDays(14));
+        subscriberService.create(s7);
+        subscriptionService.createSubscription(s7, s7.getCallingNumber(), rh.hindiLanguage(), sh.childPack(),
+                SubscriptionOrigin.MCTS_IMPORT);
+        s7 = subscriberService.getSubscriber(1000000006L).get(0);
+        Subscription subscription = s7.getSubscriptions().iterator().next();
+        subscription.setStatus(SubscriptionStatus.COMPLETED);
+        subscription.setEndDate(new DateTime().withDate(2011, 8, 1));
+        subscriptionDataService.update(subscription);
+
+        // a purge with an earlier cutoff stopped before it was done
+        PurgeCheckpoint checkpoint = new PurgeCheckpoint("closedSubscriptions");
+        checkpoint.setCutoff(new DateTime().withDate(2010, 1, 1));
+        checkpoint.setLastId(0L);
+        checkpoint.setPurgedSubscriptions(5L);
+        checkpoint.setPurgedSubscribers(2L);
+        purgeCheckpointDataService.create(checkpoint);
+
+        transactionManager.commit(status);
+
+        // the interrupted purge is finished first, with its own cutoff
+        subscriptionService.purgeOldInvalidSubscriptions();
+
+        status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+        assertEquals(1, subscriberService.getSubscriber(1000000006L).size());
+        checkpoint = purgeCheckpointDataService.findByName("closedSubscriptions");
+        assertTrue(checkpoint.isCompleted());
+        assertEquals(5L, (long) checkpoint.getPurgedSubscriptions());
+        transactionManager.commit(status);
+
+        // then the next one starts over with the current cutoff
+        subscriptionService.purgeOldInvalidSubscriptions();
+
+        status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+        assertTrue(subscriberService.getSubscriber(1000000006L).isEmpty());
+        checkpoint = purgeCheckpointDataService.findByName("closedSubscriptions");
+        assertTrue(checkpoint.isCompleted());
+        assertEquals(1L, (long) checkpoint.getPurgedSubscriptions());
+        assertEquals(1L, (long) checkpoint.getPurgedSubscribers());
+        transactionManager.commit(status);
+    }
+
     @Test
     public void testServiceFunctional() throws Exception {
         TransactionStatus status = transactionManager.getTransaction(new DefaultTransactionDefinition());
@@ -0,0 +1,281 @@
+package org.motechproject.nms.testing.it.region;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.motechproject.mds.query.SqlQueryExecution;
+import org.motechproject.metrics.service.Timer;
+import org.motechproject.nms.region.domain.District;
+import org.motechproject.nms.region.domain.LocationFinder;
+import org.motechproject.nms.region.domain.State;
+import org.motechproject.nms.region.domain.Taluka;
+import org.motechproject.nms.region.domain.Village;
+import org.motechproject.nms.region.repository.DistrictDataService;
+import org.motechproject.nms.region.repository.StateDataService;
+import org.motechproject.nms.region.repository.TalukaDataService;
+import org.motechproject.nms.region.repository.VillageDataService;
+import org.motechproject.nms.region.service.LocationCacheService;
+import org.motechproject.nms.region.service.LocationService;
+import org.motechproject.nms.testing.service.TestingService;
+import org.motechproject.testing.osgi.BasePaxIT;
+import org.motechproject.testing.osgi.container.MotechNativeTestContainerFactory;
+import org.ops4j.pax.exam.ExamFactory;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerSuite;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import javax.inject.Inject;
+import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.motechproject.nms.region.utils.LocationConstants.DISTRICT_ID;
+import static org.motechproject.nms.region.utils.LocationConstants.NON_CENSUS_VILLAGE;
+import static org.motechproject.nms.region.utils.LocationConstants.STATE_ID;
+import static org.motechproject.nms.region.utils.LocationConstants.VILLAGE_ID;
+import static org.motechproject.nms.testing.it.utils.RegionHelper.createDistrict;
+import static org.motechproject.nms.testing.it.utils.RegionHelper.createState;
+import static org.motechproject.nms.testing.it.utils.RegionHelper.createTaluka;
+
+/**
+ * Benchmarks the village lookup of RCH imports with 10k, 100k and 500k village keys: the OR'ed condition queries
+ * LocationService.updateLocations used to build against bound tuple IN lists, and updateLocations itself with the
+ * location cache cold and warm. Loads 500k villages, so it's not part of the regular IT run.
+ */
+@Ignore("Benchmark, run manually")
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerSuite.class)
+@ExamFactory(MotechNativeTestContainerFactory.class)
+public class LocationFetchBenchmarkBundleIT extends BasePaxIT {
+
+    private static final int[] KEY_COUNTS = { 10000, 100000, 500000 };
+    private static final int PARTITION_SIZE = 2000;
+    private static final int INSERT_BATCH_SIZE = 5000;
+
+    @Inject
+    TestingService testingService;
+
+    @Inject
+    StateDataService stateDataService;
+
+    @Inject
+    DistrictDataService districtDataService;
+
+    @Inject
+    TalukaDataService talukaDataService;
+
+    @Inject
+    VillageDataService villageDataService;
+
+    @Inject
+    LocationService locationService;
+
+    @Inject
+    LocationCacheService locationCacheService;
+
+    @Inject
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    public void compareVillageFetch() {
+        State state = createLocations();
+
+        for (int keyCount : KEY_COUNTS) {
+            TransactionStatus status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+            Timer timer = new Timer("village", "villages");
+            int orFound = findVillagesWithOrConditions(state.getId(), keyCount);
+            String orTime = timer.frequency(keyCount);
+            transactionManager.commit(status);
+
+            status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+            timer = new Timer("village", "villages");
+            int tupleFound = findVillagesWithTupleIn(state.getId(), keyCount);
+            String tupleTime = timer.frequency(keyCount);
+            transactionManager.commit(status);
+
+            getLogger().info("{} village keys - OR conditions: {}, tuple IN: {}", keyCount, orTime, tupleTime);
+            assertEquals(keyCount, orFound);
+            assertEquals(keyCount, tupleFound);
+        }
+    }
+
+    @Test
+    public void compareCachedVillageFetch() {
+        State state = createLocations();
+
+        for (int keyCount : KEY_COUNTS) {
+            List<Map<String, Object>> records = villageRecords(state, keyCount);
+
+            locationCacheService.cacheEvict(null);
+            TransactionStatus status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+            Timer timer = new Timer("village", "villages");
+            int coldFound = countFound(locationService.updateLocations(records));
+            String coldTime = timer.frequency(keyCount);
+            transactionManager.commit(status);
+
+            status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+            timer = new Timer("village", "villages");
+            int warmFound = countFound(locationService.updateLocations(records));
+            String warmTime = timer.frequency(keyCount);
+            transactionManager.commit(status);
+
+            getLogger().info("{} village keys - updateLocations cold cache: {}, warm cache: {}", keyCount, coldTime,
+                    warmTime);
+            assertEquals(keyCount, coldFound);
+            assertEquals(keyCount, warmFound);
+        }
+    }
+
+    /**
+     * Creates a state, district and taluka with the largest number of villages benchmarked
+     */
+    private State createLocations() {
+        testingService.clearDatabase();
+
+        TransactionStatus status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+        State state = stateDataService.create(createState(1L, "State 1"));
+        District district = districtDataService.create(createDistrict(state, 1L, "District 1"));
+        Taluka taluka = talukaDataService.create(createTaluka(district, "0001", "Taluka 1", 1));
+        transactionManager.commit(status);
+
+        insertVillages(state.getId(), district.getId(), taluka.getId(), KEY_COUNTS[KEY_COUNTS.length - 1]);
+        return state;
+    }
+
+    private static List<Map<String, Object>> villageRecords(State state, int keyCount) {
+        List<Map<String, Object>> records = new ArrayList<>();
+        for (long vcode = 1; vcode <= keyCount; vcode++) {
+            Map<String, Object> record = new HashMap<>();
+            record.put(STATE_ID, state.getCode());
+            record.put(DISTRICT_ID, 1L);
+            record.put(VILLAGE_ID, vcode);
+            record.put(NON_CENSUS_VILLAGE, 0L);
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static int countFound(LocationFinder locationFinder) {
+        int found = 0;
+        for (Village village : locationFinder.getVillageHashMap().values()) {
+            if (village.getId() != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * The way LocationServiceImpl.fillVillages looked up villages before, one literal OR'ed condition per key.
+     */
+    private int findVillagesWithOrConditions(final Long stateId, int keyCount) {
+        int found = 0;
+        for (long from = 1; from <= keyCount; from += PARTITION_SIZE) {
+            final long first = from;
+            final long last = Math.min(from + PARTITION_SIZE - 1, keyCount);
+
+            @SuppressWarnings("unchecked")
+            SqlQueryExecution<List<Village>> queryExecution = new SqlQueryExecution<List<Village>>() {
+
+                @Override
+                public String getSqlQuery() {
+                    StringBuilder query = new StringBuilder("SELECT * from nms_villages where");
+                    for (long vcode = first; vcode <= last; vcode++) {
+                        query.append(" (vcode = ").append(vcode).append(" and svid = 0 and state_id_OID = ")
+                                .append(stateId).append(')');
+                        if (vcode < last) {
+                            query.append(" OR ");
+                        }
+                    }
+                    return query.toString();
+                }
+
+                @Override
+                public List<Village> execute(Query query) {
+                    query.setClass(Village.class);
+                    return (List<Village>) query.execute();
+                }
+            };
+
+            found += villageDataService.executeSQLQuery(queryExecution).size();
+        }
+        return found;
+    }
+
+    /**
+     * The way LocationServiceImpl.fillVillages looks up villages by code, one bound tuple per key.
+     */
+    private int findVillagesWithTupleIn(final Long stateId, int keyCount) {
+        int found = 0;
+        for (long from = 1; from <= keyCount; from += PARTITION_SIZE) {
+            final long first = from;
+            final long last = Math.min(from + PARTITION_SIZE - 1, keyCount);
+            final Map<String, Object> params = new HashMap<>();
+
+            @SuppressWarnings("unchecked")
+            SqlQueryExecution<List<Village>> queryExecution = new SqlQueryExecution<List<Village>>() {
+
+                @Override
+                public String getSqlQuery() {
+                    StringBuilder query = new StringBuilder("SELECT * from nms_villages where (vcode, svid, " +
+                            "state_id_OID) IN (");
+                    for (long vcode = first; vcode <= last; vcode++) {
+                        String key = "k" + (vcode - first);
+                        params.put(key + "_0", vcode);
+                        params.put(key + "_1", 0L);
+                        params.put(key + "_2", stateId);
+                        query.append(vcode == first ? "(" : ", (").append(':').append(key).append("_0, :")
+                                .append(key).append("_1, :").append(key).append("_2)");
+                    }
+                    return query.append(')').toString();
+                }
+
+                @Override
+                public List<Village> execute(Query query) {
+                    query.setClass(Village.class);
+                    return (List<Village>) query.executeWithMap(params);
+                }
+            };
+
+            found += villageDataService.executeSQLQuery(queryExecution).size();
+        }
+        return found;
+    }
+
+    private void insertVillages(final Long stateId, final Long districtId, final Long talukaId, int count) {
+        for (int from = 1; from <= count; from += INSERT_BATCH_SIZE) {
+            final int first = from;
+            final int last = Math.min(from + INSERT_BATCH_SIZE - 1, count);
+
+            SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
+
+                @Override
+                public String getSqlQuery() {
+                    StringBuilder query = new StringBuilder("INSERT INTO nms_villages (name, regionalName, vcode, " +
+                            "svid, taluka_id_OID, state_id_OID, district_id_OID, creator, modifiedBy, owner, " +
+                            "creationDate, modificationDate) VALUES ");
+                    for (int vcode = first; vcode <= last; vcode++) {
+                        query.append(vcode == first ? "" : ", ").append("('Village ").append(vcode)
+                                .append("', 'Village ").append(vcode).append("', ").append(vcode).append(", 0, ")
+                                .append(talukaId).append(", ").append(stateId).append(", ").append(districtId)
+                                .append(", 'benchmark', 'benchmark', 'benchmark', now(), now())");
+                    }
+                    return query.toString();
+                }
+
+                @Override
+                public Long execute(Query query) {
+                    return (Long) query.execute();
+                }
+            };
+
+            villageDataService.executeSQLQuery(queryExecution);
+        }
+    }
+}
@@ -8,17 +8,16 @@ import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
 import org.aspectj.lang.annotation.DeclareMixin;
 import org.aspectj.lang.annotation.Pointcut;
-import org.motechproject.mds.util.PropertyUtil;
 import org.motechproject.nms.tracking.exception.TrackChangesException;
 import org.motechproject.nms.tracking.service.TrackChangesService;
 import org.motechproject.nms.tracking.utils.TrackChangeUtils;
 import org.motechproject.nms.tracking.utils.TrackChanges;
 import org.motechproject.nms.tracking.utils.TrackChangesImpl;
+import org.motechproject.nms.tracking.utils.TrackedProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import java.lang.reflect.InvocationTargetException;
 import java.util.Collection;
 
 @Aspect
@@ -76,13 +75,16 @@ public class TrackChangesAspect {
         }
     }
 
-    @Before("withinTrackClass() && trackedFieldSetter()")
-    public void beforeTrackedFieldSetter(JoinPoint joinPoint) {
+    /**
+     * Binds the target and the new value through the pointcut and only takes the static part of the join point, so
+     * no join point object is created for each tracked field set.
+     */
+    @Before(value = "withinTrackClass() && trackedFieldSetter() && target(target) && args(newValue)",
+            argNames = "target,newValue")
+    public void beforeTrackedFieldSetter(JoinPoint.StaticPart staticPart, TrackChanges target, Object newValue) {
         try {
-            TrackChanges target = (TrackChanges) joinPoint.getTarget();
-            String property = getProperty(joinPoint);
-            Object oldValue = getOldValue(joinPoint);
-            Object newValue = getNewValue(joinPoint);
+            String property = staticPart.getSignature().getName();
+            Object oldValue = TrackedProperties.of(target.getClass()).getProperty(target, property);
             TrackChangeUtils.trackChange(target, property, oldValue, newValue);
         } catch (TrackChangesException e) {
             LOGGER.error("Unable to track field changes", e);
@@ -97,22 +99,6 @@ public class TrackChangesAspect {
         return TrackChangeUtils.decorateTrackedCollection(target, property, collection);
     }
 
-    private Object getOldValue(JoinPoint joinPoint) throws TrackChangesException {
-        try {
-            return PropertyUtil.getProperty(joinPoint.getTarget(), getProperty(joinPoint));
-        } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-            throw new TrackChangesException("Unable to retrieve old value", e);
-        }
-    }
-
-    private Object getNewValue(JoinPoint joinPoint) throws TrackChangesException {
-        if (joinPoint.getArgs().length == 1) {
-            return joinPoint.getArgs()[0];
-        } else {
-            throw new TrackChangesException("Unable to retrieve new value");
-        }
-    }
-
     private String getProperty(JoinPoint joinPoint) {
         return joinPoint.getSignature().getName();
     }
@@ -5,8 +5,10 @@ import org.motechproject.mds.annotations.Entity;
 import org.motechproject.mds.annotations.Field;
 
 import javax.jdo.annotations.Column;
+import javax.jdo.annotations.Index;
 
 @Entity
+@Index(name = "entityName_instanceId_composite_idx", members = { "entityName", "instanceId" })
 public class ChangeLog {
 
     @Field(required = true)
@@ -1,5 +1,7 @@
 package org.motechproject.nms.tracking.service;
 
+import java.util.Collection;
+
 public interface TrackChangesService {
 
     void registerLifecycleListeners(Class<?> entityClass);
@@ -7,4 +9,22 @@ public interface TrackChangesService {
     void preStore(Object trackChanges);
 
     void preDelete(Object trackChanges);
+
+    /**
+     * Deletes the change logs of instances removed without going through the lifecycle listeners, eg: by native
+     * statements. Deferred until the current transaction commits when the change log purge is deferred.
+     * @param entityClass the class of the deleted instances
+     * @param instanceIds the ids of the deleted instances
+     */
+    void deleteChangeLogs(Class<?> entityClass, Collection<Long> instanceIds);
+
+    /**
+     * @return the number of change logs waiting for the background writer, 0 when they are written synchronously
+     */
+    int getChangeLogQueueDepth();
+
+    /**
+     * @return how long the oldest change log waiting for the background writer has been queued, in milliseconds
+     */
+    long getChangeLogLagMillis();
 }
@@ -0,0 +1,208 @@
+package org.motechproject.nms.tracking.service.impl;
+
+import org.motechproject.mds.query.SqlQueryExecution;
+import org.motechproject.metrics.service.Timer;
+import org.motechproject.nms.tracking.domain.ChangeLog;
+import org.motechproject.nms.tracking.repository.ChangeLogDataService;
+import org.motechproject.nms.tracking.utils.SettingsHelper;
+import org.motechproject.nms.tracking.utils.TransactionBuffer;
+import org.motechproject.server.config.SettingsFacade;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes the change logs of deleted tracked entities with one DELETE per batch of instance ids, instead of loading
+ * and deleting them one by one.
+ *
+ * By default the change logs are deleted in the transaction deleting the entity. With
+ * tracking.deferred_change_log_purge=true the instance ids deleted by a transaction are collected and their change
+ * logs are deleted by a background cleanup once it commits, in batches of tracking.change_log.purge_batch_size
+ * running in their own transactions, so a large purge doesn't keep its transaction open for the change logs.
+ */
+@Component("changeLogPurger")
+public class ChangeLogPurger {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeLogPurger.class);
+
+    private static final String DEFERRED_PURGE = "tracking.deferred_change_log_purge";
+    private static final String PURGE_BATCH_SIZE = "tracking.change_log.purge_batch_size";
+    private static final int PURGE_BATCH_SIZE_DEFAULT = 1000;
+
+    private static final String TABLE = "TRACKING_MODULE_CHANGELOG";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 60;
+
+    private final ChangeLogDataService changeLogDataService;
+    private final TransactionTemplate newTransaction;
+    private final boolean deferred;
+    private final int batchSize;
+    private final ExecutorService cleanupExecutor;
+
+    private final TransactionBuffer<Map<String, Set<Long>>> transactionInstanceIds =
+            new TransactionBuffer<Map<String, Set<Long>>>() {
+                @Override
+                protected Map<String, Set<Long>> newBuffer() {
+                    return new HashMap<>();
+                }
+
+                @Override
+                protected void committed(Map<String, Set<Long>> instanceIds) {
+                    schedule(instanceIds);
+                }
+            };
+
+    @Autowired
+    public ChangeLogPurger(ChangeLogDataService changeLogDataService, PlatformTransactionManager transactionManager,
+                           @Qualifier("trackingSettings") SettingsFacade settingsFacade) {
+        this.changeLogDataService = changeLogDataService;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.deferred = "true".equalsIgnoreCase(settingsFacade.getProperty(DEFERRED_PURGE));
+        this.batchSize = SettingsHelper.getPositiveInteger(settingsFacade, PURGE_BATCH_SIZE, PURGE_BATCH_SIZE_DEFAULT);
+        this.cleanupExecutor = deferred ? Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "nms-change-log-purge");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }) : null;
+    }
+
+    /**
+     * Deletes, or schedules the deletion of, the change logs of a deleted entity
+     * @param entityName the entity class name
+     * @param instanceId the id of the deleted instance
+     */
+    public void purge(String entityName, Long instanceId) {
+        purge(entityName, Collections.singletonList(instanceId));
+    }
+
+    /**
+     * Deletes, or schedules the deletion of, the change logs of deleted entities
+     * @param entityName the entity class name
+     * @param instanceIds the ids of the deleted instances
+     */
+    public void purge(String entityName, Collection<Long> instanceIds) {
+        if (!deferred) {
+            List<Long> ids = new ArrayList<>(instanceIds);
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                delete(entityName, ids.subList(from, Math.min(from + batchSize, ids.size())));
+            }
+            return;
+        }
+        Map<String, Set<Long>> pending = transactionInstanceIds.current();
+        if (pending == null) {
+            schedule(Collections.singletonMap(entityName, new HashSet<>(instanceIds)));
+            return;
+        }
+        Set<Long> ids = pending.get(entityName);
+        if (ids == null) {
+            ids = new HashSet<>();
+            pending.put(entityName, ids);
+        }
+        ids.addAll(instanceIds);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (cleanupExecutor == null) {
+            return;
+        }
+        cleanupExecutor.shutdown();
+        try {
+            if (!cleanupExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warn("Change log purge still running after {}s, interrupting it", SHUTDOWN_TIMEOUT_SECONDS);
+                cleanupExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            cleanupExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void schedule(final Map<String, ? extends Collection<Long>> instanceIds) {
+        cleanupExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Map.Entry<String, ? extends Collection<Long>> entry : instanceIds.entrySet()) {
+                    purgeInBatches(entry.getKey(), new ArrayList<>(entry.getValue()));
+                }
+            }
+        });
+    }
+
+    private void purgeInBatches(final String entityName, List<Long> instanceIds) {
+        Timer timer = new Timer("instance", "instances");
+        long deleted = 0;
+        for (int from = 0; from < instanceIds.size(); from += batchSize) {
+            final List<Long> batch = instanceIds.subList(from, Math.min(from + batchSize, instanceIds.size()));
+            try {
+                deleted += newTransaction.execute(new TransactionCallback<Long>() {
+                    @Override
+                    public Long doInTransaction(TransactionStatus status) {
+                        return delete(entityName, batch);
+                    }
+                });
+            } catch (RuntimeException e) {
+                LOGGER.error("Unable to delete the change logs of {} instance(s) of {}", batch.size(), entityName, e);
+            }
+        }
+        LOGGER.info("Deleted {} change log(s) of {} deleted {}", deleted, timer.frequency(instanceIds.size()),
+                entityName);
+    }
+
+    private long delete(String entityName, List<Long> instanceIds) {
+        final Map<String, Object> params = new HashMap<>();
+        final StringBuilder idParams = new StringBuilder();
+        params.put("entityName", entityName);
+        for (int i = 0; i < instanceIds.size(); i++) {
+            if (i > 0) {
+                idParams.append(", ");
+            }
+            idParams.append(":i").append(i);
+            params.put("i" + i, instanceIds.get(i));
+        }
+
+        @SuppressWarnings("unchecked")
+        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
+
+            @Override
+            public String getSqlQuery() {
+                return "DELETE FROM " + TABLE + " WHERE entityName = :entityName AND instanceId IN (" + idParams +
+                        ")";
+            }
+
+            @Override
+            public Long execute(Query query) {
+                query.setClass(ChangeLog.class);
+                return (Long) query.executeWithMap(params);
+            }
+        };
+
+        Long deleted = changeLogDataService.executeSQLQuery(queryExecution);
+        return deleted == null ? 0 : deleted;
+    }
+}
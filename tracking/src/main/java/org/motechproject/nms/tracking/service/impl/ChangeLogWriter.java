@@ -0,0 +1,295 @@
+package org.motechproject.nms.tracking.service.impl;
+
+import org.motechproject.mds.query.SqlQueryExecution;
+import org.motechproject.metrics.service.Timer;
+import org.motechproject.nms.tracking.domain.ChangeLog;
+import org.motechproject.nms.tracking.repository.ChangeLogDataService;
+import org.motechproject.nms.tracking.utils.SettingsHelper;
+import org.motechproject.nms.tracking.utils.TransactionBuffer;
+import org.motechproject.server.config.SettingsFacade;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the change logs produced by {@link TrackChangesServiceImpl}.
+ *
+ * By default (tracking.async_change_log=false) a change log is created in the transaction that changed the entity,
+ * so it is stored, or rolled back, together with the change. In asynchronous mode the change logs of a transaction
+ * are collected and handed over to a background writer once it commits, which inserts them in multi-row batches;
+ * change logs of rolled back transactions are dropped. When the queue is full the committing thread writes its
+ * change logs itself, in a new transaction, rather than dropping them or waiting for room.
+ */
+@Component("changeLogWriter")
+public class ChangeLogWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeLogWriter.class);
+
+    /**
+     * MySQL accepts at most 65535 bind parameters per statement, each row binds 4 and every statement 2 more
+     */
+    private static final int MAX_PARAMETERS = 65535;
+    private static final int PARAMETERS_PER_ROW = 4;
+    private static final int MAX_ROWS_PER_STATEMENT = (MAX_PARAMETERS - 2) / PARAMETERS_PER_ROW;
+
+    private static final String ASYNC_CHANGE_LOG = "tracking.async_change_log";
+    private static final String QUEUE_SIZE = "tracking.change_log.queue_size";
+    private static final int QUEUE_SIZE_DEFAULT = 50000;
+    private static final String BATCH_SIZE = "tracking.change_log.batch_size";
+    private static final int BATCH_SIZE_DEFAULT = 500;
+
+    private static final String TABLE = "TRACKING_MODULE_CHANGELOG";
+    private static final String TRACKING_USER = "tracking";
+    private static final long POLL_TIMEOUT_MILLIS = 1000;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 30000;
+
+    private final ChangeLogDataService changeLogDataService;
+    private final TransactionTemplate newTransaction;
+    private final boolean async;
+    private final int batchSize;
+    private final BlockingQueue<PendingChangeLog> queue;
+
+    private final TransactionBuffer<List<ChangeLog>> transactionChangeLogs = new TransactionBuffer<List<ChangeLog>>() {
+        @Override
+        protected List<ChangeLog> newBuffer() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        protected void committed(List<ChangeLog> changeLogs) {
+            enqueue(changeLogs);
+        }
+    };
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    @Autowired
+    public ChangeLogWriter(ChangeLogDataService changeLogDataService, PlatformTransactionManager transactionManager,
+                           @Qualifier("trackingSettings") SettingsFacade settingsFacade) {
+        this.changeLogDataService = changeLogDataService;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.async = "true".equalsIgnoreCase(settingsFacade.getProperty(ASYNC_CHANGE_LOG));
+        this.batchSize = SettingsHelper.getPositiveInteger(settingsFacade, BATCH_SIZE, BATCH_SIZE_DEFAULT);
+        this.queue = new ArrayBlockingQueue<>(SettingsHelper.getPositiveInteger(settingsFacade, QUEUE_SIZE, QUEUE_SIZE_DEFAULT));
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!async) {
+            LOGGER.info("Change logs are written synchronously");
+            return;
+        }
+        running = true;
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeQueued();
+            }
+        }, "nms-change-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        LOGGER.info("Change logs are written asynchronously, queue of {}, batches of {}", queue.remainingCapacity(),
+                batchSize);
+    }
+
+    /**
+     * Stops the background writer once everything queued so far is written
+     */
+    @PreDestroy
+    public void stop() {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        try {
+            writerThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            LOGGER.warn("Change log writer stopped with {} change log(s) still queued", queue.size());
+        }
+    }
+
+    public void write(ChangeLog changeLog) {
+        if (!async) {
+            changeLogDataService.create(changeLog);
+            return;
+        }
+        List<ChangeLog> pending = transactionChangeLogs.current();
+        if (pending == null) {
+            enqueue(Collections.singletonList(changeLog));
+            return;
+        }
+        pending.add(changeLog);
+    }
+
+    /**
+     * @return the number of change logs waiting for the background writer
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return how long the oldest queued change log has been waiting, in milliseconds
+     */
+    public long getLagMillis() {
+        PendingChangeLog oldest = queue.peek();
+        return oldest == null ? 0 : System.currentTimeMillis() - oldest.queuedAt;
+    }
+
+    private void enqueue(List<ChangeLog> changeLogs) {
+        long now = System.currentTimeMillis();
+        List<ChangeLog> overflow = null;
+        for (ChangeLog changeLog : changeLogs) {
+            if (!running || !queue.offer(new PendingChangeLog(changeLog, now))) {
+                if (overflow == null) {
+                    overflow = new ArrayList<>();
+                }
+                overflow.add(changeLog);
+            }
+        }
+        if (overflow != null) {
+            LOGGER.warn("Change log queue full ({} queued), writing {} change log(s) synchronously", queue.size(),
+                    overflow.size());
+            writeInNewTransaction(overflow);
+        }
+    }
+
+    private void writeQueued() {
+        List<PendingChangeLog> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingChangeLog first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+
+                long lag = System.currentTimeMillis() - first.queuedAt;
+                List<ChangeLog> changeLogs = new ArrayList<>(batch.size());
+                for (PendingChangeLog pendingChangeLog : batch) {
+                    changeLogs.add(pendingChangeLog.changeLog);
+                }
+                Timer timer = new Timer("change log", "change logs");
+                writeInNewTransaction(changeLogs);
+                LOGGER.debug("Wrote {}, lag {}ms, {} still queued", timer.frequency(changeLogs.size()), lag,
+                        queue.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (RuntimeException e) {
+                LOGGER.error("Unable to write {} change log(s)", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeInNewTransaction(final List<ChangeLog> changeLogs) {
+        try {
+            newTransaction.execute(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus status) {
+                    insert(changeLogs);
+                }
+            });
+        } catch (RuntimeException e) {
+            LOGGER.warn("Batch insert of {} change log(s) failed, inserting them one by one", changeLogs.size(), e);
+            for (final ChangeLog changeLog : changeLogs) {
+                try {
+                    newTransaction.execute(new TransactionCallbackWithoutResult() {
+                        @Override
+                        protected void doInTransactionWithoutResult(TransactionStatus status) {
+                            changeLogDataService.create(changeLog);
+                        }
+                    });
+                } catch (RuntimeException ex) {
+                    LOGGER.error("Unable to store change log of {} {}", changeLog.getEntityName(),
+                            changeLog.getInstanceId(), ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts the change logs with as few multi-row statements as the bind parameter limit allows
+     */
+    private void insert(List<ChangeLog> changeLogs) {
+        for (int from = 0; from < changeLogs.size(); from += MAX_ROWS_PER_STATEMENT) {
+            insertRows(changeLogs.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, changeLogs.size())));
+        }
+    }
+
+    private void insertRows(List<ChangeLog> changeLogs) {
+        final Map<String, Object> params = new HashMap<>();
+        final StringBuilder values = new StringBuilder();
+        Date now = new Date();
+        int i = 0;
+        for (ChangeLog changeLog : changeLogs) {
+            if (i > 0) {
+                values.append(", ");
+            }
+            values.append(String.format("(:e%1$d, :i%1$d, :t%1$d, :c%1$d, :u, :u, :u, :now, :now)", i));
+            params.put("e" + i, changeLog.getEntityName());
+            params.put("i" + i, changeLog.getInstanceId());
+            params.put("t" + i, changeLog.getTimestamp().toDate());
+            params.put("c" + i, changeLog.getChange());
+            i++;
+        }
+        params.put("u", TRACKING_USER);
+        params.put("now", now);
+
+        @SuppressWarnings("unchecked")
+        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
+
+            @Override
+            public String getSqlQuery() {
+                return "INSERT INTO " + TABLE + " (entityName, instanceId, timestamp, `change`, creator, " +
+                        "modifiedBy, owner, creationDate, modificationDate) VALUES " + values;
+            }
+
+            @Override
+            public Long execute(Query query) {
+                query.setClass(ChangeLog.class);
+                return (Long) query.executeWithMap(params);
+            }
+        };
+
+        changeLogDataService.executeSQLQuery(queryExecution);
+    }
+
+    private static final class PendingChangeLog {
+        private final ChangeLog changeLog;
+        private final long queuedAt;
+
+        private PendingChangeLog(ChangeLog changeLog, long queuedAt) {
+            this.changeLog = changeLog;
+            this.queuedAt = queuedAt;
+        }
+    }
+}
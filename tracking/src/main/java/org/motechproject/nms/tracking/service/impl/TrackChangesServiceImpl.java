@@ -9,7 +9,6 @@ import org.motechproject.mds.util.PropertyUtil;
 import org.motechproject.nms.tracking.service.EntityServiceWrapper;
 import org.motechproject.nms.tracking.domain.ChangeLog;
 import org.motechproject.nms.tracking.exception.TrackChangesException;
-import org.motechproject.nms.tracking.repository.ChangeLogDataService;
 import org.motechproject.nms.tracking.service.TrackChangesService;
 import org.motechproject.nms.tracking.utils.Change;
 import org.motechproject.nms.tracking.utils.CollectionChange;
@@ -24,7 +23,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -37,18 +35,21 @@ public class TrackChangesServiceImpl implements TrackChangesService {
     public static final String EMPTY_PACKAGE = "";
 
     private JdoListenerRegistryService jdoListenerRegistryService;
-    private ChangeLogDataService changeLogDataService;
     private EntityServiceWrapper entityServiceWrapper;
 
+    private ChangeLogWriter changeLogWriter;
+    private ChangeLogPurger changeLogPurger;
+
     private Set<String> trackedClasses = new HashSet<>();
 
 
     @Autowired
     public TrackChangesServiceImpl(JdoListenerRegistryService jdoListenerRegistryService, EntityServiceWrapper entityServiceWrapper,
-                                   ChangeLogDataService changeLogDataService) {
+                                   ChangeLogWriter changeLogWriter, ChangeLogPurger changeLogPurger) {
         this.jdoListenerRegistryService = jdoListenerRegistryService;
         this.entityServiceWrapper = entityServiceWrapper;
-        this.changeLogDataService = changeLogDataService;
+        this.changeLogWriter = changeLogWriter;
+        this.changeLogPurger = changeLogPurger;
     }
 
     @Override
@@ -93,6 +94,23 @@ public class TrackChangesServiceImpl implements TrackChangesService {
         }
     }
 
+    @Override
+    public void deleteChangeLogs(Class<?> entityClass, Collection<Long> instanceIds) {
+        if (!instanceIds.isEmpty()) {
+            changeLogPurger.purge(entityClass.getName(), instanceIds);
+        }
+    }
+
+    @Override
+    public int getChangeLogQueueDepth() {
+        return changeLogWriter.getQueueDepth();
+    }
+
+    @Override
+    public long getChangeLogLagMillis() {
+        return changeLogWriter.getLagMillis();
+    }
+
     private void storeChangeLog(TrackChanges target) throws TrackChangesException {
         Map<String, Change> changes = target.changes();
         Map<String, CollectionChange> collectionChanges = target.collectionChanges();
@@ -103,7 +121,7 @@ public class TrackChangesServiceImpl implements TrackChangesService {
             Long instanceId = getInstanceId(target);
             String change = getChange(changes, collectionChanges, actualChange, actualCollectionChange);
             ChangeLog changeLog = new ChangeLog(entityName, instanceId, DateTime.now(), change);
-            changeLogDataService.create(changeLog);
+            changeLogWriter.write(changeLog);
             changes.clear();
             collectionChanges.clear();
         }
@@ -112,10 +130,7 @@ public class TrackChangesServiceImpl implements TrackChangesService {
     private void deleteChangeLogs(Object target) throws TrackChangesException {
         String entityName = getEntityName(target);
         Long instanceId = getInstanceId(target);
-        List<ChangeLog> changeLogs = changeLogDataService.findByEntityNameAndInstanceId(entityName, instanceId);
-        for (ChangeLog changeLog : changeLogs) {
-            changeLogDataService.delete(changeLog);
-        }
+        changeLogPurger.purge(entityName, instanceId);
     }
 
     private String getEntityName(Object target) {
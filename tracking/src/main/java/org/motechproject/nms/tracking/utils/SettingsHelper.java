@@ -0,0 +1,27 @@
+package org.motechproject.nms.tracking.utils;
+
+import org.motechproject.server.config.SettingsFacade;
+
+/**
+ * Reads the numeric settings of the modules
+ */
+public final class SettingsHelper {
+
+    private SettingsHelper() {
+    }
+
+    /**
+     * @param settingsFacade settings of the module
+     * @param key the setting
+     * @param defaultValue used when the setting is missing, not a number or not positive
+     * @return the value of a setting which has to be a positive integer, eg: a batch size or a number of threads
+     */
+    public static int getPositiveInteger(SettingsFacade settingsFacade, String key, int defaultValue) {
+        try {
+            int value = Integer.parseInt(settingsFacade.getProperty(key));
+            return value > 0 ? value : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
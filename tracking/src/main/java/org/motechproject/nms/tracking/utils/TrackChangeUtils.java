@@ -1,11 +1,9 @@
 package org.motechproject.nms.tracking.utils;
 
-import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.commons.collections.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.InvocationTargetException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
@@ -61,21 +59,13 @@ public final class TrackChangeUtils {
     private static CollectionChange getCollectionChange(TrackChanges target, String property) {
         CollectionChange collectionChange = target.collectionChanges().get(property);
         if (collectionChange == null) {
-            CollectionFactory collectionFactory = CollectionFactory.of(getCollectionType(target, property));
+            CollectionFactory collectionFactory = TrackedProperties.of(target.getClass()).getCollectionFactory(property);
             collectionChange = new CollectionChange(collectionFactory);
             target.collectionChanges().put(property, collectionChange);
         }
         return collectionChange;
     }
 
-    private static Class<? extends Collection> getCollectionType(TrackChanges target, String property) {
-        try {
-            return (Class<? extends Collection>) PropertyUtils.getPropertyType(target, property);
-        } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-            throw new IllegalArgumentException(String.format("Cannot retrieve property type of %s.%s", target.getClass(), property), e);
-        }
-    }
-
     private static void trackPropertyChange(TrackChanges target, String property, Object oldValue, Object newValue) {
         Change change = target.changes().get(property);
         if (change == null) {
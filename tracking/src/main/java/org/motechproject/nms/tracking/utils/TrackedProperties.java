@@ -0,0 +1,92 @@
+package org.motechproject.nms.tracking.utils;
+
+import org.motechproject.nms.tracking.exception.TrackChangesException;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Accessor table of a tracked class, built once per class: the getter of every property as a method handle, and the
+ * collection factory of collection properties. Used instead of looking properties up by name through reflection
+ * every time a tracked field is set or a tracked collection is read.
+ */
+public final class TrackedProperties {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final ClassValue<TrackedProperties> TRACKED_PROPERTIES = new ClassValue<TrackedProperties>() {
+        @Override
+        protected TrackedProperties computeValue(Class<?> type) {
+            return new TrackedProperties(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final Map<String, MethodHandle> getters;
+    private final Map<String, CollectionFactory> collectionFactories;
+
+    private TrackedProperties(Class<?> type) {
+        this.type = type;
+        Map<String, MethodHandle> getterTable = new HashMap<>();
+        Map<String, CollectionFactory> collectionFactoryTable = new HashMap<>();
+        try {
+            BeanInfo beanInfo = Introspector.getBeanInfo(type);
+            for (PropertyDescriptor descriptor : beanInfo.getPropertyDescriptors()) {
+                Method readMethod = descriptor.getReadMethod();
+                if (readMethod != null) {
+                    getterTable.put(descriptor.getName(), toMethodHandle(readMethod));
+                }
+                Class<?> propertyType = descriptor.getPropertyType();
+                if (propertyType != null && Collection.class.isAssignableFrom(propertyType)) {
+                    collectionFactoryTable.put(descriptor.getName(),
+                            CollectionFactory.of(propertyType.asSubclass(Collection.class)));
+                }
+            }
+        } catch (IntrospectionException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot build the accessor table of " + type.getName(), e);
+        }
+        this.getters = Collections.unmodifiableMap(getterTable);
+        this.collectionFactories = Collections.unmodifiableMap(collectionFactoryTable);
+    }
+
+    public static TrackedProperties of(Class<?> type) {
+        return TRACKED_PROPERTIES.get(type);
+    }
+
+    public Object getProperty(Object target, String property) throws TrackChangesException {
+        MethodHandle getter = getters.get(property);
+        if (getter == null) {
+            throw new TrackChangesException(String.format("No getter for %s.%s", type.getName(), property));
+        }
+        try {
+            return (Object) getter.invokeExact(target);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) { //NO CHECKSTYLE Catching 'Throwable' is not allowed.
+            throw new TrackChangesException(String.format("Unable to read %s.%s", type.getName(), property), t);
+        }
+    }
+
+    public CollectionFactory getCollectionFactory(String property) {
+        CollectionFactory collectionFactory = collectionFactories.get(property);
+        if (collectionFactory == null) {
+            throw new IllegalArgumentException(String.format("Cannot retrieve property type of %s.%s", type, property));
+        }
+        return collectionFactory;
+    }
+
+    private static MethodHandle toMethodHandle(Method readMethod) throws IllegalAccessException {
+        readMethod.setAccessible(true);
+        return MethodHandles.lookup().unreflect(readMethod).asType(GETTER_TYPE);
+    }
+}
@@ -0,0 +1,65 @@
+package org.motechproject.nms.tracking.utils;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Collects what a transaction did for something to act on once it commits, eg: the change logs to write or the cache
+ * entries to evict. The first call to {@link #current()} in a transaction binds a new buffer to it, which is handed to
+ * {@link #committed(Object)} after the commit and dropped if the transaction rolls back. The buffer is unbound while
+ * its transaction is suspended, so a transaction started with REQUIRES_NEW gets a buffer of its own.
+ *
+ * @param <T> type of the buffer
+ */
+public abstract class TransactionBuffer<T> {
+
+    /**
+     * @return the buffer of the current transaction, or null if there is no transaction to bind it to, in which case
+     * the caller acts right away
+     */
+    public T current() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        T buffer = (T) TransactionSynchronizationManager.getResource(this);
+        if (buffer == null) {
+            final T transactionBuffer = newBuffer();
+            TransactionSynchronizationManager.bindResource(this, transactionBuffer);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void suspend() {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(TransactionBuffer.this);
+                }
+
+                @Override
+                public void resume() {
+                    TransactionSynchronizationManager.bindResource(TransactionBuffer.this, transactionBuffer);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(TransactionBuffer.this);
+                    if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                        committed(transactionBuffer);
+                    }
+                }
+            });
+            buffer = transactionBuffer;
+        }
+        return buffer;
+    }
+
+    /**
+     * @return an empty buffer for a new transaction
+     */
+    protected abstract T newBuffer();
+
+    /**
+     * Called once the transaction the buffer is bound to has committed
+     * @param buffer what the transaction collected
+     */
+    protected abstract void committed(T buffer);
+}
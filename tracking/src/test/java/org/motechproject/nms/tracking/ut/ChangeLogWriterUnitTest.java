@@ -0,0 +1,153 @@
+package org.motechproject.nms.tracking.ut;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.motechproject.mds.query.SqlQueryExecution;
+import org.motechproject.nms.tracking.domain.ChangeLog;
+import org.motechproject.nms.tracking.repository.ChangeLogDataService;
+import org.motechproject.nms.tracking.service.impl.ChangeLogWriter;
+import org.motechproject.server.config.SettingsFacade;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ChangeLogWriterUnitTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private ChangeLogDataService changeLogDataService;
+    private SettingsFacade settingsFacade;
+    private PlatformTransactionManager transactionManager;
+    private ChangeLogWriter changeLogWriter;
+
+    private final List<String> writtenBy = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch writerBusy = new CountDownLatch(1);
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        changeLogDataService = mock(ChangeLogDataService.class);
+        settingsFacade = mock(SettingsFacade.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any(TransactionDefinition.class))).thenReturn(mock(TransactionStatus.class));
+        when(settingsFacade.getProperty("tracking.async_change_log")).thenReturn("true");
+        when(settingsFacade.getProperty("tracking.change_log.queue_size")).thenReturn("1");
+
+        // the background writer blocks on its first batch until released, so the queue can be filled
+        when(changeLogDataService.executeSQLQuery(any(SqlQueryExecution.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws InterruptedException {
+                SqlQueryExecution<Long> execution = (SqlQueryExecution<Long>) invocation.getArguments()[0];
+                Query query = mock(Query.class);
+                when(query.executeWithMap(anyMap())).thenReturn(1L);
+                execution.execute(query);
+                writtenBy.add(Thread.currentThread().getName());
+                if ("nms-change-log-writer".equals(Thread.currentThread().getName())) {
+                    writerBusy.countDown();
+                    release.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                return 1L;
+            }
+        });
+
+        changeLogWriter = new ChangeLogWriter(changeLogDataService, transactionManager, settingsFacade);
+        changeLogWriter.start();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        changeLogWriter.stop();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldQueueChangeLogsOnlyOnceTheTransactionCommits() throws InterruptedException {
+        TransactionSynchronizationManager.initSynchronization();
+        changeLogWriter.write(changeLog(1L));
+        changeLogWriter.write(changeLog(2L));
+
+        Thread.sleep(100);
+        verify(changeLogDataService, never()).executeSQLQuery(any(SqlQueryExecution.class));
+        assertEquals(0, changeLogWriter.getQueueDepth());
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        verify(changeLogDataService, timeout(TIMEOUT_MILLIS)).executeSQLQuery(any(SqlQueryExecution.class));
+        assertEquals(Collections.singletonList("nms-change-log-writer"), writtenBy);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldDropChangeLogsOfRolledBackTransactions() throws InterruptedException {
+        TransactionSynchronizationManager.initSynchronization();
+        changeLogWriter.write(changeLog(1L));
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        Thread.sleep(100);
+        verify(changeLogDataService, never()).executeSQLQuery(any(SqlQueryExecution.class));
+        assertEquals(0, changeLogWriter.getQueueDepth());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldWriteSynchronouslyWhenTheQueueIsFull() throws InterruptedException {
+        changeLogWriter.write(changeLog(1L));
+        assertTrue(writerBusy.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+        // the writer is busy with the first change log: the second one waits in the queue, the third doesn't fit
+        changeLogWriter.write(changeLog(2L));
+        assertEquals(1, changeLogWriter.getQueueDepth());
+        assertTrue(changeLogWriter.getLagMillis() >= 0);
+
+        changeLogWriter.write(changeLog(3L));
+        assertEquals(2, writtenBy.size());
+        assertEquals(Thread.currentThread().getName(), writtenBy.get(1));
+        assertEquals(1, changeLogWriter.getQueueDepth());
+
+        release.countDown();
+        verify(changeLogDataService, timeout(TIMEOUT_MILLIS).times(3)).executeSQLQuery(any(SqlQueryExecution.class));
+        assertEquals(0, changeLogWriter.getQueueDepth());
+        assertEquals(0, changeLogWriter.getLagMillis());
+    }
+
+    private void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(status);
+        }
+    }
+
+    private static ChangeLog changeLog(Long instanceId) {
+        return new ChangeLog("org.motechproject.nms.Entity", instanceId, DateTime.now(), "field(old, new)");
+    }
+}
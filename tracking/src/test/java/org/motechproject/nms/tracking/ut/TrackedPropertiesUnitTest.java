@@ -0,0 +1,174 @@
+package org.motechproject.nms.tracking.ut;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.motechproject.nms.tracking.annotation.TrackClass;
+import org.motechproject.nms.tracking.annotation.TrackField;
+import org.motechproject.nms.tracking.exception.TrackChangesException;
+import org.motechproject.nms.tracking.utils.Change;
+import org.motechproject.nms.tracking.utils.TrackChanges;
+import org.motechproject.nms.tracking.utils.TrackedProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TrackedPropertiesUnitTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrackedPropertiesUnitTest.class);
+
+    private static final int WARMUP_ITERATIONS = 200000;
+    private static final int ITERATIONS = 2000000;
+
+    @Test
+    public void shouldReadPropertiesThroughGetters() throws TrackChangesException {
+        UntrackedBean bean = new UntrackedBean();
+        bean.setName("name");
+        bean.setAge(42);
+
+        TrackedProperties properties = TrackedProperties.of(UntrackedBean.class);
+
+        assertEquals("name", properties.getProperty(bean, "name"));
+        assertEquals(42, properties.getProperty(bean, "age"));
+        assertNull(properties.getProperty(bean, "children"));
+        assertSame(properties, TrackedProperties.of(UntrackedBean.class));
+    }
+
+    @Test(expected = TrackChangesException.class)
+    public void shouldFailForPropertyWithoutGetter() throws TrackChangesException {
+        TrackedProperties.of(UntrackedBean.class).getProperty(new UntrackedBean(), "missing");
+    }
+
+    @Test
+    public void shouldCreateCollectionsOfThePropertyType() {
+        TrackedProperties properties = TrackedProperties.of(UntrackedBean.class);
+
+        assertTrue(properties.getCollectionFactory("children").createCollection() instanceof List);
+        assertTrue(properties.getCollectionFactory("tags").createCollection() instanceof Set);
+    }
+
+    @Test
+    public void shouldTrackOldAndNewValues() {
+        TrackedBean bean = new TrackedBean();
+        bean.setName("old");
+        ((TrackChanges) bean).changes().clear();
+
+        bean.setName("new");
+
+        Change change = ((TrackChanges) bean).changes().get("name");
+        assertEquals("old", change.getOldValue());
+        assertEquals("new", change.getNewValue());
+    }
+
+    /**
+     * Compares the cost of setting fields with and without change tracking, run it by hand
+     */
+    @Ignore
+    @Test
+    public void benchmarkTrackedSetters() {
+        TrackedBean tracked = new TrackedBean();
+        UntrackedBean untracked = new UntrackedBean();
+
+        runUntracked(untracked, WARMUP_ITERATIONS);
+        runTracked(tracked, WARMUP_ITERATIONS);
+
+        long start = System.nanoTime();
+        runUntracked(untracked, ITERATIONS);
+        long untrackedNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        runTracked(tracked, ITERATIONS);
+        long trackedNanos = System.nanoTime() - start;
+
+        LOGGER.info("Setter cost: {} ns/op untracked, {} ns/op tracked", untrackedNanos / (2.0 * ITERATIONS),
+                trackedNanos / (2.0 * ITERATIONS));
+    }
+
+    private static void runTracked(TrackedBean bean, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            bean.setName(i % 2 == 0 ? "even" : "odd");
+            bean.setAge(i);
+            if (i % 1000 == 0) {
+                ((TrackChanges) bean).changes().clear();
+            }
+        }
+    }
+
+    private static void runUntracked(UntrackedBean bean, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            bean.setName(i % 2 == 0 ? "even" : "odd");
+            bean.setAge(i);
+        }
+    }
+
+    @TrackClass
+    public static class TrackedBean {
+        @TrackField
+        private String name;
+
+        @TrackField
+        private Integer age;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Integer getAge() {
+            return age;
+        }
+
+        public void setAge(Integer age) {
+            this.age = age;
+        }
+    }
+
+    public static class UntrackedBean {
+        private String name;
+        private Integer age;
+        private List<String> children;
+        private Set<String> tags = new HashSet<>();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Integer getAge() {
+            return age;
+        }
+
+        public void setAge(Integer age) {
+            this.age = age;
+        }
+
+        public List<String> getChildren() {
+            return children;
+        }
+
+        public void setChildren(List<String> children) {
+            this.children = children;
+        }
+
+        public Set<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(Set<String> tags) {
+            this.tags = tags;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package org.motechproject.nms.tracking.ut;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.nms.tracking.utils.TransactionBuffer;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionBufferUnitTest {
+
+    private List<List<String>> committed;
+    private TransactionBuffer<List<String>> transactionBuffer;
+    private TransactionTemplate required;
+    private TransactionTemplate requiresNew;
+
+    @Before
+    public void setUp() {
+        committed = new ArrayList<>();
+        transactionBuffer = new TransactionBuffer<List<String>>() {
+            @Override
+            protected List<String> newBuffer() {
+                return new ArrayList<>();
+            }
+
+            @Override
+            protected void committed(List<String> buffer) {
+                committed.add(buffer);
+            }
+        };
+
+        TestTransactionManager transactionManager = new TestTransactionManager();
+        required = new TransactionTemplate(transactionManager);
+        requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Test
+    public void shouldReturnNullOutsideTransaction() {
+        assertNull(transactionBuffer.current());
+    }
+
+    @Test
+    public void shouldHandOverBufferOnCommit() {
+        required.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                transactionBuffer.current().add("a");
+                transactionBuffer.current().add("b");
+            }
+        });
+
+        assertEquals(Collections.singletonList(Arrays.asList("a", "b")), committed);
+        assertNull(TransactionSynchronizationManager.getResource(transactionBuffer));
+    }
+
+    @Test
+    public void shouldDropBufferOnRollback() {
+        required.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                transactionBuffer.current().add("a");
+                status.setRollbackOnly();
+            }
+        });
+
+        assertTrue(committed.isEmpty());
+        assertNull(TransactionSynchronizationManager.getResource(transactionBuffer));
+    }
+
+    @Test
+    public void shouldKeepSeparateBufferForRequiresNew() {
+        required.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                transactionBuffer.current().add("outer-1");
+
+                requiresNew.execute(new TransactionCallbackWithoutResult() {
+                    @Override
+                    protected void doInTransactionWithoutResult(TransactionStatus status) {
+                        transactionBuffer.current().add("inner");
+                    }
+                });
+
+                // the inner transaction committed on its own, before the outer one
+                assertEquals(Collections.singletonList(Collections.singletonList("inner")), committed);
+
+                transactionBuffer.current().add("outer-2");
+            }
+        });
+
+        assertEquals(2, committed.size());
+        assertEquals(Arrays.asList("outer-1", "outer-2"), committed.get(1));
+    }
+
+    @Test
+    public void shouldDropOnlyInnerBufferWhenRequiresNewRollsBack() {
+        required.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                transactionBuffer.current().add("outer");
+
+                requiresNew.execute(new TransactionCallbackWithoutResult() {
+                    @Override
+                    protected void doInTransactionWithoutResult(TransactionStatus status) {
+                        transactionBuffer.current().add("inner");
+                        status.setRollbackOnly();
+                    }
+                });
+            }
+        });
+
+        assertEquals(Collections.singletonList(Collections.singletonList("outer")), committed);
+    }
+
+    /**
+     * Transaction manager without any resource behind it, which only tracks whether a transaction is active on the
+     * thread, so it can suspend it for REQUIRES_NEW the way the real one does
+     */
+    private static class TestTransactionManager extends AbstractPlatformTransactionManager {
+
+        private static final Object ACTIVE = new Object();
+
+        private final Object key = new Object();
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected boolean isExistingTransaction(Object transaction) {
+            return TransactionSynchronizationManager.hasResource(key);
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            TransactionSynchronizationManager.bindResource(key, ACTIVE);
+        }
+
+        @Override
+        protected Object doSuspend(Object transaction) {
+            return TransactionSynchronizationManager.unbindResource(key);
+        }
+
+        @Override
+        protected void doResume(Object transaction, Object suspendedResources) {
+            TransactionSynchronizationManager.bindResource(key, suspendedResources);
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            // nothing behind the transaction
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            // nothing behind the transaction
+        }
+
+        @Override
+        protected void doCleanupAfterCompletion(Object transaction) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(key);
+        }
+    }
+}
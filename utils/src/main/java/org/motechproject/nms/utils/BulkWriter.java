@@ -0,0 +1,389 @@
+package org.motechproject.nms.utils;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+import org.motechproject.mds.query.SqlQueryExecution;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.metrics.service.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Typed bulk INSERT of rows into an MDS table, replacing statements built from SQL literals.
+ *
+ * The column list, the statement text and the position of every column are fixed once, when the writer is built.
+ * A {@link RowBinder} copies the fields of each row into their columns and every batch is sent as one multi-row
+ * INSERT whose values are all bound parameters, so nothing has to be quoted or escaped. Callers pick the batch
+ * size; a batch is split further if it would need more than {@link #MAX_PARAMETERS} parameters.
+ *
+ * Rows whose ids have to be looked up can be inserted from a SELECT each instead, see {@link Builder#select}; the
+ * batch is then one INSERT ... SELECT of the row SELECTs joined by UNION ALL.
+ *
+ * @param <T> type of the rows written
+ */
+public final class BulkWriter<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkWriter.class);
+
+    /**
+     * Most parameters MySQL accepts in one prepared statement
+     */
+    public static final int MAX_PARAMETERS = 65535;
+
+    private static final String MOTECH = "motech";
+
+    private static final Pattern PARAMETER = Pattern.compile(":(\\w+)");
+
+    private final String table;
+    private final Class<?> entityClass;
+    private final RowBinder<T> binder;
+    private final Map<String, Integer> columnIndex;
+    private final String insertClause;
+    private final String rowTemplate;
+    private final String rowSeparator;
+    private final String updateClause;
+    private final Map<String, Object> constants;
+    private final List<String> nowColumns;
+    private final int rowParameters;
+    private final int rowPlaceholders;
+    private final boolean failSoft;
+
+    /**
+     * Copies the fields of a row into the columns of the writer
+     */
+    public interface RowBinder<T> {
+        void bind(T row, Row columns);
+    }
+
+    /**
+     * Values of the bound columns of one row, or of its parameters when rows are inserted from a SELECT
+     */
+    public static final class Row {
+        private final Map<String, Integer> columnIndex;
+        private final Object[] values;
+
+        private Row(Map<String, Integer> columnIndex) {
+            this.columnIndex = columnIndex;
+            this.values = new Object[columnIndex.size()];
+        }
+
+        public Row set(String column, Object value) {
+            Integer index = columnIndex.get(column);
+            if (index == null) {
+                throw new IllegalArgumentException(column + " is not a bound column or parameter of this writer");
+            }
+            values[index] = toParameter(value);
+            return this;
+        }
+    }
+
+    private BulkWriter(Builder<T> builder) {
+        this.table = builder.table;
+        this.entityClass = builder.entityClass;
+        this.binder = builder.binder;
+        this.constants = builder.constants;
+        this.nowColumns = builder.nowColumns;
+        this.failSoft = builder.failSoft;
+
+        boolean select = builder.selectList != null;
+        List<String> bound = select ? builder.parameters : builder.columns;
+        columnIndex = new HashMap<>();
+        for (String name : bound) {
+            columnIndex.put(name, columnIndex.size());
+        }
+        rowParameters = bound.size();
+
+        List<String> columns = new ArrayList<>(builder.columns);
+        StringBuilder values = new StringBuilder();
+        int placeholders = 0;
+        if (select) {
+            Matcher matcher = PARAMETER.matcher(builder.selectList.replace("%", "%%"));
+            placeholders += bindParameters(matcher, values);
+        } else {
+            for (int i = 0; i < columns.size(); i++) {
+                values.append(i == 0 ? "" : ", ").append(":v%1$d_").append(i);
+            }
+            placeholders += columns.size();
+        }
+        for (String column : constants.keySet()) {
+            values.append(", :k_").append(column);
+            columns.add(column);
+        }
+        for (String column : nowColumns) {
+            values.append(", :now");
+            columns.add(column);
+        }
+        placeholders += constants.size() + nowColumns.size();
+
+        if (select) {
+            StringBuilder from = new StringBuilder(" FROM ");
+            placeholders += bindParameters(PARAMETER.matcher(builder.from.replace("%", "%%")), from);
+            rowTemplate = "SELECT " + values + from;
+            rowSeparator = " UNION ALL ";
+        } else {
+            rowTemplate = "(" + values + ")";
+            rowSeparator = ", ";
+        }
+        rowPlaceholders = placeholders;
+
+        StringBuilder insert = new StringBuilder(builder.ignoreDuplicates ? "INSERT IGNORE INTO " : "INSERT INTO ");
+        insert.append(table).append(" (");
+        for (int i = 0; i < columns.size(); i++) {
+            insert.append(i == 0 ? "`" : ", `").append(columns.get(i)).append('`');
+        }
+        insertClause = insert.append(select ? ") " : ") VALUES ").toString();
+
+        if (builder.updateColumns == null) {
+            updateClause = "";
+        } else {
+            List<String> updated = builder.updateColumns.isEmpty() ? columns : builder.updateColumns;
+            StringBuilder update = new StringBuilder(" ON DUPLICATE KEY UPDATE ");
+            boolean first = true;
+            for (String column : updated) {
+                if ("id".equals(column)) {
+                    continue;
+                }
+                update.append(first ? "`" : ", `").append(column).append("` = VALUES(`").append(column).append("`)");
+                first = false;
+            }
+            updateClause = update.toString();
+        }
+    }
+
+    public static <T> Builder<T> insertInto(String table, Class<?> entityClass) {
+        return new Builder<>(table, entityClass);
+    }
+
+    /**
+     * Writes the rows, one statement per batch, in the caller's transaction if there is one
+     * @param dataService data service of the entity the table belongs to
+     * @param rows the rows to write
+     * @param batchSize most rows written by one statement
+     * @return the number of rows affected, as reported by MySQL
+     */
+    public long write(MotechDataService<?> dataService, List<T> rows, int batchSize) {
+        if (rows == null || rows.isEmpty()) {
+            return 0;
+        }
+        int statementRows = Math.max(1, Math.min(batchSize, MAX_PARAMETERS / rowPlaceholders));
+        Timer timer = new Timer("row", "rows");
+        long affected = 0;
+        for (int from = 0; from < rows.size(); from += statementRows) {
+            affected += writeBatch(dataService, rows.subList(from, Math.min(rows.size(), from + statementRows)));
+        }
+        LOGGER.info("{}: {}", table, timer.frequency(rows.size()));
+        return affected;
+    }
+
+    private String getSql(int rows) {
+        StringBuilder sql = new StringBuilder(insertClause);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(rowSeparator);
+            }
+            sql.append(String.format(rowTemplate, i));
+        }
+        return sql.append(updateClause).toString();
+    }
+
+    /**
+     * Copies the SQL of a row SELECT, replacing the :name parameters with the placeholders of the row
+     * @return the number of placeholders
+     */
+    private int bindParameters(Matcher matcher, StringBuilder sql) {
+        int placeholders = 0;
+        StringBuffer bound = new StringBuffer();
+        while (matcher.find()) {
+            Integer index = columnIndex.get(matcher.group(1));
+            if (index == null) {
+                throw new IllegalStateException(matcher.group(1) + " is not a parameter of the bulk writer of " +
+                        table);
+            }
+            matcher.appendReplacement(bound, Matcher.quoteReplacement(":v%1$d_" + index));
+            placeholders++;
+        }
+        matcher.appendTail(bound);
+        sql.append(bound);
+        return placeholders;
+    }
+
+    private Map<String, Object> getParameters(List<T> rows) {
+        Map<String, Object> params = new HashMap<>();
+        int i = 0;
+        for (T row : rows) {
+            Row columns = new Row(columnIndex);
+            binder.bind(row, columns);
+            for (int c = 0; c < rowParameters; c++) {
+                params.put("v" + i + "_" + c, columns.values[c]);
+            }
+            i++;
+        }
+        for (Map.Entry<String, Object> constant : constants.entrySet()) {
+            params.put("k_" + constant.getKey(), constant.getValue());
+        }
+        if (!nowColumns.isEmpty()) {
+            params.put("now", new Date());
+        }
+        return params;
+    }
+
+    private long writeBatch(MotechDataService<?> dataService, final List<T> rows) {
+        final String sql = getSql(rows.size());
+        final Map<String, Object> params = getParameters(rows);
+
+        @SuppressWarnings("unchecked")
+        SqlQueryExecution<Long> queryExecution = new SqlQueryExecution<Long>() {
+
+            @Override
+            public String getSqlQuery() {
+                return sql;
+            }
+
+            @Override
+            public Long execute(Query query) {
+                query.setClass(entityClass);
+                try {
+                    return (Long) query.executeWithMap(params);
+                } catch (RuntimeException e) {
+                    if (!failSoft) {
+                        throw e;
+                    }
+                    LOGGER.error("Unable to write {} row(s) to {}", rows.size(), table, e);
+                    return 0L;
+                }
+            }
+        };
+
+        Long affected = dataService.executeSQLQuery(queryExecution);
+        return affected == null ? 0 : affected;
+    }
+
+    private static Object toParameter(Object value) {
+        if (value instanceof DateTime) {
+            return ((DateTime) value).toDate();
+        }
+        if (value instanceof LocalDate) {
+            return ((LocalDate) value).toDate();
+        }
+        if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        return value;
+    }
+
+    public static final class Builder<T> {
+        private final String table;
+        private final Class<?> entityClass;
+        private final List<String> columns = new ArrayList<>();
+        private final Map<String, Object> constants = new LinkedHashMap<>();
+        private final List<String> nowColumns = new ArrayList<>();
+        private final List<String> parameters = new ArrayList<>();
+        private String selectList;
+        private String from;
+        private List<String> updateColumns;
+        private boolean ignoreDuplicates;
+        private boolean failSoft;
+        private RowBinder<T> binder;
+
+        private Builder(String table, Class<?> entityClass) {
+            this.table = table;
+            this.entityClass = entityClass;
+        }
+
+        /**
+         * Columns whose values are set by the binder for every row
+         */
+        public Builder<T> columns(String... names) {
+            columns.addAll(Arrays.asList(names));
+            return this;
+        }
+
+        /**
+         * Inserts every row from a SELECT instead of a VALUES tuple, for rows whose ids are looked up by the
+         * statement itself. The select list gives the values of the {@link #columns(String...)}, in their order, and
+         * the binder sets the parameters, which the select list and the FROM clause use as :name. Constant and now
+         * columns are added to the select list.
+         * @param selectList the values of the columns, without SELECT
+         * @param from the tables and conditions the values are selected from, without FROM
+         * @param parameterNames names of the parameters the binder sets for every row
+         */
+        public Builder<T> select(String selectList, String from, String... parameterNames) {
+            this.selectList = selectList;
+            this.from = from;
+            parameters.addAll(Arrays.asList(parameterNames));
+            return this;
+        }
+
+        /**
+         * Column written with the same value in every row
+         */
+        public Builder<T> constant(String name, Object value) {
+            constants.put(name, toParameter(value));
+            return this;
+        }
+
+        /**
+         * Sets creator, modifiedBy and owner to motech, as the MDS entities written by the platform have them
+         */
+        public Builder<T> motechAudit() {
+            return constant("creator", MOTECH).constant("modifiedBy", MOTECH).constant("owner", MOTECH);
+        }
+
+        /**
+         * Columns set to the time the batch is written
+         */
+        public Builder<T> now(String... names) {
+            nowColumns.addAll(Arrays.asList(names));
+            return this;
+        }
+
+        /**
+         * Uses INSERT IGNORE, skipping rows which would duplicate a unique key
+         */
+        public Builder<T> ignoreDuplicates() {
+            ignoreDuplicates = true;
+            return this;
+        }
+
+        /**
+         * Updates the given columns of the existing row when a row duplicates a unique key, or every column but id
+         * when none are given
+         */
+        public Builder<T> updateOnDuplicateKey(String... names) {
+            updateColumns = names.length == 0 ? Collections.<String>emptyList() : Arrays.asList(names);
+            return this;
+        }
+
+        /**
+         * Logs a failed batch and counts it as 0 rows written instead of throwing
+         */
+        public Builder<T> failSoft() {
+            failSoft = true;
+            return this;
+        }
+
+        public Builder<T> binder(RowBinder<T> rowBinder) {
+            binder = rowBinder;
+            return this;
+        }
+
+        public BulkWriter<T> build() {
+            if (binder == null || columns.isEmpty()) {
+                throw new IllegalStateException("A bulk writer of " + table + " needs columns and a row binder");
+            }
+            return new BulkWriter<>(this);
+        }
+    }
+}
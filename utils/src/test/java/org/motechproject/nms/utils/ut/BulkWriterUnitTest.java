@@ -0,0 +1,182 @@
+package org.motechproject.nms.utils.ut;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.motechproject.mds.query.SqlQueryExecution;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.nms.utils.BulkWriter;
+
+import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BulkWriterUnitTest {
+
+    private MotechDataService dataService;
+    private List<String> statements;
+    private List<Map<String, Object>> parameters;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        dataService = mock(MotechDataService.class);
+        statements = new ArrayList<>();
+        parameters = new ArrayList<>();
+        when(dataService.executeSQLQuery(any(SqlQueryExecution.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                SqlQueryExecution<Long> execution = (SqlQueryExecution<Long>) invocation.getArguments()[0];
+                statements.add(execution.getSqlQuery());
+                Query query = mock(Query.class);
+                ArgumentCaptor<Map> captor = ArgumentCaptor.forClass(Map.class);
+                when(query.executeWithMap(anyMap())).thenReturn(1L);
+                Long affected = execution.execute(query);
+                verify(query).executeWithMap(captor.capture());
+                parameters.add(captor.getValue());
+                return affected;
+            }
+        });
+    }
+
+    @Test
+    public void shouldBindEveryRowInsteadOfWritingLiterals() {
+        BulkWriter<Record> writer = BulkWriter.<Record>insertInto("records", Record.class)
+                .columns("name", "date")
+                .motechAudit()
+                .now("creationDate")
+                .updateOnDuplicateKey("name")
+                .binder(new RecordBinder())
+                .build();
+
+        DateTime date = new DateTime(2026, 1, 1, 0, 0);
+        long written = writer.write(dataService, Arrays.asList(new Record("O'Brien", date), new Record(null, null)), 10);
+
+        assertEquals(1L, written);
+        assertEquals("INSERT INTO records (`name`, `date`, `creator`, `modifiedBy`, `owner`, `creationDate`) VALUES " +
+                "(:v0_0, :v0_1, :k_creator, :k_modifiedBy, :k_owner, :now), " +
+                "(:v1_0, :v1_1, :k_creator, :k_modifiedBy, :k_owner, :now) " +
+                "ON DUPLICATE KEY UPDATE `name` = VALUES(`name`)", statements.get(0));
+
+        Map<String, Object> params = parameters.get(0);
+        assertEquals("O'Brien", params.get("v0_0"));
+        assertEquals(date.toDate(), params.get("v0_1"));
+        assertNull(params.get("v1_0"));
+        assertTrue(params.containsKey("v1_0"));
+        assertEquals("motech", params.get("k_owner"));
+        assertTrue(params.get("now") instanceof Date);
+    }
+
+    @Test
+    public void shouldSplitRowsIntoBatches() {
+        BulkWriter<Record> writer = BulkWriter.<Record>insertInto("records", Record.class)
+                .columns("name", "date")
+                .ignoreDuplicates()
+                .binder(new RecordBinder())
+                .build();
+
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            records.add(new Record("r" + i, null));
+        }
+
+        assertEquals(3L, writer.write(dataService, records, 2));
+        assertEquals(3, statements.size());
+        assertTrue(statements.get(0).startsWith("INSERT IGNORE INTO records (`name`, `date`) VALUES (:v0_0, :v0_1), "));
+        assertEquals("r4", parameters.get(2).get("v0_0"));
+        assertEquals(2, parameters.get(2).size());
+    }
+
+    @Test
+    public void shouldInsertRowsFromSelects() {
+        BulkWriter<Record> writer = BulkWriter.<Record>insertInto("records", Record.class)
+                .columns("parent_id", "name")
+                .select("p.id, :name", "parents p WHERE p.name = :name AND p.date = :date", "name", "date")
+                .now("creationDate")
+                .ignoreDuplicates()
+                .updateOnDuplicateKey("name", "creationDate")
+                .binder(new RecordBinder())
+                .build();
+
+        DateTime date = new DateTime(2026, 1, 1, 0, 0);
+        writer.write(dataService, Arrays.asList(new Record("a", date), new Record("b", null)), 10);
+
+        assertEquals("INSERT IGNORE INTO records (`parent_id`, `name`, `creationDate`) " +
+                "SELECT p.id, :v0_0, :now FROM parents p WHERE p.name = :v0_0 AND p.date = :v0_1 UNION ALL " +
+                "SELECT p.id, :v1_0, :now FROM parents p WHERE p.name = :v1_0 AND p.date = :v1_1 " +
+                "ON DUPLICATE KEY UPDATE `name` = VALUES(`name`), `creationDate` = VALUES(`creationDate`)",
+                statements.get(0));
+        assertEquals("b", parameters.get(0).get("v1_0"));
+        assertEquals(date.toDate(), parameters.get(0).get("v0_1"));
+    }
+
+    @Test
+    public void shouldKeepStatementsUnderParameterLimit() {
+        BulkWriter<Record> writer = BulkWriter.<Record>insertInto("records", Record.class)
+                .columns("name", "date")
+                .motechAudit()
+                .binder(new RecordBinder())
+                .build();
+
+        // two bound columns and three constants: 13107 rows fill the 65535 placeholders of a statement
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < 13108; i++) {
+            records.add(new Record("r" + i, null));
+        }
+
+        writer.write(dataService, records, 50000);
+        assertEquals(2, statements.size());
+        assertEquals("r13107", parameters.get(1).get("v0_0"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectUnknownSelectParameters() {
+        BulkWriter.<Record>insertInto("records", Record.class)
+                .columns("name")
+                .select(":name", "parents WHERE id = :id", "name")
+                .binder(new RecordBinder())
+                .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownColumns() {
+        BulkWriter<Record> writer = BulkWriter.<Record>insertInto("records", Record.class)
+                .columns("name")
+                .binder(new RecordBinder())
+                .build();
+
+        writer.write(dataService, Arrays.asList(new Record("name", null)), 10);
+    }
+
+    private static class RecordBinder implements BulkWriter.RowBinder<Record> {
+        @Override
+        public void bind(Record row, BulkWriter.Row columns) {
+            columns.set("name", row.name).set("date", row.date);
+        }
+    }
+
+    private static class Record {
+        private final String name;
+        private final DateTime date;
+
+        Record(String name, DateTime date) {
+            this.name = name;
+            this.date = date;
+        }
+    }
+}